@@ -0,0 +1,234 @@
+package de.tucottbus.kt.lcars;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.tucottbus.kt.lcars.elements.EElement;
+
+/**
+ * A uniform grid over the {@linkplain Panel panel} area indexing the
+ * {@linkplain EElement LCARS GUI elements} by their bounds. The index is used
+ * to find the element at a touch position without testing every element on the
+ * panel.
+ *
+ * <p>Each grid cell keeps the elements overlapping it ordered by their z-order,
+ * i.&nbsp;e. by the order they were added to the panel. Elements whose geometry
+ * was invalidated are re-indexed lazily on the next look-up.</p>
+ *
+ * <p><b>Note:</b> Except for {@link #invalidate(EElement)} the methods of this
+ * class are <em>NOT SYNCHRONIZED</em>. The panel calls them while holding the
+ * monitor of its element list.</p>
+ */
+class ElementIndex
+{
+  /**
+   * Edge length of a grid cell in panel pixels.
+   */
+  private static final int CELL_SIZE = 64;
+
+  private final int cols;
+  private final int rows;
+  private final ArrayList<ArrayList<Entry>> cells;
+  private final HashMap<EElement, Entry> entries;
+
+  /**
+   * Elements to be (re-)indexed on the next look-up.
+   */
+  private final Set<EElement> pending;
+
+  /**
+   * The z-order of the next added element.
+   */
+  private long nextZ;
+
+  /**
+   * Creates a new element index.
+   *
+   * @param dimension
+   *          The panel dimension. Elements outside the panel area are indexed
+   *          in the border cells.
+   */
+  ElementIndex(Dimension dimension)
+  {
+    int w = dimension != null && dimension.width  > 0 ? dimension.width  : 1;
+    int h = dimension != null && dimension.height > 0 ? dimension.height : 1;
+    cols    = (w + CELL_SIZE - 1) / CELL_SIZE;
+    rows    = (h + CELL_SIZE - 1) / CELL_SIZE;
+    cells   = new ArrayList<ArrayList<Entry>>(cols * rows);
+    for (int i = 0; i < cols * rows; i++)
+      cells.add(new ArrayList<Entry>());
+    entries = new HashMap<EElement, Entry>(200);
+    pending = ConcurrentHashMap.newKeySet();
+  }
+
+  /**
+   * Adds an element on top of all other elements.
+   *
+   * @param el
+   *          The element.
+   */
+  void add(EElement el)
+  {
+    remove(el);
+    entries.put(el, new Entry(el, nextZ++));
+    pending.add(el);
+  }
+
+  /**
+   * Removes an element.
+   *
+   * @param el
+   *          The element.
+   */
+  void remove(EElement el)
+  {
+    pending.remove(el);
+    Entry entry = entries.remove(el);
+    if (entry != null)
+      unlink(entry);
+  }
+
+
+  /**
+   * Marks the geometry of an element invalid. The element will be re-indexed on
+   * the next look-up. This method is thread-safe.
+   *
+   * @param el
+   *          The element.
+   */
+  void invalidate(EElement el)
+  {
+    pending.add(el);
+  }
+
+  /**
+   * Returns the top-most element containing a point.
+   *
+   * @param pt
+   *          The point (panel coordinates).
+   * @param modal
+   *          If <code>true</code> consider {@link EElement#isModal() modal}
+   *          elements only, otherwise consider non-modal elements only.
+   *          {@link EElement#isStatic() Static} elements are never considered.
+   * @return The element or <code>null</code> if there is no element at this
+   *         point.
+   */
+  EElement elementAt(Point pt, boolean modal)
+  {
+    if (!pending.isEmpty())
+      validate();
+
+    ArrayList<Entry> cell = cells.get(cellRow(pt.y) * cols + cellCol(pt.x));
+    for (int i = cell.size() - 1; i >= 0; i--)
+    {
+      Entry entry = cell.get(i);
+      EElement el = entry.el;
+      if (!entry.bounds.contains(pt))
+        continue;
+      if (el.isModal() != modal || el.isStatic())
+        continue;
+      if (el.contains(pt))
+        return el;
+    }
+    return null;
+  }
+
+  // -- Private methods --
+
+  /**
+   * Re-indexes all pending elements.
+   */
+  private void validate()
+  {
+    for (Iterator<EElement> it = pending.iterator(); it.hasNext(); )
+    {
+      EElement el = it.next();
+      it.remove();
+      Entry entry = entries.get(el);
+      if (entry == null)
+        continue;
+      unlink(entry);
+      entry.bounds = el.getHitBounds();
+      link(entry);
+    }
+  }
+
+  /**
+   * Inserts an entry into all cells overlapped by its bounds, keeping the cells
+   * ordered by z-order.
+   */
+  private void link(Entry entry)
+  {
+    Rectangle b = entry.bounds;
+    if (b == null || b.isEmpty())
+      return;
+    entry.col0 = cellCol(b.x);
+    entry.row0 = cellRow(b.y);
+    entry.col1 = cellCol(b.x + b.width - 1);
+    entry.row1 = cellRow(b.y + b.height - 1);
+    for (int r = entry.row0; r <= entry.row1; r++)
+      for (int c = entry.col0; c <= entry.col1; c++)
+      {
+        ArrayList<Entry> cell = cells.get(r * cols + c);
+        int i = cell.size();
+        while (i > 0 && cell.get(i - 1).z > entry.z)
+          i--;
+        cell.add(i, entry);
+      }
+    entry.linked = true;
+  }
+
+  /**
+   * Removes an entry from all cells it was inserted into.
+   */
+  private void unlink(Entry entry)
+  {
+    if (!entry.linked)
+      return;
+    for (int r = entry.row0; r <= entry.row1; r++)
+      for (int c = entry.col0; c <= entry.col1; c++)
+        cells.get(r * cols + c).remove(entry);
+    entry.linked = false;
+  }
+
+  private int cellCol(int x)
+  {
+    return Math.max(0, Math.min(cols - 1, x / CELL_SIZE));
+  }
+
+  private int cellRow(int y)
+  {
+    return Math.max(0, Math.min(rows - 1, y / CELL_SIZE));
+  }
+
+  // -- Nested classes --
+
+  /**
+   * An indexed element.
+   */
+  private static final class Entry
+  {
+    final EElement el;
+    final long     z;
+    Rectangle      bounds;
+    boolean        linked;
+    int            col0;
+    int            row0;
+    int            col1;
+    int            row1;
+
+    Entry(EElement el, long z)
+    {
+      this.el = el;
+      this.z  = z;
+    }
+  }
+}
+
+// EOF
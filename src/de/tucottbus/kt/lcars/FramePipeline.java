@@ -0,0 +1,338 @@
+package de.tucottbus.kt.lcars;
+
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import de.tucottbus.kt.lcars.geometry.AGeometry;
+import de.tucottbus.kt.lcars.logging.Log;
+import de.tucottbus.kt.lcars.util.FrameTimings;
+
+/**
+ * The staged production of screen updates of a {@linkplain Panel panel}.
+ * Frames are snapshot on the panel clock thread and handed over to an encoding
+ * and a transmitting stage. Each of these stages runs on its own thread, and
+ * the stages are connected by bounded queues. While frame N is transmitted to
+ * the screen, frame N+1 can be encoded and frame N+2 be snapshot.
+ *
+ * <p>The pipeline keeps the frames in order. If the encoding queue is full,
+ * the panel defers taking the next snapshot instead of blocking the panel
+ * clock.</p>
+ */
+public class FramePipeline
+{
+  /**
+   * The capacity of each queue between two stages.
+   */
+  public static final int QUEUE_CAPACITY = 2;
+
+  /**
+   * The stages of the pipeline.
+   */
+  public enum Stage
+  {
+    /**
+     * Taking the snapshot of the panel on the panel clock thread.
+     */
+    SNAPSHOT,
+
+    /**
+     * Replacing known geometries by references and encoding the frame.
+     */
+    ENCODE,
+
+    /**
+     * Sending the frame to the screen.
+     */
+    TRANSMIT,
+
+    /**
+     * The complete pipeline, from the start of the snapshot to the end of the
+     * transmission.
+     */
+    TOTAL
+  }
+
+  /**
+   * The action of a pipeline stage.
+   */
+  interface Action
+  {
+    /**
+     * Processes a frame.
+     *
+     * @param frame
+     *          The frame.
+     */
+    public void process(Frame frame) throws Exception;
+  }
+
+  /**
+   * Weight of a new latency sample in the moving averages.
+   */
+  private static final double EWMA_WEIGHT = 0.1;
+
+  private final ArrayBlockingQueue<Frame> encodeQueue;
+  private final ArrayBlockingQueue<Frame> transmitQueue;
+  private final Thread encoder;
+  private final Thread transmitter;
+  private volatile boolean running;
+  private final FrameTimings timings;
+
+  private final double[] avgLatency = new double[Stage.values().length];
+  private final long[]   maxLatency = new long[Stage.values().length];
+  private long frames;
+  private long updateBytes;
+  private double avgUpdateSize;
+
+  /**
+   * Creates and starts a frame pipeline.
+   *
+   * @param name
+   *          A name for the stage threads.
+   * @param encode
+   *          The action of the encoding stage.
+   * @param transmit
+   *          The action of the transmitting stage.
+   * @param timings
+   *          Receives the latencies of the encoding and the transmitting stage,
+   *          can be <code>null</code>.
+   */
+  FramePipeline(String name, Action encode, Action transmit, FrameTimings timings)
+  {
+    this.timings  = timings;
+    encodeQueue   = new ArrayBlockingQueue<Frame>(QUEUE_CAPACITY);
+    transmitQueue = new ArrayBlockingQueue<Frame>(QUEUE_CAPACITY);
+    running       = true;
+    encoder       = new Thread(() -> runStage(Stage.ENCODE, encodeQueue, encode,
+      transmitQueue), name + ".encoder");
+    transmitter   = new Thread(() -> runStage(Stage.TRANSMIT, transmitQueue,
+      transmit, null), name + ".transmitter");
+    encoder.setDaemon(true);
+    transmitter.setDaemon(true);
+    encoder.start();
+    transmitter.start();
+  }
+
+  /**
+   * Determines if the pipeline can take another frame without blocking.
+   */
+  boolean isAccepting()
+  {
+    return running && encodeQueue.remainingCapacity() > 0;
+  }
+
+  /**
+   * Feeds a snapshot into the pipeline.
+   *
+   * @param frame
+   *          The frame, its {@link Frame#start start time} must have been set.
+   * @return <code>false</code> if the pipeline is full or stopped
+   */
+  boolean submit(Frame frame)
+  {
+    if (!running)
+      return false;
+    frame.stageStart = System.nanoTime();
+    addLatency(Stage.SNAPSHOT, frame.stageStart - frame.start);
+    return encodeQueue.offer(frame);
+  }
+
+  /**
+   * Stops the pipeline. Frames not yet transmitted are discarded.
+   */
+  void stop()
+  {
+    running = false;
+    encoder.interrupt();
+    transmitter.interrupt();
+    encodeQueue.clear();
+    transmitQueue.clear();
+  }
+
+  /**
+   * Returns the average latency of a stage in microseconds.
+   *
+   * @param stage
+   *          The stage.
+   */
+  public synchronized long getLatency(Stage stage)
+  {
+    return Math.round(avgLatency[stage.ordinal()] / 1000);
+  }
+
+  /**
+   * Returns the maximal latency of a stage in microseconds.
+   *
+   * @param stage
+   *          The stage.
+   */
+  public synchronized long getMaxLatency(Stage stage)
+  {
+    return maxLatency[stage.ordinal()] / 1000;
+  }
+
+  /**
+   * Returns the number of frames that passed the pipeline.
+   */
+  public synchronized long getFrameCount()
+  {
+    return frames;
+  }
+
+  /**
+   * Returns the number of frames waiting for encoding or transmission.
+   */
+  public int getQueueDepth()
+  {
+    return encodeQueue.size() + transmitQueue.size();
+  }
+
+  /**
+   * Returns the total size of the encoded frames in bytes.
+   */
+  public synchronized long getUpdateBytes()
+  {
+    return updateBytes;
+  }
+
+  /**
+   * Returns the moving average of the size of an encoded frame in bytes.
+   */
+  public synchronized double getAverageUpdateSize()
+  {
+    return avgUpdateSize;
+  }
+
+  /**
+   * Resets the maximal latencies.
+   */
+  public synchronized void resetMaxLatencies()
+  {
+    for (int i = 0; i < maxLatency.length; i++)
+      maxLatency[i] = 0;
+  }
+
+  @Override
+  public synchronized String toString()
+  {
+    StringBuilder sb = new StringBuilder("frames=" + frames);
+    for (Stage stage : Stage.values())
+      sb.append(String.format(" %s=%.1f/%.1fms", stage.name().toLowerCase(),
+          avgLatency[stage.ordinal()] / 1E6, maxLatency[stage.ordinal()] / 1E6));
+    return sb.toString();
+  }
+
+  // -- Private methods --
+
+  private void runStage(Stage stage, ArrayBlockingQueue<Frame> in, Action action,
+      ArrayBlockingQueue<Frame> out)
+  {
+    while (running)
+    {
+      Frame frame;
+      try
+      {
+        frame = in.take();
+        frame.stageStart = System.nanoTime();
+        try
+        {
+          action.process(frame);
+        }
+        catch (Exception e)
+        {
+          Log.err("Frame " + stage.name().toLowerCase() + " failed.", e);
+        }
+        long end = System.nanoTime();
+        addLatency(stage, end - frame.stageStart);
+        if (stage == Stage.ENCODE && frame.size > 0)
+          addUpdateSize(frame.size);
+        if (timings != null && (stage != Stage.ENCODE || frame.remote))
+          timings.record(stage == Stage.ENCODE ? FrameTimings.Phase.ENCODE
+              : FrameTimings.Phase.TRANSMIT, end - frame.stageStart);
+        if (out != null)
+          out.put(frame);
+        else
+        {
+          addLatency(Stage.TOTAL, end - frame.start);
+          synchronized (this)
+          {
+            frames++;
+          }
+        }
+      }
+      catch (InterruptedException e)
+      {
+        // Stopped
+      }
+    }
+  }
+
+  private synchronized void addUpdateSize(int bytes)
+  {
+    updateBytes += bytes;
+    avgUpdateSize = avgUpdateSize == 0 ? bytes
+        : (1 - EWMA_WEIGHT) * avgUpdateSize + EWMA_WEIGHT * bytes;
+  }
+
+  private synchronized void addLatency(Stage stage, long nanos)
+  {
+    int i = stage.ordinal();
+    avgLatency[i] = avgLatency[i] == 0 ? nanos
+        : (1 - EWMA_WEIGHT) * avgLatency[i] + EWMA_WEIGHT * nanos;
+    if (nanos > maxLatency[i])
+      maxLatency[i] = nanos;
+  }
+
+  // -- Nested classes --
+
+  /**
+   * A frame passing the pipeline.
+   */
+  static final class Frame
+  {
+    /**
+     * The screen update data.
+     */
+    final PanelData data;
+
+    /**
+     * The incremental flag of the screen update.
+     */
+    final boolean incremental;
+
+    /**
+     * <code>true</code> if the screen is remote and the frame is to be encoded.
+     */
+    final boolean remote;
+
+    /**
+     * The geometries defined by this frame, set by the encoding stage.
+     */
+    HashMap<Long, AGeometry> defined;
+
+    /**
+     * The size of the encoded frame in bytes, set by the encoding stage.
+     */
+    int size;
+
+    /**
+     * Start time of the snapshot (nanoseconds).
+     */
+    final long start;
+
+    /**
+     * Start time of the current stage (nanoseconds).
+     */
+    long stageStart;
+
+    Frame(PanelData data, boolean incremental, boolean remote, long start)
+    {
+      this.data        = data;
+      this.incremental = incremental;
+      this.remote      = remote;
+      this.start       = start;
+    }
+  }
+}
+
+// EOF
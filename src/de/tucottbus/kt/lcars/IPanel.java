@@ -5,6 +5,8 @@ import java.rmi.Remote;
 import java.rmi.RemoteException;
 
 import de.tucottbus.kt.lcars.elements.EEvent;
+import de.tucottbus.kt.lcars.geometry.AGeometry;
+import de.tucottbus.kt.lcars.geometry.GRef;
 
 /**
  * The interface of an LCARS panel. A panel represents the contents and semantics of a graphical,
@@ -49,6 +51,19 @@ public interface IPanel extends Remote
    */
   public void processKeyEvent(KeyEvent event) throws RemoteException;
 
+  /**
+   * Called by the {@linkplain Screen LCARS screen} displaying this panel to fetch geometries which
+   * were referenced by their {@linkplain AGeometry#wireHash(AGeometry) content hash} in a screen
+   * update but are not (or no longer) known by the screen.
+   * 
+   * @param hashes
+   *          The content hashes.
+   * @return The geometries, an array of the same length as <code>hashes</code>. Elements are
+   *         <code>null</code> if the panel does not know the respective geometry.
+   * @see GRef
+   */
+  public AGeometry[] getGeometries(long[] hashes) throws RemoteException;
+
   // -- Questionable interfaces --
   
   /**
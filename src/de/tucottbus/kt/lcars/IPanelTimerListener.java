@@ -44,6 +44,52 @@ public interface IPanelTimerListener
    */
   public void fps1();
 
+  /**
+   * Returns the highest rate of timer events this listener needs, i.&nbsp;e.
+   * 25, 10, 2 or 1 events per second. The panel clock slows down if no
+   * listener needs the more frequent events. The default implementation
+   * returns 25.
+   */
+  public default int getTimerRate()
+  {
+    return 25;
+  }
+
+  /**
+   * Determines the highest timer rate a class needs by checking which of the
+   * timer methods <code>fps25</code> and <code>fps10</code> it overrides.
+   * 
+   * @param clazz
+   *          The class.
+   * @param base
+   *          The base class declaring the (empty) timer methods.
+   * @return 25, 10 or 2 events per second.
+   */
+  public static int getTimerRate(Class<?> clazz, Class<?> base)
+  {
+    int rate = 2;
+    for (Class<?> c = clazz; c != null && c != base; c = c.getSuperclass())
+    {
+      try
+      {
+        c.getDeclaredMethod("fps25");
+        return 25;
+      }
+      catch (NoSuchMethodException e)
+      {
+      }
+      try
+      {
+        c.getDeclaredMethod("fps10");
+        rate = 10;
+      }
+      catch (NoSuchMethodException e)
+      {
+      }
+    }
+    return rate;
+  }
+
 }
 
 // EOF
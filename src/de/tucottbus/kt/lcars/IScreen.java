@@ -5,6 +5,7 @@ import java.rmi.Remote;
 import java.rmi.RemoteException;
 
 import de.tucottbus.kt.lcars.feedback.UserFeedback;
+import de.tucottbus.kt.lcars.util.FrameTimings;
 import de.tucottbus.kt.lcars.util.LoadStatistics;
 
 /**
@@ -85,6 +86,15 @@ public interface IScreen extends Remote
    */
   public LoadStatistics getLoadStatistics() throws RemoteException;
 
+  /**
+   * Returns the latency statistics of applying and painting frames on the screen in the last
+   * second.
+   * 
+   * @see FrameTimings.Phase#APPLY
+   * @see FrameTimings.Phase#PAINT
+   */
+  public FrameTimings.Snapshot getFrameTimings() throws RemoteException;
+
   /**
    * Terminates the LCARS session displaying the screen.
    */
@@ -19,6 +19,7 @@
 package de.tucottbus.kt.lcars;
 
 import java.awt.Dimension;
+import java.awt.GraphicsEnvironment;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.geom.Area;
@@ -64,11 +65,15 @@ import de.tucottbus.kt.lcars.logging.Log;
 import de.tucottbus.kt.lcars.net.LcarsServer;
 import de.tucottbus.kt.lcars.net.NetUtils;
 import de.tucottbus.kt.lcars.net.RmiScreenAdapter;
+import de.tucottbus.kt.lcars.net.nio.NioScreenAdapter;
+import de.tucottbus.kt.lcars.net.nio.NioServer;
 import de.tucottbus.kt.lcars.net.panels.ServerPanel;
 import de.tucottbus.kt.lcars.speech.ISpeechEngine;
 import de.tucottbus.kt.lcars.speech.SpeechEnginePanel;
 import de.tucottbus.kt.lcars.swt.ColorMeta;
 import de.tucottbus.kt.lcars.swt.FontMeta;
+import de.tucottbus.kt.lcars.swt.TextLayoutCache;
+import de.tucottbus.kt.lcars.swt.TextMetrics;
 
 /**
  * The LCARS main class. Includes the main method, constants, static service
@@ -424,6 +429,11 @@ public class LCARS
   private static FontMeta.Explicit[] fonts = null;
   private static Map<String,Boolean> insFnts = new Hashtable<String,Boolean>();
 
+  /**
+   * The cache of measured text layouts.
+   */
+  private static final TextLayoutCache textLayoutCache = new TextLayoutCache();
+
 //  /** 
 //   * The scaling to get a swt font with the same height as there awt variant
 //   */
@@ -666,13 +676,24 @@ public class LCARS
   public static Rectangle getTextBounds(FontMeta meta, String text) 
   {    
     if (text == null || text == "") return new Rectangle();
-    Font font = meta.getFont();    
-    TextLayout lt = new TextLayout(font.getDevice());
-    lt.setFont(font);
-    lt.setText(text);
-    org.eclipse.swt.graphics.Rectangle result = lt.getBounds();
-    lt.dispose();
-    return new Rectangle(result.x, result.y, result.width, result.height);    
+    Rectangle bounds = textLayoutCache.getTextBounds(meta, text);
+    if (bounds == null && isHeadless())
+    {
+      bounds = TextMetrics.get(meta).getTextBounds(text);
+      textLayoutCache.putTextBounds(meta, text, bounds);
+    }
+    else if (bounds == null)
+    {
+      Font font = meta.getFont();    
+      TextLayout lt = new TextLayout(font.getDevice());
+      lt.setFont(font);
+      lt.setText(text);
+      org.eclipse.swt.graphics.Rectangle result = lt.getBounds();
+      lt.dispose();
+      bounds = new Rectangle(result.x, result.y, result.width, result.height);
+      textLayoutCache.putTextBounds(meta, text, bounds);
+    }
+    return new Rectangle(bounds);    
   }
   
   /**
@@ -723,13 +744,83 @@ public class LCARS
     boolean             foreground    
   )
   {
-    //TODO: This implementation is entirely wrong. Re-do it (see
-    //      http://pawlan.com/monica/articles/texttutorial/other.html)!
-    
     ArrayList<AGeometry> geos = new ArrayList<AGeometry>(); 
     if (text==null || text.length()==0 || bounds==null) return geos;
     if (insets==null) insets = new Point(0,0);
     
+    int align = (style & ES_LABEL) >> 4;
+    if(align > ES_LABEL_SE)
+      align = ES_LABEL_NW >> 4;
+
+    // Measure text lines (relative to the bounding box) or recall them
+    TextLayoutCache.Line[] lines = textLayoutCache.getLayout(fontMeta, text,
+        bounds.width, bounds.height, align, insets.x, insets.y);
+    if (lines==null)
+    {
+      lines = layoutText(fontMeta, text, bounds.width, bounds.height, align, insets);
+      textLayoutCache.putLayout(fontMeta, text, bounds.width, bounds.height,
+          align, insets.x, insets.y, lines);
+    }
+
+    // Create geometries at the position of the bounding box
+    for (TextLayoutCache.Line line : lines)
+    {
+      Rectangle b = new Rectangle(bounds.x+line.x, bounds.y+line.y, line.width, line.height);
+      GText gt = new GText(line.text, b, fontMeta, foreground);
+      if (line.indent  < 0) gt.setIndent(line.indent);
+      if (line.descent < 0) gt.setDescent(line.descent);
+      geos.add(gt);
+    }
+    return geos;
+  }
+
+  /**
+   * Returns the cache of measured text layouts used by
+   * {@link #createTextGeometry2D(FontMeta, String, Rectangle, int, Point, boolean)
+   * createTextGeometry2D} and {@link #getTextBounds(FontMeta, String)
+   * getTextBounds}.
+   */
+  public static TextLayoutCache getTextLayoutCache()
+  {
+    return textLayoutCache;
+  }
+
+  /**
+   * Measures the lines of a multi-line text in a bounding box at (0,0). On
+   * {@linkplain #isHeadless() headless} hosts the text is measured by
+   * {@link TextMetrics}, otherwise by an SWT text layout.
+   * 
+   * @param fontMeta
+   *          The font.
+   * @param text
+   *          The text.
+   * @param width
+   *          The width of the bounding box.
+   * @param height
+   *          The height of the bounding box.
+   * @param align
+   *          The text position, <code>(style &amp; ES_LABEL) &gt;&gt; 4</code>.
+   * @param insets
+   *          The margin which the text should keep from the bounding box.
+   * @return The lines.
+   */
+  private static TextLayoutCache.Line[] layoutText
+  (
+    FontMeta fontMeta,
+    String   text,
+    int      width,
+    int      height,
+    int      align,
+    Point    insets
+  )
+  {
+    if (isHeadless())
+      return TextMetrics.get(fontMeta).layout(text, width, height, align, insets);
+
+    //TODO: This implementation is entirely wrong. Re-do it (see
+    //      http://pawlan.com/monica/articles/texttutorial/other.html)!
+
+    ArrayList<TextLayoutCache.Line> lines = new ArrayList<TextLayoutCache.Line>();
     
     // Measure text lines
     TextLayout tl = new TextLayout(fontMeta.getFont().getDevice());
@@ -741,90 +832,76 @@ public class LCARS
     
     org.eclipse.swt.graphics.Rectangle tlBnds = tl.getBounds();
     
-    int align = (style & ES_LABEL) >> 4;
-    if(align > ES_LABEL_SE)
-      align = ES_LABEL_NW >> 4;
-    
     // Position the text box
-    int tx = bounds.x+insets.x;
-    int ty = bounds.y+insets.y;
-    int tw = bounds.width-insets.x*2;
-    int th = bounds.height-insets.y*2;
+    int tx = insets.x;
+    int ty = insets.y;
+    int tw = width-insets.x*2;
+    int th = height-insets.y*2;
     
     int tlx;
     int tly;
         
-    //if (tw <= 0 || th <= 0) return geos;
-    
-    switch (align / 3) // horizontal alignment
-    {
-      case 0: // left
-        tl.setAlignment(SWT.LEFT);
-        tlx = tx;
-        break;
-      case 1: // middle
-        tl.setAlignment(SWT.CENTER);
-        tlx = tx + (tw-tlBnds.width)/2;
-        break;
-      case 2: // right
-        tl.setAlignment(SWT.RIGHT);        
-        tlx = tx + tw-tlBnds.width;
-        break;
-      default: return geos;
-    }
-     
-//    System.err.println("*** ASCENT   : "+tl.getAscent());
-//    System.err.println("*** DESCENT  : "+tl.getDescent());
-//    System.err.println("*** LEADING  : "+tl.getLineMetrics(0).getLeading());
-//    System.err.println("*** L_ASCENT : "+tl.getLineMetrics(0).getAscent());
-//    System.err.println("*** L_DESCENT: "+tl.getLineMetrics(0).getDescent());
-    
-    switch (align % 3) // vertical alignment
-    {
-      case 0: // top
-        tly = ty-tl.getLineMetrics(0).getLeading();
-        break;  
-      case 1: // middle
-        tly = ty + (th-tlBnds.height-tl.getDescent()+tl.getLineMetrics(0).getLeading())/2;
-        break;
-      case 2: // bottom
-        tly = ty + th-tlBnds.height;
-        break;
-      default: return geos;
-    }
-            
-    int n = tl.getLineCount();
-        
-    for (int i=0; i<n; i++)
+    try
     {
-      org.eclipse.swt.graphics.Rectangle linBnds = tl.getLineBounds(i);
-      //if (linBnds.y > th) break; // line out of vertical bounds
-      int x = linBnds.x+tlx;
-      int y = linBnds.y+tly;
-      
-      Rectangle b = new Rectangle(Math.max(x, tx), Math.max(y, ty), Math.min(linBnds.width, tw-linBnds.x), Math.min(linBnds.height, th-linBnds.y));
-      //if (b.width <= 0 || b.height <=0) continue;
+      switch (align / 3) // horizontal alignment
+      {
+        case 0: // left
+          tl.setAlignment(SWT.LEFT);
+          tlx = tx;
+          break;
+        case 1: // middle
+          tl.setAlignment(SWT.CENTER);
+          tlx = tx + (tw-tlBnds.width)/2;
+          break;
+        case 2: // right
+          tl.setAlignment(SWT.RIGHT);        
+          tlx = tx + tw-tlBnds.width;
+          break;
+        default: return new TextLayoutCache.Line[0];
+      }
       
-      try
+      switch (align % 3) // vertical alignment
       {
-        GText gt = new GText(
-            s[i],
-            b,
-            fontMeta,
-            foreground);
-        if (x < tx) gt.setIndent(x-tx);
-        if (y < ty) gt.setDescent(y-ty);
-        //TODO:
-        geos.add(gt);
+        case 0: // top
+          tly = ty-tl.getLineMetrics(0).getLeading();
+          break;  
+        case 1: // middle
+          tly = ty + (th-tlBnds.height-tl.getDescent()+tl.getLineMetrics(0).getLeading())/2;
+          break;
+        case 2: // bottom
+          tly = ty + th-tlBnds.height;
+          break;
+        default: return new TextLayoutCache.Line[0];
       }
-      catch (Exception e)
+              
+      int n = tl.getLineCount();
+          
+      for (int i=0; i<n; i++)
       {
-        Log.err("Invalid line index "+i+" rendering text \""+text+"\"");
+        org.eclipse.swt.graphics.Rectangle linBnds = tl.getLineBounds(i);
+        int x = linBnds.x+tlx;
+        int y = linBnds.y+tly;
+        
+        if (i>=s.length)
+        {
+          Log.err("Invalid line index "+i+" rendering text \""+text+"\"");
+          continue;
+        }
+        lines.add(new TextLayoutCache.Line(
+            s[i],
+            Math.max(x, tx),
+            Math.max(y, ty),
+            Math.min(linBnds.width, tw-linBnds.x),
+            Math.min(linBnds.height, th-linBnds.y),
+            Math.min(x-tx, 0),
+            Math.min(y-ty, 0)));
       }
     }
-    
-    tl.dispose();
-    return geos;
+    finally
+    {
+      tl.dispose();
+    }
+    return lines.toArray(new TextLayoutCache.Line[lines.size()]);
   }
 
   /**
@@ -1241,6 +1318,16 @@ public class LCARS
     return Display.getDefault();
   }
 
+  /**
+   * Determines if this LCARS instance runs without a screen (command line
+   * option <code>--nogui</code> or AWT headless mode). Headless instances lay
+   * out texts with {@link TextMetrics} and do not need an SWT display.
+   */
+  public static boolean isHeadless()
+  {
+    return getArg("--nogui")!=null || GraphicsEnvironment.isHeadless();
+  }
+
   // -- LCARS main function --
 
   private static IScreen  iscreen;
@@ -1266,7 +1353,10 @@ public class LCARS
    *  --panel=classname          - LCARS panel to display at start-up 
    *  --rminame=name             - RMI name (default: &lt;hostname&gt;) [4]
    *  --screen=n                 - Use n-th screen (default: 1) [5]
+   *  --selective                - Repaint only the dirty regions of incremental frames
    *  --server                   - Serve remote panels [1]
+   *  --tiles                    - Rasterize full repaints in parallel tiles
+   *  --transport=[rmi|nio]      - Remote screen transport (default: rmi) [7]
    *  --wallpaper=filename       - Use wall paper (slower!)
    *  --xpos=n                   - Horizontal position of window [6]
    *  
@@ -1276,6 +1366,7 @@ public class LCARS
    *  [4] useful when multiple NICs are installed in a host
    *  [5] implies --mode=fullscreen
    *  [6] valid with --mode=maximized for displaying panel at secondary screen
+   *  [7] valid with --clientof and --server, a NIO server also serves RMI screens
    *  </pre>
    */
   public static void main(String[] args)
@@ -1308,7 +1399,10 @@ public class LCARS
       System.out.print("\n  --panel=classname          - LCARS panel to display at start-up"); 
       System.out.print("\n  --rminame=name             - RMI name (default: &lt;hostname&gt;) [4]");
       System.out.print("\n  --screen=n                 - Use n-th screen (default: 1) [5]");
+      System.out.print("\n  --selective                - Repaint only the dirty regions of incremental frames");
       System.out.print("\n  --server                   - Serve remote panels [1]");
+      System.out.print("\n  --tiles                    - Rasterize full repaints in parallel tiles");
+      System.out.print("\n  --transport=[rmi|nio]      - Remote screen transport (default: rmi) [7]");
       System.out.print("\n  --wallpaper=filename       - Use wall paper (slower!)");
       System.out.print("\n  --xpos=n                   - Horizontal position of window [6]");
       System.out.print("\n  ");
@@ -1318,6 +1412,7 @@ public class LCARS
       System.out.print("\n  [4] useful when multiple NICs are installed in a host");
       System.out.print("\n  [5] implies --mode=fullscreen");
       System.out.print("\n  [6] valid with --mode=maximized for displaying panel at secondary screen");
+      System.out.print("\n  [7] valid with --clientof and --server, a NIO server also serves RMI screens");
       System.out.print("\n----------------------------------------------------------------------------");
       System.out.print("\n\n");
       return;
@@ -1414,16 +1509,26 @@ public class LCARS
       }
       
       // Start LCARS server (command line option "--server")
+      boolean nio = "nio".equals(getArg("--transport="));
       if (getArg("--server")!=null)
+      {
         LcarsServer.start();
+        if (nio)
+          NioServer.start();
+      }
       
       // Start LCARS client (command line option "--clientof")
       String clientOf = getArg("--clientof=");
       if (clientOf!=null)
       {
         Log.info("client of "+clientOf+" at "+NetUtils.getHostName());
-        NetUtils.getRmiRegistry();
-        iscreen = new RmiScreenAdapter((Screen)iscreen,clientOf);
+        if (nio)
+          iscreen = new NioScreenAdapter((Screen)iscreen,clientOf);
+        else
+        {
+          NetUtils.getRmiRegistry();
+          iscreen = new RmiScreenAdapter((Screen)iscreen,clientOf);
+        }
       }
       
       // Add special panels to panel selector list
@@ -1507,12 +1612,23 @@ public class LCARS
         ((RmiScreenAdapter)iscreen).shutDown();
         System.out.println("[...RMI screen adapter shut down]");
       }
+
+      // - NIO screen adapter
+      if (iscreen instanceof NioScreenAdapter)
+      {
+        System.out.println("[Shutting down NIO screen adapter...]");
+        ((NioScreenAdapter)iscreen).shutDown();
+        System.out.println("[...NIO screen adapter shut down]");
+      }
         iscreen = null;
     }
 
     // - RMI panel adapters
     LcarsServer.shutDown();
 
+    // - NIO panel sessions
+    NioServer.shutDown();
+
     // - Speech engine
     System.out.println("[Disposing speech engine...]");
     Panel.disposeSpeechEngine();
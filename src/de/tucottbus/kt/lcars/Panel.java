@@ -6,17 +6,18 @@ import java.awt.Rectangle;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.geom.Area;
+import java.io.IOException;
 import java.lang.reflect.Method;
 import java.rmi.RemoteException;
 import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.Vector;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
 
 import de.tucottbus.kt.lcars.contributors.EMessageBox;
@@ -27,12 +28,20 @@ import de.tucottbus.kt.lcars.elements.EEvent;
 import de.tucottbus.kt.lcars.elements.EEventListener;
 import de.tucottbus.kt.lcars.elements.ELabel;
 import de.tucottbus.kt.lcars.elements.ElementData;
+import de.tucottbus.kt.lcars.elements.ElementState;
 import de.tucottbus.kt.lcars.feedback.UserFeedback;
+import de.tucottbus.kt.lcars.geometry.AGeometry;
+import de.tucottbus.kt.lcars.geometry.GeometryStore;
+import de.tucottbus.kt.lcars.jfr.LcarsEvents;
+import de.tucottbus.kt.lcars.jfr.PanelUpdateEvent;
+import de.tucottbus.kt.lcars.jfr.TouchProcessingEvent;
 import de.tucottbus.kt.lcars.logging.Log;
+import de.tucottbus.kt.lcars.management.PanelMonitor;
 import de.tucottbus.kt.lcars.speech.ISpeechEngine;
 import de.tucottbus.kt.lcars.speech.ISpeechEventListener;
 import de.tucottbus.kt.lcars.speech.events.SpeechEvent;
 import de.tucottbus.kt.lcars.swt.ImageMeta;
+import de.tucottbus.kt.lcars.util.FrameTimings;
 import de.tucottbus.kt.lcars.util.LoadStatistics;
 import de.tucottbus.kt.lcars.util.Objectt;
 
@@ -61,7 +70,7 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
    * Flag suppressing recurring network errors when connection to remote screen was 
    * lost (no important function, just for beautification).
    */
-  private boolean noConnectionOnUpdate = false;
+  private volatile boolean noConnectionOnUpdate = false;
   
   // -- Fields --
 
@@ -73,7 +82,7 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
   /**
    * The screen this panel is running on.
    */
-  private IScreen iscreen;
+  private volatile IScreen iscreen;
 
   /**
    * The speech engine working for this panel.
@@ -90,6 +99,29 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
    */
   private final HashSet<EElement> addedElements;
 
+  /**
+   * Spatial index of the elements for hit testing.
+   */
+  private final ElementIndex elementIndex;
+
+  /**
+   * The serial numbers of the elements known by the screen which have been
+   * removed since the last screen update.
+   */
+  private final ArrayList<Long> removedElements;
+
+  /**
+   * A copy of the panel state sent with the last screen update, used to omit
+   * the state from delta frames if it did not change.
+   */
+  private PanelState sentState;
+
+  /**
+   * The geometries a remote screen has received, by content hash. Screen
+   * updates reference these geometries instead of resending them.
+   */
+  private final GeometryStore sentGeometries;
+
   /**
    * The panel state.
    */
@@ -111,6 +143,30 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
    */
   private LoadStatistics loadStat;
 
+  /**
+   * The latencies of the frame phases of this panel.
+   */
+  private final FrameTimings frameTimings = new FrameTimings();
+
+  /**
+   * Screen statistics of the last complete period for the
+   * {@linkplain #setLoadStatControl(EElement) load statistics control}. Fetched
+   * by the panel clock once per second.
+   */
+  private volatile String screenStat = "";
+
+  /**
+   * Set to request a full screen update with the next frame. Delta frames
+   * carry the changes since the previous frame only, so this is also set when
+   * a frame is lost.
+   */
+  private volatile boolean fullUpdateRequested;
+
+  /**
+   * The management bean of this panel, registered while the panel is running.
+   */
+  private final PanelMonitor monitor = new PanelMonitor(this);
+
   // --Dragged elements--//
 
   /**
@@ -132,9 +188,10 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
   private EElement eDim;
   private EElement eSilent;
   private EElement eLoadStat;
-  private Timer runt;
-  private int runc;
-  private int dimc;
+  private volatile PanelClock runt;
+  private volatile FramePipeline pipeline;
+  private volatile int listenerTimerRate;
+  private volatile int dimc;
   private float dimInc = 0.05f;
 
   // -- Static API --
@@ -178,6 +235,9 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
     this.iscreen = iscreen;
     this.elements = new ArrayList<EElement>(200);
     this.addedElements = new HashSet<EElement>(20);
+    this.removedElements = new ArrayList<Long>(20);
+    this.sentGeometries = new GeometryStore();
+    this.elementIndex = new ElementIndex(getDimension());
     this.state = new PanelState(getDimension());
     this.keyListeners = new Vector<KeyListener>();
     this.loadStat = new LoadStatistics(25);
@@ -322,6 +382,19 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
 
   // -- Getters and setters --
 
+  /**
+   * Called by an {@link EElement} whose geometry was invalidated. The element
+   * will be re-indexed for hit testing.
+   * 
+   * @param el
+   *          The element.
+   * @see #elementAt(Point)
+   */
+  public void invalidateGeometry(EElement el)
+  {
+    elementIndex.invalidate(el);
+  }
+
   /**
    * Sets a new screen interface.
    * 
@@ -332,7 +405,11 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
   {
     invalidate();
     if (iscreen != null)
+    {
+      if (iscreen != this.iscreen)
+        sentGeometries.clear();
       this.iscreen = iscreen;
+    }
   }
 
   /**
@@ -691,39 +768,58 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
   }
 
   /**
-   * Sets the control for displaying the panel and screen computational load
-   * statistics. The statistics will display in the form
-   * <code>RRR-UU/SSS-VV</code> with the following elements:
+   * Sets the control for displaying the panel and screen frame statistics of
+   * the last second. The statistics will display in the form
+   * <code>UU-PPPN.N/VV-PPPN.N</code>, e.g. <code>25-ENC3.1/24-PNT8.0</code>,
+   * with the following elements:
    * <table>
    *   <tr><th>Field</th><th>Description</th></tr>
-   *   <tr><td><code>RRR</code></td><td>
-   *       Average real-time factor of creating one panel update
+   *   <tr><td><code>UU</code></td><td>
+   *       Panel update rate (number of updates per second)
    *     </td>
    *   </tr>
-   *   <tr><td><code>UU</code></td><td>
-   *       Average panel update rate (number of updates per second)
+   *   <tr><td><code>VV</code></td><td>
+   *       Screen update rate (number of frames per second)
    *     </td>
    *   </tr>
-   *   <tr><td><code>SSS</code></td><td>
-   *       Average real-time factor of rendering the LCARS screen
+   *   <tr><td><code>PPP</code></td><td>
+   *       The {@linkplain FrameTimings.Phase#label label} of the slowest
+   *       frame phase of the panel or the screen
    *     </td>
    *   </tr>
-   *   <tr><td><code>VV</code></td><td>
-   *       Average screen update rate (number of frames per second)
+   *   <tr><td><code>N.N</code></td><td>
+   *       The 99th percentile latency in milliseconds of the slowest
+   *       {@linkplain FrameTimings.Phase frame phase} of the panel or the
+   *       screen
    *     </td>
    *   </tr>
    * </table>
+   * The latencies of the individual phases are returned by
+   * {@link #getFrameTimings()} and {@link IScreen#getFrameTimings()}.
    * 
    * @param eLoadStat
    *          The control, can be <code>null</code>.
-   * @see #getLoadStatistics()
-   * @see IScreen#getLoadStatistics()
+   * @see #getFrameTimings()
+   * @see IScreen#getFrameTimings()
    */
   public void setLoadStatControl(EElement eLoadStat)
   {
     this.eLoadStat = eLoadStat;
   }
   
+  /**
+   * Formats one half <code>UU-PPPN.N</code> of the
+   * {@linkplain #setLoadStatControl(EElement) load statistics display}.
+   */
+  private static String formatLoadStat(int fps, FrameTimings.Snapshot timings)
+  {
+    FrameTimings.Phase phase = timings.getSlowestPhase();
+    if (phase==null)
+      return String.format("%02d",fps);
+    return String.format("%02d-%s%.1f",fps,phase.label,
+        timings.get(phase).getP99()/1E6);
+  }
+  
   /**
    * Calls {@link EElement#clearTouch()} of all {@link Panel#elements} to reset
    * the touch state to not touched
@@ -773,6 +869,18 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
     return loadStat;
   }
 
+  /**
+   * Returns the latency histograms of the frame phases of this panel
+   * (validation, snapshot, encoding and transmission).
+   * 
+   * @see IScreen#getFrameTimings()
+   * @see #setLoadStatControl(EElement)
+   */
+  public FrameTimings getFrameTimings()
+  {
+    return frameTimings;
+  }
+
   /**
    * Sets the list of classes to be displayed on the {@linkplain EPanelSelector
    * panel selector dialog}.
@@ -808,9 +916,12 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
 
   private void doAdd(EElement el)
   {
-    if (!doRemove(el))
-      addedElements.add(el);
+    // Re-adding a known element moves it to the top, this is sent to the
+    // screen as a removal plus an addition
+    doRemove(el);
+    addedElements.add(el);
     elements.add(el);
+    elementIndex.add(el);
   }
 
   /**
@@ -841,8 +952,13 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
    */
   private boolean doRemove(EElement el)
   {
-    addedElements.remove(el);
-    return elements.remove(el);
+    boolean known = !addedElements.remove(el);
+    if (!elements.remove(el))
+      return false;
+    elementIndex.remove(el);
+    if (known)
+      removedElements.add(el.getSerialNo());
+    return true;
   }
 
   /**
@@ -929,20 +1045,7 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
    */
   private EElement doElementAt(Point pt, boolean modal)
   {
-    for (int i = elements.size() - 1; i >= 0; i--)
-    {
-      EElement el = elements.get(i);
-      if (el.isModal() != modal)
-        continue;
-      if (el.isStatic())
-        continue;
-
-      Area es = new Area();
-      el.getArea(es);
-      if (es.contains(pt))
-        return el;
-    }
-    return null;
+    return elementIndex.elementAt(pt, modal);
   }
 
   /**
@@ -1007,6 +1110,7 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
   {
     dimInc = Math.abs(dimInc) * ((alpha > this.state.alpha) ? 1f : -1f);
     dimc = Math.abs((int) ((alpha - this.state.alpha) / this.dimInc)) + 1;
+    wakeUpClock();
   }
 
   private void err(Exception e)
@@ -1020,7 +1124,18 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
    */
   public void invalidate()
   {
-    screenInvalid.set(true);
+    if (!screenInvalid.getAndSet(true))
+      wakeUpClock();
+  }
+
+  /**
+   * Makes the next screen update a full update, e.g. to resynchronize a remote
+   * screen.
+   */
+  public void forceFullUpdate()
+  {
+    fullUpdateRequested = true;
+    invalidate();
   }
 
   /**
@@ -1028,8 +1143,11 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
    */
   private void updateScreen()
   {
-    if (iscreen == null || runt == null)
+    FramePipeline pipeline = this.pipeline;
+    if (iscreen == null || runt == null || pipeline == null)
       return;
+    if (!pipeline.isAccepting())
+      return; // Previous frames still on their way, retry later
     boolean invalid = screenInvalid.getAndSet(false);
     if (!invalid)
       return;
@@ -1037,14 +1155,8 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
     // Update load statistics display
     if (eLoadStat!=null)
     {
-      LoadStatistics lsp = getLoadStatistics();
-      String s = String.format("%03d-%02d",lsp.getLoad(),lsp.getEventsPerPeriod());
-      try
-      {
-        LoadStatistics lss = getScreen().getLoadStatistics();
-        s += String.format("/%03d-%02d",lss.getLoad(),lss.getEventsPerPeriod());
-      }
-      catch (Exception e) {}
+      String s = formatLoadStat(loadStat.getEventsPerPeriod(),
+          frameTimings.getSnapshot())+screenStat;
       try
       {
         eLoadStat.setLabel(s);
@@ -1053,55 +1165,222 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
     }
 
     // Decide on incremental update
-    boolean incremental = !(getScreen() instanceof Screen);
+    boolean remote = !(getScreen() instanceof Screen);
+    boolean incremental = remote;
     /*incremental = true; // Force incremental */
+    PanelUpdateEvent event = LcarsEvents.ENABLED ? new PanelUpdateEvent() : null;
+    if (event != null)
+      event.begin();
     long time = System.nanoTime();
-    if (time - fullUpdateTime > 1E9)
+    // Key frames are requested by the panel clock, the time is a fallback
+    if (time - fullUpdateTime > 2E9 || fullUpdateRequested)
     {
+      fullUpdateRequested = false;
       fullUpdateTime = time;
       incremental = false;
     }
 
+    // Recompute invalid geometries before taking the snapshot
+    validateGeometries();
+    long snapshotTime = System.nanoTime();
+    frameTimings.record(FrameTimings.Phase.VALIDATE, snapshotTime - time);
+
+    PanelData data = null;
     try
     {
       // Make update data
-      ElementData[] els;
-      int i = 0;
       synchronized (this.elements)
       {
-        els = new ElementData[this.elements.size()];
-        for (EElement el : this.elements)
-          try
-          {
-            els[i++] 
-              = el.getUpdateData(incremental && !this.addedElements.contains(el));
-          }
-          catch (Exception e)
-          {
-            Log.err("Failed to get update data for element "+el,e);
-          }
+        data = incremental ? makeDeltaData() : makeFullData();
         this.addedElements.clear();
+        this.removedElements.clear();
       }
+      frameTimings.record(FrameTimings.Phase.SNAPSHOT,
+          System.nanoTime() - snapshotTime);
 
-      // Update screen
-      PanelData data = new PanelData(this, state, els);
-      iscreen.update(data, incremental);
-      noConnectionOnUpdate = false;
+      // Hand over to the encoding and transmitting stages
+      if (!data.isEmpty()
+          && !pipeline.submit(new FramePipeline.Frame(data, incremental, remote, time)))
+        fullUpdateRequested = true;
     } 
+    catch (Exception e)
+    {
+      fullUpdateRequested = true;
+      Log.err("Failed to make screen update data.",e);
+    }
+
+    time = System.nanoTime() - time;
+    loadStat.add((int) (time / 400000));
+
+    if (event != null && event.shouldCommit())
+    {
+      event.panelId = serialNo;
+      event.panelClass = getClass().getName();
+      event.incremental = incremental;
+      event.remote = remote;
+      if (data != null)
+      {
+        event.elements = data.elementData != null ? data.elementData.length : 0;
+        event.removedElements = data.removedElements != null 
+            ? data.removedElements.length : 0;
+      }
+      event.commit();
+    }
+  }
+
+  /**
+   * Encoding stage of the {@linkplain FramePipeline frame pipeline}. Replaces
+   * geometries known by a remote screen by references and encodes the frame.
+   */
+  private void encodeFrame(FramePipeline.Frame frame) throws IOException
+  {
+    if (!frame.remote)
+      return;
+    if (frame.data.elementData != null)
+    {
+      frame.defined = new HashMap<Long, AGeometry>();
+      for (ElementData ed : frame.data.elementData)
+        if (ed != null)
+          ed.referenceGeometries(sentGeometries, frame.defined);
+    }
+    frame.size = frame.data.encode().length;
+  }
+
+  /**
+   * Transmitting stage of the {@linkplain FramePipeline frame pipeline}. Sends
+   * the frame to the screen.
+   */
+  private void transmitFrame(FramePipeline.Frame frame)
+  {
+    IScreen iscreen = this.iscreen;
+    if (iscreen == null)
+      return;
+    try
+    {
+      iscreen.update(frame.data, frame.incremental);
+      if (frame.defined != null)
+        sentGeometries.putAll(frame.defined);
+      noConnectionOnUpdate = false;
+    }
     catch (RemoteException e)
     {
+      fullUpdateRequested = true; // The changes of this frame are lost
       if (!noConnectionOnUpdate)
         Log.err("Remote screen of "+getClass().getSimpleName()
           +" not updated (no connection).",e);
       noConnectionOnUpdate = true;
     }
-    catch (Exception e)
+  }
+
+  /**
+   * Returns the pipeline producing the screen updates, <code>null</code> if
+   * the panel is not running. The pipeline reports the latencies of its stages.
+   */
+  public FramePipeline getFramePipeline()
+  {
+    return pipeline;
+  }
+
+  /**
+   * Minimal number of elements with invalid geometries to be recomputed in
+   * parallel.
+   */
+  private static final int PARALLEL_VALIDATION_THRESHOLD = 16;
+
+  /**
+   * Recomputes the invalid geometries of all elements. On {@linkplain
+   * LCARS#isHeadless() headless} hosts, where texts are laid out by
+   * {@link de.tucottbus.kt.lcars.swt.TextMetrics TextMetrics}, and if there
+   * are at least {@link #PARALLEL_VALIDATION_THRESHOLD} such elements, the
+   * geometries are recomputed in parallel on the common fork-join pool. With a
+   * screen, text layouts need the SWT display thread, so the geometries are
+   * recomputed serially.
+   */
+  private void validateGeometries()
+  {
+    ArrayList<EElement> invalid = new ArrayList<EElement>();
+    synchronized (this.elements)
     {
-      Log.err("Failed to make screen update data.",e);
+      for (EElement el : this.elements)
+        if (!el.isGeometryValid())
+          invalid.add(el);
+    }
+    if (invalid.isEmpty())
+      return;
+
+    Consumer<EElement> validate = (el) ->
+    {
+      try
+      {
+        el.validateGeometry();
+      }
+      catch (Exception e)
+      {
+        Log.err("Failed to validate geometry of element "+el,e);
+      }
+    };
+    if (invalid.size() < PARALLEL_VALIDATION_THRESHOLD || !LCARS.isHeadless())
+      invalid.forEach(validate);
+    else
+      invalid.parallelStream().forEach(validate);
+  }
+
+  /**
+   * <em>NOT SYNCHRONIZED</em>, creates a full frame containing the complete
+   * data of all elements and the panel state.
+   */
+  private PanelData makeFullData() throws RemoteException
+  {
+    ElementData[] els = new ElementData[this.elements.size()];
+    int i = 0;
+    for (EElement el : this.elements)
+      try
+      {
+        els[i++] = el.getUpdateData(false);
+      }
+      catch (Exception e)
+      {
+        Log.err("Failed to get update data for element "+el,e);
+      }
+    sentState = state.clone();
+    return new PanelData(this, sentState, els);
+  }
+
+  /**
+   * <em>NOT SYNCHRONIZED</em>, creates a delta frame containing the changed
+   * and added elements, the serial numbers of the removed elements and the
+   * panel state if it changed since the last update.
+   */
+  private PanelData makeDeltaData() throws RemoteException
+  {
+    ArrayList<ElementData> els = new ArrayList<ElementData>();
+    for (EElement el : this.elements)
+      try
+      {
+        boolean added = this.addedElements.contains(el);
+        if (!added && !el.isDirty())
+          continue;
+        ElementData ed = el.getUpdateData(!added);
+        if (added || ed.getMissing() != (ElementData.GEOMETRY_FLAG|ElementState.FLAG_MASK))
+          els.add(ed);
+      }
+      catch (Exception e)
+      {
+        Log.err("Failed to get update data for element "+el,e);
+      }
+
+    long[] removed = new long[this.removedElements.size()];
+    for (int i = 0; i < removed.length; i++)
+      removed[i] = this.removedElements.get(i);
+
+    PanelState ps = null;
+    if (sentState == null || state.getUpdateFlags(sentState) != 0)
+    {
+      ps = sentState = state.clone();
     }
 
-    time = System.nanoTime() - time;
-    loadStat.add((int) (time / 400000));
+    return new PanelData(this, ps, els.toArray(new ElementData[els.size()]),
+        removed);
   }
   
   // -- Keyboard event  handling --
@@ -1140,26 +1419,162 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
 
   // -- Periodic and timer actions --
 
-  class PanelTimerTask extends TimerTask
+  /**
+   * Duration of one panel clock tick in nanoseconds.
+   */
+  private static final long TICK_NS = 20000000L;
+
+  /**
+   * Minimal interval between two screen updates in nanoseconds.
+   */
+  private static final long FRAME_NS = 2*TICK_NS;
+
+  /**
+   * Number of panel clock ticks between two forced screen updates.
+   */
+  private static final int REFRESH_TICKS = 250;
+
+  /**
+   * Number of panel clock ticks between two key frames, i.&nbsp;e. full
+   * updates which resynchronize remote screens. The key frames are requested
+   * by the tick rather than by the time of the last full update, so that
+   * jitter of the clock does not skip them.
+   */
+  private static final int KEYFRAME_TICKS = 50;
+
+  /**
+   * Wakes up the panel clock to reconsider its schedule.
+   */
+  private void wakeUpClock()
+  {
+    PanelClock clock = runt;
+    if (clock != null)
+      LockSupport.unpark(clock);
+  }
+
+  /**
+   * The panel clock. The clock runs on a grid of 20 millisecond ticks but only
+   * wakes up on the ticks where periodic work is due:
+   * <ul>
+   *   <li>every 2nd tick if {@link #fps25()} is overridden or a
+   *   {@linkplain IPanelTimerListener panel timer listener} needs it,</li>
+   *   <li>every 5th tick if the same applies to {@link #fps10()} or the load
+   *   statistics are displayed,</li>
+   *   <li>every tick while the panel is {@linkplain #dim(float) dimming}
+   *   and</li>
+   *   <li>every 25th tick otherwise (blinking, {@link #fps2()},
+   *   {@link #fps1()}).</li>
+   * </ul>
+   * In between the clock sends a screen update as soon as the panel is
+   * {@linkplain #invalidate() invalidated}, at most 25 times per second.
+   */
+  class PanelClock extends Thread
   {
+    private volatile boolean running = true;
+
+    /**
+     * The highest timer rate needed by the panel itself.
+     */
+    private final int panelTimerRate;
+
+    PanelClock()
+    {
+      super(Panel.this.getClass().getSimpleName()+".runt (panel clock)");
+      setDaemon(true);
+      panelTimerRate = IPanelTimerListener.getTimerRate(Panel.this.getClass(),Panel.class);
+    }
+
+    /**
+     * Stops this clock.
+     */
+    void cancel()
+    {
+      running = false;
+      LockSupport.unpark(this);
+    }
 
     @Override
     public void run()
     {
+      final long t0 = System.nanoTime();
+      long lastTick = -1;
+      long lastUpdate = t0 - FRAME_NS;
+      while (running)
+      {
+        long now = System.nanoTime();
+        long tick = nextTick(lastTick + 1);
+        long due = t0 + tick*TICK_NS;
+        if (now - due >= 0)
+        {
+          if (now - due > 1000000000L)
+          {
+            // More than a second behind -> skip missed ticks
+            lastTick = (now - t0)/TICK_NS - 1;
+            continue;
+          }
+          tick(tick);
+          lastTick = tick;
+          continue;
+        }
+        
+        if (screenInvalid.get())
+        {
+          if (now - lastUpdate >= FRAME_NS)
+          {
+            updateScreen();
+            lastUpdate = now;
+            continue;
+          }
+          if (lastUpdate + FRAME_NS - due < 0)
+            due = lastUpdate + FRAME_NS;
+        }
+        LockSupport.parkNanos(this, due - now);
+      }
+    }
+
+    /**
+     * Returns the highest timer rate currently needed.
+     */
+    private int getTimerRate()
+    {
+      int rate = Math.max(panelTimerRate, listenerTimerRate);
+      if (eLoadStat != null)
+        rate = Math.max(rate, 10);
+      return rate;
+    }
+
+    /**
+     * Returns the first tick not before <code>from</code> where periodic work
+     * is due.
+     */
+    private long nextTick(long from)
+    {
+      if (dimc > 0)
+        return from;
+      int rate = getTimerRate();
+      for (long tick = from; ; tick++)
+        if (tick % 25 == 0 
+            || (rate >= 25 && tick % 2 == 0) 
+            || (rate >= 10 && tick % 5 == 0))
+          return tick;
+    }
+
+    /**
+     * Performs the periodic work of one tick.
+     */
+    private void tick(long tick)
+    {
+      int runc = (int)(tick % 50);
+      int rate = getTimerRate();
+
       // Call periodic panel methods
-      if (runc % 2 == 0)
+      if (runc % 2 == 0 && rate >= 25)
       {
         try { fps25(); } catch (Exception e) {err(e); }
         firePanelTimer((listener)->listener.fps25());
       }
-      if (runc % 5 == 0)
+      if (runc % 5 == 0 && rate >= 10)
       {
-        if (eLoadStat!=null)
-          try
-          {
-            getScreen().getLoadStatistics();
-          }
-          catch (Exception e) {}
         try { fps10(); } catch (Exception e) { err(e); }
         firePanelTimer((listener)->listener.fps10());
       }
@@ -1173,8 +1588,6 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
         try { fps1(); } catch (Exception e) { err(e); }
         firePanelTimer((listener)->listener.fps1());
       }
-      if (++runc >= 50)
-        runc = 0;
 
       // Dimming
       if (dimc > 0)
@@ -1218,20 +1631,39 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
 
       // Set period of load statistics
       if (runc % 50 == 0)
+      {
         loadStat.period();
+        frameTimings.period();
+        if (eLoadStat != null)
+          try
+          {
+            IScreen screen = getScreen();
+            screenStat = "/"+formatLoadStat(
+                screen.getLoadStatistics().getEventsPerPeriod(),
+                screen.getFrameTimings());
+          }
+          catch (Exception e) 
+          {
+            screenStat = "";
+          }
+      }
 
-      // Update screen
-      if (runc % 50 == 0)
+      // Refresh screen now and then, even if nothing has changed, and send a
+      // key frame to remote screens once a second
+      IScreen screen = getScreen();
+      if (tick % KEYFRAME_TICKS == 0 && screen != null
+          && !(screen instanceof Screen))
+        forceFullUpdate();
+      else if (tick % REFRESH_TICKS == 0)
         invalidate();
-      if (runc % 2 == 0)
-        updateScreen();
     }
   }
   
   /**
    * Called 25 times per second as long as the panel {@linkplain #isRunning() is
    * running}. Derived classes may override this method to perform periodic
-   * actions. The base class implementation does nothing.
+   * actions. The base class implementation does nothing. If the method is not
+   * overridden, the {@linkplain PanelClock panel clock} may skip the calls.
    */
   protected void fps25()
   {
@@ -1240,7 +1672,8 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
   /**
    * Called 10 times per second as long as the panel {@linkplain #isRunning() is
    * running}. Derived classes may override this method to perform periodic
-   * actions. The base class implementation does nothing.
+   * actions. The base class implementation does nothing. If the method is not
+   * overridden, the {@linkplain PanelClock panel clock} may skip the calls.
    */
   protected void fps10()
   {
@@ -1284,6 +1717,7 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
     if (timerListeners.contains(listener))
       return;
     timerListeners.add(listener);
+    updateListenerTimerRate();
   }
  
   /**
@@ -1297,6 +1731,7 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
     if (listener==null || timerListeners==null)
       return;
     timerListeners.remove(listener);  
+    updateListenerTimerRate();
   }
   
   /**
@@ -1308,6 +1743,20 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
   protected void removeAllPanelTimerListeners()
   {
     timerListeners.clear();
+    updateListenerTimerRate();
+  }
+  
+  /**
+   * Recomputes the highest timer rate needed by the panel timer listeners.
+   */
+  private void updateListenerTimerRate()
+  {
+    int rate = 1;
+    if (timerListeners!=null)
+      for (IPanelTimerListener listener : timerListeners)
+        rate = Math.max(rate, listener.getTimerRate());
+    listenerTimerRate = rate;
+    wakeUpClock();
   }
   
   /**
@@ -1339,8 +1788,12 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
   {
     if (runt == null)
     {
-      (runt = new Timer(getClass().getSimpleName()+".runt (panel timer)", true))
-          .scheduleAtFixedRate(new PanelTimerTask(), 20, 20);
+      fullUpdateRequested = true; // Frames not transmitted on stop are lost
+      pipeline = new FramePipeline(getClass().getSimpleName(), this::encodeFrame,
+          this::transmitFrame, frameTimings);
+      runt = new PanelClock();
+      runt.start();
+      monitor.register();
     }
     if (getSpeechEngine() != null)
       getSpeechEngine().addSpeechEventListener(this);
@@ -1355,8 +1808,10 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
     if (runt == null)
       return;
     runt.cancel();
-    runt.purge();
     runt = null;
+    pipeline.stop();
+    pipeline = null;
+    monitor.unregister();
   }
 
   @Override
@@ -1367,6 +1822,29 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
   
   @Override
   public void processTouchEvents(TouchEvent[] events)
+  {
+    TouchProcessingEvent event = LcarsEvents.ENABLED ? new TouchProcessingEvent() : null;
+    if (event != null)
+      event.begin();
+    try
+    {
+      processTouchEventsInt(events);
+    }
+    finally
+    {
+      if (event != null && event.shouldCommit())
+      {
+        event.panelId = serialNo;
+        event.events = events.length;
+        event.commit();
+      }
+    }
+  }
+
+  /**
+   * Processes touch events, see {@link #processTouchEvents(TouchEvent[])}.
+   */
+  private void processTouchEventsInt(TouchEvent[] events)
   {
     if (events.length == 0) return;
     int i = 0;
@@ -1503,6 +1981,15 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
     return new Dimension(bounds.width, bounds.height);
   }
 
+  @Override
+  public AGeometry[] getGeometries(long[] hashes)
+  {
+    AGeometry[] geoms = new AGeometry[hashes.length];
+    for (int i = 0; i < hashes.length; i++)
+      geoms[i] = sentGeometries.get(hashes[i]);
+    return geoms;
+  }
+
   @Override
   public void processKeyEvent(KeyEvent event)
   {
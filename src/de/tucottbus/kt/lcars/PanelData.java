@@ -1,15 +1,26 @@
 package de.tucottbus.kt.lcars;
 
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.io.Serializable;
 import java.rmi.RemoteException;
 
 import de.tucottbus.kt.lcars.elements.EElement;
 import de.tucottbus.kt.lcars.elements.ElementData;
+import de.tucottbus.kt.lcars.util.WireInput;
+import de.tucottbus.kt.lcars.util.WireOutput;
 
 /**
  * The serializable data of an {@linkplain Panel LCARS panel}. An instance of this class is passed
  * when a panel updates its {@linkplain Screen screen}.
  * 
+ * <p>On Java serialization (e.g. as argument of a remote {@link IScreen#update(PanelData, boolean)
+ * screen update}) panel data are written in a compact binary wire format instead of the default
+ * object serialization, see {@link #encode()} and {@link #decode(byte[])}.</p>
+ * 
  * @author Matthias Wolff
  */
 public class PanelData implements Serializable
@@ -19,35 +30,279 @@ public class PanelData implements Serializable
    */
   private static final long serialVersionUID = -7703907295943231273L;
   
+  /**
+   * The version of the wire format written by {@link #encode()}.
+   */
+  public static final int WIRE_VERSION = 1;
+  
   /**
    * The serial number of the panel that is associated to this {@link PanelData}.
    */
   public final long panelId;
   
   /**
-   * The panel state.
+   * The panel state. In {@linkplain #delta delta frames} this field is
+   * <code>null</code> if the state did not change since the previous frame.
    */
   public final PanelState panelState;
   
   /**
-   * The rendering data of the {@linkplain EElement LCARS GUI elements} on the panel.
+   * The rendering data of the {@linkplain EElement LCARS GUI elements} on the panel. In
+   * {@linkplain #delta delta frames} this array contains the changed and added elements only.
    */
   public final ElementData[] elementData;
   
+  /**
+   * <code>true</code> if this is a delta frame. A delta frame only carries the elements which
+   * changed or were added since the previous frame. All elements not contained in
+   * {@link #elementData} are retained by the screen, except for those listed in
+   * {@link #removedElements}.
+   */
+  public final boolean delta;
+  
+  /**
+   * The serial numbers of the elements removed since the previous frame, only used in
+   * {@linkplain #delta delta frames}.
+   */
+  public final long[] removedElements;
+  
+  /**
+   * Creates a complete (or incremental) frame containing all elements of the panel.
+   * 
+   * @param panel
+   *          The panel.
+   * @param state
+   *          The panel state.
+   * @param elementData
+   *          The rendering data of all elements on the panel.
+   * @throws RemoteException
+   *           If the panel is remote and cannot be reached.
+   */
   public PanelData(IPanel panel, PanelState state, ElementData[] elementData)
       throws RemoteException
   {
     this.panelId = panel.serialNo();
     this.panelState = state;
     this.elementData = elementData;
+    this.delta = false;
+    this.removedElements = null;
+  }
+  
+  /**
+   * Creates a delta frame.
+   * 
+   * @param panel
+   *          The panel.
+   * @param state
+   *          The panel state or <code>null</code> if unchanged since the previous frame.
+   * @param elementData
+   *          The rendering data of the changed and added elements.
+   * @param removedElements
+   *          The serial numbers of the removed elements.
+   * @throws RemoteException
+   *           If the panel is remote and cannot be reached.
+   */
+  public PanelData
+  (
+    IPanel        panel,
+    PanelState    state,
+    ElementData[] elementData,
+    long[]        removedElements
+  ) throws RemoteException
+  {
+    this.panelId = panel.serialNo();
+    this.panelState = state;
+    this.elementData = elementData;
+    this.delta = true;
+    this.removedElements = removedElements;
+  }
+  
+  private PanelData
+  (
+    long          panelId,
+    PanelState    state,
+    ElementData[] elementData,
+    boolean       delta,
+    long[]        removedElements
+  )
+  {
+    this.panelId = panelId;
+    this.panelState = state;
+    this.elementData = elementData;
+    this.delta = delta;
+    this.removedElements = removedElements;
+  }
+  
+  /**
+   * Determines if this frame carries nothing to update, i.&nbsp;e. it is a delta frame without
+   * changed, added or removed elements and without a changed panel state.
+   */
+  public boolean isEmpty()
+  {
+    return delta
+        && panelState == null
+        && (elementData == null || elementData.length == 0)
+        && (removedElements == null || removedElements.length == 0);
+  }
+  
+  // -- Wire format --
+  
+  /**
+   * The data encoded by {@link #encode()}, <code>null</code> if not yet encoded.
+   */
+  private transient volatile byte[] encoded;
+  
+  private static final int WIRE_DELTA   = 0x01;
+  private static final int WIRE_STATE   = 0x02;
+  private static final int WIRE_REMOVED = 0x04;
+
+  /**
+   * Encodes this panel data in the compact binary wire format. The encoded data are cached, the
+   * panel data must not be modified after the first call.
+   * 
+   * @return The encoded data.
+   * @throws IOException
+   *           If a geometry without a dedicated wire encoding cannot be serialized.
+   * @see #decode(byte[])
+   */
+  public byte[] encode() throws IOException
+  {
+    byte[] encoded = this.encoded;
+    if (encoded != null)
+      return encoded;
+    
+    WireOutput out = new WireOutput();
+    int flags = 0;
+    if (delta)                   flags |= WIRE_DELTA;
+    if (panelState != null)      flags |= WIRE_STATE;
+    if (removedElements != null) flags |= WIRE_REMOVED;
+    out.writeByte(WIRE_VERSION);
+    out.writeByte(flags);
+    out.writeVarLong(panelId);
+    if (panelState != null)
+      panelState.writeWire(out);
+    out.writeVarInt(elementData != null ? elementData.length : 0);
+    if (elementData != null)
+      for (ElementData ed : elementData)
+        ElementData.writeWire(out, ed);
+    if (removedElements != null)
+    {
+      out.writeVarInt(removedElements.length);
+      for (long serialNo : removedElements)
+        out.writeVarLong(serialNo);
+    }
+    return this.encoded = out.toByteArray();
+  }
+  
+  /**
+   * Returns the size of the panel data in the wire format.
+   * 
+   * @return The size in bytes or -1 if the data were neither encoded nor
+   *         received in the wire format.
+   */
+  public int getEncodedSize()
+  {
+    byte[] encoded = this.encoded;
+    return encoded != null ? encoded.length : -1;
+  }
+  
+  /**
+   * Decodes panel data written by {@link #encode()}. The decoded panel data keep <code>data</code>
+   * as their encoded form.
+   * 
+   * @param data
+   *          The encoded data.
+   * @return The panel data.
+   * @throws IOException
+   *           If the data are malformed or of an unsupported wire format version.
+   */
+  public static PanelData decode(byte[] data) throws IOException
+  {
+    WireInput in = new WireInput(data);
+    int version = in.readUnsignedByte();
+    if (version != WIRE_VERSION)
+      throw new InvalidClassException(PanelData.class.getName(),
+          "Unsupported wire format version "+version);
+    int flags = in.readUnsignedByte();
+    long panelId = in.readVarLong();
+    PanelState state = (flags & WIRE_STATE) != 0 ? PanelState.readWire(in) : null;
+    ElementData[] els = new ElementData[in.readVarInt()];
+    for (int i = 0; i < els.length; i++)
+      els[i] = ElementData.readWire(in);
+    long[] removed = null;
+    if ((flags & WIRE_REMOVED) != 0)
+    {
+      removed = new long[in.readVarInt()];
+      for (int i = 0; i < removed.length; i++)
+        removed[i] = in.readVarLong();
+    }
+    PanelData pd = new PanelData(panelId, state, els, (flags & WIRE_DELTA) != 0, removed);
+    pd.encoded = data;
+    return pd;
+  }
+  
+  /**
+   * Replaces this panel data by its {@linkplain Wire wire format} representation on Java
+   * serialization.
+   */
+  private Object writeReplace()
+  {
+    return new Wire(this);
   }
   
   @Override
   public String toString() {
     return PanelData.class.getSimpleName()
+        + (delta ? " (delta)" : "")
         + " panelState="+panelState
         + " elementData="+elementData;
   }
+  
+  // -- Nested classes --
+  
+  /**
+   * Serialization proxy writing {@link PanelData} in the compact binary wire format. Not to be
+   * used directly.
+   */
+  public static final class Wire implements Externalizable
+  {
+    private static final long serialVersionUID = 1L;
+    
+    private PanelData data;
+    
+    /**
+     * Creates an empty proxy, required for deserialization.
+     */
+    public Wire()
+    {
+    }
+    
+    private Wire(PanelData data)
+    {
+      this.data = data;
+    }
+    
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException
+    {
+      byte[] b = data.encode();
+      out.writeInt(b.length);
+      out.write(b);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException
+    {
+      byte[] b = new byte[in.readInt()];
+      in.readFully(b);
+      data = decode(b);
+    }
+    
+    private Object readResolve()
+    {
+      return data;
+    }
+  }
 }
 
 // EOF
@@ -1,10 +1,13 @@
 package de.tucottbus.kt.lcars;
 
 import java.awt.Dimension;
+import java.io.IOException;
 import java.io.Serializable;
 
 import de.tucottbus.kt.lcars.swt.ImageMeta;
 import de.tucottbus.kt.lcars.util.Objectt;
+import de.tucottbus.kt.lcars.util.WireInput;
+import de.tucottbus.kt.lcars.util.WireOutput;
 
 /**
  * The state of an {@linkplain Panel LCARS panel}.
@@ -151,6 +154,70 @@ public class PanelState implements Serializable, Cloneable
         && locked      == other.locked;
   }
   
+  private static final int WIRE_MODAL  = 0x01;
+  private static final int WIRE_SILENT = 0x02;
+  private static final int WIRE_LOCKED = 0x04;
+  private static final int WIRE_ALPHA  = 0x08;
+  
+  /**
+   * Writes this panel state in the compact wire format. Transient fields are not written.
+   * 
+   * @param out
+   *          The wire output stream.
+   */
+  public void writeWire(WireOutput out) throws IOException
+  {
+    int flags = 0;
+    if (modal)       flags |= WIRE_MODAL;
+    if (silent)      flags |= WIRE_SILENT;
+    if (locked)      flags |= WIRE_LOCKED;
+    if (alpha != 1f) flags |= WIRE_ALPHA;
+    out.writeByte(flags);
+    out.writeSVarInt(width);
+    out.writeSVarInt(height);
+    out.writeVarInt(colorScheme);
+    out.writeVarInt(blink);
+    if (alpha != 1f)
+      out.writeFloat(alpha);
+    ImageMeta.writeWire(out, bgImage);
+  }
+  
+  /**
+   * Reads a panel state written by {@link #writeWire(WireOutput)}.
+   * 
+   * @param in
+   *          The wire input stream.
+   */
+  public static PanelState readWire(WireInput in) throws IOException
+  {
+    int flags = in.readUnsignedByte();
+    PanelState state = new PanelState(null);
+    state.modal       = (flags & WIRE_MODAL) != 0;
+    state.silent      = (flags & WIRE_SILENT) != 0;
+    state.locked      = (flags & WIRE_LOCKED) != 0;
+    state.width       = in.readSVarInt();
+    state.height      = in.readSVarInt();
+    state.colorScheme = in.readVarInt();
+    state.blink       = in.readVarInt();
+    state.alpha       = (flags & WIRE_ALPHA) != 0 ? in.readFloat() : 1f;
+    state.bgImage     = ImageMeta.readWire(in);
+    return state;
+  }
+  
+  @Override
+  public PanelState clone()
+  {
+    try
+    {
+      return (PanelState)super.clone();
+    }
+    catch (CloneNotSupportedException e)
+    {
+      // Cannot happen, PanelState is cloneable
+      throw new InternalError(e);
+    }
+  }
+  
   @Override
   public String toString()
   {
@@ -40,13 +40,17 @@ import de.tucottbus.kt.Root;
 import de.tucottbus.kt.lcars.feedback.UserFeedback;
 import de.tucottbus.kt.lcars.feedback.UserFeedbackPlayer;
 import de.tucottbus.kt.lcars.geometry.rendering.LcarsComposite;
+import de.tucottbus.kt.lcars.jfr.LcarsEvents;
+import de.tucottbus.kt.lcars.jfr.ScreenUpdateEvent;
 import de.tucottbus.kt.lcars.logging.Log;
+import de.tucottbus.kt.lcars.management.ScreenMonitor;
 import de.tucottbus.kt.lcars.net.LcarsServer;
 import de.tucottbus.kt.lcars.net.NetUtils;
 import de.tucottbus.kt.lcars.net.panels.ClientPanel;
 import de.tucottbus.kt.lcars.swt.ColorMeta;
 import de.tucottbus.kt.lcars.swt.SWTResourceManager;
 import de.tucottbus.kt.lcars.swt.SwtKeyMapper;
+import de.tucottbus.kt.lcars.util.FrameTimings;
 import de.tucottbus.kt.lcars.util.LoadStatistics;
 import de.tucottbus.kt.lcars.util.Objectt;
 
@@ -106,6 +110,16 @@ public class Screen implements IScreen, MouseListener, MouseMoveListener,
    */
   protected LoadStatistics loadStat;
 
+  /**
+   * The latencies of applying and painting frames.
+   */
+  protected final FrameTimings frameTimings = new FrameTimings();
+
+  /**
+   * The management bean of this screen.
+   */
+  private final ScreenMonitor monitor = new ScreenMonitor(this);
+
   /**
    * The list contains done touch events to ignore the corresponding mouse
    * event.
@@ -168,7 +182,9 @@ public class Screen implements IScreen, MouseListener, MouseMoveListener,
         gc.setInterpolation(SWT.LOW);
         gc.setAntialias(SWT.ON);
         super.paintControl(e);
-        loadStat.add((int) ((System.nanoTime() - time) / 400000));
+        time = System.nanoTime() - time;
+        frameTimings.record(FrameTimings.Phase.PAINT, time);
+        loadStat.add((int) (time / 400000));
       }
     };
     composite.setTouchEnabled(true);
@@ -183,6 +199,10 @@ public class Screen implements IScreen, MouseListener, MouseMoveListener,
 
     if (LCARS.getArg("--nomouse") != null)
       composite.setCursor(LCARS.createBlankCursor(display));
+    if (LCARS.getArg("--selective") != null)
+      composite.setSelectiveRenderingHint(true);
+    if (LCARS.getArg("--tiles") != null)
+      composite.setTileRenderingHint(true);
     
     // Initialize SWT shell
     if (fullScreen)
@@ -222,6 +242,8 @@ public class Screen implements IScreen, MouseListener, MouseMoveListener,
     // Start screen timer
     screenTimer = new Timer("ScreenTimerTask", true);
     screenTimer.scheduleAtFixedRate(new ScreenTimerTask(), 40, 40);
+    
+    monitor.register();
   }
 
   // -- Getters and setters --
@@ -541,12 +563,22 @@ public class Screen implements IScreen, MouseListener, MouseMoveListener,
     if (panel != null && data.panelId != panelId)
       return;
 
+    ScreenUpdateEvent event = LcarsEvents.ENABLED ? new ScreenUpdateEvent() : null;
+    if (event != null)
+      event.begin();
+
     // TODO: remove incremental
-    synchronized (composite)
+    composite.queueUpdate(data, incremental, panel);
+    invalidateScreen();
+
+    if (event != null && event.shouldCommit())
     {
-      composite.applyUpdate(data, incremental);
+      event.panelId = data.panelId;
+      event.incremental = incremental;
+      event.elements = data.elementData != null ? data.elementData.length : 0;
+      event.queueDepth = composite.getQueueDepth();
+      event.commit();
     }
-    invalidateScreen();
   }
 
   @Override
@@ -562,6 +594,12 @@ public class Screen implements IScreen, MouseListener, MouseMoveListener,
     return loadStat;
   }
 
+  @Override
+  public FrameTimings.Snapshot getFrameTimings()
+  {
+    return frameTimings.getSnapshot();
+  }
+
   @Override
   public void exit()
   {
@@ -595,6 +633,7 @@ public class Screen implements IScreen, MouseListener, MouseMoveListener,
     {
       Log.err("Failed to user feedback player.",e);
     }
+    monitor.unregister();
     LcarsServer.shutDown();
     getSwtShell().getDisplay().asyncExec(shell::dispose);
   }
@@ -770,10 +809,16 @@ public class Screen implements IScreen, MouseListener, MouseMoveListener,
       // Every 40 milliseconds...
       {
         if (invalid.getAndSet(false) && !shell.isDisposed())
+        {
+          // Apply all updates received since the last repaint at once
+          long time = System.nanoTime();
+          if (composite.applyQueuedUpdates())
+            frameTimings.record(FrameTimings.Phase.APPLY, System.nanoTime() - time);
           shell.getDisplay().syncExec(() -> 
           {
             composite.redraw();
           });
+        }
       }
 
       // Every second...
@@ -785,6 +830,7 @@ public class Screen implements IScreen, MouseListener, MouseMoveListener,
             composite.redraw();
           });
         loadStat.period();
+        frameTimings.period();
       }
 
       // Every 60 seconds...
@@ -54,9 +54,17 @@ public abstract class ElementContributor implements EEventListener
     timerTasks = new HashMap<String,TimerTask>();
     panel      = new WeakReference<Panel>(null);
     children   = new ArrayList<ElementContributor>();
+    final int timerRate 
+      = IPanelTimerListener.getTimerRate(getClass(), ElementContributor.class);
     panelTimerListener = new IPanelTimerListener()
     {
       
+      @Override
+      public int getTimerRate()
+      {
+        return timerRate;
+      }
+      
       @Override
       public void fps25()
       {
@@ -20,6 +20,8 @@ import de.tucottbus.kt.lcars.elements.modify.EGeometryModifier;
 import de.tucottbus.kt.lcars.feedback.UserFeedback;
 import de.tucottbus.kt.lcars.geometry.AGeometry;
 import de.tucottbus.kt.lcars.geometry.GArea;
+import de.tucottbus.kt.lcars.jfr.GeometryValidationEvent;
+import de.tucottbus.kt.lcars.jfr.LcarsEvents;
 import de.tucottbus.kt.lcars.swt.AwtSwt;
 import de.tucottbus.kt.lcars.swt.ColorMeta;
 import de.tucottbus.kt.lcars.util.Objectt;
@@ -108,6 +110,31 @@ public abstract class EElement
     return result;
   }
   
+  /**
+   * Determines if a point is inside the {@link Area area} covered by all
+   * background geometries. Unlike {@link #getArea(Area)} this method does not
+   * allocate a copy of the area.
+   * 
+   * @param pt
+   *          The point (panel coordinates).
+   */
+  public boolean contains(Point pt)
+  {
+    validateGeometry();
+    return data.contains(pt);
+  }
+  
+  /**
+   * Returns the smallest rectangle covering all geometries of this LCARS GUI
+   * element. The touch sensitive {@linkplain #getArea() area} is inside these
+   * bounds.
+   */
+  public Rectangle getHitBounds()
+  {
+    validateGeometry();
+    return data.getBounds();
+  }
+  
   /**
    * Returns the rectangular bounds of this LCARS GUI element.
    * 
@@ -549,6 +576,30 @@ public abstract class EElement
     return data.getUpdate(incremental,updateGeometry);
   }
   
+  /**
+   * Determines if this element has changed since the last call of
+   * {@link #getUpdateData(boolean)}, i.&nbsp;e. if its geometry is to be recomputed or has
+   * been recomputed but not yet been sent, or if its state has changed. Unchanged elements are
+   * omitted from delta frames.
+   * 
+   * @see de.tucottbus.kt.lcars.PanelData#delta
+   */
+  public boolean isDirty()
+  {
+    return (geoState & (GEO_RECOMPUTE | GEO_UPDATED)) != 0 || data.state.isChanged();
+  }
+  
+  /**
+   * Determines if the geometry of this element is valid, i.&nbsp;e. need not be recomputed.
+   * 
+   * @see #invalidate(boolean)
+   * @see #validateGeometry()
+   */
+  public boolean isGeometryValid()
+  {
+    return (geoState & GEO_RECOMPUTE) == 0;
+  }
+  
   /**
    * Retrieves the user defined data associated with this LCARS GUI element.
    * 
@@ -833,7 +884,9 @@ public abstract class EElement
     if (geometryChanged)
       geoState |= GEO_RECOMPUTE;
     Panel panel = getPanel();
-    if (panel!=null) panel.invalidate();
+    if (panel==null) return;
+    if (geometryChanged) panel.invalidateGeometry(this);
+    panel.invalidate();
   }
 
   /**
@@ -849,6 +902,10 @@ public abstract class EElement
     {
       int geoState = this.geoState;
       if ((geoState & GEO_RECOMPUTE) == 0) return geoState;// Unnecessary!
+      GeometryValidationEvent event = LcarsEvents.ENABLED 
+          ? new GeometryValidationEvent() : null;
+      if (event != null)
+        event.begin();
       ArrayList<AGeometry> geos = createGeometriesInt();
       final boolean isOutline = isOutline();
       for (AGeometry geo : geos)
@@ -857,6 +914,15 @@ public abstract class EElement
       for (EGeometryModifier gm : modifiers)
         gm.modify(geos);
       data.updateGeometries(geos);
+      if (event != null && event.shouldCommit())
+      {
+        Panel panel = this.panel != null ? this.panel.get() : null;
+        event.panelId = panel != null ? panel.serialNo : -1;
+        event.elementId = serialNo;
+        event.elementClass = getClass().getName();
+        event.geometries = geos.size();
+        event.commit();
+      }
       return this.geoState = GEO_UPDATED;
     }
   }
@@ -1,19 +1,30 @@
 package de.tucottbus.kt.lcars.elements;
 
+import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.geom.Area;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.GC;
 
+import de.tucottbus.kt.lcars.LCARS;
 import de.tucottbus.kt.lcars.PanelState;
 import de.tucottbus.kt.lcars.Screen;
 import de.tucottbus.kt.lcars.geometry.HeavyGeometry;
 import de.tucottbus.kt.lcars.geometry.AGeometry;
+import de.tucottbus.kt.lcars.geometry.GRef;
+import de.tucottbus.kt.lcars.geometry.GeometryStore;
 import de.tucottbus.kt.lcars.logging.Log;
+import de.tucottbus.kt.lcars.util.WireInput;
+import de.tucottbus.kt.lcars.util.WireOutput;
 /**
  * The serializable data of an {@linkplain EElement LCARS GUI element}. An
  * element data instance stores the {@link #state} and the {@link #geometries} of
@@ -119,26 +130,48 @@ public final class ElementData implements Serializable
   {
     if (area == null)
       return;
-    if (cachedArea == null)
+    area.add((Area) getCachedArea().clone());
+    return;
+  }
+
+  /**
+   * Determines if a point is inside the {@linkplain #getArea(Area) area}
+   * covered by all background geometries. Unlike {@link #getArea(Area)} this
+   * method does not copy the area.
+   * 
+   * @param pt
+   *          The point (panel coordinates).
+   */
+  public boolean contains(Point pt)
+  {
+    return getCachedArea().contains(pt);
+  }
+  
+  /**
+   * Returns the cached area covered by all background geometries, computes the
+   * area if necessary. The returned area must not be modified.
+   */
+  private Area getCachedArea()
+  {
+    Area area = cachedArea;
+    if (area != null)
+      return area;
+    area = new Area();
+    synchronized (this)
     {
-      Area ar = new Area();
-      synchronized (this)
+      try
+      {
+        for (AGeometry gi : geometries)
+          if (!gi.isForeground())
+            area.add(gi.getArea());
+      } catch (NullPointerException e)
       {
-        try
-        {
-          for (AGeometry gi : geometries)
-            if (!gi.isForeground())
-              ar.add(gi.getArea());
-          cachedArea = ar;
-        } catch (NullPointerException e)
-        {
-          cachedArea = new Area(state.getBounds());
-          Log.warn("Missing geometries in ElementData #" + serialNo);
-        }
+        area = new Area(state.getBounds());
+        Log.warn("Missing geometries in ElementData #" + serialNo);
       }
+      cachedArea = area;
     }
-    area.add((Area) cachedArea.clone());
-    return;
+    return area;
   }
 
   // -- Operations --
@@ -291,6 +324,25 @@ public final class ElementData implements Serializable
     }
   }
 
+  /**
+   * Determines if the element described by this instance looks the same in
+   * every frame as long as neither the element nor the panel state changes.
+   * This is the case for {@linkplain LCARS#ES_STATIC static} elements which
+   * are not {@linkplain LCARS#ES_BLINKING blinking} and do not contain
+   * {@linkplain HeavyGeometry heavy geometries}.
+   */
+  public boolean isStatic()
+  {
+    if (state == null || state.getStyle(LCARS.ES_STATIC) == 0
+        || state.getStyle(LCARS.ES_BLINKING) != 0)
+      return false;
+    if (geometries != null)
+      for (AGeometry geom : geometries)
+        if (geom instanceof HeavyGeometry)
+          return false;
+    return true;
+  }
+
   /**
    * Returns the smallest rectangle that covers all geometries.
    * 
@@ -336,6 +388,191 @@ public final class ElementData implements Serializable
     geometries = (geos != null) ? new ArrayList<AGeometry>(geos) : null;
     cachedArea = null;
   }  
+
+  /**
+   * Returns the state of the element described by this instance, can be
+   * <code>null</code> in incomplete updates.
+   */
+  public ElementState getState()
+  {
+    return state;
+  }
+
+  /**
+   * Returns the geometries of the element described by this instance in
+   * painting order. The list must not be modified.
+   * 
+   * @return The geometries, can be <code>null</code> in incomplete updates.
+   */
+  public List<AGeometry> getGeometries()
+  {
+    return geometries != null ? Collections.unmodifiableList(geometries) : null;
+  }
+
+  /**
+   * Merges an earlier update of the same element which was never applied into
+   * this instance. Missing state and geometries are taken from the earlier
+   * update, the change flags of both states are combined.
+   * 
+   * @param earlier
+   *          The earlier update, can be <code>null</code>.
+   * @throws IllegalArgumentException
+   *           If the serial number of <code>earlier</code> is not equal to the
+   *           serial number of <code>this</code>.
+   */
+  public void coalesce(ElementData earlier)
+  {
+    if (earlier == null)
+      return;
+    if (this.serialNo != earlier.serialNo)
+      throw new IllegalArgumentException("Wrong serial numbers");
+
+    if (state == null)
+      state = earlier.state;
+    else if (earlier.state != null)
+      state.setChanged(earlier.state.getChanged());
+
+    if (geometries == null && earlier.geometries != null)
+    {
+      geometries = earlier.geometries;
+      cachedArea = null;
+    }
+  }
+
+  // -- Geometry references --
+  
+  /**
+   * Replaces the geometries of this element data by {@linkplain GRef content-addressed
+   * geometries} for a transfer to a remote screen. Geometries whose content is already known by
+   * the screen are replaced by references, all others by definitions. Geometries which cannot be
+   * {@linkplain AGeometry#wireHash(AGeometry) hashed} are left unchanged.
+   * 
+   * <p>The method must only be invoked on copies obtained by
+   * {@link #getUpdate(boolean, boolean)}.</p>
+   * 
+   * @param known
+   *          The geometries known by the screen.
+   * @param defined
+   *          Filled with the geometries defined by this method, by content hash.
+   */
+  public void referenceGeometries(GeometryStore known, Map<Long, AGeometry> defined)
+  {
+    if (geometries == null)
+      return;
+    for (int i = 0; i < geometries.size(); i++)
+    {
+      AGeometry geom = geometries.get(i);
+      long hash = AGeometry.wireHash(geom);
+      if (hash == 0)
+        continue;
+      if (known.contains(hash))
+        geometries.set(i, new GRef(hash));
+      else
+      {
+        geometries.set(i, new GRef(hash, geom));
+        defined.put(hash, geom);
+      }
+    }
+  }
+  
+  /**
+   * Resolves the {@linkplain GRef content-addressed geometries} of this element data received
+   * from a panel. Definitions are added to the store and replaced by the defined geometries,
+   * references are replaced by the stored geometries.
+   * 
+   * @param store
+   *          The geometry store.
+   * @param missing
+   *          Filled with the hashes of references which are not in the store.
+   * @return <code>true</code> if all references were resolved, <code>false</code> otherwise.
+   */
+  public boolean resolveGeometries(GeometryStore store, Collection<Long> missing)
+  {
+    if (geometries == null)
+      return true;
+    boolean resolved = true;
+    for (int i = 0; i < geometries.size(); i++)
+    {
+      if (!(geometries.get(i) instanceof GRef))
+        continue;
+      GRef ref = (GRef)geometries.get(i);
+      AGeometry geom = ref.geometry;
+      if (geom != null)
+        store.put(ref.hash, geom);
+      else if ((geom = store.get(ref.hash)) == null)
+      {
+        missing.add(ref.hash);
+        resolved = false;
+        continue;
+      }
+      geometries.set(i, geom);
+    }
+    if (resolved)
+      cachedArea = null;
+    return resolved;
+  }
+
+  // -- Wire format --
+  
+  private static final int WIRE_PRESENT    = 0x80;
+  private static final int WIRE_STATE     = 0x01;
+  private static final int WIRE_GEOMETRIES = 0x02;
+  
+  /**
+   * Writes nullable element data in the compact wire format.
+   * 
+   * @param out
+   *          The wire output stream.
+   * @param data
+   *          The element data, can be <code>null</code>.
+   */
+  public static void writeWire(WireOutput out, ElementData data) throws IOException
+  {
+    if (data == null)
+    {
+      out.writeByte(0);
+      return;
+    }
+    
+    ElementState state = data.state;
+    ArrayList<AGeometry> geometries = data.geometries;
+    out.writeByte(WIRE_PRESENT | (state != null ? WIRE_STATE : 0)
+        | (geometries != null ? WIRE_GEOMETRIES : 0));
+    out.writeVarLong(data.serialNo);
+    if (state != null)
+      state.writeWire(out);
+    if (geometries != null)
+    {
+      out.writeVarInt(geometries.size());
+      for (AGeometry geom : geometries)
+        AGeometry.writeWire(out, geom);
+    }
+  }
+  
+  /**
+   * Reads nullable element data written by {@link #writeWire(WireOutput, ElementData)}.
+   * 
+   * @param in
+   *          The wire input stream.
+   */
+  public static ElementData readWire(WireInput in) throws IOException
+  {
+    int flags = in.readUnsignedByte();
+    if ((flags & WIRE_PRESENT) == 0)
+      return null;
+    
+    long serialNo = in.readVarLong();
+    ElementState state = (flags & WIRE_STATE) != 0 ? ElementState.readWire(in) : null;
+    ElementData data = new ElementData(serialNo, state);
+    if ((flags & WIRE_GEOMETRIES) != 0)
+    {
+      int n = in.readVarInt();
+      data.geometries = new ArrayList<AGeometry>(n);
+      for (int i = 0; i < n; i++)
+        data.geometries.add(AGeometry.readWire(in));
+    }
+    return data;
+  }
 }
 
 // EOF
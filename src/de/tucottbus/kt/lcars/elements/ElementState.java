@@ -2,6 +2,7 @@ package de.tucottbus.kt.lcars.elements;
 
 import java.awt.Color;
 import java.awt.Rectangle;
+import java.io.IOException;
 import java.io.Serializable;
 
 import de.tucottbus.kt.lcars.LCARS;
@@ -9,6 +10,8 @@ import de.tucottbus.kt.lcars.PanelState;
 import de.tucottbus.kt.lcars.geometry.AGeometry;
 import de.tucottbus.kt.lcars.swt.ColorMeta;
 import de.tucottbus.kt.lcars.util.Objectt;
+import de.tucottbus.kt.lcars.util.WireInput;
+import de.tucottbus.kt.lcars.util.WireOutput;
 
 /**
  * The serializable state of an {@linkplain EElement LCARS GUI element}. Contains style and state
@@ -451,6 +454,78 @@ public class ElementState implements Serializable
   {
     return changed;
   }
+  
+  // -- Wire format --
+  
+  private static final int WIRE_BOUNDS      = 0x01;
+  private static final int WIRE_VISIBLE     = 0x02;
+  private static final int WIRE_HIGHLIGHTED = 0x04;
+  private static final int WIRE_ALPHA       = 0x08;
+  private static final int WIRE_TOUCH       = 0x10;
+  private static final int WIRE_CHANGED_EXT = 0x20;
+  
+  /**
+   * Writes this element state in the compact wire format. The boolean fields and the presence of
+   * optional fields are packed into one byte, the change flags into another.
+   * 
+   * @param out
+   *          The wire output stream.
+   */
+  public synchronized void writeWire(WireOutput out) throws IOException
+  {
+    int flags = 0;
+    if (bounds != null)              flags |= WIRE_BOUNDS;
+    if (visible)                     flags |= WIRE_VISIBLE;
+    if (highlighted)                 flags |= WIRE_HIGHLIGHTED;
+    if (alpha != 1.f)                flags |= WIRE_ALPHA;
+    if (touch != 0)                  flags |= WIRE_TOUCH;
+    if ((changed & ~FLAG_MASK) != 0) flags |= WIRE_CHANGED_EXT;
+    out.writeByte(flags);
+    
+    if ((flags & WIRE_CHANGED_EXT) != 0)
+      out.writeVarInt(changed);
+    else
+      out.writeByte(changed >> 8);
+    if (bounds != null)
+    {
+      out.writeSVarInt(bounds.x);
+      out.writeSVarInt(bounds.y);
+      out.writeSVarInt(bounds.width);
+      out.writeSVarInt(bounds.height);
+    }
+    ColorMeta.writeWire(out, color);
+    if (alpha != 1.f)
+      out.writeFloat(alpha);
+    out.writeVarInt(style);
+    if (touch != 0)
+      out.writeSVarInt(touch);
+  }
+  
+  /**
+   * Reads an element state written by {@link #writeWire(WireOutput)}.
+   * 
+   * @param in
+   *          The wire input stream.
+   */
+  public static ElementState readWire(WireInput in) throws IOException
+  {
+    int flags = in.readUnsignedByte();
+    int changed = (flags & WIRE_CHANGED_EXT) != 0 
+        ? in.readVarInt() : in.readUnsignedByte() << 8;
+    Rectangle bounds = (flags & WIRE_BOUNDS) == 0 ? null : new Rectangle(
+        in.readSVarInt(), in.readSVarInt(), in.readSVarInt(), in.readSVarInt());
+    ColorMeta color = ColorMeta.readWire(in);
+    float alpha = (flags & WIRE_ALPHA) != 0 ? in.readFloat() : 1.f;
+    
+    ElementState state = new ElementState(bounds, in.readVarInt());
+    state.changed     = changed;
+    state.color       = color;
+    state.alpha       = alpha;
+    state.visible     = (flags & WIRE_VISIBLE) != 0;
+    state.highlighted = (flags & WIRE_HIGHLIGHTED) != 0;
+    state.touch       = (flags & WIRE_TOUCH) != 0 ? in.readSVarInt() : 0;
+    return state;
+  }
 }
 
 // EOF
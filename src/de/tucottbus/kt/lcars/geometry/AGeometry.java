@@ -3,11 +3,15 @@ package de.tucottbus.kt.lcars.geometry;
 import java.awt.Composite;
 import java.awt.Rectangle;
 import java.awt.geom.Area;
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.StreamCorruptedException;
 
 import org.eclipse.swt.graphics.GC;
 
 import de.tucottbus.kt.lcars.elements.EElement;
+import de.tucottbus.kt.lcars.util.WireInput;
+import de.tucottbus.kt.lcars.util.WireOutput;
 
 /**
  * A 2D geometric shape. The graphical representation of an {@linkplain EElement LCARS GUI element}
@@ -19,6 +23,16 @@ public abstract class AGeometry implements Serializable
 {  
   private static final long serialVersionUID = -6704273422742875854L;
   protected boolean         foreground;
+  private transient long    wireHash;
+  
+  /**
+   * Wire format tags of the geometry types.
+   */
+  private static final int WIRE_SERIALIZED = 0;
+  private static final int WIRE_AREA       = 1;
+  private static final int WIRE_TEXT       = 2;
+  private static final int WIRE_IMAGE      = 3;
+  private static final int WIRE_REF        = 4;
   
   /**
    * Creates a new geometry.
@@ -41,6 +55,15 @@ public abstract class AGeometry implements Serializable
   {
     return foreground;
   }
+
+  /**
+   * Discards the cached {@linkplain #wireHash(AGeometry) wire hash}. Must be called by every
+   * method which changes the wire encoded content of this geometry.
+   */
+  protected void invalidateWireHash()
+  {
+    wireHash = 0;
+  }
   
   /**
    * Returns the {@link Area area} covered by this geometry.
@@ -77,6 +100,114 @@ public abstract class AGeometry implements Serializable
   {
     // ignored
   }     
+
+  // -- Wire format --
+  
+  /**
+   * Writes a geometry in the compact wire format. {@link GArea}s, {@link GText}s, {@link GImage}s
+   * and {@link GRef}s have a dedicated encoding, all other geometries (including subclasses of
+   * the former) are written by Java serialization.
+   * 
+   * @param out
+   *          The wire output stream.
+   * @param geom
+   *          The geometry.
+   */
+  public static void writeWire(WireOutput out, AGeometry geom) throws IOException
+  {
+    Class<?> clazz = geom.getClass();
+    if (clazz == GArea.class)
+    {
+      out.writeByte(WIRE_AREA);
+      ((GArea)geom).writeWireData(out);
+    }
+    else if (clazz == GText.class)
+    {
+      out.writeByte(WIRE_TEXT);
+      ((GText)geom).writeWireData(out);
+    }
+    else if (clazz == GImage.class)
+    {
+      out.writeByte(WIRE_IMAGE);
+      ((GImage)geom).writeWireData(out);
+    }
+    else if (clazz == GRef.class)
+    {
+      GRef ref = (GRef)geom;
+      out.writeByte(WIRE_REF);
+      out.writeLong(ref.hash);
+      out.writeBoolean(ref.geometry != null);
+      if (ref.geometry != null)
+        writeWire(out, ref.geometry);
+    }
+    else
+    {
+      out.writeByte(WIRE_SERIALIZED);
+      out.writeSerialized(geom);
+    }
+  }
+
+  /**
+   * Computes a 64 bit content hash of a geometry from its {@linkplain #writeWire(WireOutput,
+   * AGeometry) wire format} (FNV-1a). Geometries of equal content have equal hashes. The hash is
+   * cached in the geometry until its content is changed.
+   * 
+   * @param geom
+   *          The geometry.
+   * @return The hash or <code>0</code> if the geometry cannot be hashed, i.&nbsp;e. if it has
+   *         no dedicated wire encoding.
+   */
+  public static long wireHash(AGeometry geom)
+  {
+    Class<?> clazz = geom.getClass();
+    if (clazz != GArea.class && clazz != GText.class && clazz != GImage.class)
+      return 0;
+    if (geom.wireHash != 0)
+      return geom.wireHash;
+    
+    byte[] b;
+    try
+    {
+      WireOutput out = new WireOutput();
+      writeWire(out, geom);
+      b = out.toByteArray();
+    }
+    catch (IOException e)
+    {
+      return 0;
+    }
+    
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < b.length; i++)
+    {
+      hash ^= b[i] & 0xFF;
+      hash *= 0x100000001b3L;
+    }
+    geom.wireHash = hash != 0 ? hash : 1;
+    return geom.wireHash;
+  }
+
+  /**
+   * Reads a geometry written by {@link #writeWire(WireOutput, AGeometry)}.
+   * 
+   * @param in
+   *          The wire input stream.
+   */
+  public static AGeometry readWire(WireInput in) throws IOException
+  {
+    int tag = in.readUnsignedByte();
+    switch (tag)
+    {
+    case WIRE_SERIALIZED: return (AGeometry)in.readSerialized();
+    case WIRE_AREA      : return GArea.readWireData(in);
+    case WIRE_TEXT      : return GText.readWireData(in);
+    case WIRE_IMAGE     : return GImage.readWireData(in);
+    case WIRE_REF       :
+      long hash = in.readLong();
+      return new GRef(hash, in.readBoolean() ? readWire(in) : null);
+    default: throw new StreamCorruptedException("Unknown geometry tag "+tag);
+    }
+  }
 }
 
 // EOF
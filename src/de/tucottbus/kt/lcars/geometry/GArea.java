@@ -4,12 +4,16 @@ import java.awt.Rectangle;
 import java.awt.Shape;
 import java.awt.geom.Area;
 import java.awt.geom.GeneralPath;
+import java.awt.geom.PathIterator;
+import java.io.IOException;
 
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.graphics.Path;
 
-import de.tucottbus.kt.lcars.swt.AwtSwt;
+import de.tucottbus.kt.lcars.geometry.rendering.GeometryPathCache;
+import de.tucottbus.kt.lcars.util.WireInput;
+import de.tucottbus.kt.lcars.util.WireOutput;
 
 /**
  * A geometry representing a {@link Shape}.
@@ -22,13 +26,19 @@ public class GArea extends AGeometry
 
   protected GeneralPath     area;
   protected boolean         outline;  
-  private transient Path    cachedPath;
+  private transient GeometryPathCache.Key pathKey;
   
   public GArea(Area area, boolean foreground)
   {
     super(foreground);
     this.area = new GeneralPath(area);
   }
+
+  private GArea(GeneralPath area, boolean foreground)
+  {
+    super(foreground);
+    this.area = area;
+  }
   
   @Override
   public Area getArea()
@@ -49,11 +59,33 @@ public class GArea extends AGeometry
   public void setOutline(boolean outline)
   {
     this.outline = outline;
+    invalidateWireHash();
+  }
+  
+  /**
+   * Returns the shape of this area. The shape must not be modified.
+   */
+  public Shape getShape()
+  {
+    return area;
+  }
+  
+  /**
+   * Appends the shape of this area to a path.
+   * 
+   * @param path
+   *          The path.
+   */
+  public void appendTo(GeneralPath path)
+  {
+    path.append(area, false);
   }
   
   public void setShape(Shape shape)
   {
     area = new GeneralPath(shape);
+    pathKey = null;
+    invalidateWireHash();
   }
     
   /*
@@ -63,20 +95,21 @@ public class GArea extends AGeometry
   @Override
   public void paint2D(GC gc)
   {
-    if (cachedPath == null)
-      cachedPath = AwtSwt.toSwtPath(area, gc.getDevice());
+    if (pathKey == null)
+      pathKey = GeometryPathCache.getKey(area);
+    Path path = GeometryPathCache.getPath(pathKey, area, gc.getDevice());
     
     if (outline) {
       Color bgc = gc.getBackground();
       Color fgc = gc.getForeground();
       gc.setForeground(bgc);
-      gc.drawPath(cachedPath);
+      gc.drawPath(path);
       gc.setForeground(fgc);
       bgc.dispose();
       fgc.dispose();
     }
     else
-      gc.fillPath(cachedPath);
+      gc.fillPath(path);
   }  
 
   @Override
@@ -84,13 +117,108 @@ public class GArea extends AGeometry
   {
     return getClass().getSimpleName() + " outline=" + outline;
   }
+
+  // -- Wire format --
   
-  @Override
-  protected void finalize() throws Throwable
+  private static final int WIRE_FOREGROUND = 0x01;
+  private static final int WIRE_OUTLINE    = 0x02;
+  private static final int WIRE_NONZERO    = 0x04;
+  private static final int WIRE_SEG_END    = 0x07;
+  private static final int WIRE_SEG_FIXED  = 0x08;
+  private static final int WIRE_FIXED_ONE  = 16;
+  
+  /**
+   * Writes this area in the compact wire format. Path segments whose coordinates are multiples
+   * of 1/16 pixel (which is the case for all straight LCARS shapes) are written as variable
+   * length deltas in 1/16 pixel units, all others as plain floats.
+   * 
+   * @see AGeometry#writeWire(WireOutput, AGeometry)
+   */
+  void writeWireData(WireOutput out) throws IOException
+  {
+    int flags = 0;
+    if (foreground) flags |= WIRE_FOREGROUND;
+    if (outline) flags |= WIRE_OUTLINE;
+    if (area.getWindingRule() == PathIterator.WIND_NON_ZERO) flags |= WIRE_NONZERO;
+    out.writeByte(flags);
+    
+    float[] coords = new float[6];
+    int lastX = 0;
+    int lastY = 0;
+    for (PathIterator it = area.getPathIterator(null); !it.isDone(); it.next())
+    {
+      int type = it.currentSegment(coords);
+      int n = type == PathIterator.SEG_CLOSE ? 0 : type == PathIterator.SEG_QUADTO ? 4
+          : type == PathIterator.SEG_CUBICTO ? 6 : 2;
+      boolean fixed = true;
+      for (int i = 0; i < n && fixed; i++)
+      {
+        float v = coords[i] * WIRE_FIXED_ONE;
+        fixed = v == Math.rint(v) && Math.abs(v) < (1 << 30);
+      }
+      out.writeByte(fixed ? type | WIRE_SEG_FIXED : type);
+      for (int i = 0; i < n; i += 2)
+        if (fixed)
+        {
+          int x = (int)(coords[i] * WIRE_FIXED_ONE);
+          int y = (int)(coords[i + 1] * WIRE_FIXED_ONE);
+          out.writeSVarInt(x - lastX);
+          out.writeSVarInt(y - lastY);
+          lastX = x;
+          lastY = y;
+        }
+        else
+        {
+          out.writeFloat(coords[i]);
+          out.writeFloat(coords[i + 1]);
+        }
+    }
+    out.writeByte(WIRE_SEG_END);
+  }
+  
+  /**
+   * Reads an area written by {@link #writeWireData(WireOutput)}.
+   */
+  static GArea readWireData(WireInput in) throws IOException
   {
-    if (cachedPath != null)
-      cachedPath.dispose();
-    super.finalize();
+    int flags = in.readUnsignedByte();
+    GeneralPath path = new GeneralPath((flags & WIRE_NONZERO) != 0 ? PathIterator.WIND_NON_ZERO
+        : PathIterator.WIND_EVEN_ODD);
+    
+    float[] c = new float[6];
+    int lastX = 0;
+    int lastY = 0;
+    for (int seg = in.readUnsignedByte(); seg != WIRE_SEG_END; seg = in.readUnsignedByte())
+    {
+      int type = seg & 0x07;
+      int n = type == PathIterator.SEG_CLOSE ? 0 : type == PathIterator.SEG_QUADTO ? 4
+          : type == PathIterator.SEG_CUBICTO ? 6 : 2;
+      for (int i = 0; i < n; i += 2)
+        if ((seg & WIRE_SEG_FIXED) != 0)
+        {
+          lastX += in.readSVarInt();
+          lastY += in.readSVarInt();
+          c[i] = (float)lastX / WIRE_FIXED_ONE;
+          c[i + 1] = (float)lastY / WIRE_FIXED_ONE;
+        }
+        else
+        {
+          c[i] = in.readFloat();
+          c[i + 1] = in.readFloat();
+        }
+      switch (type)
+      {
+      case PathIterator.SEG_MOVETO : path.moveTo(c[0], c[1]); break;
+      case PathIterator.SEG_LINETO : path.lineTo(c[0], c[1]); break;
+      case PathIterator.SEG_QUADTO : path.quadTo(c[0], c[1], c[2], c[3]); break;
+      case PathIterator.SEG_CUBICTO: path.curveTo(c[0], c[1], c[2], c[3], c[4], c[5]); break;
+      default                      : path.closePath(); break;
+      }
+    }
+    
+    GArea geom = new GArea(path, (flags & WIRE_FOREGROUND) != 0);
+    geom.outline = (flags & WIRE_OUTLINE) != 0;
+    return geom;
   }
 }
 
@@ -5,12 +5,15 @@ import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.geom.Area;
 import java.awt.image.ImageObserver;
+import java.io.IOException;
 
 import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.graphics.ImageData;
 
 import de.tucottbus.kt.lcars.swt.ImageMeta;
+import de.tucottbus.kt.lcars.util.WireInput;
+import de.tucottbus.kt.lcars.util.WireOutput;
 
 /**
  * An image geometry.
@@ -78,6 +81,23 @@ public class GImage extends AGeometry
         : new Rectangle();
   }
   
+  /**
+   * Returns the position of the upper left corner of the image.
+   */
+  public Point getPos()
+  {
+    return new Point(pos);
+  }
+  
+  /**
+   * Returns the size the image is scaled to, <code>null</code> if it is drawn
+   * in its natural size.
+   */
+  public Dimension getSize()
+  {
+    return size != null ? new Dimension(size) : null;
+  }
+  
   /**
    * Returns the image which will be drawn using {@link paint2D(GC)} and is provided by the member {@link #meta}.
    * @return
@@ -108,4 +128,35 @@ public class GImage extends AGeometry
            (size != null ?             ") size=(" + size.width + "," + size.height : "") +
                                        ") meta=" + meta;
   }  
+
+  // -- Wire format --
+  
+  /**
+   * Writes this image in the compact wire format.
+   * 
+   * @see AGeometry#writeWire(WireOutput, AGeometry)
+   */
+  void writeWireData(WireOutput out) throws IOException
+  {
+    ImageMeta.writeWire(out, meta);
+    out.writeSVarInt(pos.x);
+    out.writeSVarInt(pos.y);
+    out.writeBoolean(size != null);
+    if (size != null)
+    {
+      out.writeSVarInt(size.width);
+      out.writeSVarInt(size.height);
+    }
+  }
+
+  /**
+   * Reads an image written by {@link #writeWireData(WireOutput)}.
+   */
+  static GImage readWireData(WireInput in) throws IOException
+  {
+    ImageMeta meta = ImageMeta.readWire(in);
+    Point     pos  = new Point(in.readSVarInt(), in.readSVarInt());
+    Dimension size = in.readBoolean() ? new Dimension(in.readSVarInt(), in.readSVarInt()) : null;
+    return new GImage(meta, pos, size, null);
+  }
 }
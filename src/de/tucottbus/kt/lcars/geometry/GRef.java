@@ -0,0 +1,98 @@
+package de.tucottbus.kt.lcars.geometry;
+
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+
+import org.eclipse.swt.graphics.GC;
+
+/**
+ * A content-addressed geometry transferred from a {@linkplain de.tucottbus.kt.lcars.Panel panel}
+ * to a remote {@linkplain de.tucottbus.kt.lcars.Screen screen}. A geometry reference is either a
+ * <em>definition</em>, carrying a geometry and its {@linkplain AGeometry#wireHash(AGeometry)
+ * content hash}, or a <em>reference</em> carrying the hash only. The screen keeps defined
+ * geometries in a {@link GeometryStore} and replaces references by the stored geometries before
+ * rendering.
+ *
+ * @see GeometryStore
+ */
+public final class GRef extends AGeometry
+{
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The content hash.
+   */
+  public final long hash;
+
+  /**
+   * The referenced geometry or <code>null</code> if this is a reference only.
+   */
+  public final AGeometry geometry;
+
+  /**
+   * Creates a geometry definition.
+   *
+   * @param hash
+   *          The content hash of the geometry.
+   * @param geometry
+   *          The geometry, <code>null</code> to create a reference only.
+   */
+  public GRef(long hash, AGeometry geometry)
+  {
+    super(geometry != null && geometry.isForeground());
+    this.hash = hash;
+    this.geometry = geometry;
+  }
+
+  /**
+   * Creates a geometry reference.
+   *
+   * @param hash
+   *          The content hash of the referenced geometry.
+   */
+  public GRef(long hash)
+  {
+    this(hash, null);
+  }
+
+  /**
+   * Returns the referenced geometry.
+   *
+   * @throws IllegalStateException
+   *           If this is an unresolved reference.
+   */
+  private AGeometry get()
+  {
+    if (geometry == null)
+      throw new IllegalStateException("Unresolved geometry reference "
+          + Long.toHexString(hash));
+    return geometry;
+  }
+
+  @Override
+  public Area getArea()
+  {
+    return get().getArea();
+  }
+
+  @Override
+  public Rectangle getBounds()
+  {
+    return get().getBounds();
+  }
+
+  @Override
+  public void paint2D(GC gc)
+  {
+    get().paint2D(gc);
+  }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + " hash=" + Long.toHexString(hash)
+      + (geometry != null ? " geometry=" + geometry : "");
+  }
+}
+
+// EOF
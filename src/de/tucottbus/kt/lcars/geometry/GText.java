@@ -3,6 +3,7 @@ package de.tucottbus.kt.lcars.geometry;
 import java.awt.Rectangle;
 import java.awt.geom.Area;
 import java.awt.geom.Point2D;
+import java.io.IOException;
 
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.GC;
@@ -10,6 +11,8 @@ import org.eclipse.swt.graphics.GC;
 import de.tucottbus.kt.lcars.LCARS;
 import de.tucottbus.kt.lcars.swt.ColorMeta;
 import de.tucottbus.kt.lcars.swt.FontMeta;
+import de.tucottbus.kt.lcars.util.WireInput;
+import de.tucottbus.kt.lcars.util.WireOutput;
 
 /**
  * A geometry representing a text.
@@ -103,6 +106,14 @@ public class GText extends AGeometry
     return this.text;
   }
 
+  /**
+   * Returns the font the text is drawn with.
+   */
+  public FontMeta getFontMeta()
+  {
+    return fontMeta;
+  }
+
   /**
    * Returns the distance from the baseline to the bottom of the lowest descenders on the glyphs.
    * @return
@@ -118,6 +129,7 @@ public class GText extends AGeometry
   public void setDescent(int descent)
   {
     this.descent = descent;
+    invalidateWireHash();
   }
 
   /**
@@ -135,6 +147,7 @@ public class GText extends AGeometry
   public void setIndent(int indent)
   {
     this.indent = indent;
+    invalidateWireHash();
   }
 
   /*
@@ -172,6 +185,43 @@ public class GText extends AGeometry
         + "," + y + "," + width + "," + height + ") fontmeta=" + fontMeta;
   }
 
+  // -- Wire format --
+  
+  /**
+   * Writes this text in the compact wire format.
+   * 
+   * @see AGeometry#writeWire(WireOutput, AGeometry)
+   */
+  void writeWireData(WireOutput out) throws IOException
+  {
+    out.writeBoolean(foreground);
+    out.writeString(text);
+    out.writeSVarInt(descent);
+    out.writeSVarInt(indent);
+    FontMeta.writeWire(out, fontMeta);
+    out.writeSVarInt(x);
+    out.writeSVarInt(y);
+    out.writeSVarInt(width);
+    out.writeSVarInt(height);
+  }
+
+  /**
+   * Reads a text written by {@link #writeWireData(WireOutput)}.
+   */
+  static GText readWireData(WireInput in) throws IOException
+  {
+    boolean  foreground = in.readBoolean();
+    String   text       = in.readString();
+    int      descent    = in.readSVarInt();
+    int      indent     = in.readSVarInt();
+    FontMeta fontMeta   = FontMeta.readWire(in);
+    Rectangle bounds    = new Rectangle(in.readSVarInt(), in.readSVarInt(),
+        in.readSVarInt(), in.readSVarInt());
+    GText geom = new GText(text, bounds, fontMeta, foreground);
+    geom.descent = descent;
+    geom.indent = indent;
+    return geom;
+  }
 }
 
 // EOF
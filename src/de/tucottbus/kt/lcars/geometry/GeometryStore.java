@@ -0,0 +1,155 @@
+package de.tucottbus.kt.lcars.geometry;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded store of geometries addressed by their {@linkplain AGeometry#wireHash(AGeometry)
+ * content hash}. If the store is full, the least recently used geometry is evicted. Instances are
+ * thread-safe.
+ *
+ * <p>A {@linkplain de.tucottbus.kt.lcars.Panel panel} uses a store to remember the geometries a
+ * remote screen has received, the {@linkplain de.tucottbus.kt.lcars.Screen screen} uses a store
+ * to resolve {@linkplain GRef geometry references}.</p>
+ *
+ * @see GRef
+ */
+public class GeometryStore
+{
+  /**
+   * The default capacity.
+   */
+  public static final int DEFAULT_CAPACITY = 4096;
+
+  private final int capacity;
+  private final LinkedHashMap<Long, AGeometry> geometries;
+  private long hits;
+  private long misses;
+
+  /**
+   * Creates a geometry store of the {@linkplain #DEFAULT_CAPACITY default capacity}.
+   */
+  public GeometryStore()
+  {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Creates a geometry store.
+   *
+   * @param capacity
+   *          The maximal number of geometries to store.
+   */
+  public GeometryStore(int capacity)
+  {
+    if (capacity <= 0)
+      throw new IllegalArgumentException("capacity");
+    this.capacity = capacity;
+    this.geometries = new LinkedHashMap<Long, AGeometry>(capacity, 0.75f, true)
+    {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, AGeometry> eldest)
+      {
+        return size() > GeometryStore.this.capacity;
+      }
+    };
+  }
+
+  /**
+   * Returns the geometry stored for a content hash and marks it as recently used.
+   *
+   * @param hash
+   *          The content hash.
+   * @return The geometry or <code>null</code> if not stored.
+   */
+  public synchronized AGeometry get(long hash)
+  {
+    AGeometry geom = geometries.get(hash);
+    if (geom != null)
+      hits++;
+    else
+      misses++;
+    return geom;
+  }
+
+  /**
+   * Determines if a geometry is stored for a content hash and marks it as recently used.
+   *
+   * @param hash
+   *          The content hash.
+   */
+  public boolean contains(long hash)
+  {
+    return get(hash) != null;
+  }
+
+  /**
+   * Stores a geometry.
+   *
+   * @param hash
+   *          The content hash.
+   * @param geom
+   *          The geometry.
+   */
+  public synchronized void put(long hash, AGeometry geom)
+  {
+    if (geom == null)
+      throw new NullPointerException("geom");
+    geometries.put(hash, geom);
+  }
+
+  /**
+   * Stores a set of geometries.
+   *
+   * @param geoms
+   *          The geometries by content hash.
+   */
+  public synchronized void putAll(Map<Long, AGeometry> geoms)
+  {
+    geometries.putAll(geoms);
+  }
+
+  /**
+   * Removes all geometries from this store.
+   */
+  public synchronized void clear()
+  {
+    geometries.clear();
+  }
+
+  /**
+   * Returns the number of stored geometries.
+   */
+  public synchronized int size()
+  {
+    return geometries.size();
+  }
+
+  /**
+   * Returns the maximal number of stored geometries.
+   */
+  public int getCapacity()
+  {
+    return capacity;
+  }
+
+  /**
+   * Returns the number of successful look-ups since this store was created.
+   */
+  public synchronized long getHits()
+  {
+    return hits;
+  }
+
+  /**
+   * Returns the number of failed look-ups since this store was created.
+   */
+  public synchronized long getMisses()
+  {
+    return misses;
+  }
+}
+
+// EOF
@@ -0,0 +1,250 @@
+package de.tucottbus.kt.lcars.geometry.rendering;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A region of the screen that has to be repainted, represented as a short
+ * list of integer rectangles. Added rectangles are coalesced with existing
+ * ones if the union does not cover (much) more pixels than the parts. If the
+ * list grows beyond {@link #MAX_RECTANGLES}, the pair of rectangles whose union
+ * wastes the fewest pixels is merged.
+ *
+ * <p>Compared to {@link java.awt.geom.Area} this structure is cheap to build
+ * from the bounds of many changed elements, at the price of over-approximating
+ * the exact union.</p>
+ */
+class DirtyRegion implements Cloneable
+{
+  /**
+   * The maximal number of rectangles.
+   */
+  static final int MAX_RECTANGLES = 16;
+
+  /**
+   * Number of extra pixels two rectangles may waste if merged.
+   */
+  private static final long MERGE_SLACK = 32 * 32;
+
+  private ArrayList<Rectangle> rects;
+
+  /**
+   * Creates an empty dirty region.
+   */
+  DirtyRegion()
+  {
+    rects = new ArrayList<Rectangle>(MAX_RECTANGLES + 1);
+  }
+
+  /**
+   * Creates a dirty region covering a rectangle.
+   *
+   * @param width
+   *          The width.
+   * @param height
+   *          The height.
+   */
+  DirtyRegion(int width, int height)
+  {
+    this();
+    add(new Rectangle(width, height));
+  }
+
+  /**
+   * Adds a rectangle to this region. The rectangle is copied.
+   *
+   * @param r
+   *          The rectangle, <code>null</code> or empty rectangles are ignored.
+   */
+  void add(Rectangle r)
+  {
+    if (r == null || r.isEmpty())
+      return;
+
+    Rectangle u = new Rectangle(r);
+    boolean merged;
+    do
+    {
+      merged = false;
+      for (int i = rects.size() - 1; i >= 0; i--)
+      {
+        Rectangle e = rects.get(i);
+        if (waste(e, u) <= MERGE_SLACK)
+        {
+          rects.remove(i);
+          u.add(e);
+          merged = true;
+        }
+      }
+    }
+    while (merged);
+    rects.add(u);
+
+    if (rects.size() > MAX_RECTANGLES)
+      mergeCheapestPair();
+  }
+
+  /**
+   * Adds all rectangles of another region to this region.
+   *
+   * @param other
+   *          The other region.
+   */
+  void add(DirtyRegion other)
+  {
+    for (Rectangle r : other.rects)
+      add(r);
+  }
+
+  /**
+   * Intersects this region with a rectangle.
+   *
+   * @param width
+   *          The width of the rectangle at (0,0).
+   * @param height
+   *          The height of the rectangle at (0,0).
+   */
+  void clip(int width, int height)
+  {
+    Rectangle clip = new Rectangle(width, height);
+    for (int i = rects.size() - 1; i >= 0; i--)
+    {
+      Rectangle r = rects.get(i).intersection(clip);
+      if (r.isEmpty())
+        rects.remove(i);
+      else
+        rects.set(i, r);
+    }
+  }
+
+  /**
+   * Determines if this region intersects a rectangle.
+   *
+   * @param r
+   *          The rectangle.
+   */
+  boolean intersects(Rectangle r)
+  {
+    for (int i = 0; i < rects.size(); i++)
+      if (rects.get(i).intersects(r))
+        return true;
+    return false;
+  }
+
+  /**
+   * Determines if this region is empty.
+   */
+  boolean isEmpty()
+  {
+    return rects.isEmpty();
+  }
+
+  /**
+   * Returns the bounding rectangle of this region.
+   */
+  Rectangle getBounds()
+  {
+    if (rects.isEmpty())
+      return new Rectangle();
+    Rectangle b = new Rectangle(rects.get(0));
+    for (int i = 1; i < rects.size(); i++)
+      b.add(rects.get(i));
+    return b;
+  }
+
+  /**
+   * Returns the number of pixels covered by the rectangles of this region.
+   * Pixels of overlapping rectangles are counted repeatedly.
+   */
+  long getPixelCount()
+  {
+    long n = 0;
+    for (Rectangle r : rects)
+      n += (long)r.width * r.height;
+    return n;
+  }
+
+  /**
+   * Returns the rectangles of this region. The list and its rectangles must
+   * not be modified.
+   */
+  List<Rectangle> getRectangles()
+  {
+    return Collections.unmodifiableList(rects);
+  }
+
+  @Override
+  public DirtyRegion clone()
+  {
+    try
+    {
+      DirtyRegion clone = (DirtyRegion)super.clone();
+      clone.rects = new ArrayList<Rectangle>(rects.size());
+      for (Rectangle r : rects)
+        clone.rects.add(new Rectangle(r));
+      return clone;
+    }
+    catch (CloneNotSupportedException e)
+    {
+      // Cannot happen, DirtyRegion is cloneable
+      throw new InternalError(e);
+    }
+  }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + " " + rects;
+  }
+
+  // -- Private methods --
+
+  /**
+   * Returns the number of pixels covered by the union bounds of two rectangles
+   * but not by either of them.
+   */
+  private static long waste(Rectangle a, Rectangle b)
+  {
+    int x0 = Math.min(a.x, b.x);
+    int y0 = Math.min(a.y, b.y);
+    int x1 = Math.max(a.x + a.width, b.x + b.width);
+    int y1 = Math.max(a.y + a.height, b.y + b.height);
+    long union = (long)(x1 - x0) * (y1 - y0);
+    long parts = (long)a.width * a.height + (long)b.width * b.height;
+
+    int ix = Math.min(a.x + a.width, b.x + b.width) - Math.max(a.x, b.x);
+    int iy = Math.min(a.y + a.height, b.y + b.height) - Math.max(a.y, b.y);
+    if (ix > 0 && iy > 0)
+      parts -= (long)ix * iy;
+    return union - parts;
+  }
+
+  /**
+   * Merges the two rectangles whose union wastes the fewest pixels.
+   */
+  private void mergeCheapestPair()
+  {
+    int bi = 0;
+    int bj = 1;
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < rects.size(); i++)
+      for (int j = i + 1; j < rects.size(); j++)
+      {
+        long w = waste(rects.get(i), rects.get(j));
+        if (w < best)
+        {
+          best = w;
+          bi = i;
+          bj = j;
+        }
+      }
+    Rectangle b = rects.remove(bj);
+    Rectangle a = rects.remove(bi);
+    a.add(b);
+    add(a);
+  }
+}
+
+// EOF
@@ -0,0 +1,133 @@
+package de.tucottbus.kt.lcars.geometry.rendering;
+
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+import java.util.Random;
+
+/**
+ * Measures the cost of the dirty area computation in
+ * {@link FrameData#apply(FrameData)} versus the number of elements on a
+ * panel, comparing the former {@link Area} based algebra with
+ * {@link DirtyRegion}.
+ *
+ * <p>For each element count the benchmark simulates a frame in which a quarter
+ * of the elements changed and a few were removed: the bounds of changed and
+ * removed elements are accumulated into the dirty area and every unchanged
+ * element is tested for intersection with it.</p>
+ *
+ * <p>Usage: <code>java de.tucottbus.kt.lcars.geometry.rendering.DirtyRegionBenchmark
+ * [frames]</code></p>
+ */
+public class DirtyRegionBenchmark
+{
+  private static final int   WIDTH    = 1920;
+  private static final int   HEIGHT   = 1080;
+  private static final int[] COUNTS   = { 10, 50, 100, 250, 500, 1000, 2000 };
+
+  private static volatile int sink;
+  private static int lastRects;
+
+  public static void main(String[] args)
+  {
+    int frames = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+
+    // Warm up
+    for (int n : COUNTS)
+    {
+      Rectangle[] bounds = makeBounds(n, 1);
+      runArea(bounds, frames / 4 + 1);
+      runRegion(bounds, frames / 4 + 1);
+    }
+
+    System.out.println(String.format("%8s %14s %14s %8s %6s", "elements",
+        "Area [us/frm]", "Region [us/frm]", "speedup", "rects"));
+    for (int n : COUNTS)
+    {
+      Rectangle[] bounds = makeBounds(n, 1);
+      double tArea = runArea(bounds, frames);
+      double tRegion = runRegion(bounds, frames);
+      System.out.println(String.format("%8d %14.1f %15.1f %8.1f %6d", n, tArea,
+          tRegion, tArea / tRegion, lastRects));
+    }
+  }
+
+  // -- Simulated frames --
+
+  /**
+   * Creates random element bounds in the size range of LCARS buttons.
+   */
+  private static Rectangle[] makeBounds(int n, long seed)
+  {
+    Random rnd = new Random(seed);
+    Rectangle[] bounds = new Rectangle[n];
+    for (int i = 0; i < n; i++)
+    {
+      int w = 40 + rnd.nextInt(200);
+      int h = 20 + rnd.nextInt(60);
+      bounds[i] = new Rectangle(rnd.nextInt(WIDTH - w), rnd.nextInt(HEIGHT - h),
+          w, h);
+    }
+    return bounds;
+  }
+
+  /**
+   * Returns the average time per frame in microseconds.
+   */
+  private static double runArea(Rectangle[] bounds, int frames)
+  {
+    long t0 = System.nanoTime();
+    for (int f = 0; f < frames; f++)
+    {
+      Area dirtyArea = new Area();
+      for (int i = 0; i < bounds.length; i++)
+        if (isChanged(i, f) || isRemoved(i, f))
+          dirtyArea.add(new Area(bounds[i]));
+      dirtyArea.intersect(new Area(new Rectangle(WIDTH, HEIGHT)));
+
+      int n = 0;
+      for (int i = 0; i < bounds.length; i++)
+        if (!isChanged(i, f) && !isRemoved(i, f)
+            && dirtyArea.getBounds().intersects(bounds[i]))
+          n++;
+      sink += n;
+    }
+    return (System.nanoTime() - t0) / 1000.0 / frames;
+  }
+
+  /**
+   * Returns the average time per frame in microseconds.
+   */
+  private static double runRegion(Rectangle[] bounds, int frames)
+  {
+    long t0 = System.nanoTime();
+    for (int f = 0; f < frames; f++)
+    {
+      DirtyRegion dirtyRegion = new DirtyRegion();
+      for (int i = 0; i < bounds.length; i++)
+        if (isChanged(i, f) || isRemoved(i, f))
+          dirtyRegion.add(bounds[i]);
+      dirtyRegion.clip(WIDTH, HEIGHT);
+
+      int n = 0;
+      for (int i = 0; i < bounds.length; i++)
+        if (!isChanged(i, f) && !isRemoved(i, f)
+            && dirtyRegion.intersects(bounds[i]))
+          n++;
+      sink += n;
+      lastRects = dirtyRegion.getRectangles().size();
+    }
+    return (System.nanoTime() - t0) / 1000.0 / frames;
+  }
+
+  private static boolean isChanged(int i, int frame)
+  {
+    return (i + frame) % 4 == 0;
+  }
+
+  private static boolean isRemoved(int i, int frame)
+  {
+    return (i + frame) % 50 == 1;
+  }
+}
+
+// EOF
@@ -0,0 +1,273 @@
+package de.tucottbus.kt.lcars.geometry.rendering;
+
+import java.awt.Rectangle;
+import java.awt.geom.GeneralPath;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.GC;
+
+import de.tucottbus.kt.lcars.PanelState;
+import de.tucottbus.kt.lcars.elements.ElementData;
+import de.tucottbus.kt.lcars.elements.ElementState;
+import de.tucottbus.kt.lcars.geometry.AGeometry;
+import de.tucottbus.kt.lcars.geometry.GArea;
+
+/**
+ * The elements of a frame compiled into a flat list of draw operations. Each
+ * operation carries the GC state it needs (background, foreground, alpha), so
+ * the list can be replayed with a minimal number of state changes.
+ *
+ * <p>Consecutive filled {@link GArea}s painted with the same state are merged
+ * into one path if their bounds do not overlap. As the merged areas are
+ * adjacent in painting order and disjoint, merging does not change the
+ * result.</p>
+ */
+class DisplayList
+{
+  /**
+   * The maximal number of areas merged into one path.
+   */
+  static final int MAX_BATCH = 64;
+
+  private final Op[] ops;
+  private final int geometries;
+
+  /**
+   * The frame this display list was compiled from.
+   */
+  final FrameData context;
+
+  /**
+   * The discriminator of the elements compiled into this list, see
+   * {@link #compile(FrameData, Object, Predicate)}.
+   */
+  final Object filterKey;
+
+  private DisplayList(FrameData context, Object filterKey, Op[] ops, int geometries)
+  {
+    this.context    = context;
+    this.filterKey  = filterKey;
+    this.ops        = ops;
+    this.geometries = geometries;
+  }
+
+  /**
+   * Compiles the elements of a frame into a display list.
+   *
+   * @param context
+   *          The frame.
+   * @param filterKey
+   *          An object identifying <code>skip</code>, used to decide whether a
+   *          compiled list can be reused.
+   * @param skip
+   *          Determines elements not to compile, can be <code>null</code>.
+   * @return The display list.
+   */
+  static DisplayList compile(FrameData context, Object filterKey,
+      Predicate<ElementData> skip)
+  {
+    PanelState panelState = context.getPanelState();
+    ArrayList<Op> ops = new ArrayList<Op>();
+    ArrayList<GArea> batch = new ArrayList<GArea>();
+    ArrayList<Rectangle> batchBounds = new ArrayList<Rectangle>();
+    Color batchBg = null;
+    Color batchFg = null;
+    int batchAlpha = 0;
+    int geometries = 0;
+
+    for (ElementData el : context.getElements())
+    {
+      if (el == null || (skip != null && skip.test(el)))
+        continue;
+      ElementState state = el.getState();
+      List<AGeometry> geos = el.getGeometries();
+      if (state == null || !state.isVisible() || geos == null || geos.isEmpty())
+        continue;
+
+      // Same colors as ElementData.render2D
+      final int fgAlpha = (int) (state.getFgAlpha() * 255);
+      final int bgAlpha = (int) (state.getBgAlpha(panelState) * 255);
+      final Color fgColor = state.getFgColor().getColor();
+      final Color bgColor = state.getBgColor(panelState).getColor();
+
+      for (AGeometry geo : geos)
+      {
+        geometries++;
+        boolean fg = geo.isForeground();
+        Color background = fg ? fgColor : bgColor;
+        Color foreground = fg ? bgColor : fgColor;
+        int alpha = fg ? fgAlpha : bgAlpha;
+        Rectangle bounds = geo.getBounds();
+
+        if (geo instanceof GArea && !((GArea)geo).isOutline())
+        {
+          if (!batch.isEmpty() && (batch.size() >= MAX_BATCH
+              || background != batchBg || foreground != batchFg
+              || alpha != batchAlpha || intersects(batchBounds, bounds)))
+            flush(ops, batch, batchBounds, batchBg, batchFg, batchAlpha);
+          batch.add((GArea)geo);
+          batchBounds.add(bounds);
+          batchBg = background;
+          batchFg = foreground;
+          batchAlpha = alpha;
+        }
+        else
+        {
+          flush(ops, batch, batchBounds, batchBg, batchFg, batchAlpha);
+          ops.add(new Op(background, foreground, alpha, bounds, geo, null, null));
+        }
+      }
+    }
+    flush(ops, batch, batchBounds, batchBg, batchFg, batchAlpha);
+
+    return new DisplayList(context, filterKey, ops.toArray(new Op[ops.size()]),
+        geometries);
+  }
+
+  /**
+   * Replays this display list.
+   *
+   * @param gc
+   *          The graphics context.
+   * @param clip
+   *          Only operations intersecting this rectangle (in panel
+   *          coordinates) are replayed, <code>null</code> to replay all.
+   */
+  void paint(GC gc, Rectangle clip)
+  {
+    Color background = null;
+    Color foreground = null;
+    int alpha = -1;
+    for (Op op : ops)
+    {
+      if (clip != null && !op.bounds.intersects(clip))
+        continue;
+      if (op.background != background)
+        gc.setBackground(background = op.background);
+      if (op.foreground != foreground)
+        gc.setForeground(foreground = op.foreground);
+      if (op.alpha != alpha)
+        gc.setAlpha(alpha = op.alpha);
+
+      if (op.path != null)
+        gc.fillPath(GeometryPathCache.getPath(op.key, op.path, gc.getDevice()));
+      else
+      {
+        op.geometry.paint2D(gc);
+        if (!(op.geometry instanceof GArea))
+        {
+          // Geometries other than areas may change the GC state
+          background = null;
+          foreground = null;
+          alpha = -1;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the number of draw operations.
+   */
+  int getOpCount()
+  {
+    return ops.length;
+  }
+
+  /**
+   * Returns the number of geometries compiled into this list.
+   */
+  int getGeometryCount()
+  {
+    return geometries;
+  }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + " ops=" + ops.length + ", geometries="
+        + geometries;
+  }
+
+  // -- Private methods --
+
+  /**
+   * Adds the pending batch of areas as one operation and clears the batch.
+   */
+  private static void flush(ArrayList<Op> ops, ArrayList<GArea> batch,
+      ArrayList<Rectangle> batchBounds, Color background, Color foreground,
+      int alpha)
+  {
+    if (batch.isEmpty())
+      return;
+    if (batch.size() == 1)
+      ops.add(new Op(background, foreground, alpha, batchBounds.get(0),
+          batch.get(0), null, null));
+    else
+    {
+      GeneralPath path = new GeneralPath();
+      Rectangle bounds = new Rectangle(batchBounds.get(0));
+      for (int i = 0; i < batch.size(); i++)
+      {
+        batch.get(i).appendTo(path);
+        bounds.add(batchBounds.get(i));
+      }
+      ops.add(new Op(background, foreground, alpha, bounds, null, path,
+          GeometryPathCache.getKey(path)));
+    }
+    batch.clear();
+    batchBounds.clear();
+  }
+
+  private static boolean intersects(List<Rectangle> rects, Rectangle r)
+  {
+    for (int i = 0; i < rects.size(); i++)
+      if (rects.get(i).intersects(r))
+        return true;
+    return false;
+  }
+
+  // -- Nested classes --
+
+  /**
+   * A draw operation.
+   */
+  private static final class Op
+  {
+    final Color background;
+    final Color foreground;
+    final int alpha;
+
+    /**
+     * The bounds in panel coordinates.
+     */
+    final Rectangle bounds;
+
+    /**
+     * A single geometry to paint, <code>null</code> for merged areas.
+     */
+    final AGeometry geometry;
+
+    /**
+     * The merged areas to fill, <code>null</code> for a single geometry.
+     */
+    final GeneralPath path;
+    final GeometryPathCache.Key key;
+
+    Op(Color background, Color foreground, int alpha, Rectangle bounds,
+        AGeometry geometry, GeneralPath path, GeometryPathCache.Key key)
+    {
+      this.background = background;
+      this.foreground = foreground;
+      this.alpha      = alpha;
+      this.bounds     = bounds;
+      this.geometry   = geometry;
+      this.path       = path;
+      this.key        = key;
+    }
+  }
+}
+
+// EOF
@@ -1,15 +1,17 @@
 package de.tucottbus.kt.lcars.geometry.rendering;
 
-import java.awt.Rectangle;
-import java.awt.Shape;
-import java.awt.geom.Area;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import de.tucottbus.kt.lcars.PanelData;
 import de.tucottbus.kt.lcars.PanelState;
 import de.tucottbus.kt.lcars.elements.ElementData;
+import de.tucottbus.kt.lcars.elements.ElementState;
+import de.tucottbus.kt.lcars.geometry.AGeometry;
 import de.tucottbus.kt.lcars.logging.Log;
 import de.tucottbus.kt.lcars.swt.ImageMeta;
 import de.tucottbus.kt.lcars.util.Objectt;
@@ -17,33 +19,47 @@ import de.tucottbus.kt.lcars.util.Objectt;
 /**
  * Represents a context containing all data required to render a frame.
  * Instances of it can be applied each other to realize incremental and
- * selective updates.
+ * selective updates. Once {@linkplain #apply(FrameData) applied}, a frame is
+ * not modified any more and may be shared with the paint process.
  * 
  * @author Christian Borck
  *
  */
-class FrameData implements Cloneable
+class FrameData
 {
   public static final String CLASSKEY = "FrmDt";
   
+  /**
+   * Panel state changes that change the appearance of static elements.
+   */
+  private static final int STATIC_STATE_FLAGS = PanelState.DIMENSION
+      | PanelState.COLOR_SCHEME | PanelState.ALPHA | PanelState.BACKGROUND;
+  
+  /**
+   * Source of the {@linkplain #getStaticVersion() static versions}.
+   */
+  private static final AtomicLong staticVersions = new AtomicLong();
+  
   private boolean selectiveRepaint;
-  private final boolean incremental;
+  private boolean incremental;
+  private final long panelId;
+  private boolean delta;
+  private long[] removedElements;
   private PanelState panelState;
   private ElementData[] elements;
   private ArrayList<ElementData> elementsToPaint;
-  private Shape dirtyArea;
+  private DirtyRegion dirtyRegion;
   private boolean fullRepaint;
   private boolean bgChanged = true;
+  private long staticVersion;
 
-  private FrameData(boolean incremental)
-  {
-    this.incremental = incremental;
-  }
-  
   private FrameData(PanelData panelData, boolean incremental, boolean selectiveRepaint)
   {
-    this.incremental = incremental;
+    this.incremental = incremental || panelData.delta;
     this.selectiveRepaint = selectiveRepaint;
+    this.panelId = panelData.panelId;
+    this.delta = panelData.delta;
+    this.removedElements = panelData.removedElements;
     this.panelState = panelData.panelState;
     this.elements = panelData.elementData;
     
@@ -65,7 +81,8 @@ class FrameData implements Cloneable
   public static FrameData create(PanelData panelData, boolean incremental,
       boolean selectiveRepaint)
   {
-    return panelData == null || panelData.panelState == null
+    return panelData == null 
+        || (panelData.panelState == null && !panelData.delta)
         || panelData.elementData == null ? null : new FrameData(panelData,
         incremental, selectiveRepaint);
   }
@@ -92,48 +109,40 @@ class FrameData implements Cloneable
     return true;
   }
 
-  @Override
-  public FrameData clone()
-  {
-    try
-    {
-      // Shallow copy of all fields
-      FrameData clone = (FrameData)super.clone();
-
-      // Deeper copy of some fields
-      clone.dirtyArea = new Area(this.dirtyArea);
-      
-      return clone;
-    } 
-    catch (CloneNotSupportedException e)
-    {
-      e.printStackTrace();
-    }
-    return null;
-  }
-  
   /**
    * Applies missing data from the previous {@link FrameData} and calculates changes
    * from previous to this {@link FrameData}.
    * 
    * @param pred
    *          - previous {@link FrameData}
-   * @param applyUpdate
-   *          - Function class that applies missing data and return the changes
-   *          flag. The signature is similar to
-   *          "Integer applyUpdate(ElementData this, ElementData pred);"
+   * @return <code>false</code> if this is a delta frame which cannot be applied
+   *         because there is no matching previous frame, <code>true</code>
+   *         otherwise
    */
-  public void apply(FrameData pred)
+  public boolean apply(FrameData pred)
   {
+    if (delta)
+    {
+      if (pred == null || pred.panelId != panelId)
+        return false;
+      if (panelState == null)
+        panelState = pred.panelState;
+      elements = mergeDelta(pred);
+    }
+    
     if (pred == null)
     {
-      dirtyArea = new Rectangle(getPanelWidth(), getPanelHeight());
+      dirtyRegion = new DirtyRegion(getPanelWidth(), getPanelHeight());
       elementsToPaint = new ArrayList<ElementData>(Arrays.asList(elements));
       bgChanged = updateBgImage(null);
-      return;
+      staticVersion = staticVersions.incrementAndGet();
+      return true;
     }
     
     bgChanged = updateBgImage(pred);
+    boolean staticChanged = pred.panelId != panelId
+        || (panelState.getUpdateFlags(pred.panelState) & STATIC_STATE_FLAGS) != 0
+        || (!incremental && staticElementsChanged(pred));
     
     fullRepaint = !panelState.equals(pred.panelState)
                     || !incremental
@@ -154,7 +163,9 @@ class FrameData implements Cloneable
             ElementData edp = hPred.get(edu.serialNo);
             if (edp != null)
               hPred.remove(edu.serialNo);
-            edu.applyUpdate(edp);          
+            if (edp != edu) // retained by a delta frame
+              if (edu.applyUpdate(edp) != 0)
+                staticChanged |= isStatic(edu, edp);
           } catch (Exception e)
           {
             if (edu != null)
@@ -162,13 +173,13 @@ class FrameData implements Cloneable
             else
               Log.err("Cannot apply frame update because of illegal null ElementData.");
           }
-      dirtyArea = new Area(new Rectangle(getPanelWidth(), getPanelHeight()));
+      dirtyRegion = new DirtyRegion(getPanelWidth(), getPanelHeight());
     } 
     else
     {
       ArrayList<ElementData> elementsToPaint = new ArrayList<ElementData>(elements.length);
       ArrayList<ElementData> elsWithoutChanges = new ArrayList<ElementData>(elements.length);
-      Area dirtyArea = new Area();
+      DirtyRegion dirtyRegion = new DirtyRegion();
 
       for (ElementData edu : elements)
         try
@@ -179,16 +190,17 @@ class FrameData implements Cloneable
             if (edp != null)
               hPred.remove(edu.serialNo);
               
-            if (edu.applyUpdate(edp) == 0)
+            if (edp == edu || edu.applyUpdate(edp) == 0)
             {
               elsWithoutChanges.add(edu);
               continue;                
             }
+            staticChanged |= isStatic(edu, edp);
               
             if (edp!=null)
-              dirtyArea.add(new Area(edp.getBounds()));
+              dirtyRegion.add(edp.getBounds());
           }
-          dirtyArea.add(new Area(edu.getBounds()));
+          dirtyRegion.add(edu.getBounds());
           elementsToPaint.add(edu);
 
         } catch (Exception e)
@@ -198,56 +210,123 @@ class FrameData implements Cloneable
       // Add removed elements to the dirtyArea
       try
       {
-        hPred.forEach((serialNo, edp) -> dirtyArea.add(new Area(edp.getBounds())));
+        hPred.forEach((serialNo, edp) -> dirtyRegion.add(edp.getBounds()));
       } catch (Exception e)
       {
         Log.err("Cannot create dirty area.", e);
       }
-      dirtyArea.intersect(new Area(new Rectangle(getPanelWidth(), getPanelHeight())));
-      this.dirtyArea = dirtyArea;
+      dirtyRegion.clip(getPanelWidth(), getPanelHeight());
+      this.dirtyRegion = dirtyRegion;
 
       for (ElementData edu : elsWithoutChanges)
-        if (dirtyArea.getBounds().intersects(edu.getBounds()))
+        if (dirtyRegion.intersects(edu.getBounds()))
           elementsToPaint.add(edu);
       this.elementsToPaint = elementsToPaint;
     }
     
+    // Static elements removed?
+    if (hPred != null)
+      for (ElementData edp : hPred.values())
+        staticChanged |= edp.isStatic();
+    staticVersion = staticChanged ? staticVersions.incrementAndGet()
+        : pred.staticVersion;
+    
 //    if(elements.size() !=elementsToPaint.size())
 //      Log.warn(CLASSKEY, "Element difference " + elements.size() + ":" + elementsToPaint.size());
+    return true;
   }
 
   /**
-   * Collapse this and all previous frames as they had added as one frame.
+   * Merges the changed, added and removed elements of this delta frame into the
+   * elements of the previous frame. Unchanged elements are retained as they are
+   * (i.&nbsp;e. the very same {@link ElementData} instances), changed elements
+   * replace their predecessors in place and added elements are appended in the
+   * order they were received.
+   * 
+   * @param pred
+   *          - previous {@link FrameData}
+   * @return the complete elements of this frame
+   */
+  private ElementData[] mergeDelta(FrameData pred)
+  {
+    HashMap<Long, ElementData> hDelta = createHashMap(elements);
+    HashSet<Long> removed = new HashSet<Long>();
+    if (removedElements != null)
+      for (long serialNo : removedElements)
+        removed.add(serialNo);
+
+    ArrayList<ElementData> merged 
+      = new ArrayList<ElementData>(pred.elements.length + elements.length);
+    for (ElementData edp : pred.elements)
+    {
+      if (removed.contains(edp.serialNo))
+        continue;
+      ElementData edu = hDelta.remove(edp.serialNo);
+      merged.add(edu != null ? edu : edp);
+    }
+    for (ElementData edu : elements)
+      if (hDelta.remove(edu.serialNo) != null)
+        merged.add(edu);
+    return merged.toArray(new ElementData[merged.size()]);
+  }
+
+  /**
+   * Collapse this and all previous frames as they had added as one frame. The
+   * previous frames must not have been {@linkplain #apply(FrameData) applied}.
+   * Applying the collapsed frame has the same effect as applying all frames
+   * one after the other.
    * 
    * @param preds
+   *          - previous {@link FrameData}s in the order they were received
    * @return Indicates if all elements has complete data
    */
   public boolean collapse(FrameData[] preds)
   {
-    // TODO: bounded buffer testen
-    // TODO:
+    for (int i = preds.length - 1; i >= 0; i--)
+      coalesce(preds[i]);
 
-    if (!incremental) // not if background changed because incremental apply
-      return true;
+    for (ElementData edu : elements)
+      if (edu.getMissing() != 0)
+        return false;
+    return true;
+  }
 
-    HashMap<Long, ElementData> hThis = createHashMapOnlyIncomplete(elements);
-    if (hThis.isEmpty())
-      return true;
+  /**
+   * Merges the previous frame into this frame.
+   * 
+   * @param pred
+   *          - previous {@link FrameData}, not applied
+   */
+  private void coalesce(FrameData pred)
+  {
+    if (pred.panelId != panelId || !incremental)
+      return; // This frame supersedes the previous one
 
-    for (int i = preds.length - 1; i >= 0; i--)
-      for (ElementData predEl : preds[i].elements)
-      {
-        ElementData thisEl = hThis.get(predEl.serialNo);
-        if (thisEl == null) continue;
-        thisEl.applyUpdate(predEl);
-        if (thisEl.getMissing() == 0)
-        {
-          hThis.remove(thisEl.serialNo);
-          if (hThis.isEmpty())
-            return true;
-        }
-      }
-    return hThis.isEmpty();
+    // Complete the element data with the previous frame
+    HashMap<Long, ElementData> hPred = createHashMap(pred.elements);
+    for (ElementData edu : elements)
+      edu.coalesce(hPred.get(edu.serialNo));
+    if (!delta)
+      return;
+
+    // Merge the changes of this delta frame into the previous frame
+    elements = mergeDelta(pred);
+    if (!pred.delta)
+      removedElements = null;
+    else if (removedElements == null)
+      removedElements = pred.removedElements;
+    else if (pred.removedElements != null)
+    {
+      long[] removed = Arrays.copyOf(pred.removedElements,
+          pred.removedElements.length + removedElements.length);
+      System.arraycopy(removedElements, 0, removed, pred.removedElements.length,
+          removedElements.length);
+      removedElements = removed;
+    }
+    if (panelState == null)
+      panelState = pred.panelState;
+    incremental = pred.incremental;
+    delta = pred.delta;
   }
 
   /**
@@ -266,24 +345,102 @@ class FrameData implements Cloneable
   }
 
   /**
+   * Determines if a changed element is or was static.
    * 
-   * @param elements
-   * @return
+   * @param edu
+   *          - the updated element
+   * @param edp
+   *          - the element of the previous frame, can be <code>null</code>
    */
-  private static HashMap<Long, ElementData> createHashMapOnlyIncomplete(
-      ElementData[] elements)
+  private static boolean isStatic(ElementData edu, ElementData edp)
   {
-    HashMap<Long, ElementData> result = new HashMap<Long, ElementData>(
-        elements.length);
-    for (ElementData edu : elements)
-      if (edu.getMissing() != 0)
-        result.put(edu.serialNo, edu);
-    return result;
+    return edu.isStatic() || (edp != null && edp.isStatic());
+  }
+
+  /**
+   * Determines if the static elements of a full (i.&nbsp;e. non-incremental)
+   * frame differ from those of the previous frame. The static elements are
+   * compared in z-order by serial number, state and geometries, so a full frame
+   * repeating the previous one keeps the {@linkplain #getStaticVersion() static
+   * version}.
+   * 
+   * @param pred
+   *          - previous {@link FrameData}
+   */
+  private boolean staticElementsChanged(FrameData pred)
+  {
+    int i = 0;
+    int j = 0;
+    for (;;)
+    {
+      while (i < elements.length && !elements[i].isStatic())
+        i++;
+      while (j < pred.elements.length && !pred.elements[j].isStatic())
+        j++;
+      if (i == elements.length || j == pred.elements.length)
+        return i != elements.length || j != pred.elements.length;
+      if (!looksSame(elements[i++], pred.elements[j++]))
+        return true;
+    }
   }
 
-  public Shape getDirtyArea()
+  /**
+   * Determines if two element data instances describe the same element with
+   * the same appearance. Geometries are compared by identity or, for
+   * geometries with a wire encoding, by their {@linkplain
+   * AGeometry#wireHash(AGeometry) wire hash}.
+   */
+  private static boolean looksSame(ElementData edu, ElementData edp)
   {
-    return dirtyArea;
+    if (edu.serialNo != edp.serialNo)
+      return false;
+
+    ElementState su = edu.getState();
+    ElementState sp = edp.getState();
+    if (su != sp && (su == null || sp == null
+        || !su.getBounds().equals(sp.getBounds())
+        || !Objectt.equals(su.getColor(), sp.getColor())
+        || su.getAlpha() != sp.getAlpha() || su.getStyle() != sp.getStyle()
+        || su.isVisible() != sp.isVisible()
+        || su.isHighlighted() != sp.isHighlighted()))
+      return false;
+
+    List<AGeometry> gu = edu.getGeometries();
+    List<AGeometry> gp = edp.getGeometries();
+    if (gu == null || gp == null || gu.size() != gp.size())
+      return gu == gp;
+    for (int k = 0; k < gu.size(); k++)
+    {
+      AGeometry a = gu.get(k);
+      AGeometry b = gp.get(k);
+      if (a == b)
+        continue;
+      long hash = AGeometry.wireHash(a);
+      if (hash == 0 || hash != AGeometry.wireHash(b))
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns the version of the static elements of this frame. The version
+   * changes whenever a {@linkplain ElementData#isStatic() static} element is
+   * added, changed or removed, or the panel state changes their appearance.
+   * Frames with equal static versions have identical static elements.
+   */
+  public long getStaticVersion()
+  {
+    return staticVersion;
+  }
+
+  public DirtyRegion getDirtyRegion()
+  {
+    return dirtyRegion;
+  }
+
+  public long getPanelId()
+  {
+    return panelId;
   }
 
   public int getPanelWidth()
@@ -306,6 +463,14 @@ class FrameData implements Cloneable
     return elementsToPaint;
   }
 
+  /**
+   * Returns all elements of this frame in z-order.
+   */
+  public ElementData[] getElements()
+  {
+    return elements;
+  }
+
   public boolean isBgChanged()
   {
     return bgChanged;
@@ -1,17 +1,29 @@
 package de.tucottbus.kt.lcars.geometry.rendering;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
+import org.eclipse.swt.graphics.Device;
 import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.widgets.Display;
 
 import de.tucottbus.kt.lcars.geometry.AGeometry;
 
 /**
  * A static cache for images used by {@link AGeometry} with automatic garbage
- * collection.
- * 
+ * collection. The cache is thread-safe.
+ *
+ * <p>The total size of the cached images is limited to a budget of pixel bytes
+ * (see {@link #setMaxBytes(long)}). If the budget is exceeded, the least
+ * recently used images are removed. Images which have not been accessed for
+ * longer than a timeout (see {@link #setTimeout(long)}) are removed as well.
+ * Removed images are {@linkplain Image#dispose() disposed} asynchronously on
+ * the UI thread of their display, so an image retrieved during a paint stays
+ * valid until the paint is finished.</p>
+ *
  * @author Matthias Wolff
  */
 public class GeometryImageCache
@@ -20,140 +32,339 @@ public class GeometryImageCache
    * If <code>true<code> print debug messages at stderr.
    */
   private static final boolean DEBUG = false;
-  
+
+  /**
+   * The default budget in bytes (64 MiB).
+   */
+  public static final long DEFAULT_MAX_BYTES = 64L<<20;
+
+  /**
+   * The default timeout in milliseconds.
+   */
+  public static final long DEFAULT_TIMEOUT = 10000;
+
   /**
-   *  Cache entries: Image with time of last access.
+   *  Cache entries: Image with size and time of last access.
    */
   private static class CacheEntry
   {
     public final Image image;
+    public final long bytes;
     public long lastAccessTimeMillis;
-    
+
     CacheEntry(Image image)
     {
+      Rectangle b = image.getBounds();
       this.image = image;
+      this.bytes = 4L*b.width*b.height;
       this.lastAccessTimeMillis = System.currentTimeMillis();
     }
   }
-  
+
+  /**
+   * Global cache of images in access order, guarded by itself.
+   */
+  private static final LinkedHashMap<Object,CacheEntry> cache
+    = new LinkedHashMap<Object,CacheEntry>(64,0.75f,true);
+
   /**
    * Timeout for cache objects in milliseconds. Images will be removed if not
    * accessed for longer than this period.
    */
-  private static long TIMEOUT = 10000;
+  private static long timeout = DEFAULT_TIMEOUT;
+
+  /**
+   * The maximal total size of the cached images in bytes.
+   */
+  private static long maxBytes = DEFAULT_MAX_BYTES;
 
   /**
-   * Global cache of images.
+   * The total size of the cached images in bytes.
    */
-  private static HashMap<Object,GeometryImageCache.CacheEntry> cache;
-  
+  private static long bytes;
+
+  private static long hits;
+  private static long misses;
+  private static long evictions;
+
   /**
    * Puts a image into the global cache.
-   * 
+   *
    * @param key
    *          The key.
    * @param image
    *          The image, <code>null</code> removes and
-   *          {@linkplain Image#dispose() dispose} the image currently stored
+   *          {@linkplain Image#dispose() disposes} the image currently stored
    *          under <code>key</code>.
    * @see #getImage(Object)
    */
   public static void putImage(Object key, Image image)
   {
-    cleanup();
-    if (cache==null)
-      cache = new HashMap<Object,GeometryImageCache.CacheEntry>();
-    removeImage(key);
-    if (image!=null)
-      cache.put(key,new CacheEntry(image));
+    ArrayList<Image> disposables = new ArrayList<Image>();
+    synchronized (cache)
+    {
+      CacheEntry entry = cache.remove(key);
+      if (entry!=null)
+      {
+        bytes -= entry.bytes;
+        if (entry.image!=image)
+          disposables.add(entry.image);
+      }
+      if (image!=null)
+      {
+        entry = new CacheEntry(image);
+        cache.put(key,entry);
+        bytes += entry.bytes;
+      }
+      cleanup(disposables);
+    }
+    dispose(disposables);
   }
-  
+
   /**
-   * Removes a image into the global cache and
+   * Removes a image from the global cache and
    * {@linkplain Image#dispose() disposes} it.
-   * 
+   *
    * @param key
    *          The key.
    * @see #getImage(Object)
    */
   public static void removeImage(Object key)
   {
-    if (cache==null)
-      return;
-    cleanup();
-    GeometryImageCache.CacheEntry entry = cache.get(key); 
-    if (entry==null)
-      return;
-    if (entry.image!=null)
-      entry.image.dispose();
-    cache.remove(key);
+    putImage(key,null);
   }
-  
+
   /**
    * Retrieves a image from the global cache.
-   * 
+   *
    * <p><b style="color:red">Important Remark:</b> Caching is <em>not</em> done
    * automatically! The method retrieves only images which were previously
-   * stored by the application invoking {@link #putImage(int, Image)}.</p>
-   * 
-   * @param sliceType
+   * stored by the application invoking {@link #putImage(Object, Image)}.</p>
+   *
+   * @param key
    *          The key.
-   * @return The image.
+   * @return The image or <code>null</code> if there is no image stored under
+   *         <code>key</code>.
    * @see #putImage(Object, Image)
    */
   public static Image getImage(Object key)
   {
-    cleanup();
-    if (cache==null)
+    ArrayList<Image> disposables = new ArrayList<Image>();
+    Image image = null;
+    synchronized (cache)
     {
-      DebugMsg("MISS (cache does not exist)");
-      return null;
+      CacheEntry entry = cache.get(key);
+      if (entry!=null && !entry.image.isDisposed())
+      {
+        entry.lastAccessTimeMillis = System.currentTimeMillis();
+        image = entry.image;
+        hits++;
+      }
+      else
+      {
+        misses++;
+        DebugMsg("MISS ("+cache.size()+" images in cache)");
+      }
+      cleanup(disposables);
+    }
+    dispose(disposables);
+    return image;
+  }
+
+  /**
+   * Removes and disposes of all images.
+   */
+  public static void clear()
+  {
+    ArrayList<Image> disposables = new ArrayList<Image>();
+    synchronized (cache)
+    {
+      for (CacheEntry entry : cache.values())
+        disposables.add(entry.image);
+      cache.clear();
+      bytes = 0;
     }
-    GeometryImageCache.CacheEntry entry = cache.get(key);
-    if (entry!=null)
+    dispose(disposables);
+  }
+
+  /**
+   * Removes and disposes of all images of a device.
+   *
+   * @param device
+   *          The device.
+   */
+  public static void clear(Device device)
+  {
+    ArrayList<Image> disposables = new ArrayList<Image>();
+    synchronized (cache)
     {
-      entry.lastAccessTimeMillis = System.currentTimeMillis();
-      //DebugMsg("HIT ("+cache.size()+" images in cache)");
-      return entry.image;
+      for (Iterator<CacheEntry> it = cache.values().iterator(); it.hasNext(); )
+      {
+        CacheEntry entry = it.next();
+        if (entry.image.isDisposed() || entry.image.getDevice()==device)
+        {
+          it.remove();
+          bytes -= entry.bytes;
+          disposables.add(entry.image);
+        }
+      }
     }
-    else
+    dispose(disposables);
+  }
+
+  /**
+   * Sets the maximal total size of the cached images.
+   *
+   * @param maxBytes
+   *          The budget in bytes.
+   */
+  public static void setMaxBytes(long maxBytes)
+  {
+    ArrayList<Image> disposables = new ArrayList<Image>();
+    synchronized (cache)
     {
-      DebugMsg("MISS ("+cache.size()+" images in cache)");
-      return null;
+      GeometryImageCache.maxBytes = maxBytes;
+      cleanup(disposables);
     }
+    dispose(disposables);
   }
 
   /**
-   * Removes outdated images from the cache.
+   * Returns the maximal total size of the cached images in bytes.
    */
-  private static void cleanup()
+  public static long getMaxBytes()
   {
-    if (cache==null)
-      return;
+    synchronized (cache)
+    {
+      return maxBytes;
+    }
+  }
+
+  /**
+   * Sets the timeout after which images not accessed are removed.
+   *
+   * @param timeout
+   *          The timeout in milliseconds, 0 for no timeout.
+   */
+  public static void setTimeout(long timeout)
+  {
+    synchronized (cache)
+    {
+      GeometryImageCache.timeout = timeout;
+    }
+  }
+
+  /**
+   * Returns the number of cached images.
+   */
+  public static int size()
+  {
+    synchronized (cache)
+    {
+      return cache.size();
+    }
+  }
+
+  /**
+   * Returns the total size of the cached images in bytes.
+   */
+  public static long getBytes()
+  {
+    synchronized (cache)
+    {
+      return bytes;
+    }
+  }
+
+  /**
+   * Returns the number of successful look-ups.
+   */
+  public static long getHits()
+  {
+    synchronized (cache)
+    {
+      return hits;
+    }
+  }
+
+  /**
+   * Returns the number of failed look-ups.
+   */
+  public static long getMisses()
+  {
+    synchronized (cache)
+    {
+      return misses;
+    }
+  }
+
+  /**
+   * Returns the number of images removed because of the budget or the
+   * timeout.
+   */
+  public static long getEvictions()
+  {
+    synchronized (cache)
+    {
+      return evictions;
+    }
+  }
 
+  /**
+   * Removes outdated and least recently used images from the cache until it
+   * fits into its budget. Must be called while holding the lock on the cache.
+   *
+   * @param disposables
+   *          Receives the removed images.
+   */
+  private static void cleanup(ArrayList<Image> disposables)
+  {
     long now = System.currentTimeMillis();
-    for 
-    (
-      Iterator<Map.Entry<Object,GeometryImageCache.CacheEntry>> it = cache.entrySet().iterator(); 
-      it.hasNext(); 
-    ) 
+    for (Iterator<Map.Entry<Object,CacheEntry>> it = cache.entrySet().iterator(); it.hasNext(); )
     {
-      Map.Entry<Object,GeometryImageCache.CacheEntry> entry = it.next();
-      if (entry.getValue()==null)
-        it.remove();
-      if (now-entry.getValue().lastAccessTimeMillis > TIMEOUT)
-      {
-        DebugMsg("AUTO-REMOVED key="+entry.getKey());
-        if (entry.getValue().image!=null)
-          entry.getValue().image.dispose();
-        it.remove();
-      }
-    }      
+      // Entries are in access order, the least recently used come first
+      Map.Entry<Object,CacheEntry> entry = it.next();
+      CacheEntry value = entry.getValue();
+      boolean expired = timeout>0 && now-value.lastAccessTimeMillis>timeout;
+      if (!expired && bytes<=maxBytes)
+        break;
+      DebugMsg("AUTO-REMOVED key="+entry.getKey());
+      it.remove();
+      bytes -= value.bytes;
+      evictions++;
+      disposables.add(value.image);
+    }
+  }
+
+  /**
+   * Disposes of images asynchronously on the UI thread of their display.
+   *
+   * @param images
+   *          The images.
+   */
+  private static void dispose(ArrayList<Image> images)
+  {
+    for (Image image : images)
+    {
+      if (image==null || image.isDisposed())
+        continue;
+      Device device = image.getDevice();
+      if (device==null || device.isDisposed())
+        continue;
+      if (device instanceof Display)
+        ((Display)device).asyncExec(() ->
+        {
+          if (!image.isDisposed())
+            image.dispose();
+        });
+      else
+        image.dispose();
+    }
   }
-  
+
   /**
    * Prints a debug message.
-   * 
+   *
    * @param msg
    *          The message.
    */
@@ -163,5 +374,5 @@ public class GeometryImageCache
       return;
     System.err.println("GeometryImageCache: "+msg);
   }
-  
-}
\ No newline at end of file
+
+}
@@ -0,0 +1,204 @@
+package de.tucottbus.kt.lcars.geometry.rendering;
+
+import java.awt.geom.GeneralPath;
+import java.awt.geom.PathIterator;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.swt.graphics.Device;
+import org.eclipse.swt.graphics.Path;
+
+import de.tucottbus.kt.lcars.geometry.GArea;
+import de.tucottbus.kt.lcars.swt.AwtSwt;
+
+/**
+ * A static cache for the native SWT paths of {@link GArea}s. Paths are keyed by
+ * the content of the shape, so unchanged shapes keep their native path across
+ * frames even if the screen receives new geometry instances.
+ *
+ * <p>Paths are cached per device. The number of cached paths of a device is
+ * limited to {@link #MAX_PATHS} native handles. If the limit is exceeded, the
+ * least recently used path is {@linkplain Path#dispose() disposed}. The paths
+ * of a device must only be used and cleared on the thread painting them (the
+ * SWT UI thread of the device).</p>
+ */
+public class GeometryPathCache
+{
+  /**
+   * The maximal number of native path handles kept per device.
+   */
+  public static final int MAX_PATHS = 2048;
+
+  /**
+   * Caches of paths by device, each in access order.
+   */
+  private static final ConcurrentHashMap<Device,LinkedHashMap<Key,Path>> caches
+    = new ConcurrentHashMap<Device,LinkedHashMap<Key,Path>>();
+
+  private static long hits;
+  private static long misses;
+  private static long evictions;
+
+  /**
+   * Computes the cache key of a shape.
+   *
+   * @param path
+   *          The shape.
+   * @return The key. Keys of equal shapes are equal.
+   */
+  public static Key getKey(GeneralPath path)
+  {
+    return new Key(path);
+  }
+
+  /**
+   * Returns the native path of a shape, converting it if it is not cached.
+   * The returned path must not be disposed by the caller and must not be kept
+   * beyond the current paint.
+   *
+   * @param key
+   *          The key of the shape, see {@link #getKey(GeneralPath)}.
+   * @param path
+   *          The shape.
+   * @param device
+   *          The device to create the path on.
+   * @return The native path.
+   */
+  public static Path getPath(Key key, GeneralPath path, Device device)
+  {
+    LinkedHashMap<Key,Path> cache = caches.computeIfAbsent(device,
+        (d) -> new LinkedHashMap<Key,Path>(MAX_PATHS, 0.75f, true));
+
+    Path swtPath = cache.get(key);
+    if (swtPath!=null && !swtPath.isDisposed())
+    {
+      hits++;
+      return swtPath;
+    }
+
+    misses++;
+    swtPath = AwtSwt.toSwtPath(path,device);
+    cache.put(key,swtPath);
+    for (Iterator<Path> it = cache.values().iterator(); cache.size()>MAX_PATHS; )
+    {
+      it.next().dispose();
+      it.remove();
+      evictions++;
+    }
+    return swtPath;
+  }
+
+  /**
+   * Disposes of the cached paths of a device.
+   *
+   * @param device
+   *          The device.
+   */
+  public static void clear(Device device)
+  {
+    LinkedHashMap<Key,Path> cache = caches.remove(device);
+    if (cache==null)
+      return;
+    for (Path swtPath : cache.values())
+      if (!swtPath.isDisposed())
+        swtPath.dispose();
+  }
+
+  /**
+   * Returns the number of cached paths (i.e. native handles) of all devices.
+   */
+  public static int size()
+  {
+    int size = 0;
+    for (Map<Key,Path> cache : caches.values())
+      size += cache.size();
+    return size;
+  }
+
+  /**
+   * Returns the number of cache hits.
+   */
+  public static long getHits()
+  {
+    return hits;
+  }
+
+  /**
+   * Returns the number of cache misses (i.e. path conversions).
+   */
+  public static long getMisses()
+  {
+    return misses;
+  }
+
+  /**
+   * Returns the number of paths disposed because the cache was full.
+   */
+  public static long getEvictions()
+  {
+    return evictions;
+  }
+
+  // -- Nested classes --
+
+  /**
+   * The key of a cached path: the segments and the winding rule of a shape.
+   */
+  public static final class Key
+  {
+    private final byte[]  types;
+    private final float[] coords;
+    private final int     windingRule;
+    private final int     hash;
+
+    private Key(GeneralPath path)
+    {
+      byte[]  types  = new byte[16];
+      float[] coords = new float[64];
+      float[] c      = new float[6];
+      int     nt     = 0;
+      int     nc     = 0;
+      for (PathIterator it = path.getPathIterator(null); !it.isDone(); it.next())
+      {
+        int type = it.currentSegment(c);
+        int n = type==PathIterator.SEG_CLOSE ? 0 : type==PathIterator.SEG_QUADTO ? 4
+            : type==PathIterator.SEG_CUBICTO ? 6 : 2;
+        if (nt==types.length)
+          types = Arrays.copyOf(types,nt*2);
+        if (nc+n>coords.length)
+          coords = Arrays.copyOf(coords,Math.max(coords.length*2,nc+n));
+        types[nt++] = (byte)type;
+        System.arraycopy(c,0,coords,nc,n);
+        nc += n;
+      }
+      this.types       = Arrays.copyOf(types,nt);
+      this.coords      = Arrays.copyOf(coords,nc);
+      this.windingRule = path.getWindingRule();
+      this.hash        = (Arrays.hashCode(this.types)*31 + Arrays.hashCode(this.coords))*31
+                         + windingRule;
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+      if (this==obj)
+        return true;
+      if (!(obj instanceof Key))
+        return false;
+      Key other = (Key)obj;
+      return hash==other.hash && windingRule==other.windingRule
+          && Arrays.equals(types,other.types) && Arrays.equals(coords,other.coords);
+    }
+  }
+}
+
+// EOF
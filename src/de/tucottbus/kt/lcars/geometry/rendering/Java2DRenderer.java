@@ -0,0 +1,317 @@
+package de.tucottbus.kt.lcars.geometry.rendering;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.tucottbus.kt.lcars.PanelData;
+import de.tucottbus.kt.lcars.PanelState;
+import de.tucottbus.kt.lcars.elements.ElementData;
+import de.tucottbus.kt.lcars.elements.ElementState;
+import de.tucottbus.kt.lcars.geometry.AGeometry;
+import de.tucottbus.kt.lcars.geometry.GArea;
+import de.tucottbus.kt.lcars.geometry.GImage;
+import de.tucottbus.kt.lcars.geometry.GRenderedImage;
+import de.tucottbus.kt.lcars.geometry.GText;
+import de.tucottbus.kt.lcars.swt.ColorMeta;
+import de.tucottbus.kt.lcars.swt.ImageMeta;
+import de.tucottbus.kt.lcars.swt.TextMetrics;
+
+/**
+ * Renders {@link PanelData} into a {@link BufferedImage} with Java2D. Unlike
+ * the {@link LcarsComposite} this renderer needs no SWT display, so frames
+ * can be rendered on headless hosts, in automated tests, for thumbnails and
+ * in render benchmarks.
+ *
+ * <p>Geometries are painted by {@link GeometryPainter}s registered per
+ * geometry class. Painters for {@link GArea}, {@link GText}, {@link GImage}
+ * and {@link GRenderedImage} are installed by default. Colors and opacities
+ * follow {@link ElementData#render2D(org.eclipse.swt.graphics.GC, PanelState)
+ * ElementData.render2D} and texts are measured with {@link TextMetrics}, so
+ * shapes, colors and text positions match the SWT rendering. The pixels are
+ * not guaranteed to match: anti-aliasing, font rasterization and image
+ * scaling differ between Java2D and the native SWT graphics.</p>
+ *
+ * <p>Instances can be used by several threads concurrently, e.g. by the
+ * {@link TileRasterizer}.</p>
+ */
+public class Java2DRenderer
+{
+  /**
+   * Paints one kind of geometry on a Java2D graphics context.
+   *
+   * @param <T>
+   *          The geometry class.
+   */
+  @FunctionalInterface
+  public interface GeometryPainter<T extends AGeometry>
+  {
+    /**
+     * Paints a geometry. The color and composite of the graphics context are
+     * set to the paint color and opacity of the geometry.
+     *
+     * @param g
+     *          The graphics context in LCARS panel coordinates.
+     * @param geometry
+     *          The geometry.
+     */
+    public void paint(Graphics2D g, T geometry);
+  }
+
+  private final ConcurrentHashMap<Class<?>, GeometryPainter<?>> painters
+    = new ConcurrentHashMap<Class<?>, GeometryPainter<?>>();
+
+  /**
+   * Placeholder in {@link #images} for images which failed to load, so that
+   * loading is not retried (and logged) on every frame.
+   */
+  private static final BufferedImage NO_IMAGE
+    = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+
+  /**
+   * Images of {@link GImage}s loaded so far.
+   */
+  private final ConcurrentHashMap<ImageMeta, BufferedImage> images
+    = new ConcurrentHashMap<ImageMeta, BufferedImage>();
+
+  private Color background = Color.BLACK;
+
+  /**
+   * Creates a Java2D renderer with the default geometry painters.
+   */
+  public Java2DRenderer()
+  {
+    setPainter(GArea.class, this::paintArea);
+    setPainter(GText.class, this::paintText);
+    setPainter(GImage.class, this::paintImage);
+
+    // Rendered images are SWT images by contract, register a painter for
+    // subclasses which can render themselves with Java2D
+    setPainter(GRenderedImage.class, (g, geometry) -> {});
+  }
+
+  /**
+   * Registers a geometry painter. The painter is used for the geometry class
+   * and all its subclasses which have no painter of their own.
+   *
+   * @param clazz
+   *          The geometry class.
+   * @param painter
+   *          The painter, <code>null</code> to remove the painter.
+   */
+  public <T extends AGeometry> void setPainter(Class<T> clazz,
+      GeometryPainter<? super T> painter)
+  {
+    if (painter != null)
+      painters.put(clazz, painter);
+    else
+      painters.remove(clazz);
+  }
+
+  /**
+   * Sets the background color (default: black).
+   */
+  public void setBackground(Color background)
+  {
+    this.background = background;
+  }
+
+  /**
+   * Renders a complete frame in the size of the panel.
+   *
+   * @param data
+   *          The panel data, must not be a delta frame.
+   * @return The image.
+   */
+  public BufferedImage render(PanelData data)
+  {
+    checkFrame(data);
+    return render(data, data.panelState.width, data.panelState.height);
+  }
+
+  /**
+   * Renders a complete frame scaled into an image. The aspect ratio of the
+   * panel is retained like on the {@link LcarsComposite}.
+   *
+   * @param data
+   *          The panel data, must not be a delta frame.
+   * @param width
+   *          The width of the image.
+   * @param height
+   *          The height of the image.
+   * @return The image.
+   */
+  public BufferedImage render(PanelData data, int width, int height)
+  {
+    checkFrame(data);
+    BufferedImage image = new BufferedImage(width, height,
+        BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = image.createGraphics();
+    try
+    {
+      g.setColor(background);
+      g.fillRect(0, 0, width, height);
+      g.transform(getTransform(data.panelState, width, height));
+      render(g, data.panelState, data.elementData);
+    }
+    finally
+    {
+      g.dispose();
+    }
+    return image;
+  }
+
+  /**
+   * Renders elements on a graphics context. The background is not erased.
+   *
+   * @param g
+   *          The graphics context in LCARS panel coordinates.
+   * @param panelState
+   *          The panel state.
+   * @param elements
+   *          The elements in painting order.
+   */
+  public void render(Graphics2D g, PanelState panelState, ElementData[] elements)
+  {
+    g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+        RenderingHints.VALUE_ANTIALIAS_ON);
+    g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+        RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+    g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS,
+        RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+    for (ElementData el : elements)
+      renderElement(g, el, panelState);
+  }
+
+  /**
+   * Renders one element on a graphics context.
+   *
+   * @param g
+   *          The graphics context in LCARS panel coordinates.
+   * @param el
+   *          The element, incomplete elements are skipped.
+   * @param panelState
+   *          The panel state.
+   */
+  public void renderElement(Graphics2D g, ElementData el, PanelState panelState)
+  {
+    if (el == null)
+      return;
+    ElementState state = el.getState();
+    List<AGeometry> geos = el.getGeometries();
+    if (state == null || geos == null || !state.isVisible())
+      return;
+
+    // Same colors as ElementData.render2D: everything is painted in the
+    // "background" color of the SWT graphics context
+    final float fgAlpha = (int)(state.getFgAlpha() * 255) / 255f;
+    final float bgAlpha = (int)(state.getBgAlpha(panelState) * 255) / 255f;
+    final Color fgColor = toAwtColor(state.getFgColor());
+    final Color bgColor = toAwtColor(state.getBgColor(panelState));
+
+    for (AGeometry geo : geos)
+    {
+      boolean foreground = geo.isForeground();
+      g.setColor(foreground ? fgColor : bgColor);
+      g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER,
+          foreground ? fgAlpha : bgAlpha));
+      paintGeometry(g, geo);
+    }
+  }
+
+  /**
+   * Returns the transform which scales a panel into an image like the
+   * {@link LcarsComposite} does.
+   */
+  public static AffineTransform getTransform(PanelState panelState, int width,
+      int height)
+  {
+    float pnlw = panelState.width;
+    float pnlh = panelState.height;
+    float scl  = Math.min(width / pnlw, height / pnlh);
+    AffineTransform t = new AffineTransform();
+    t.translate((width - pnlw * scl) / 2, (height - pnlh * scl) / 2);
+    t.scale(scl, scl);
+    return t;
+  }
+
+  // -- Default painters --
+
+  private void paintArea(Graphics2D g, GArea area)
+  {
+    if (area.isOutline())
+    {
+      g.setStroke(new BasicStroke(1));
+      g.draw(area.getShape());
+    }
+    else
+      g.fill(area.getShape());
+  }
+
+  private void paintText(Graphics2D g, GText text)
+  {
+    TextMetrics tm = TextMetrics.get(text.getFontMeta());
+    g.setFont(tm.getAwtFont());
+
+    // SWT draws texts at the top of the line, Java2D at the baseline
+    Point2D.Float pos = text.getPos();
+    g.drawString(text.getText(), pos.x + text.getIndent(),
+        pos.y + text.getDescent() + tm.getLeading() + tm.getAscent());
+  }
+
+  private void paintImage(Graphics2D g, GImage geometry)
+  {
+    if (geometry.meta == null)
+      return;
+    BufferedImage image = images.computeIfAbsent(geometry.meta,
+        (meta) ->
+        {
+          BufferedImage awtImage = meta.getAwtImage();
+          return awtImage != null ? awtImage : NO_IMAGE;
+        });
+    if (image == NO_IMAGE)
+      return;
+    Point pos = geometry.getPos();
+    Dimension size = geometry.getSize();
+    if (size != null)
+      g.drawImage(image, pos.x, pos.y, size.width, size.height, null);
+    else
+      g.drawImage(image, pos.x, pos.y, null);
+  }
+
+  // -- Private methods --
+
+  @SuppressWarnings("unchecked")
+  private void paintGeometry(Graphics2D g, AGeometry geo)
+  {
+    GeometryPainter<AGeometry> painter = null;
+    for (Class<?> c = geo.getClass(); painter == null && c != null; c = c.getSuperclass())
+      painter = (GeometryPainter<AGeometry>)painters.get(c);
+    if (painter != null)
+      painter.paint(g, geo);
+  }
+
+  private static void checkFrame(PanelData data)
+  {
+    if (data == null || data.panelState == null || data.elementData == null)
+      throw new IllegalArgumentException("Incomplete panel data");
+    if (data.delta)
+      throw new IllegalArgumentException("Cannot render delta frames");
+  }
+
+  private static Color toAwtColor(ColorMeta color)
+  {
+    return new Color(color.getRed(), color.getGreen(), color.getBlue());
+  }
+}
+
+// EOF
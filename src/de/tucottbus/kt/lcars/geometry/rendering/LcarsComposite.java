@@ -2,6 +2,14 @@ package de.tucottbus.kt.lcars.geometry.rendering;
 
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.PaintEvent;
@@ -12,13 +20,19 @@ import org.eclipse.swt.graphics.Rectangle;
 import org.eclipse.swt.graphics.Transform;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Display;
-import org.jfree.experimental.swt.SWTUtils;
 
+import de.tucottbus.kt.lcars.IPanel;
 import de.tucottbus.kt.lcars.LCARS;
 import de.tucottbus.kt.lcars.PanelData;
 import de.tucottbus.kt.lcars.PanelState;
 import de.tucottbus.kt.lcars.elements.ElementData;
+import de.tucottbus.kt.lcars.geometry.AGeometry;
+import de.tucottbus.kt.lcars.geometry.GRef;
+import de.tucottbus.kt.lcars.geometry.GeometryStore;
+import de.tucottbus.kt.lcars.jfr.LcarsEvents;
+import de.tucottbus.kt.lcars.jfr.ScreenPaintEvent;
 import de.tucottbus.kt.lcars.logging.Log;
+import de.tucottbus.kt.lcars.util.BlockingBoundedBuffer;
 
 /**
  * This Class organizes the screen updates to relieve the paint process.
@@ -40,10 +54,97 @@ public class LcarsComposite extends Composite implements PaintListener
   protected boolean selectiveRepaint = false;
 
   /**
-   * Context for the next repaint. Contains all element and the region of the
-   * screen that has to be updated.
+   * If <code>true</code>, the rectangles of the dirty region are repainted one
+   * by one in {@link #selectiveRepaint} mode, otherwise their bounding box is
+   * repainted.
    */
-  private FrameData context;
+  protected boolean multiRectRepaint = true;
+
+  /**
+   * If <code>true</code>, {@linkplain ElementData#isStatic() static} elements
+   * are painted once into an offscreen image which is copied to the screen on
+   * repaints.
+   */
+  protected boolean retainStaticLayer = true;
+
+  /**
+   * If <code>true</code>, frames are compiled into a {@link DisplayList} which
+   * is replayed on repaints.
+   */
+  protected boolean useDisplayList = true;
+
+  /**
+   * If <code>true</code>, full repaints are rasterized in parallel tiles by a
+   * {@link TileRasterizer}.
+   */
+  protected boolean tileRendering = false;
+
+  /**
+   * The maximal number of dirty rectangles to be repainted one by one. If the
+   * dirty region consists of more rectangles, the whole panel is repainted.
+   */
+  public static final int MAX_REPAINT_RECTANGLES = 8;
+
+  /**
+   * The maximal fraction of the panel area to be repainted rectangle by
+   * rectangle. If the dirty rectangles cover more, the whole panel is
+   * repainted.
+   */
+  public static final float MAX_REPAINT_COVERAGE = 0.5f;
+
+  /**
+   * The capacity of the update queue. If the queue is full, the receiving
+   * thread applies the queued updates itself.
+   */
+  public static final int UPDATE_QUEUE_CAPACITY = 16;
+
+  /**
+   * The frame for the next repaint, <code>null</code> if there is none. Update
+   * threads publish new frames, the paint process takes the accumulated dirty
+   * region without locking.
+   */
+  private final AtomicReference<Frame> frame = new AtomicReference<Frame>();
+  
+  /**
+   * Serializes the update threads, never held by the paint process.
+   */
+  private final Object updateLock = new Object();
+  
+  /**
+   * Received frames which have not been applied yet.
+   */
+  private final BlockingBoundedBuffer<FrameData> updateQueue
+    = new BlockingBoundedBuffer<FrameData>(UPDATE_QUEUE_CAPACITY, FrameData.class);
+  
+  /**
+   * The number of received frames which were not painted on their own.
+   */
+  private final AtomicLong droppedFrames = new AtomicLong();
+  
+  /**
+   * The geometries received from remote panels by content hash.
+   * 
+   * @see GRef
+   */
+  private final GeometryStore geometryStore = new GeometryStore();
+  
+  /**
+   * The retained layer of static elements, <code>null</code> if there is none.
+   * Only accessed by the paint process.
+   */
+  private StaticLayer staticLayer;
+  
+  /**
+   * The display list of the last painted frame, <code>null</code> if there is
+   * none. Only accessed by the paint process.
+   */
+  private DisplayList displayList;
+  
+  /**
+   * The rasterizer for full repaints, <code>null</code> if not used yet. Only
+   * accessed by the paint process.
+   */
+  private TileRasterizer tileRasterizer;
   
   /**
    * The SWT rendering transform.
@@ -55,6 +156,14 @@ public class LcarsComposite extends Composite implements PaintListener
    */
   private final Display display;
   
+  /**
+   * The number of undisposed composites by display, guarded by itself. The
+   * shared {@linkplain GeometryPathCache path} and {@linkplain
+   * GeometryImageCache image} caches of a display are cleared when its last
+   * composite is disposed.
+   */
+  private static final HashMap<Display,Integer> composites = new HashMap<Display,Integer>();
+  
   /**
    * Creates a new LCARS composite.
    * 
@@ -67,6 +176,11 @@ public class LcarsComposite extends Composite implements PaintListener
     display = parent.getDisplay();
     transform = new Transform(display);
     addPaintListener(this);
+    synchronized (composites)
+    {
+      composites.merge(display, 1, Integer::sum);
+    }
+    addDisposeListener((e) -> releaseCaches());
   }
 
   @Override
@@ -74,6 +188,8 @@ public class LcarsComposite extends Composite implements PaintListener
   {
     if (transform!=null && !transform.isDisposed())
       transform.dispose();
+    disposeStaticLayer();
+    displayList = null;
     super.dispose();
   }
 
@@ -96,6 +212,66 @@ public class LcarsComposite extends Composite implements PaintListener
     this.selectiveRepaint = selectiveRepaint;
   }
 
+  /**
+   * Sets a hint for selective repaints whether the rectangles of the dirty
+   * region are repainted one by one or as their bounding box. Has no effect if
+   * selective repaints are disabled.
+   * 
+   * @param multiRectRepaint
+   *          The new multi-rectangle repaint mode.
+   * @see #setSelectiveRenderingHint(boolean)
+   * @see #MAX_REPAINT_RECTANGLES
+   * @see #MAX_REPAINT_COVERAGE
+   */
+  public void setMultiRectRepaintHint(boolean multiRectRepaint)
+  {
+    this.multiRectRepaint = multiRectRepaint;
+  }
+
+  /**
+   * Sets a hint whether static elements are painted from a retained offscreen
+   * image. The image is rebuilt if a static element is added, changed or
+   * removed, or if the color scheme or the size of the panel or the screen
+   * changes.
+   * 
+   * @param retainStaticLayer
+   *          The new static layer mode.
+   * @see ElementData#isStatic()
+   */
+  public void setStaticLayerHint(boolean retainStaticLayer)
+  {
+    this.retainStaticLayer = retainStaticLayer;
+  }
+
+  /**
+   * Sets a hint whether frames are compiled into a display list which merges
+   * adjacent areas of equal color and minimizes graphics context state
+   * changes.
+   * 
+   * @param useDisplayList
+   *          The new display list mode.
+   */
+  public void setDisplayListHint(boolean useDisplayList)
+  {
+    this.useDisplayList = useDisplayList;
+  }
+
+  /**
+   * Sets a hint whether full repaints are rasterized in software by a pool of
+   * worker threads. The composite is split into tiles which are rendered in
+   * parallel with Java2D and then copied to the screen. This is faster than
+   * painting on the UI thread for large screens with many elements, e.g. on
+   * color scheme changes. Selective repaints are not affected.
+   * 
+   * @param tileRendering
+   *          The new tile rendering mode.
+   * @see TileRasterizer
+   */
+  public void setTileRenderingHint(boolean tileRendering)
+  {
+    this.tileRendering = tileRendering;
+  }
+
   /**
    * Updates the rendering data.
    * 
@@ -106,11 +282,103 @@ public class LcarsComposite extends Composite implements PaintListener
    */
   public void applyUpdate(PanelData data, boolean incremental)
   {
+    applyUpdate(data, incremental, null);
+  }
+  
+  /**
+   * Updates the rendering data. This is equivalent to
+   * {@link #queueUpdate(PanelData, boolean, IPanel) queueUpdate} followed by
+   * {@link #applyQueuedUpdates()}.
+   * 
+   * @param data
+   *          The panel data update.
+   * @param incremental
+   *          If <code>true</code> the update data are incremental.
+   * @param panel
+   *          The panel to fetch missing geometries from, can be 
+   *          <code>null</code>.
+   */
+  public void applyUpdate(PanelData data, boolean incremental, IPanel panel)
+  {
+    queueUpdate(data, incremental, panel);
+    applyQueuedUpdates();
+  }
+  
+  /**
+   * Queues a rendering data update. {@linkplain GRef Geometry references} are
+   * resolved from the geometry store of this composite, missing geometries are
+   * fetched from the panel. The update becomes visible when the queued updates
+   * are {@linkplain #applyQueuedUpdates() applied}.
+   * 
+   * @param data
+   *          The panel data update.
+   * @param incremental
+   *          If <code>true</code> the update data are incremental.
+   * @param panel
+   *          The panel to fetch missing geometries from, can be 
+   *          <code>null</code>.
+   */
+  public void queueUpdate(PanelData data, boolean incremental, IPanel panel)
+  {
+    if (!resolveGeometries(data, panel))
+    {
+      Log.warn("Frame of panel #" + data.panelId 
+          + " dropped, unresolved geometry references");
+      droppedFrames.incrementAndGet();
+      return;
+    }
+    
     FrameData context = FrameData.create(data, incremental, selectiveRepaint);    
-    context.apply(this.context);
-    synchronized (this)
+    if (context == null)
+      return;
+    while (!updateQueue.offer(context))
+      applyQueuedUpdates(); // Queue full, drain it on this thread
+  }
+  
+  /**
+   * Applies all queued updates. Queued frames are collapsed into one frame
+   * which is applied at once.
+   * 
+   * @return <code>true</code> if a new frame is ready to be painted
+   */
+  public boolean applyQueuedUpdates()
+  {
+    FrameData context;
+    synchronized (updateLock)
     {
-      this.context = context;
+      if (updateQueue.isEmpty())
+        return false;
+      FrameData[] frames;
+      try
+      {
+        frames = updateQueue.takeAll();
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+      context = frames[frames.length - 1];
+      context.collapse(Arrays.copyOf(frames, frames.length - 1));
+      droppedFrames.addAndGet(frames.length - 1);
+      
+      Frame pred = frame.get();
+      if (!context.apply(pred != null ? pred.context : null))
+      {
+        // Delta frame without a matching predecessor, wait for the next full frame
+        Log.debug("Delta frame of panel #" + context.getPanelId() + " dropped");
+        droppedFrames.incrementAndGet();
+        return false;
+      }
+      
+      // Publish; retry if the paint process took the dirty region meanwhile
+      Frame next;
+      do
+      {
+        pred = frame.get();
+        next = new Frame(context, pred);
+      }
+      while (!frame.compareAndSet(pred, next));
     }
     
     if (context.isBgChanged())
@@ -120,6 +388,81 @@ public class LcarsComposite extends Composite implements PaintListener
         setBackgroundImage(bg);
       });
     }
+    return true;
+  }
+  
+  /**
+   * Returns the number of received frames waiting to be applied.
+   */
+  public int getQueueDepth()
+  {
+    return updateQueue.size();
+  }
+  
+  /**
+   * Returns the number of received frames which were not painted on their
+   * own, because they were collapsed into a later frame or could not be
+   * applied.
+   */
+  public long getDroppedFrames()
+  {
+    return droppedFrames.get();
+  }
+  
+  /**
+   * Resolves the {@linkplain GRef geometry references} in the panel data.
+   * 
+   * @param data
+   *          The panel data update.
+   * @param panel
+   *          The panel to fetch missing geometries from, can be 
+   *          <code>null</code>.
+   * @return <code>true</code> if all references were resolved
+   */
+  private boolean resolveGeometries(PanelData data, IPanel panel)
+  {
+    if (data == null || data.elementData == null)
+      return true;
+
+    ArrayList<Long> missing = new ArrayList<Long>();
+    for (ElementData ed : data.elementData)
+      if (ed != null)
+        ed.resolveGeometries(geometryStore, missing);
+    if (missing.isEmpty())
+      return true;
+    if (panel == null)
+      return false;
+    
+    // Fetch missing geometries from the panel (cache miss path)
+    long[] hashes = new long[missing.size()];
+    for (int i = 0; i < hashes.length; i++)
+      hashes[i] = missing.get(i);
+    try
+    {
+      AGeometry[] geoms = panel.getGeometries(hashes);
+      for (int i = 0; i < hashes.length && i < geoms.length; i++)
+        if (geoms[i] != null)
+          geometryStore.put(hashes[i], geoms[i]);
+    }
+    catch (RemoteException e)
+    {
+      Log.err("Cannot fetch missing geometries from panel.", e);
+      return false;
+    }
+    
+    missing.clear();
+    for (ElementData ed : data.elementData)
+      if (ed != null)
+        ed.resolveGeometries(geometryStore, missing);
+    return missing.isEmpty();
+  }
+  
+  /**
+   * Returns the store of geometries received from remote panels.
+   */
+  public GeometryStore getGeometryStore()
+  {
+    return geometryStore;
   }
   
   /**
@@ -129,8 +472,10 @@ public class LcarsComposite extends Composite implements PaintListener
   {
     transform.identity();
     
-    if (context!=null)
+    Frame frame = this.frame.get();
+    if (frame!=null)
     {
+      FrameData context = frame.context;
       Rectangle b = getBounds();
       float scrw = b.width;
       float scrh = b.height;
@@ -196,45 +541,113 @@ public class LcarsComposite extends Composite implements PaintListener
 
     Transform transform = updateRenderingTransform();
     gc.setTransform(transform);
-    if (this.context==null)
-      return;
-
-    FrameData context;
-    synchronized (this)
+    Frame frame;
+    do
     {
-      context = this.context.clone();
+      frame = this.frame.get();
+      if (frame==null)
+        return;
     }
+    while (frame.dirty!=null && !this.frame.compareAndSet(frame, new Frame(frame.context)));
+    final FrameData context = frame.context;
+    final DirtyRegion dirty = frame.dirty;
+    final int frames = frame.frames;
+    ScreenPaintEvent event = LcarsEvents.ENABLED ? new ScreenPaintEvent() : null;
+    if (event != null)
+      event.begin();
     
-    // Clipping setup
-    final Rectangle dirtyArea = SWTUtils.toSwtRectangle(context.getDirtyArea().getBounds());
+    // Choose the rectangles to repaint, null for a full repaint
     final Rectangle maxArea = getBounds();
-
-    // Erase background
-    gc.setBackground(getBackground());
-    if (context.getFullRepaint() || DEBUG)
+    List<java.awt.Rectangle> rects = null;
+    if (dirty != null && !dirty.isEmpty() && !context.getFullRepaint())
     {
-      gc.setTransform(null);
-      gc.setClipping((Rectangle)null);
-      gc.fillRectangle(0,0,maxArea.width,maxArea.height);
-      gc.setTransform(transform);
+      long panelPixels = (long)context.getPanelWidth()*context.getPanelHeight();
+      if (!multiRectRepaint)
+        rects = Collections.singletonList(dirty.getBounds());
+      else if (dirty.getRectangles().size() <= MAX_REPAINT_RECTANGLES
+          && dirty.getPixelCount() <= MAX_REPAINT_COVERAGE*panelPixels)
+        rects = dirty.getRectangles();
     }
-    else
-    {
-      gc.setClipping(dirtyArea);
-      gc.fillRectangle(0,0,maxArea.width,maxArea.height);
-    }
-
-    // Draw elements
+    
     PanelState state = context.getPanelState();
+    gc.setBackground(getBackground());
     try
     {
-      for (ElementData el : context.getElementsToPaint())
+      final boolean tiled = tileRendering && rects == null && !DEBUG;
+      final StaticLayer layer = retainStaticLayer && !DEBUG && !tiled
+          ? getStaticLayer(context, maxArea, transform) : null;
+      final DisplayList list = useDisplayList && !tiled
+          ? getDisplayList(context, layer) : null;
+      
+      if (tiled)
       {
-        if (el==null)
-          continue;
-        if (el.serialNo == -1)
-          Log.debug(el.toString());
-        el.render2D(gc, state);
+        // Rasterize all elements in parallel and copy the tiles
+        gc.setTransform(null);
+        gc.setClipping((Rectangle)null);
+        gc.setAlpha(255);
+        if (tileRasterizer == null)
+          tileRasterizer = new TileRasterizer();
+        org.eclipse.swt.graphics.Color bg = getBackground();
+        tileRasterizer.paint(gc, context, maxArea.width, maxArea.height,
+            new java.awt.Color(bg.getRed(), bg.getGreen(), bg.getBlue()));
+      }
+      else if (rects == null || DEBUG)
+      {
+        // Erase background or copy static layer and draw all other elements
+        gc.setTransform(null);
+        gc.setClipping((Rectangle)null);
+        if (layer != null)
+          gc.drawImage(layer.image,0,0);
+        else
+          gc.fillRectangle(0,0,maxArea.width,maxArea.height);
+        gc.setTransform(transform);
+        if (list != null)
+          list.paint(gc, null);
+        else
+          for (ElementData el : context.getElements())
+            if (layer == null || !layer.contains(el))
+              renderElement(gc, el, state);
+      }
+      else
+      {
+        // The elements to paint of the context cover its own dirty region only
+        List<ElementData> elements = frames == 1
+            ? context.getElementsToPaint()
+            : Arrays.asList(context.getElements());
+        java.awt.Rectangle[] bounds = new java.awt.Rectangle[list == null ? elements.size() : 0];
+        for (int i = 0; i < bounds.length; i++)
+          if (elements.get(i) != null)
+            bounds[i] = elements.get(i).getBounds();
+
+        // Erase background or copy static layer and draw the other elements
+        // of each dirty rectangle
+        for (java.awt.Rectangle r : rects)
+        {
+          if (layer != null)
+          {
+            Rectangle d = toDevice(transform, r).intersection(
+                new Rectangle(0,0,maxArea.width,maxArea.height));
+            gc.setTransform(null);
+            gc.setClipping(d);
+            gc.setAlpha(255);
+            gc.drawImage(layer.image,d.x,d.y,d.width,d.height,d.x,d.y,d.width,d.height);
+            gc.setTransform(transform);
+            gc.setClipping(r.x,r.y,r.width,r.height);
+          }
+          else
+          {
+            gc.setClipping(r.x,r.y,r.width,r.height);
+            gc.setBackground(getBackground());
+            gc.setAlpha(255);
+            gc.fillRectangle(r.x,r.y,r.width,r.height);
+          }
+          if (list != null)
+            list.paint(gc, r);
+          for (int i = 0; i < bounds.length; i++)
+            if (bounds[i] != null && bounds[i].intersects(r)
+                && (layer == null || !layer.contains(elements.get(i))))
+              renderElement(gc, elements.get(i), state);
+        }
       }
     } catch (Throwable ex)
     {
@@ -244,28 +657,341 @@ public class LcarsComposite extends Composite implements PaintListener
     // -- DEBUG: Show repainted area -->
     if (DEBUG)
     {
-      if (context.getFullRepaint())
-        gc.setClipping(0,0,context.getPanelWidth(),context.getPanelHeight());
-      else
-        gc.setClipping(dirtyArea);
       int alpha = gc.getAlpha();
       gc.setAlpha(64);
       gc.setBackground(LCARS.getColor(LCARS.CS_REDALERT,LCARS.EC_ELBOLO).getColor());
-      gc.fillRectangle(0,0,context.getPanelWidth(),context.getPanelHeight());
+      if (rects == null)
+      {
+        gc.setClipping(0,0,context.getPanelWidth(),context.getPanelHeight());
+        gc.fillRectangle(0,0,context.getPanelWidth(),context.getPanelHeight());
+      }
+      else
+        for (java.awt.Rectangle r : rects)
+        {
+          gc.setClipping(r.x,r.y,r.width,r.height);
+          gc.fillRectangle(r.x,r.y,r.width,r.height);
+        }
       gc.setAlpha(alpha);
     }
     // <--
+
+    if (event != null && event.shouldCommit())
+    {
+      event.elements = context.getElements().length;
+      event.fullRepaint = rects == null;
+      event.rectangles = rects != null ? rects.size() : 0;
+      event.frames = frames;
+      event.commit();
+    }
+  }
+  
+  /**
+   * Returns the static layer for a frame, rebuilding it if necessary.
+   * 
+   * @param context
+   *          The frame.
+   * @param area
+   *          The bounds of this composite.
+   * @param transform
+   *          The rendering transform.
+   * @return The static layer or <code>null</code> if the frame has no static
+   *         elements.
+   */
+  private StaticLayer getStaticLayer(FrameData context, Rectangle area, Transform transform)
+  {
+    StaticLayer layer = staticLayer;
+    if (layer != null && layer.version == context.getStaticVersion()
+        && layer.width == area.width && layer.height == area.height)
+    {
+      // Non-static elements may have moved over members of the layer
+      if (layer.checked == context || layer.isValidFor(context.getElements()))
+      {
+        layer.checked = context;
+        return layer.members.length > 0 ? layer : null;
+      }
+      if (LCARS.SCREEN_DEBUG)
+        Log.debug("Static layer covered by a non-static element");
+    }
+    disposeStaticLayer();
+    if (area.width <= 0 || area.height <= 0)
+      return null;
+    
+    // Static elements below a non-static element must be painted over it
+    ElementData[] elements = context.getElements();
+    long[] members = new long[elements.length];
+    int n = 0;
+    ArrayList<java.awt.Rectangle> dynamic = new ArrayList<java.awt.Rectangle>();
+    for (ElementData el : elements)
+    {
+      if (el == null)
+        continue;
+      java.awt.Rectangle b = el.getBounds();
+      boolean member = el.isStatic();
+      for (int i = 0; member && i < dynamic.size(); i++)
+        member = !dynamic.get(i).intersects(b);
+      if (member)
+        members[n++] = el.serialNo;
+      else
+        dynamic.add(b);
+    }
+    members = Arrays.copyOf(members, n);
+    Arrays.sort(members);
+
+    Image image = null;
+    if (n > 0)
+    {
+      image = new Image(display, area.width, area.height);
+      GC igc = new GC(image);
+      try
+      {
+        igc.setBackground(getBackground());
+        igc.fillRectangle(0,0,area.width,area.height);
+        igc.setTransform(transform);
+        PanelState state = context.getPanelState();
+        for (ElementData el : elements)
+          if (el != null && Arrays.binarySearch(members, el.serialNo) >= 0)
+            renderElement(igc, el, state);
+      }
+      finally
+      {
+        igc.dispose();
+      }
+    }
+    staticLayer = new StaticLayer(image, members, context.getStaticVersion(),
+        area.width, area.height);
+    if (LCARS.SCREEN_DEBUG)
+      Log.debug("Static layer rebuilt, " + n + " elements");
+    return n > 0 ? staticLayer : null;
+  }
+  
+  /**
+   * Returns the display list for a frame, compiling it if necessary.
+   * 
+   * @param context
+   *          The frame.
+   * @param layer
+   *          The static layer whose elements are not to be compiled, can be
+   *          <code>null</code>.
+   */
+  private DisplayList getDisplayList(FrameData context, StaticLayer layer)
+  {
+    DisplayList list = displayList;
+    if (list == null || list.context != context || list.filterKey != layer)
+    {
+      list = DisplayList.compile(context, layer, layer != null ? layer::contains : null);
+      displayList = list;
+      if (LCARS.SCREEN_DEBUG)
+        Log.debug(list.toString());
+    }
+    return list;
+  }
+  
+  /**
+   * Clears the shared caches of the display if this is its last composite.
+   * Called once when this composite is disposed, also if it is disposed along
+   * with its parent.
+   */
+  private void releaseCaches()
+  {
+    synchronized (composites)
+    {
+      if (composites.merge(display, -1, Integer::sum) > 0)
+        return;
+      composites.remove(display);
+    }
+    GeometryPathCache.clear(display);
+    GeometryImageCache.clear(display);
+  }
+  
+  /**
+   * Disposes of the static layer.
+   */
+  private void disposeStaticLayer()
+  {
+    if (staticLayer != null && staticLayer.image != null 
+        && !staticLayer.image.isDisposed())
+      staticLayer.image.dispose();
+    staticLayer = null;
+  }
+  
+  /**
+   * Converts a rectangle from panel to composite coordinates, rounding
+   * outwards.
+   */
+  private static Rectangle toDevice(Transform transform, java.awt.Rectangle r)
+  {
+    float[] p = new float[] { r.x, r.y, r.x + r.width, r.y + r.height };
+    transform.transform(p);
+    int x0 = (int)Math.floor(p[0]);
+    int y0 = (int)Math.floor(p[1]);
+    return new Rectangle(x0, y0, (int)Math.ceil(p[2]) - x0, (int)Math.ceil(p[3]) - y0);
+  }
+  
+  /**
+   * Renders one element.
+   */
+  private static void renderElement(GC gc, ElementData el, PanelState state)
+  {
+    if (el==null)
+      return;
+    if (el.serialNo == -1)
+      Log.debug(el.toString());
+    el.render2D(gc, state);
   }
   
   /**
    * Clears the painter and fills the screen with the default background color (
    * {@value #DEFAULT_BG_COLOR}).
    */
-  public synchronized void clear()
+  public void clear()
   {
     if (LCARS.SCREEN_DEBUG)
       Log.debug("Renderer cleared");
-    context = null;    
+    synchronized (updateLock)
+    {
+      try
+      {
+        if (!updateQueue.isEmpty())
+          droppedFrames.addAndGet(updateQueue.takeAll().length);
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+      frame.set(null);
+    }
+  }
+
+  // -- Nested classes --
+
+  /**
+   * The static elements of a frame painted into an image of the size of the
+   * composite.
+   */
+  private static final class StaticLayer
+  {
+    /**
+     * The image, <code>null</code> if there are no static elements.
+     */
+    final Image image;
+    
+    /**
+     * The sorted serial numbers of the elements painted into the image.
+     */
+    final long[] members;
+    
+    /**
+     * The {@linkplain FrameData#getStaticVersion() static version} of the
+     * elements.
+     */
+    final long version;
+    
+    /**
+     * The size of the image.
+     */
+    final int width, height;
+    
+    /**
+     * The last frame the layer was found {@linkplain #isValidFor(ElementData[])
+     * valid} for.
+     */
+    FrameData checked;
+    
+    StaticLayer(Image image, long[] members, long version, int width, int height)
+    {
+      this.image   = image;
+      this.members = members;
+      this.version = version;
+      this.width   = width;
+      this.height  = height;
+    }
+    
+    /**
+     * Determines if an element is painted into the image.
+     */
+    boolean contains(ElementData el)
+    {
+      return el != null && Arrays.binarySearch(members, el.serialNo) >= 0;
+    }
+    
+    /**
+     * Determines if the layer can be used for a frame with equal static
+     * elements, i.&nbsp;e. if none of its members is painted after an
+     * intersecting element which is not a member.
+     */
+    boolean isValidFor(ElementData[] elements)
+    {
+      if (members.length == 0)
+        return true;
+      ArrayList<java.awt.Rectangle> others = new ArrayList<java.awt.Rectangle>();
+      for (ElementData el : elements)
+      {
+        if (el == null)
+          continue;
+        java.awt.Rectangle b = el.getBounds();
+        if (!contains(el))
+          others.add(b);
+        else
+          for (int i = 0; i < others.size(); i++)
+            if (others.get(i).intersects(b))
+              return false;
+      }
+      return true;
+    }
+  }
+
+  /**
+   * An immutable hand-off of a frame from the update threads to the paint
+   * process.
+   */
+  private static final class Frame
+  {
+    /**
+     * The applied frame data.
+     */
+    final FrameData context;
+    
+    /**
+     * The accumulated dirty region of all frames applied since the last
+     * repaint, <code>null</code> if there were none.
+     */
+    final DirtyRegion dirty;
+    
+    /**
+     * The number of frames applied since the last repaint.
+     */
+    final int frames;
+    
+    /**
+     * Creates a painted frame.
+     */
+    Frame(FrameData context)
+    {
+      this.context = context;
+      this.dirty   = null;
+      this.frames  = 0;
+    }
+    
+    /**
+     * Creates a frame accumulating the dirty region of its unpainted
+     * predecessor.
+     */
+    Frame(FrameData context, Frame pred)
+    {
+      this.context = context;
+      if (pred == null || pred.dirty == null)
+      {
+        this.dirty  = context.getDirtyRegion();
+        this.frames = 1;
+      }
+      else
+      {
+        DirtyRegion dirty = pred.dirty.clone();
+        dirty.add(context.getDirtyRegion());
+        this.dirty  = dirty;
+        this.frames = pred.frames + 1;
+      }
+    }
   }
 
 }
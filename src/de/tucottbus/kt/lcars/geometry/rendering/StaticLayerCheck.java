@@ -0,0 +1,128 @@
+package de.tucottbus.kt.lcars.geometry.rendering;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+import java.awt.geom.RoundRectangle2D;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+
+import de.tucottbus.kt.lcars.IPanel;
+import de.tucottbus.kt.lcars.LCARS;
+import de.tucottbus.kt.lcars.PanelData;
+import de.tucottbus.kt.lcars.PanelState;
+import de.tucottbus.kt.lcars.elements.ERect;
+import de.tucottbus.kt.lcars.elements.ElementData;
+import de.tucottbus.kt.lcars.geometry.AGeometry;
+import de.tucottbus.kt.lcars.geometry.GArea;
+import de.tucottbus.kt.lcars.swt.ColorMeta;
+
+/**
+ * Checks the {@linkplain FrameData#getStaticVersion() static versions} of
+ * frames: a repeated full frame with freshly created but equal element data
+ * must keep the static version, while changing or removing a static
+ * element must change it. Changes of non-static elements must not. Runs
+ * headless. Exits with status 1 if any check fails.
+ *
+ * <p>Usage: <code>java de.tucottbus.kt.lcars.geometry.rendering.StaticLayerCheck</code></p>
+ */
+public class StaticLayerCheck
+{
+  private static final int COUNT = 20;
+  
+  private static int failures;
+  private static ERect[] rects = new ERect[COUNT];
+
+  public static void main(String[] args) throws Exception
+  {
+    FrameData f1 = frame(createElements(COUNT, -1, -1));
+    f1.apply(null);
+
+    FrameData f2 = frame(createElements(COUNT, -1, -1));
+    f2.apply(f1);
+    check("repeated full frame", f2.getStaticVersion() == f1.getStaticVersion());
+
+    FrameData f3 = frame(createElements(COUNT, 1, -1));
+    f3.apply(f2);
+    check("non-static element changed", f3.getStaticVersion() == f2.getStaticVersion());
+
+    FrameData f4 = frame(createElements(COUNT, 1, 0));
+    f4.apply(f3);
+    check("static element changed", f4.getStaticVersion() != f3.getStaticVersion());
+
+    FrameData f5 = frame(createElements(COUNT - 2, 1, 0));
+    f5.apply(f4);
+    check("static element removed", f5.getStaticVersion() != f4.getStaticVersion());
+
+
+    System.out.println(failures == 0 ? "All checks ok" : failures + " check(s) FAILED");
+    System.exit(failures == 0 ? 0 : 1);
+  }
+
+  // -- Private methods --
+
+  private static void check(String name, boolean ok)
+  {
+    System.out.println(String.format("  %-40s %s", name, ok ? "ok" : "FAILED"));
+    if (!ok)
+      failures++;
+  }
+
+  private static FrameData frame(ElementData[] elements) throws Exception
+  {
+    PanelState state = new PanelState(new Dimension(1920, 1080));
+    return FrameData.create(new PanelData(panel(1), state, elements), false, false);
+  }
+
+  /**
+   * Creates an (unregistered) panel with the given serial number.
+   */
+  private static IPanel panel(int serialNo)
+  {
+    return (IPanel)Proxy.newProxyInstance(IPanel.class.getClassLoader(),
+        new Class<?>[] { IPanel.class }, (proxy, method, args) ->
+        {
+          if (method.getName().equals("serialNo"))
+            return serialNo;
+          throw new UnsupportedOperationException(method.getName());
+        });
+  }
+
+  /**
+   * Creates element data with new instances on every call. The elements keep
+   * their serial numbers. Every even element is static.
+   * 
+   * @param count
+   *          The number of elements.
+   * @param highlighted
+   *          Index of an element to highlight, -1 for none.
+   * @param recolored
+   *          Index of an element to give a custom color, -1 for none.
+   */
+  private static ElementData[] createElements(int count, int highlighted,
+      int recolored)
+  {
+    ElementData[] elements = new ElementData[count];
+    for (int i = 0; i < count; i++)
+    {
+      Rectangle bounds = new Rectangle(20 + (i % 10) * 180, 40 + (i / 10) * 50, 170, 44);
+      int style = LCARS.EC_PRIMARY | (i % 2 == 0 ? LCARS.ES_STATIC : 0);
+      if (rects[i] == null)
+        rects[i] = new ERect(null, bounds.x, bounds.y, bounds.width, bounds.height,
+            style, null);
+      ERect rect = rects[i];
+      ElementData data = new ElementData(rect, bounds, style);
+      ArrayList<AGeometry> geos = new ArrayList<AGeometry>();
+      geos.add(new GArea(new Area(new RoundRectangle2D.Float(bounds.x, bounds.y,
+          bounds.width, bounds.height, 44, 44)), false));
+      data.updateGeometries(geos);
+      data.getState().setHighlighted(i == highlighted);
+      if (i == recolored)
+        data.getState().setColor(new ColorMeta(0x9999FF));
+      elements[i] = data;
+    }
+    return elements;
+  }
+}
+
+// EOF
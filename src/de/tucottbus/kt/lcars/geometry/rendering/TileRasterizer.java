@@ -0,0 +1,253 @@
+package de.tucottbus.kt.lcars.geometry.rendering;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.PaletteData;
+
+import de.tucottbus.kt.lcars.PanelState;
+import de.tucottbus.kt.lcars.elements.ElementData;
+import de.tucottbus.kt.lcars.geometry.AGeometry;
+import de.tucottbus.kt.lcars.geometry.GText;
+
+/**
+ * Rasterizes complete frames in parallel. The composite is split into tiles of
+ * {@link #TILE_SIZE}&times;{@link #TILE_SIZE} pixels which are rendered by a
+ * {@link Java2DRenderer} into int-RGB buffers on a pool of worker threads. Each
+ * tile paints only the elements intersecting it. Finished tiles are blitted
+ * into the SWT graphics context by the calling (UI) thread while the remaining
+ * tiles are still being rendered.
+ */
+class TileRasterizer
+{
+  /**
+   * The width and height of a tile in pixels.
+   */
+  static final int TILE_SIZE = 256;
+
+  /**
+   * The pixel layout of the Java2D <code>TYPE_INT_RGB</code> buffers.
+   */
+  private static final PaletteData PALETTE
+    = new PaletteData(0xFF0000, 0x00FF00, 0x0000FF);
+
+  /**
+   * The worker pool shared by all rasterizers, created on first use.
+   */
+  private static ExecutorService pool;
+
+  private final Java2DRenderer renderer = new Java2DRenderer();
+
+  /**
+   * Rasterizes a frame and draws it into a graphics context. The transform and
+   * clipping of the graphics context must be reset.
+   *
+   * @param gc
+   *          The graphics context of the composite.
+   * @param context
+   *          The frame.
+   * @param width
+   *          The width of the composite.
+   * @param height
+   *          The height of the composite.
+   * @param background
+   *          The background color.
+   */
+  void paint(GC gc, FrameData context, int width, int height, Color background)
+  {
+    if (width <= 0 || height <= 0)
+      return;
+    final PanelState state = context.getPanelState();
+    final ElementData[] elements = context.getElements();
+    final Rectangle[] bounds = new Rectangle[elements.length];
+    for (int i = 0; i < elements.length; i++)
+      if (elements[i] != null)
+        bounds[i] = getPaintedBounds(elements[i]);
+
+    final AffineTransform transform = Java2DRenderer.getTransform(state, width,
+        height);
+    final AffineTransform inverse;
+    try
+    {
+      inverse = transform.createInverse();
+    }
+    catch (NoninvertibleTransformException e)
+    {
+      // Panel of size zero, nothing to paint
+      return;
+    }
+
+    CompletionService<Tile> tiles = new ExecutorCompletionService<Tile>(getPool());
+    int n = 0;
+    for (int y = 0; y < height; y += TILE_SIZE)
+      for (int x = 0; x < width; x += TILE_SIZE)
+      {
+        final Rectangle device = new Rectangle(x, y,
+            Math.min(TILE_SIZE, width - x), Math.min(TILE_SIZE, height - y));
+        tiles.submit(() -> rasterize(device, transform, inverse, state,
+            elements, bounds, background));
+        n++;
+      }
+
+    try
+    {
+      for (int i = 0; i < n; i++)
+      {
+        Tile tile = tiles.take().get();
+        Image image = new Image(gc.getDevice(), tile.data);
+        try
+        {
+          gc.drawImage(image, tile.x, tile.y);
+        }
+        finally
+        {
+          image.dispose();
+        }
+      }
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    }
+    catch (ExecutionException e)
+    {
+      throw new IllegalStateException("Tile rasterization failed", e.getCause());
+    }
+  }
+
+  // -- Private methods --
+
+  /**
+   * Returns the extent an element may paint to. Unlike
+   * {@link ElementData#getBounds()} it includes the indent and the descent of
+   * texts, which are drawn outside their bounds.
+   *
+   * @param element
+   *          The element.
+   */
+  private static Rectangle getPaintedBounds(ElementData element)
+  {
+    Rectangle bounds = element.getBounds();
+    List<AGeometry> geometries = element.getGeometries();
+    if (geometries != null)
+      for (AGeometry geom : geometries)
+        if (geom instanceof GText)
+        {
+          GText text = (GText)geom;
+          Rectangle b = text.getBounds();
+          b.translate(text.getIndent(), text.getDescent());
+          bounds = bounds.union(b);
+        }
+    return bounds;
+  }
+
+  /**
+   * Renders one tile.
+   *
+   * @param device
+   *          The tile in composite coordinates.
+   * @param transform
+   *          The transform from panel to composite coordinates.
+   * @param inverse
+   *          The inverse of <code>transform</code>.
+   * @param state
+   *          The panel state.
+   * @param elements
+   *          The elements of the frame.
+   * @param bounds
+   *          The bounds of the elements in panel coordinates.
+   * @param background
+   *          The background color.
+   * @return The tile.
+   */
+  private Tile rasterize(Rectangle device, AffineTransform transform,
+      AffineTransform inverse, PanelState state, ElementData[] elements,
+      Rectangle[] bounds, Color background)
+  {
+    // Grow by one pixel to include anti-aliased edges of neighboring elements
+    Rectangle clip = inverse.createTransformedShape(device).getBounds();
+    clip.grow(1, 1);
+    ArrayList<ElementData> visible = new ArrayList<ElementData>();
+    for (int i = 0; i < elements.length; i++)
+      if (bounds[i] != null && bounds[i].intersects(clip))
+        visible.add(elements[i]);
+
+    BufferedImage image = new BufferedImage(device.width, device.height,
+        BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = image.createGraphics();
+    try
+    {
+      g.setColor(background);
+      g.fillRect(0, 0, device.width, device.height);
+      g.translate(-device.x, -device.y);
+      g.transform(transform);
+      renderer.render(g, state, visible.toArray(new ElementData[visible.size()]));
+    }
+    finally
+    {
+      g.dispose();
+    }
+
+    int[] pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+    ImageData data = new ImageData(device.width, device.height, 32, PALETTE);
+    for (int row = 0; row < device.height; row++)
+      data.setPixels(0, row, device.width, pixels, row * device.width);
+    return new Tile(device.x, device.y, data);
+  }
+
+  /**
+   * Returns the worker pool, creating it if necessary.
+   */
+  private static synchronized ExecutorService getPool()
+  {
+    if (pool == null)
+    {
+      final AtomicInteger count = new AtomicInteger();
+      pool = Executors.newFixedThreadPool(
+          Runtime.getRuntime().availableProcessors(), (r) ->
+          {
+            Thread thread = new Thread(r, "TileRasterizer-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          });
+    }
+    return pool;
+  }
+
+  // -- Nested classes --
+
+  /**
+   * A rendered tile.
+   */
+  private static final class Tile
+  {
+    final int x;
+    final int y;
+    final ImageData data;
+
+    Tile(int x, int y, ImageData data)
+    {
+      this.x    = x;
+      this.y    = y;
+      this.data = data;
+    }
+  }
+}
+
+// EOF
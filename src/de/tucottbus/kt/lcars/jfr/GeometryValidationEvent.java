@@ -0,0 +1,38 @@
+package de.tucottbus.kt.lcars.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Emitted when the geometries of an element are recomputed. Only
+ * recomputations taking longer than the threshold (default: 100 &micro;s) are
+ * recorded.
+ * 
+ * @see LcarsEvents
+ */
+@Name("de.tucottbus.kt.lcars.GeometryValidation")
+@Label("Geometry Validation")
+@Category({ "LCARS", "Panel" })
+@Description("Recomputing the geometries of an element")
+@Threshold("100 us")
+@StackTrace(false)
+public class GeometryValidationEvent extends jdk.jfr.Event
+{
+  @Label("Panel Id")
+  public int panelId;
+
+  @Label("Element Id")
+  public long elementId;
+
+  @Label("Element Class")
+  public String elementClass;
+
+  @Label("Geometries")
+  public int geometries;
+}
+
+// EOF
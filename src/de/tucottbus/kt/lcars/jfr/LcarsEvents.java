@@ -0,0 +1,52 @@
+package de.tucottbus.kt.lcars.jfr;
+
+/**
+ * Availability of the LCARS flight recorder events. Java runtimes before
+ * 8u262 lack the <code>jdk.jfr</code> API. Code emitting events must therefore
+ * guard every use of an event class by {@link #ENABLED}:
+ * 
+ * <pre>
+ * PanelUpdateEvent event = LcarsEvents.ENABLED ? new PanelUpdateEvent() : null;
+ * if (event != null)
+ *   event.begin();
+ * ...
+ * if (event != null &amp;&amp; event.shouldCommit())
+ * {
+ *   event.panelId = ...;
+ *   event.commit();
+ * }</pre>
+ * 
+ * <p>If no recording is running, {@link jdk.jfr.Event#shouldCommit()} returns
+ * <code>false</code> and the just-in-time compiler eliminates the event
+ * object.</p>
+ */
+public final class LcarsEvents
+{
+  /**
+   * <code>true</code> if the flight recorder API is available and events are
+   * not disabled by the system property
+   * <code>de.tucottbus.kt.lcars.jfr=false</code>.
+   */
+  public static final boolean ENABLED = isAvailable();
+
+  private LcarsEvents()
+  {
+  }
+
+  private static boolean isAvailable()
+  {
+    if ("false".equals(System.getProperty("de.tucottbus.kt.lcars.jfr")))
+      return false;
+    try
+    {
+      Class.forName("jdk.jfr.Event");
+      return true;
+    }
+    catch (ClassNotFoundException | LinkageError e)
+    {
+      return false;
+    }
+  }
+}
+
+// EOF
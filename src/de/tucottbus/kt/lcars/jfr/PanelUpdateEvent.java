@@ -0,0 +1,42 @@
+package de.tucottbus.kt.lcars.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted by the panel clock for each screen update: validating the geometries
+ * and taking the snapshot of the panel.
+ * 
+ * @see LcarsEvents
+ */
+@Name("de.tucottbus.kt.lcars.PanelUpdate")
+@Label("Panel Update")
+@Category({ "LCARS", "Panel" })
+@Description("Validating the geometries and taking a snapshot of a panel")
+@StackTrace(false)
+public class PanelUpdateEvent extends jdk.jfr.Event
+{
+  @Label("Panel Id")
+  public int panelId;
+
+  @Label("Panel Class")
+  public String panelClass;
+
+  @Label("Incremental")
+  public boolean incremental;
+
+  @Label("Remote Screen")
+  public boolean remote;
+
+  @Label("Elements")
+  @Description("Number of elements in the update")
+  public int elements;
+
+  @Label("Removed Elements")
+  public int removedElements;
+}
+
+// EOF
@@ -0,0 +1,37 @@
+package de.tucottbus.kt.lcars.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted when a screen adapter receives a screen update from a remote panel.
+ * 
+ * @see LcarsEvents
+ */
+@Name("de.tucottbus.kt.lcars.RemoteUpdate")
+@Label("Remote Update")
+@Category({ "LCARS", "Network" })
+@Description("Receiving a screen update from a remote panel")
+@StackTrace(false)
+public class RemoteUpdateEvent extends jdk.jfr.Event
+{
+  @Label("Panel Id")
+  public long panelId;
+
+  @Label("Incremental")
+  public boolean incremental;
+
+  @Label("Elements")
+  public int elements;
+
+  @Label("Size")
+  @Description("Size of the encoded update, -1 if unknown")
+  @DataAmount
+  public int bytes;
+}
+
+// EOF
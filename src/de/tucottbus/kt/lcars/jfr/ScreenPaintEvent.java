@@ -0,0 +1,37 @@
+package de.tucottbus.kt.lcars.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted when a screen is painted.
+ * 
+ * @see LcarsEvents
+ */
+@Name("de.tucottbus.kt.lcars.ScreenPaint")
+@Label("Screen Paint")
+@Category({ "LCARS", "Screen" })
+@Description("Painting the LCARS composite of a screen")
+@StackTrace(false)
+public class ScreenPaintEvent extends jdk.jfr.Event
+{
+  @Label("Elements")
+  @Description("Number of elements of the painted frame")
+  public int elements;
+
+  @Label("Full Repaint")
+  public boolean fullRepaint;
+
+  @Label("Dirty Rectangles")
+  @Description("Number of repainted rectangles, 0 for full repaints")
+  public int rectangles;
+
+  @Label("Frames")
+  @Description("Number of received frames painted at once")
+  public int frames;
+}
+
+// EOF
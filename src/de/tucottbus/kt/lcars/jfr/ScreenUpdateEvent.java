@@ -0,0 +1,35 @@
+package de.tucottbus.kt.lcars.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted when a screen queues a screen update for painting.
+ * 
+ * @see LcarsEvents
+ */
+@Name("de.tucottbus.kt.lcars.ScreenUpdate")
+@Label("Screen Update")
+@Category({ "LCARS", "Screen" })
+@Description("Queuing a screen update for painting")
+@StackTrace(false)
+public class ScreenUpdateEvent extends jdk.jfr.Event
+{
+  @Label("Panel Id")
+  public long panelId;
+
+  @Label("Incremental")
+  public boolean incremental;
+
+  @Label("Elements")
+  public int elements;
+
+  @Label("Queue Depth")
+  @Description("Number of updates waiting to be applied")
+  public int queueDepth;
+}
+
+// EOF
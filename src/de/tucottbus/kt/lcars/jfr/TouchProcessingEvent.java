@@ -0,0 +1,29 @@
+package de.tucottbus.kt.lcars.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted when a panel processes touch events, including the event handlers
+ * of the touched elements.
+ * 
+ * @see LcarsEvents
+ */
+@Name("de.tucottbus.kt.lcars.TouchProcessing")
+@Label("Touch Processing")
+@Category({ "LCARS", "Panel" })
+@Description("Processing touch events by a panel")
+@StackTrace(false)
+public class TouchProcessingEvent extends jdk.jfr.Event
+{
+  @Label("Panel Id")
+  public int panelId;
+
+  @Label("Touch Events")
+  public int events;
+}
+
+// EOF
@@ -0,0 +1,10 @@
+/**
+ * Java Flight Recorder events of the LCARS frame production, screen updates
+ * and touch processing. The events are emitted only if the Java runtime
+ * provides the <code>jdk.jfr</code> API (see {@link
+ * de.tucottbus.kt.lcars.jfr.LcarsEvents#ENABLED}) and cost next to nothing if
+ * no recording is running.
+ */
+package de.tucottbus.kt.lcars.jfr;
+
+// EOF
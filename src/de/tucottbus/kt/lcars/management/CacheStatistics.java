@@ -0,0 +1,68 @@
+package de.tucottbus.kt.lcars.management;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Immutable statistics of a cache, reported by management beans.
+ */
+public class CacheStatistics
+{
+  private final long size;
+  private final long bytes;
+  private final long hits;
+  private final long misses;
+  private final long evictions;
+
+  /**
+   * Creates cache statistics.
+   *
+   * @param size
+   *          The number of entries.
+   * @param bytes
+   *          The size of the entries in bytes, -1 if unknown.
+   * @param hits
+   *          The number of successful look-ups.
+   * @param misses
+   *          The number of failed look-ups.
+   * @param evictions
+   *          The number of entries removed to keep the cache in its bounds,
+   *          -1 if unknown.
+   */
+  @ConstructorProperties({ "size", "bytes", "hits", "misses", "evictions" })
+  public CacheStatistics(long size, long bytes, long hits, long misses,
+      long evictions)
+  {
+    this.size      = size;
+    this.bytes     = bytes;
+    this.hits      = hits;
+    this.misses    = misses;
+    this.evictions = evictions;
+  }
+
+  public long getSize()
+  {
+    return size;
+  }
+
+  public long getBytes()
+  {
+    return bytes;
+  }
+
+  public long getHits()
+  {
+    return hits;
+  }
+
+  public long getMisses()
+  {
+    return misses;
+  }
+
+  public long getEvictions()
+  {
+    return evictions;
+  }
+}
+
+// EOF
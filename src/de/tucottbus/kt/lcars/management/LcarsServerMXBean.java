@@ -0,0 +1,38 @@
+package de.tucottbus.kt.lcars.management;
+
+import de.tucottbus.kt.lcars.net.LcarsServer;
+
+/**
+ * Management interface of the {@linkplain LcarsServer LCARS panel server}.
+ */
+public interface LcarsServerMXBean
+{
+  /**
+   * Returns the RMI name of the server.
+   */
+  public String getRmiName();
+
+  /**
+   * Returns the number of served panel adapters.
+   */
+  public int getPanelAdapterCount();
+
+  /**
+   * Returns the keys (<code>screenHostName.screenID</code>) of the served
+   * panel adapters.
+   */
+  public String[] getPanelAdapters();
+
+  /**
+   * Returns the number of served panel adapters connected to their screen.
+   */
+  public int getConnectedCount();
+
+  /**
+   * Makes the next screen update of all served panels a full (key frame)
+   * update.
+   */
+  public void forceKeyframes();
+}
+
+// EOF
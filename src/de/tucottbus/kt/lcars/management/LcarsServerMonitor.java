@@ -0,0 +1,96 @@
+package de.tucottbus.kt.lcars.management;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.management.ObjectName;
+
+import de.tucottbus.kt.lcars.Panel;
+import de.tucottbus.kt.lcars.net.LcarsServer;
+import de.tucottbus.kt.lcars.net.NetUtils;
+import de.tucottbus.kt.lcars.net.RmiPanelAdapter;
+
+/**
+ * Management bean of the {@linkplain LcarsServer LCARS panel server}.
+ * Registered while the server is running.
+ */
+public class LcarsServerMonitor implements LcarsServerMXBean
+{
+  private ObjectName objectName;
+
+  /**
+   * Registers this bean at the platform MBean server.
+   */
+  public synchronized void register()
+  {
+    if (objectName == null)
+      objectName = MBeans.register(this, "LcarsServer", NetUtils.getRmiName());
+  }
+
+  /**
+   * Unregisters this bean from the platform MBean server.
+   */
+  public synchronized void unregister()
+  {
+    MBeans.unregister(objectName);
+    objectName = null;
+  }
+
+  @Override
+  public String getRmiName()
+  {
+    return NetUtils.getRmiName();
+  }
+
+  @Override
+  public int getPanelAdapterCount()
+  {
+    return getAdapters().size();
+  }
+
+  @Override
+  public String[] getPanelAdapters()
+  {
+    return getAdapters().keySet().toArray(new String[0]);
+  }
+
+  @Override
+  public int getConnectedCount()
+  {
+    int n = 0;
+    for (RmiPanelAdapter rpa : getAdapters().values())
+      if (rpa.isConnected())
+        n++;
+    return n;
+  }
+
+  @Override
+  public void forceKeyframes()
+  {
+    for (RmiPanelAdapter rpa : getAdapters().values())
+    {
+      Panel panel = rpa.getPanel();
+      if (panel != null)
+        panel.forceFullUpdate();
+    }
+  }
+
+  // -- Private methods --
+
+  /**
+   * Returns a copy of the map of served panel adapters.
+   */
+  private static Map<String, RmiPanelAdapter> getAdapters()
+  {
+    HashMap<String, RmiPanelAdapter> adapters = LcarsServer.getPanelAdapters();
+    if (adapters == null)
+      return new HashMap<String, RmiPanelAdapter>();
+    synchronized (adapters)
+    {
+      return new HashMap<String, RmiPanelAdapter>(adapters);
+    }
+  }
+}
+
+// EOF
@@ -0,0 +1,108 @@
+package de.tucottbus.kt.lcars.management;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import de.tucottbus.kt.lcars.logging.Log;
+import de.tucottbus.kt.lcars.util.FrameTimings;
+import de.tucottbus.kt.lcars.util.LatencyHistogram;
+
+/**
+ * Registers the LCARS management beans at the platform MBean server. All beans
+ * are registered in the domain {@value #DOMAIN} with the keys
+ * <code>type</code> and <code>name</code>, e.g.
+ * <code>de.tucottbus.kt.lcars:type=Panel,name="MainPanel@3"</code>.
+ */
+public final class MBeans
+{
+  /**
+   * The domain of the LCARS management beans.
+   */
+  public static final String DOMAIN = "de.tucottbus.kt.lcars";
+
+  private MBeans()
+  {
+  }
+
+  /**
+   * Registers a management bean. Failures are logged and otherwise ignored.
+   *
+   * @param mbean
+   *          The bean.
+   * @param type
+   *          The type key of the object name.
+   * @param name
+   *          The name key of the object name.
+   * @return The object name or <code>null</code> if the bean was not
+   *         registered.
+   */
+  public static ObjectName register(Object mbean, String type, String name)
+  {
+    try
+    {
+      ObjectName objectName = new ObjectName(DOMAIN + ":type=" + type
+          + ",name=" + ObjectName.quote(name));
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      if (server.isRegistered(objectName))
+        server.unregisterMBean(objectName);
+      server.registerMBean(mbean, objectName);
+      return objectName;
+    }
+    catch (Exception e)
+    {
+      Log.warn("Cannot register management bean " + type + " " + name + ": "
+          + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Unregisters a management bean. Failures are logged and otherwise ignored.
+   *
+   * @param objectName
+   *          The object name returned by
+   *          {@link #register(Object, String, String)}, can be
+   *          <code>null</code>.
+   */
+  public static void unregister(ObjectName objectName)
+  {
+    if (objectName == null)
+      return;
+    try
+    {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      if (server.isRegistered(objectName))
+        server.unregisterMBean(objectName);
+    }
+    catch (Exception e)
+    {
+      Log.warn("Cannot unregister management bean " + objectName + ": "
+          + e.getMessage());
+    }
+  }
+
+  /**
+   * Converts frame timings into a map from phase names to statistics.
+   *
+   * @param timings
+   *          The frame timings.
+   * @return The statistics of the phases recorded in the last period.
+   */
+  static Map<String, LatencyHistogram.Snapshot> toMap(FrameTimings.Snapshot timings)
+  {
+    Map<String, LatencyHistogram.Snapshot> map
+      = new LinkedHashMap<String, LatencyHistogram.Snapshot>();
+    if (timings == null)
+      return map;
+    for (FrameTimings.Phase phase : FrameTimings.Phase.values())
+      if (timings.get(phase).getCount() > 0)
+        map.put(phase.name().toLowerCase(), timings.get(phase));
+    return map;
+  }
+}
+
+// EOF
@@ -0,0 +1,86 @@
+package de.tucottbus.kt.lcars.management;
+
+import java.util.Map;
+
+import de.tucottbus.kt.lcars.Panel;
+import de.tucottbus.kt.lcars.util.LatencyHistogram;
+
+/**
+ * Management interface of a running {@linkplain Panel LCARS panel}.
+ */
+public interface PanelMXBean
+{
+  /**
+   * Returns the class name of the panel.
+   */
+  public String getPanelClass();
+
+  /**
+   * Returns the title of the panel.
+   */
+  public String getTitle();
+
+  /**
+   * Returns the serial number of the panel.
+   */
+  public int getSerialNo();
+
+  /**
+   * Determines if the panel is running.
+   */
+  public boolean isRunning();
+
+  /**
+   * Determines if the panel is displayed on a remote screen.
+   */
+  public boolean isRemote();
+
+  /**
+   * Returns the number of GUI elements of the panel.
+   */
+  public int getElementCount();
+
+  /**
+   * Returns the number of screen updates in the last second.
+   */
+  public int getFrameRate();
+
+  /**
+   * Returns the number of frames transmitted to the screen.
+   */
+  public long getFrameCount();
+
+  /**
+   * Returns the number of frames waiting for encoding or transmission.
+   */
+  public int getQueueDepth();
+
+  /**
+   * Returns the total size of the encoded screen updates in bytes.
+   */
+  public long getUpdateBytes();
+
+  /**
+   * Returns the moving average of the size of an encoded screen update in
+   * bytes.
+   */
+  public double getAverageUpdateSize();
+
+  /**
+   * Returns the latency statistics of the frame phases in the last second by
+   * phase name.
+   */
+  public Map<String, LatencyHistogram.Snapshot> getFrameTimings();
+
+  /**
+   * Makes the next screen update a full (key frame) update.
+   */
+  public void forceKeyframe();
+
+  /**
+   * Returns a description of each GUI element of the panel.
+   */
+  public String[] dumpElements();
+}
+
+// EOF
@@ -0,0 +1,155 @@
+package de.tucottbus.kt.lcars.management;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Map;
+
+import javax.management.ObjectName;
+
+import de.tucottbus.kt.lcars.FramePipeline;
+import de.tucottbus.kt.lcars.Panel;
+import de.tucottbus.kt.lcars.Screen;
+import de.tucottbus.kt.lcars.elements.EElement;
+import de.tucottbus.kt.lcars.util.LatencyHistogram;
+
+/**
+ * Management bean of a {@linkplain Panel LCARS panel}. Registered while the
+ * panel is running.
+ */
+public class PanelMonitor implements PanelMXBean
+{
+  private final Panel panel;
+  private ObjectName objectName;
+
+  /**
+   * Creates a management bean for a panel.
+   *
+   * @param panel
+   *          The panel.
+   */
+  public PanelMonitor(Panel panel)
+  {
+    this.panel = panel;
+  }
+
+  /**
+   * Registers this bean at the platform MBean server.
+   */
+  public synchronized void register()
+  {
+    if (objectName == null)
+      objectName = MBeans.register(this, "Panel",
+          panel.getClass().getSimpleName() + "@" + panel.serialNo);
+  }
+
+  /**
+   * Unregisters this bean from the platform MBean server.
+   */
+  public synchronized void unregister()
+  {
+    MBeans.unregister(objectName);
+    objectName = null;
+  }
+
+  @Override
+  public String getPanelClass()
+  {
+    return panel.getClass().getName();
+  }
+
+  @Override
+  public String getTitle()
+  {
+    return panel.getTitle();
+  }
+
+  @Override
+  public int getSerialNo()
+  {
+    return panel.serialNo;
+  }
+
+  @Override
+  public boolean isRunning()
+  {
+    return panel.isRunning();
+  }
+
+  @Override
+  public boolean isRemote()
+  {
+    return panel.getScreen() != null && !(panel.getScreen() instanceof Screen);
+  }
+
+  @Override
+  public int getElementCount()
+  {
+    return panel.getElements().size();
+  }
+
+  @Override
+  public int getFrameRate()
+  {
+    return panel.getLoadStatistics().getEventsPerPeriod();
+  }
+
+  @Override
+  public long getFrameCount()
+  {
+    FramePipeline pipeline = panel.getFramePipeline();
+    return pipeline != null ? pipeline.getFrameCount() : 0;
+  }
+
+  @Override
+  public int getQueueDepth()
+  {
+    FramePipeline pipeline = panel.getFramePipeline();
+    return pipeline != null ? pipeline.getQueueDepth() : 0;
+  }
+
+  @Override
+  public long getUpdateBytes()
+  {
+    FramePipeline pipeline = panel.getFramePipeline();
+    return pipeline != null ? pipeline.getUpdateBytes() : 0;
+  }
+
+  @Override
+  public double getAverageUpdateSize()
+  {
+    FramePipeline pipeline = panel.getFramePipeline();
+    return pipeline != null ? pipeline.getAverageUpdateSize() : 0;
+  }
+
+  @Override
+  public Map<String, LatencyHistogram.Snapshot> getFrameTimings()
+  {
+    return MBeans.toMap(panel.getFrameTimings().getSnapshot());
+  }
+
+  @Override
+  public void forceKeyframe()
+  {
+    panel.forceFullUpdate();
+  }
+
+  @Override
+  public String[] dumpElements()
+  {
+    ArrayList<String> infos = new ArrayList<String>();
+    for (EElement el : panel.getElements())
+      try
+      {
+        String info = panel.getElementInfo((int)el.getSerialNo());
+        if (info != null)
+          infos.add(info);
+      }
+      catch (RemoteException e)
+      {
+        // Local call, does not happen
+      }
+    return infos.toArray(new String[infos.size()]);
+  }
+}
+
+// EOF
@@ -0,0 +1,69 @@
+package de.tucottbus.kt.lcars.management;
+
+import java.util.Map;
+
+import de.tucottbus.kt.lcars.net.RemoteCallMonitor;
+import de.tucottbus.kt.lcars.net.RmiAdapter;
+
+/**
+ * Management interface of an {@linkplain RmiAdapter RMI panel or screen
+ * adapter}.
+ */
+public interface RmiAdapterMXBean
+{
+  /**
+   * Returns the RMI name of the adapter.
+   */
+  public String getRmiName();
+
+  /**
+   * Returns the name of the host serving the peer adapter.
+   */
+  public String getPeerHostName();
+
+  /**
+   * Determines if the adapter is connected to its peer.
+   */
+  public boolean isConnected();
+
+  /**
+   * Returns the last message of the connection, <code>null</code> if there is
+   * none.
+   */
+  public String getServerMessage();
+
+  /**
+   * Returns the class name of the panel wrapped by a panel adapter,
+   * <code>null</code> for screen adapters.
+   */
+  public String getPanelClass();
+
+  /**
+   * Returns the average size of a screen update passing the adapter in bytes.
+   */
+  public double getAverageUpdateSize();
+
+  /**
+   * Returns the total number of bytes received through the RMI connections
+   * accepted by this virtual machine (all adapters).
+   */
+  public long getRmiBytesReceived();
+
+  /**
+   * Returns the total number of bytes sent through the RMI connections
+   * accepted by this virtual machine (all adapters).
+   */
+  public long getRmiBytesSent();
+
+  /**
+   * Returns the statistics of the calls to the peer by method name.
+   */
+  public Map<String, RemoteCallMonitor.CallStatistics> getRemoteCalls();
+
+  /**
+   * Resets the statistics of the calls to the peer.
+   */
+  public void resetRemoteCalls();
+}
+
+// EOF
@@ -0,0 +1,123 @@
+package de.tucottbus.kt.lcars.management;
+
+import java.util.Map;
+
+import javax.management.ObjectName;
+
+import de.tucottbus.kt.lcars.FramePipeline;
+import de.tucottbus.kt.lcars.Panel;
+import de.tucottbus.kt.lcars.net.CountingSocketFactory;
+import de.tucottbus.kt.lcars.net.RemoteCallMonitor;
+import de.tucottbus.kt.lcars.net.RmiAdapter;
+import de.tucottbus.kt.lcars.net.RmiPanelAdapter;
+import de.tucottbus.kt.lcars.net.RmiScreenAdapter;
+
+/**
+ * Management bean of an {@linkplain RmiAdapter RMI panel or screen adapter}.
+ * Registered while the adapter is not shut down.
+ */
+public class RmiAdapterMonitor implements RmiAdapterMXBean
+{
+  private final RmiAdapter adapter;
+  private ObjectName objectName;
+
+  /**
+   * Creates a management bean for an RMI adapter.
+   *
+   * @param adapter
+   *          The adapter.
+   */
+  public RmiAdapterMonitor(RmiAdapter adapter)
+  {
+    this.adapter = adapter;
+  }
+
+  /**
+   * Registers this bean at the platform MBean server.
+   */
+  public synchronized void register()
+  {
+    if (objectName == null)
+      objectName = MBeans.register(this,
+          adapter instanceof RmiPanelAdapter ? "RmiPanelAdapter" : "RmiScreenAdapter",
+          adapter.getRmiName());
+  }
+
+  /**
+   * Unregisters this bean from the platform MBean server.
+   */
+  public synchronized void unregister()
+  {
+    MBeans.unregister(objectName);
+    objectName = null;
+  }
+
+  @Override
+  public String getRmiName()
+  {
+    return adapter.getRmiName();
+  }
+
+  @Override
+  public String getPeerHostName()
+  {
+    return adapter.getPeerHostName();
+  }
+
+  @Override
+  public boolean isConnected()
+  {
+    return adapter.isConnected();
+  }
+
+  @Override
+  public String getServerMessage()
+  {
+    return adapter.getServerMsg();
+  }
+
+  @Override
+  public String getPanelClass()
+  {
+    if (!(adapter instanceof RmiPanelAdapter))
+      return null;
+    Class<?> clazz = ((RmiPanelAdapter)adapter).getPanelClass();
+    return clazz != null ? clazz.getName() : null;
+  }
+
+  @Override
+  public double getAverageUpdateSize()
+  {
+    if (adapter instanceof RmiScreenAdapter)
+      return ((RmiScreenAdapter)adapter).getMemStat();
+    Panel panel = ((RmiPanelAdapter)adapter).getPanel();
+    FramePipeline pipeline = panel != null ? panel.getFramePipeline() : null;
+    return pipeline != null ? pipeline.getAverageUpdateSize() : 0;
+  }
+
+  @Override
+  public long getRmiBytesReceived()
+  {
+    return CountingSocketFactory.getBytesReceived();
+  }
+
+  @Override
+  public long getRmiBytesSent()
+  {
+    return CountingSocketFactory.getBytesSent();
+  }
+
+  @Override
+  public Map<String, RemoteCallMonitor.CallStatistics> getRemoteCalls()
+  {
+    return adapter.getCallMonitor().getStatistics();
+  }
+
+  @Override
+  public void resetRemoteCalls()
+  {
+    adapter.getCallMonitor().reset();
+  }
+}
+
+// EOF
@@ -0,0 +1,52 @@
+package de.tucottbus.kt.lcars.management;
+
+import java.util.Map;
+
+import de.tucottbus.kt.lcars.Screen;
+import de.tucottbus.kt.lcars.util.LatencyHistogram;
+
+/**
+ * Management interface of an {@linkplain Screen LCARS screen}.
+ */
+public interface ScreenMXBean
+{
+  /**
+   * Returns the class name of the displayed panel, <code>null</code> if there
+   * is none.
+   */
+  public String getPanelClass();
+
+  /**
+   * Returns the number of repaints in the last second.
+   */
+  public int getFrameRate();
+
+  /**
+   * Returns the number of received frames not applied yet.
+   */
+  public int getQueueDepth();
+
+  /**
+   * Returns the number of received frames which were not painted on their
+   * own.
+   */
+  public long getDroppedFrames();
+
+  /**
+   * Returns the latency statistics of applying and painting frames in the last
+   * second by phase name.
+   */
+  public Map<String, LatencyHistogram.Snapshot> getFrameTimings();
+
+  /**
+   * Returns the statistics of the rendering caches by cache name.
+   */
+  public Map<String, CacheStatistics> getCacheStatistics();
+
+  /**
+   * Repaints the whole screen.
+   */
+  public void repaint();
+}
+
+// EOF
@@ -0,0 +1,122 @@
+package de.tucottbus.kt.lcars.management;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.ObjectName;
+
+import de.tucottbus.kt.lcars.IPanel;
+import de.tucottbus.kt.lcars.LCARS;
+import de.tucottbus.kt.lcars.Screen;
+import de.tucottbus.kt.lcars.geometry.rendering.GeometryImageCache;
+import de.tucottbus.kt.lcars.geometry.rendering.GeometryPathCache;
+import de.tucottbus.kt.lcars.geometry.rendering.LcarsComposite;
+import de.tucottbus.kt.lcars.swt.TextLayoutCache;
+import de.tucottbus.kt.lcars.util.LatencyHistogram;
+
+/**
+ * Management bean of an {@linkplain Screen LCARS screen}. Registered while the
+ * screen exists.
+ *
+ * <p>The statistics of the {@link GeometryPathCache} are read without
+ * synchronizing with the UI thread and may be slightly outdated.</p>
+ */
+public class ScreenMonitor implements ScreenMXBean
+{
+  private final Screen screen;
+  private ObjectName objectName;
+
+  /**
+   * Creates a management bean for a screen.
+   *
+   * @param screen
+   *          The screen.
+   */
+  public ScreenMonitor(Screen screen)
+  {
+    this.screen = screen;
+  }
+
+  /**
+   * Registers this bean at the platform MBean server.
+   */
+  public synchronized void register()
+  {
+    if (objectName == null)
+      objectName = MBeans.register(this, "Screen",
+          "Screen@" + Integer.toHexString(System.identityHashCode(screen)));
+  }
+
+  /**
+   * Unregisters this bean from the platform MBean server.
+   */
+  public synchronized void unregister()
+  {
+    MBeans.unregister(objectName);
+    objectName = null;
+  }
+
+  @Override
+  public String getPanelClass()
+  {
+    IPanel panel = screen.getPanel();
+    return panel != null ? panel.getClass().getName() : null;
+  }
+
+  @Override
+  public int getFrameRate()
+  {
+    return screen.getLoadStatistics().getEventsPerPeriod();
+  }
+
+  @Override
+  public int getQueueDepth()
+  {
+    return screen.getLcarsComposite().getQueueDepth();
+  }
+
+  @Override
+  public long getDroppedFrames()
+  {
+    return screen.getLcarsComposite().getDroppedFrames();
+  }
+
+  @Override
+  public Map<String, LatencyHistogram.Snapshot> getFrameTimings()
+  {
+    return MBeans.toMap(screen.getFrameTimings());
+  }
+
+  @Override
+  public Map<String, CacheStatistics> getCacheStatistics()
+  {
+    Map<String, CacheStatistics> map = new LinkedHashMap<String, CacheStatistics>();
+    TextLayoutCache tlc = LCARS.getTextLayoutCache();
+    map.put("textLayout", new CacheStatistics(tlc.size(), -1, tlc.getHits(),
+        tlc.getMisses(), -1));
+    map.put("geometryPath", new CacheStatistics(GeometryPathCache.size(), -1,
+        GeometryPathCache.getHits(), GeometryPathCache.getMisses(),
+        GeometryPathCache.getEvictions()));
+    map.put("geometryImage", new CacheStatistics(GeometryImageCache.size(),
+        GeometryImageCache.getBytes(), GeometryImageCache.getHits(),
+        GeometryImageCache.getMisses(), GeometryImageCache.getEvictions()));
+    map.put("geometryStore", new CacheStatistics(
+        screen.getLcarsComposite().getGeometryStore().size(), -1, -1, -1, -1));
+    return map;
+  }
+
+  @Override
+  public void repaint()
+  {
+    LcarsComposite composite = screen.getLcarsComposite();
+    if (composite.isDisposed())
+      return;
+    composite.getDisplay().asyncExec(() ->
+    {
+      if (!composite.isDisposed())
+        composite.redraw();
+    });
+  }
+}
+
+// EOF
@@ -0,0 +1,150 @@
+package de.tucottbus.kt.lcars.net;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.rmi.server.RMIServerSocketFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * RMI server socket factory counting the bytes received and sent through the
+ * accepted connections. Used for the RMI registry and all objects exported by
+ * LCARS, so the counters are the totals of the incoming RMI calls and their
+ * replies in this virtual machine, including pings, registry lookups and the
+ * traffic of all adapters. Per-frame sizes are taken from the codec instead
+ * (see {@link de.tucottbus.kt.lcars.PanelData#getEncodedSize()}).
+ */
+public final class CountingSocketFactory implements RMIServerSocketFactory
+{
+  private static final CountingSocketFactory instance = new CountingSocketFactory();
+
+  private static final LongAdder bytesReceived = new LongAdder();
+  private static final LongAdder bytesSent = new LongAdder();
+
+  private CountingSocketFactory()
+  {
+  }
+
+  /**
+   * Returns the singleton instance.
+   */
+  public static CountingSocketFactory getInstance()
+  {
+    return instance;
+  }
+
+  /**
+   * Returns the total number of bytes received through RMI connections.
+   */
+  public static long getBytesReceived()
+  {
+    return bytesReceived.sum();
+  }
+
+  /**
+   * Returns the total number of bytes sent through RMI connections.
+   */
+  public static long getBytesSent()
+  {
+    return bytesSent.sum();
+  }
+
+  @Override
+  public ServerSocket createServerSocket(int port) throws IOException
+  {
+    return new CountingServerSocket(port);
+  }
+
+  @Override
+  public boolean equals(Object that)
+  {
+    // RMI shares listening ports among exports with equal factories
+    return (that != null && that.getClass() == this.getClass());
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return CountingSocketFactory.class.hashCode();
+  }
+
+  // -- Nested classes --
+
+  private static final class CountingServerSocket extends ServerSocket
+  {
+    CountingServerSocket(int port) throws IOException
+    {
+      super(port);
+    }
+
+    @Override
+    public Socket accept() throws IOException
+    {
+      Socket socket = new CountingSocket();
+      implAccept(socket);
+      return socket;
+    }
+  }
+
+  private static final class CountingSocket extends Socket
+  {
+    private InputStream countingIn;
+    private OutputStream countingOut;
+
+    @Override
+    public synchronized InputStream getInputStream() throws IOException
+    {
+      if (countingIn == null)
+        countingIn = new FilterInputStream(super.getInputStream())
+        {
+          @Override
+          public int read() throws IOException
+          {
+            int b = super.read();
+            if (b >= 0)
+              bytesReceived.increment();
+            return b;
+          }
+
+          @Override
+          public int read(byte[] b, int off, int len) throws IOException
+          {
+            int n = super.read(b, off, len);
+            if (n > 0)
+              bytesReceived.add(n);
+            return n;
+          }
+        };
+      return countingIn;
+    }
+
+    @Override
+    public synchronized OutputStream getOutputStream() throws IOException
+    {
+      if (countingOut == null)
+        countingOut = new FilterOutputStream(super.getOutputStream())
+        {
+          @Override
+          public void write(int b) throws IOException
+          {
+            out.write(b);
+            bytesSent.increment();
+          }
+
+          @Override
+          public void write(byte[] b, int off, int len) throws IOException
+          {
+            out.write(b, off, len);
+            bytesSent.add(len);
+          }
+        };
+      return countingOut;
+    }
+  }
+}
+
+// EOF
@@ -10,9 +10,16 @@ import java.rmi.RemoteException;
 public interface IRmiScreenAdapterRemote extends IRmiAdapterRemote
 {
   /**
-   * The memory statistics of the screen update data.
+   * The memory statistics of the screen update data: the decaying average
+   * size of an update in bytes.
    */
   public int getMemStat() throws RemoteException;
+
+  /**
+   * The decaying average of the screen update data received per second in
+   * bytes.
+   */
+  public double getTransferRate() throws RemoteException;
 }
 
 // EOF
@@ -7,6 +7,7 @@ import java.rmi.server.UnicastRemoteObject;
 import java.util.HashMap;
 
 import de.tucottbus.kt.lcars.logging.Log;
+import de.tucottbus.kt.lcars.management.LcarsServerMonitor;
 
 /**
  * Incubating - The LCARS panel server.
@@ -21,6 +22,11 @@ public class LcarsServer implements IRmiLcarsServerRemote
    * List of panel adapters served.
    */
   protected HashMap<String,RmiPanelAdapter> rmiPanelAdapters;
+
+  /**
+   * The management bean of the server.
+   */
+  private final LcarsServerMonitor monitor = new LcarsServerMonitor();
   
   // -- Singleton implementation and constructors --
   
@@ -63,8 +69,9 @@ public class LcarsServer implements IRmiLcarsServerRemote
       Log.info("Starting LCARS panel server @"+NetUtils.getHostName()+".");
       getInstance();
       NetUtils.getRmiRegistry();
-      Remote stub = UnicastRemoteObject.exportObject(singleton,0);
+      Remote stub = UnicastRemoteObject.exportObject(singleton,0,null,CountingSocketFactory.getInstance());
       Naming.rebind(NetUtils.getRmiName(),stub);
+      singleton.monitor.register();
     } catch (Exception e)
     {
       Log.err("FATAL ERROR: RMI setup failed.", e);
@@ -82,11 +89,15 @@ public class LcarsServer implements IRmiLcarsServerRemote
       return;
 
     Log.info("Shutting down LCARS panel server.");
+    singleton.monitor.unregister();
 
     // Shutdown remote panels being served
-    for (RmiPanelAdapter rpa : singleton.rmiPanelAdapters.values())
-      rpa.shutDown();
-    singleton.rmiPanelAdapters.clear();
+    synchronized (singleton.rmiPanelAdapters)
+    {
+      for (RmiPanelAdapter rpa : singleton.rmiPanelAdapters.values())
+        rpa.shutDown();
+      singleton.rmiPanelAdapters.clear();
+    }
 
     // Terminate RMI
     try
@@ -135,15 +146,21 @@ public class LcarsServer implements IRmiLcarsServerRemote
   {
     if (screenHostName==null) return false;
     
-    if (rmiPanelAdapters.containsKey(screenHostName+"."+screenID))
-      return true;
+    synchronized (rmiPanelAdapters)
+    {
+      if (rmiPanelAdapters.containsKey(screenHostName+"."+screenID))
+        return true;
+    }
     
     try
     {
       String screenUrl = RmiAdapter.makeScreenAdapterUrl(NetUtils.getHostName(),screenHostName,0);
       Log.info("LCARS.server: Connection request from "+screenUrl);
       RmiPanelAdapter rpa = new RmiPanelAdapter(panelClassName,screenHostName);
-      rmiPanelAdapters.put(screenHostName+"."+screenID,rpa);
+      synchronized (rmiPanelAdapters)
+      {
+        rmiPanelAdapters.put(screenHostName+"."+screenID,rpa);
+      }
       return true;
     }
     catch (Exception e)
@@ -161,7 +178,11 @@ public class LcarsServer implements IRmiLcarsServerRemote
     String key = screenHostName+"."+screenID;
     Log.info("LCARS.server: Disconnection request from "+screenUrl);
     
-    RmiPanelAdapter rpa = rmiPanelAdapters.remove(key);
+    RmiPanelAdapter rpa;
+    synchronized (rmiPanelAdapters)
+    {
+      rpa = rmiPanelAdapters.remove(key);
+    }
     if (rpa!=null) rpa.shutDown();
   }
 
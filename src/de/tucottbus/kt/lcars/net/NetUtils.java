@@ -160,6 +160,15 @@ public class NetUtils
     return 1099;
   }
 
+  /**
+   * Returns the port of the NIO streaming transport (see {@link
+   * de.tucottbus.kt.lcars.net.nio.NioServer NioServer}).
+   */
+  public static int getNioPort()
+  {
+    return 1100;
+  }
+
   /**
    * Returns the LCARS RMI name prefix.
    */
@@ -186,8 +195,9 @@ public class NetUtils
         System.setProperty("java.rmi.server.hostname",LCARS.getArg("--rminame=")); 
       try
       {
-        
-        rmiRegistry = LocateRegistry.createRegistry(getRmiPort());
+        // Count the RMI traffic (see CountingSocketFactory)
+        rmiRegistry = LocateRegistry.createRegistry(getRmiPort(),null,
+            CountingSocketFactory.getInstance());
         /* TODO: Here is how to create an RMI registry bound to a specific IP address --> 
         LCARS.rmiRegistry = LocateRegistry.createRegistry(getRmiPort(), null,
             new RMIServerSocketFactory()
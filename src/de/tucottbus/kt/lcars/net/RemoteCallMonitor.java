@@ -0,0 +1,300 @@
+package de.tucottbus.kt.lcars.net;
+
+import java.beans.ConstructorProperties;
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.tucottbus.kt.lcars.PanelData;
+import de.tucottbus.kt.lcars.util.LatencyHistogram;
+
+/**
+ * Statistics of the calls to a remote object. The remote object is wrapped by a
+ * dynamic proxy (see {@link #wrap(Object)}) which counts the calls, failures
+ * and payload sizes and records the latencies of each remote method.
+ *
+ * <p>Payload sizes are counted for arguments whose wire size is known without
+ * serializing them, i.e. encoded {@link PanelData} and byte arrays. Latencies
+ * are collected in periods; {@link CallStatistics#getLatency()} returns the
+ * statistics of the last complete period (see {@link #period()}).</p>
+ */
+public class RemoteCallMonitor
+{
+  private final ConcurrentHashMap<String, MethodStatistics> methods
+    = new ConcurrentHashMap<String, MethodStatistics>();
+
+  /**
+   * Wraps a remote object by a proxy recording the calls in this monitor. The
+   * proxy implements all interfaces of the remote object.
+   *
+   * @param target
+   *          The remote object (usually an RMI stub), can be <code>null</code>.
+   * @return The proxy or <code>null</code> if <code>target</code> is
+   *         <code>null</code>.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T wrap(T target)
+  {
+    if (target == null)
+      return null;
+    LinkedHashSet<Class<?>> interfaces = new LinkedHashSet<Class<?>>();
+    for (Class<?> c = target.getClass(); c != null; c = c.getSuperclass())
+      for (Class<?> i : c.getInterfaces())
+        interfaces.add(i);
+    return (T)Proxy.newProxyInstance(RemoteCallMonitor.class.getClassLoader(),
+        interfaces.toArray(new Class<?>[interfaces.size()]),
+        new Handler(target));
+  }
+
+  /**
+   * Returns the remote object wrapped by a proxy of a call monitor. Proxies
+   * cannot be marshaled, so remote objects which are passed to or returned by
+   * remote calls must be unwrapped.
+   *
+   * @param proxy
+   *          A proxy created by {@link #wrap(Object)} or any other object, can
+   *          be <code>null</code>.
+   * @return The wrapped remote object or <code>proxy</code> if it is not a
+   *         call monitor proxy.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> T unwrap(T proxy)
+  {
+    if (proxy != null && Proxy.isProxyClass(proxy.getClass())
+        && Proxy.getInvocationHandler(proxy) instanceof Handler)
+      return (T)((Handler)Proxy.getInvocationHandler(proxy)).target;
+    return proxy;
+  }
+
+  /**
+   * Returns the statistics of a remote method.
+   *
+   * @param method
+   *          The method name.
+   * @return The statistics, all zero if the method has not been called.
+   */
+  public CallStatistics getStatistics(String method)
+  {
+    MethodStatistics ms = methods.get(method);
+    return ms != null ? ms.toCallStatistics(method)
+        : new CallStatistics(method, 0, 0, 0, LatencyHistogram.Snapshot.EMPTY);
+  }
+
+  /**
+   * Returns the statistics of all called remote methods by method name.
+   */
+  public Map<String, CallStatistics> getStatistics()
+  {
+    TreeMap<String, CallStatistics> map = new TreeMap<String, CallStatistics>();
+    for (Map.Entry<String, MethodStatistics> entry : methods.entrySet())
+      map.put(entry.getKey(), entry.getValue().toCallStatistics(entry.getKey()));
+    return map;
+  }
+
+  /**
+   * Ends the current latency period and starts a new one.
+   */
+  public void period()
+  {
+    for (MethodStatistics ms : methods.values())
+      ms.lastPeriod = ms.latency.getSnapshotAndReset();
+  }
+
+  /**
+   * Resets all statistics.
+   */
+  public void reset()
+  {
+    methods.clear();
+  }
+
+  /**
+   * Returns one line <code>method calls p50/p99/max failures</code> for each
+   * called remote method.
+   */
+  @Override
+  public String toString()
+  {
+    StringBuilder sb = new StringBuilder();
+    for (CallStatistics cs : getStatistics().values())
+    {
+      if (sb.length() > 0)
+        sb.append('\n');
+      sb.append(cs);
+    }
+    return sb.toString();
+  }
+
+  // -- Private methods --
+
+  /**
+   * Returns the size of an argument in bytes if known without serialization,
+   * 0 otherwise.
+   */
+  private static long getPayloadSize(Object arg)
+  {
+    if (arg instanceof PanelData)
+      return Math.max(0, ((PanelData)arg).getEncodedSize());
+    if (arg instanceof byte[])
+      return ((byte[])arg).length;
+    return 0;
+  }
+
+  // -- Nested classes --
+
+  /**
+   * Immutable statistics of one remote method.
+   */
+  public static final class CallStatistics implements Serializable
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final String method;
+    private final long calls;
+    private final long failures;
+    private final long bytes;
+    private final LatencyHistogram.Snapshot latency;
+
+    @ConstructorProperties({ "method", "calls", "failures", "bytes", "latency" })
+    public CallStatistics(String method, long calls, long failures, long bytes,
+        LatencyHistogram.Snapshot latency)
+    {
+      this.method   = method;
+      this.calls    = calls;
+      this.failures = failures;
+      this.bytes    = bytes;
+      this.latency  = latency;
+    }
+
+    /**
+     * Returns the name of the method.
+     */
+    public String getMethod()
+    {
+      return method;
+    }
+
+    /**
+     * Returns the total number of calls.
+     */
+    public long getCalls()
+    {
+      return calls;
+    }
+
+    /**
+     * Returns the total number of calls which threw an exception.
+     */
+    public long getFailures()
+    {
+      return failures;
+    }
+
+    /**
+     * Returns the fraction of calls which threw an exception.
+     */
+    public double getFailureRate()
+    {
+      return calls > 0 ? (double)failures / calls : 0;
+    }
+
+    /**
+     * Returns the total size of the arguments with known size in bytes.
+     */
+    public long getBytes()
+    {
+      return bytes;
+    }
+
+    /**
+     * Returns the latency statistics of the last complete period.
+     */
+    public LatencyHistogram.Snapshot getLatency()
+    {
+      return latency;
+    }
+
+    @Override
+    public String toString()
+    {
+      return String.format("%s %d %s %d", method, calls, latency, failures);
+    }
+  }
+
+  /**
+   * Mutable statistics of one remote method.
+   */
+  private static final class MethodStatistics
+  {
+    final LongAdder calls = new LongAdder();
+    final LongAdder failures = new LongAdder();
+    final LongAdder bytes = new LongAdder();
+    final LatencyHistogram latency = new LatencyHistogram();
+    volatile LatencyHistogram.Snapshot lastPeriod = LatencyHistogram.Snapshot.EMPTY;
+
+    CallStatistics toCallStatistics(String method)
+    {
+      return new CallStatistics(method, calls.sum(), failures.sum(), bytes.sum(),
+          lastPeriod);
+    }
+  }
+
+  /**
+   * The invocation handler of the proxies.
+   */
+  private final class Handler implements InvocationHandler
+  {
+    private final Object target;
+
+    Handler(Object target)
+    {
+      this.target = target;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args)
+        throws Throwable
+    {
+      if (method.getDeclaringClass() == Object.class)
+      {
+        // Do not count local methods, compare proxies by their targets
+        if (method.getName().equals("equals") && args[0] != null
+            && Proxy.isProxyClass(args[0].getClass())
+            && Proxy.getInvocationHandler(args[0]) instanceof Handler)
+          return target.equals(((Handler)Proxy.getInvocationHandler(args[0])).target);
+        return method.invoke(target, args);
+      }
+
+      MethodStatistics ms = methods.computeIfAbsent(method.getName(),
+          (k) -> new MethodStatistics());
+      if (args != null)
+        for (Object arg : args)
+          ms.bytes.add(getPayloadSize(arg));
+
+      long start = System.nanoTime();
+      try
+      {
+        return method.invoke(target, args);
+      }
+      catch (InvocationTargetException e)
+      {
+        ms.failures.increment();
+        throw e.getCause();
+      }
+      finally
+      {
+        ms.calls.increment();
+        ms.latency.record(System.nanoTime() - start);
+      }
+    }
+  }
+}
+
+// EOF
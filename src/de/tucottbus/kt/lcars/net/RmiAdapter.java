@@ -13,6 +13,7 @@ import de.tucottbus.kt.lcars.LCARS;
 import de.tucottbus.kt.lcars.Panel;
 import de.tucottbus.kt.lcars.Screen;
 import de.tucottbus.kt.lcars.logging.Log;
+import de.tucottbus.kt.lcars.management.RmiAdapterMonitor;
 
 /**
  * Subclasses keep a connection to a peer adapter on a remote machine. Instances of the
@@ -44,6 +45,17 @@ public abstract class RmiAdapter implements Remote
    */
   private ConnectionThread connection;
 
+  /**
+   * The management bean of this adapter, registered by the subclasses when
+   * they are constructed.
+   */
+  protected final RmiAdapterMonitor monitor;
+
+  /**
+   * The statistics of the calls to the peer.
+   */
+  private final RemoteCallMonitor callMonitor = new RemoteCallMonitor();
+
   // -- Constructors --
   
   /**
@@ -62,6 +74,7 @@ public abstract class RmiAdapter implements Remote
     super();
     this.self         = this;
     this.peerHostName = peerHostName;
+    this.monitor      = new RmiAdapterMonitor(this);
     this.connection   = new ConnectionThread();
     this.connection.start();
   }
@@ -93,6 +106,7 @@ public abstract class RmiAdapter implements Remote
    */
   public void shutDown()
   {
+    monitor.unregister();
     if (connection!=null)
     {
       connection.end();
@@ -212,6 +226,15 @@ public abstract class RmiAdapter implements Remote
   {
     return peer;
   }
+
+  /**
+   * Returns the statistics of the calls to the peer. The latency statistics
+   * cover the last second.
+   */
+  public final RemoteCallMonitor getCallMonitor()
+  {
+    return callMonitor;
+  }
   
   // -- Abstract methods --
 
@@ -270,7 +293,7 @@ public abstract class RmiAdapter implements Remote
       try
       {
         Log.info("Exporting remote stub ...");
-        Remote stub = UnicastRemoteObject.exportObject(self,0);
+        Remote stub = UnicastRemoteObject.exportObject(self,0,null,CountingSocketFactory.getInstance());
         Log.info("... Exported");
         Log.info("Binding to \""+getRmiName()+"\" ...");
         Naming.rebind(getRmiName(),stub);
@@ -291,6 +314,7 @@ public abstract class RmiAdapter implements Remote
         // Wait
         try { Thread.sleep(1000); } catch (InterruptedException e){}        
         if (!run) break;
+        callMonitor.period();
         
         // - ... to LCARS server
         //       HACK: It's not best practice to implement a derived classes' function in the base class!
@@ -337,7 +361,7 @@ public abstract class RmiAdapter implements Remote
         {
           if (peer==null)
           {
-            peer = (IRmiAdapterRemote)Naming.lookup(getRmiPeerUrl());
+            peer = callMonitor.wrap((IRmiAdapterRemote)Naming.lookup(getRmiPeerUrl()));
             msg = "Connection to peer established";
           }
           if (peer!=null)
@@ -9,6 +9,7 @@ import de.tucottbus.kt.lcars.IScreen;
 import de.tucottbus.kt.lcars.Panel;
 import de.tucottbus.kt.lcars.Screen;
 import de.tucottbus.kt.lcars.TouchEvent;
+import de.tucottbus.kt.lcars.geometry.AGeometry;
 import de.tucottbus.kt.lcars.logging.Log;
 import de.tucottbus.kt.lcars.util.LoadStatistics;
 
@@ -46,10 +47,19 @@ implements IPanel, IRmiPanelAdapterRemote
   {
     super(screenHostName);
     setPanel(className);
+    monitor.register();
   }
 
   // -- Getters and setters --
   
+  /**
+   * Returns the {@linkplain Panel LCARS panel} wrapped by this adapter.
+   */
+  public Panel getPanel()
+  {
+    return panel;
+  }
+
   /**
    * Returns the class  of the {@linkplain Panel LCARS panel} wrapped by this adapter.
    */
@@ -176,6 +186,12 @@ implements IPanel, IRmiPanelAdapterRemote
     panel.processKeyEvent(event);
   }
 
+  @Override
+  public AGeometry[] getGeometries(long[] hashes)
+  {
+    return panel.getGeometries(hashes);
+  }
+
   @Override
   public void panelSelectionDialog()
   {
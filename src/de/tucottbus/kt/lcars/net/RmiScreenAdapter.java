@@ -7,7 +7,6 @@ import java.net.MalformedURLException;
 import java.rmi.RemoteException;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.Vector;
 
 import de.tucottbus.kt.lcars.IPanel;
 import de.tucottbus.kt.lcars.IScreen;
@@ -20,10 +19,12 @@ import de.tucottbus.kt.lcars.elements.EElement;
 import de.tucottbus.kt.lcars.elements.ELabel;
 import de.tucottbus.kt.lcars.elements.ElementData;
 import de.tucottbus.kt.lcars.feedback.UserFeedback;
+import de.tucottbus.kt.lcars.jfr.LcarsEvents;
+import de.tucottbus.kt.lcars.jfr.RemoteUpdateEvent;
 import de.tucottbus.kt.lcars.logging.Log;
 import de.tucottbus.kt.lcars.net.panels.ClientPanel;
+import de.tucottbus.kt.lcars.util.FrameTimings;
 import de.tucottbus.kt.lcars.util.LoadStatistics;
-import de.tucottbus.kt.lcars.util.ObjectSize;
 import de.tucottbus.kt.lcars.util.Objectt;
 
 /**
@@ -36,9 +37,9 @@ public class RmiScreenAdapter extends RmiAdapter implements IScreen, IRmiScreenA
   // -- Fields --
 
   /**
-   * The memory statistics of the update data transferred by {@link #update(PanelData, boolean)}.
+   * The transfer statistics of the update data received by {@link #update(PanelData, boolean)}.
    */
-  private Vector<Integer> memStat;
+  private final TransferStatistics transferStat = new TransferStatistics();
   
   /**
    * The {@linkplain Screen LCARS screen} wrapped by this network adapter.
@@ -73,6 +74,7 @@ public class RmiScreenAdapter extends RmiAdapter implements IScreen, IRmiScreenA
     {
       // Should not happen since default Panel is created!
     }
+    monitor.register();
   }
   
   // -- Implementation of abstract methods --
@@ -130,11 +132,13 @@ public class RmiScreenAdapter extends RmiAdapter implements IScreen, IRmiScreenA
   @Override
   public int getMemStat()
   {
-    if (memStat==null) return 0;
-    if (memStat.size()==0) return 0;
-    int sum = 0;
-    for (Integer mem : memStat) sum += mem;
-    return sum/memStat.size();
+    return (int)transferStat.getBytesPerFrame();
+  }
+
+  @Override
+  public double getTransferRate()
+  {
+    return transferStat.getBytesPerSecond();
   }
   
   // -- Screen wrapper methods / Implementation of the IScreen interface --
@@ -179,19 +183,32 @@ public class RmiScreenAdapter extends RmiAdapter implements IScreen, IRmiScreenA
   @Override
   public IPanel getPanel()
   {
-    return (IPanel)getPeer();
+    // The stub, not the monitoring proxy, may cross the wire
+    return (IPanel)RemoteCallMonitor.unwrap(getPeer());
   }
 
   @Override
   public void update(PanelData data, boolean incremental)
   {
-    // Do network load statistics 
-    if (memStat==null) memStat = new Vector<Integer>(11);
-    memStat.add(new Integer(ObjectSize.getSerializedSize(data)));
-    if (memStat.size()>10) memStat.remove(0);
+    RemoteUpdateEvent event = LcarsEvents.ENABLED ? new RemoteUpdateEvent() : null;
+    if (event != null)
+      event.begin();
+
+    // Do network load statistics (the panel data arrive in the wire format, so
+    // the encoded size is the size of exactly this frame)
+    transferStat.add(Math.max(0,data.getEncodedSize()));
 
     // Do screen update
     screen.update(data,incremental);
+
+    if (event != null && event.shouldCommit())
+    {
+      event.panelId = data.panelId;
+      event.incremental = incremental;
+      event.elements = data.elementData != null ? data.elementData.length : 0;
+      event.bytes = data.getEncodedSize();
+      event.commit();
+    }
   }
 
   @Override
@@ -206,6 +223,12 @@ public class RmiScreenAdapter extends RmiAdapter implements IScreen, IRmiScreenA
     return screen.getLoadStatistics();
   }
 
+  @Override
+  public FrameTimings.Snapshot getFrameTimings()
+  {
+    return screen.getFrameTimings();
+  }
+
   @Override
   public void exit() throws RemoteException
   {
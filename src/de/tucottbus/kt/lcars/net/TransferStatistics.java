@@ -0,0 +1,76 @@
+package de.tucottbus.kt.lcars.net;
+
+/**
+ * Exponentially decaying averages of the bytes per second and the bytes per
+ * frame transferred by an adapter. The byte counts are the {@linkplain
+ * de.tucottbus.kt.lcars.PanelData#getEncodedSize() encoded sizes} of the
+ * frames.
+ */
+public class TransferStatistics
+{
+  /**
+   * Time constant of the bytes per second average in nanoseconds.
+   */
+  private static final double TAU = 1E9;
+
+  /**
+   * Weight of a new sample in the bytes per frame average.
+   */
+  private static final double ALPHA = 0.1;
+
+  private double bytesPerSecond;
+  private double bytesPerFrame;
+  private long   lastTime;
+  private long   frames;
+
+  /**
+   * Records the transfer of one frame.
+   *
+   * @param bytes
+   *          The size of the frame in bytes.
+   */
+  public synchronized void add(long bytes)
+  {
+    long now = System.nanoTime();
+    if (frames==0)
+      bytesPerFrame = bytes;
+    else
+    {
+      bytesPerFrame += ALPHA*(bytes-bytesPerFrame);
+      long   dt = Math.max(1,now-lastTime);
+      double w  = 1-Math.exp(-dt/TAU);
+      bytesPerSecond += w*(bytes*1E9/dt-bytesPerSecond);
+    }
+    lastTime = now;
+    frames++;
+  }
+
+  /**
+   * Returns the decaying average of the transferred bytes per second. The
+   * average decays towards zero while no frames are transferred.
+   */
+  public synchronized double getBytesPerSecond()
+  {
+    if (frames==0)
+      return 0;
+    return bytesPerSecond*Math.exp(-(System.nanoTime()-lastTime)/TAU);
+  }
+
+  /**
+   * Returns the decaying average of the transferred bytes per frame.
+   */
+  public synchronized double getBytesPerFrame()
+  {
+    return bytesPerFrame;
+  }
+
+  /**
+   * Returns the total number of recorded frames.
+   */
+  public synchronized long getFrameCount()
+  {
+    return frames;
+  }
+}
+
+// EOF
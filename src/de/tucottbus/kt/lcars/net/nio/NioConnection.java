@@ -0,0 +1,522 @@
+package de.tucottbus.kt.lcars.net.nio;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.rmi.RemoteException;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.tucottbus.kt.lcars.IScreen;
+import de.tucottbus.kt.lcars.PanelData;
+import de.tucottbus.kt.lcars.logging.Log;
+import de.tucottbus.kt.lcars.util.TrustedObjectInputStream;
+
+/**
+ * A persistent connection of the NIO streaming transport. Both ends of a
+ * connection expose a local object to the other end and obtain a proxy of the
+ * remote object by {@link #getPeer(Class...)}.
+ *
+ * <h3>Message format</h3>
+ * <p>Each message is length-prefixed: <code>int length</code>, <code>byte
+ * type</code>, <code>byte flags</code>, <code>int callId</code> followed by
+ * <code>length-6</code> bytes of payload.</p>
+ * <ul>
+ *   <li>{@link #MSG_UPDATE} carries the {@linkplain PanelData#encode() encoded
+ *   panel data} of {@link IScreen#update(PanelData, boolean)}.</li>
+ *   <li>{@link #MSG_CALL} carries a serialized method signature and the
+ *   serialized arguments.</li>
+ *   <li>{@link #MSG_REPLY} carries the serialized return value or exception of
+ *   a call.</li>
+ * </ul>
+ * <p>Updates and methods returning <code>void</code> without checked
+ * exceptions other than {@link RemoteException} are one-way: they are queued
+ * without waiting for the peer and executed in order at the other end. All
+ * other calls wait for their reply, but do not block the channel, so any number
+ * of calls can be pipelined. There are no handshakes per call. The socket I/O
+ * uses two direct buffers which are reused for all messages.</p>
+ */
+public class NioConnection
+{
+  // -- Constants --
+
+  static final byte MSG_UPDATE = 1;
+  static final byte MSG_CALL   = 2;
+  static final byte MSG_REPLY  = 3;
+
+  private static final int FLAG_INCREMENTAL = 0x01;
+  static final int FLAG_ONEWAY              = 0x02;
+  private static final int FLAG_EXCEPTION   = 0x04;
+
+  private static final int HEADER_SIZE = 10;
+
+  /**
+   * The maximal size of a message in bytes.
+   */
+  private static final int MAX_MESSAGE_SIZE = 64*1024*1024;
+
+  /**
+   * The time to wait for the reply of a call in milliseconds.
+   */
+  public static final long CALL_TIMEOUT = 5000;
+
+  // -- Fields --
+
+  private final String name;
+  private final SocketChannel channel;
+  private final Object target;
+  private final HashMap<String,Method> methods = new HashMap<String,Method>();
+  private final Runnable onClose;
+
+  private ByteBuffer writeBuffer = ByteBuffer.allocateDirect(64*1024);
+  private ByteBuffer readBuffer  = ByteBuffer.allocateDirect(64*1024);
+  private final Object writeLock = new Object();
+
+  private final ConcurrentHashMap<Integer,CompletableFuture<Object>> pendingCalls
+    = new ConcurrentHashMap<Integer,CompletableFuture<Object>>();
+  private final AtomicInteger nextCallId = new AtomicInteger();
+
+  /**
+   * Executes the one-way messages in the order of their arrival.
+   */
+  private final ExecutorService serialExecutor;
+
+  /**
+   * Executes calls waiting for a reply. Each call gets its own thread, so that
+   * nested calls between the ends cannot deadlock.
+   */
+  private final ExecutorService callExecutor;
+
+  private final Thread reader;
+  private volatile boolean open = true;
+
+  private final LongAdder bytesSent = new LongAdder();
+  private final LongAdder bytesReceived = new LongAdder();
+
+  // -- Constructors --
+
+  /**
+   * Creates a connection on a connected socket channel. Messages are received
+   * after {@link #start()}.
+   *
+   * @param name
+   *          A name for logging and thread names.
+   * @param channel
+   *          The socket channel.
+   * @param target
+   *          The local object exposed to the other end. All methods of the
+   *          interfaces implemented by the object can be called.
+   * @param onClose
+   *          Called once when the connection is closed, can be
+   *          <code>null</code>.
+   * @throws IOException
+   *           If the channel cannot be configured.
+   */
+  public NioConnection(String name, SocketChannel channel, Object target, Runnable onClose)
+  throws IOException
+  {
+    this.name    = name;
+    this.channel = channel;
+    this.target  = target;
+    this.onClose = onClose;
+    channel.configureBlocking(true);
+    channel.socket().setTcpNoDelay(true);
+    for (Class<?> c = target.getClass(); c != null; c = c.getSuperclass())
+      for (Class<?> i : c.getInterfaces())
+        for (Method m : i.getMethods())
+          methods.put(getSignature(m),m);
+
+    serialExecutor = Executors.newSingleThreadExecutor((r) ->
+    {
+      Thread t = new Thread(r,name+".serial");
+      t.setDaemon(true);
+      return t;
+    });
+    callExecutor = Executors.newCachedThreadPool((r) ->
+    {
+      Thread t = new Thread(r,name+".call");
+      t.setDaemon(true);
+      return t;
+    });
+    reader = new Thread(this::runReader,name+".reader");
+    reader.setDaemon(true);
+  }
+
+  // -- Public API --
+
+  /**
+   * Starts receiving messages.
+   */
+  public void start()
+  {
+    reader.start();
+  }
+
+  /**
+   * Returns a proxy of the object exposed by the other end.
+   *
+   * @param interfaces
+   *          The interfaces to implement by the proxy, must be implemented by
+   *          the remote object.
+   */
+  public Object getPeer(Class<?>... interfaces)
+  {
+    return Proxy.newProxyInstance(NioConnection.class.getClassLoader(),
+        interfaces,new PeerHandler());
+  }
+
+  /**
+   * Determines if this connection is open.
+   */
+  public boolean isOpen()
+  {
+    return open;
+  }
+
+  /**
+   * Returns the address of the other end.
+   */
+  public String getRemoteAddress()
+  {
+    try
+    {
+      return String.valueOf(channel.getRemoteAddress());
+    }
+    catch (IOException e)
+    {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the total number of bytes sent through this connection.
+   */
+  public long getBytesSent()
+  {
+    return bytesSent.sum();
+  }
+
+  /**
+   * Returns the total number of bytes received through this connection.
+   */
+  public long getBytesReceived()
+  {
+    return bytesReceived.sum();
+  }
+
+  /**
+   * Closes this connection. Pending calls fail with a {@link RemoteException}.
+   */
+  public void close()
+  {
+    synchronized (this)
+    {
+      if (!open)
+        return;
+      open = false;
+    }
+    try
+    {
+      channel.close();
+    }
+    catch (IOException e)
+    {
+      Log.err("Closing connection "+name+" failed.", e);
+    }
+    serialExecutor.shutdownNow();
+    callExecutor.shutdownNow();
+    RemoteException closed = new RemoteException("Connection "+name+" closed");
+    for (CompletableFuture<Object> call : pendingCalls.values())
+      call.completeExceptionally(closed);
+    pendingCalls.clear();
+    if (onClose != null)
+      onClose.run();
+  }
+
+  // -- Private methods --
+
+  /**
+   * Returns a signature identifying a method at both ends.
+   */
+  static String getSignature(Method method)
+  {
+    StringBuilder sb = new StringBuilder(method.getName()).append('(');
+    for (Class<?> c : method.getParameterTypes())
+      sb.append(c.getName()).append(';');
+    return sb.append(')').toString();
+  }
+
+  /**
+   * Determines if a method is called without waiting for the reply.
+   */
+  private static boolean isOneWay(Method method)
+  {
+    if (method.getReturnType() != void.class)
+      return false;
+    for (Class<?> e : method.getExceptionTypes())
+      if (!RemoteException.class.isAssignableFrom(e))
+        return false;
+    return true;
+  }
+
+  private static byte[] serialize(Object... objects) throws IOException
+  {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream(256);
+    try (ObjectOutputStream oos = new ObjectOutputStream(bos))
+    {
+      for (Object o : objects)
+        oos.writeObject(o);
+    }
+    return bos.toByteArray();
+  }
+
+  /**
+   * Sends a message.
+   */
+  private void send(byte type, int flags, int callId, byte[] payload)
+  throws IOException
+  {
+    int length = HEADER_SIZE-4+payload.length;
+    synchronized (writeLock)
+    {
+      if (!open)
+        throw new EOFException("Connection "+name+" closed");
+      if (writeBuffer.capacity() < length+4)
+        writeBuffer = ByteBuffer.allocateDirect(Integer.highestOneBit(length+4)<<1);
+      // Buffer casts: the covariant ByteBuffer overrides do not exist in Java 8
+      ((Buffer)writeBuffer).clear();
+      writeBuffer.putInt(length).put(type).put((byte)flags).putInt(callId).put(payload);
+      ((Buffer)writeBuffer).flip();
+      while (writeBuffer.hasRemaining())
+        channel.write(writeBuffer);
+    }
+    bytesSent.add(length+4);
+  }
+
+  /**
+   * Reads <code>n</code> bytes into the read buffer and flips it.
+   */
+  private void readFully(int n) throws IOException
+  {
+    if (readBuffer.capacity() < n)
+      readBuffer = ByteBuffer.allocateDirect(Integer.highestOneBit(n)<<1);
+    ((Buffer)readBuffer).clear();
+    ((Buffer)readBuffer).limit(n);
+    while (readBuffer.hasRemaining())
+      if (channel.read(readBuffer) < 0)
+        throw new EOFException();
+    ((Buffer)readBuffer).flip();
+  }
+
+  /**
+   * Receives messages until the connection is closed.
+   */
+  private void runReader()
+  {
+    try
+    {
+      while (open)
+      {
+        readFully(4);
+        int length = readBuffer.getInt();
+        if (length < HEADER_SIZE-4 || length > MAX_MESSAGE_SIZE)
+          throw new IOException("Invalid message length "+length);
+        readFully(length);
+        byte type   = readBuffer.get();
+        int  flags  = readBuffer.get();
+        int  callId = readBuffer.getInt();
+        byte[] payload = new byte[readBuffer.remaining()];
+        readBuffer.get(payload);
+        bytesReceived.add(length+4);
+        receive(type,flags,callId,payload);
+      }
+    }
+    catch (Exception e)
+    {
+      if (open)
+        Log.info("Connection "+name+" broke down ("+e+")");
+    }
+    close();
+  }
+
+  /**
+   * Handles a received message.
+   */
+  private void receive(byte type, int flags, int callId, byte[] payload)
+  throws IOException, ClassNotFoundException
+  {
+    switch (type)
+    {
+    case MSG_UPDATE:
+      // Decode on the reader thread while the previous update is applied
+      PanelData data = PanelData.decode(payload);
+      boolean incremental = (flags & FLAG_INCREMENTAL) != 0;
+      serialExecutor.execute(() ->
+      {
+        try
+        {
+          ((IScreen)target).update(data,incremental);
+        }
+        catch (Exception e)
+        {
+          Log.err("Update via "+name+" failed.", e);
+        }
+      });
+      break;
+
+    case MSG_CALL:
+      ObjectInputStream in = new TrustedObjectInputStream(new ByteArrayInputStream(payload));
+      String signature = (String)in.readObject();
+      Object[] args = (Object[])in.readObject();
+      Method method = methods.get(signature);
+      if ((flags & FLAG_ONEWAY) != 0)
+        serialExecutor.execute(() -> invoke(method,signature,args,-1));
+      else
+        callExecutor.execute(() -> invoke(method,signature,args,callId));
+      break;
+
+    case MSG_REPLY:
+      CompletableFuture<Object> call = pendingCalls.remove(callId);
+      if (call == null)
+        break;
+      Object result = new TrustedObjectInputStream(new ByteArrayInputStream(payload))
+          .readObject();
+      if ((flags & FLAG_EXCEPTION) != 0)
+        call.completeExceptionally((Throwable)result);
+      else
+        call.complete(result);
+      break;
+
+    default:
+      throw new IOException("Invalid message type "+type);
+    }
+  }
+
+  /**
+   * Invokes a method of the local object and replies the result.
+   *
+   * @param callId
+   *          The ID of the call, -1 for one-way calls.
+   */
+  private void invoke(Method method, String signature, Object[] args, int callId)
+  {
+    Object  result;
+    boolean failed = false;
+    try
+    {
+      if (method == null)
+        throw new RemoteException("No method "+signature);
+      result = method.invoke(target,args);
+    }
+    catch (InvocationTargetException e)
+    {
+      result = e.getCause();
+      failed = true;
+    }
+    catch (Exception e)
+    {
+      result = e;
+      failed = true;
+    }
+
+    if (callId < 0)
+    {
+      if (failed)
+        Log.err("One-way call "+signature+" via "+name+" failed.", (Throwable)result);
+      return;
+    }
+    try
+    {
+      send(MSG_REPLY,failed ? FLAG_EXCEPTION : 0,callId,serialize(result));
+    }
+    catch (IOException e)
+    {
+      if (open)
+        Log.err("Reply to "+signature+" via "+name+" failed.", e);
+    }
+  }
+
+  // -- Nested classes --
+
+  /**
+   * The invocation handler of the proxies returned by {@link
+   * NioConnection#getPeer(Class...)}.
+   */
+  private final class PeerHandler implements InvocationHandler
+  {
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args)
+    throws Throwable
+    {
+      if (method.getDeclaringClass() == Object.class)
+        switch (method.getName())
+        {
+        case "equals"  : return proxy == args[0];
+        case "hashCode": return System.identityHashCode(proxy);
+        default        : return "NioPeer["+name+"]";
+        }
+
+      try
+      {
+        // Screen updates
+        if (method.getName().equals("update") && args != null && args.length == 2
+            && args[0] instanceof PanelData)
+        {
+          send(MSG_UPDATE,(Boolean)args[1] ? FLAG_INCREMENTAL : 0,0,
+              ((PanelData)args[0]).encode());
+          return null;
+        }
+
+        // One-way calls
+        byte[] payload = serialize(getSignature(method),args);
+        if (isOneWay(method))
+        {
+          send(MSG_CALL,FLAG_ONEWAY,0,payload);
+          return null;
+        }
+
+        // Calls waiting for their reply
+        int callId = nextCallId.incrementAndGet();
+        CompletableFuture<Object> call = new CompletableFuture<Object>();
+        pendingCalls.put(callId,call);
+        try
+        {
+          send(MSG_CALL,0,callId,payload);
+          return call.get(CALL_TIMEOUT,TimeUnit.MILLISECONDS);
+        }
+        finally
+        {
+          pendingCalls.remove(callId);
+        }
+      }
+      catch (ExecutionException e)
+      {
+        throw e.getCause();
+      }
+      catch (IOException | TimeoutException | InterruptedException e)
+      {
+        throw new RemoteException("Call "+method.getName()+" via "+name+" failed",e);
+      }
+    }
+  }
+}
+
+// EOF
@@ -0,0 +1,388 @@
+package de.tucottbus.kt.lcars.net.nio;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.security.auth.x500.X500Principal;
+
+import de.tucottbus.kt.lcars.TouchEvent;
+import de.tucottbus.kt.lcars.util.TrustedObjectInputStream;
+
+/**
+ * Exercises {@link NioConnection} over loopback socket channels: framing with
+ * partial reads, messages larger than the initial buffers, the order of
+ * one-way calls, replies to pipelined calls, call timeouts and the failure of
+ * pending calls when the connection is closed, and the rejection of untrusted
+ * classes in received data. Runs headless. Exits with status 1 if any check
+ * fails.
+ *
+ * <p>Usage: <code>java de.tucottbus.kt.lcars.net.nio.NioLoopbackCheck</code></p>
+ */
+public class NioLoopbackCheck
+{
+  private static int failures;
+
+  /**
+   * The interface exposed by the checked ends.
+   */
+  public interface ICheck extends Remote
+  {
+    public void post(int seq) throws RemoteException;
+
+    public byte[] echo(byte[] data) throws RemoteException;
+
+    public int sleep(int millis) throws RemoteException;
+
+    public int fail(String message) throws RemoteException;
+  }
+
+  public static void main(String[] args) throws Exception
+  {
+    checkPartialReads();
+    checkLargeMessages();
+    checkOneWayOrder();
+    checkPipelinedCalls();
+    checkExceptions();
+    checkTimeout();
+    checkClose();
+    checkUntrustedClasses();
+    System.out.println(failures == 0 ? "All checks ok" : failures + " check(s) FAILED");
+    System.exit(failures == 0 ? 0 : 1);
+  }
+
+  // -- Checks --
+
+  /**
+   * Writes a one-way call through a raw channel in chunks of 1 to 3 bytes, so
+   * that the header and the payload arrive in pieces.
+   */
+  private static void checkPartialReads() throws Exception
+  {
+    try (ServerSocketChannel server = listen())
+    {
+      Target target = new Target();
+      SocketChannel raw = SocketChannel.open(server.getLocalAddress());
+      raw.socket().setTcpNoDelay(true);
+      NioConnection conn = new NioConnection("check",server.accept(),target,null);
+      conn.start();
+
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      try (ObjectOutputStream oos = new ObjectOutputStream(bos))
+      {
+        oos.writeObject(NioConnection.getSignature(
+            ICheck.class.getMethod("post",int.class)));
+        oos.writeObject(new Object[] { 4711 });
+      }
+      byte[] payload = bos.toByteArray();
+      ByteBuffer msg = ByteBuffer.allocate(10+payload.length);
+      msg.putInt(6+payload.length).put(NioConnection.MSG_CALL)
+        .put((byte)NioConnection.FLAG_ONEWAY).putInt(0).put(payload);
+      byte[] bytes = msg.array();
+      Random rnd = new Random(1);
+      for (int i = 0; i < bytes.length; )
+      {
+        int n = Math.min(1+rnd.nextInt(3),bytes.length-i);
+        raw.write(ByteBuffer.wrap(bytes,i,n));
+        i += n;
+        Thread.sleep(1);
+      }
+      target.awaitPosts(1);
+      check("partial reads",target.posts().equals(Arrays.asList(4711)));
+      raw.close();
+      conn.close();
+    }
+  }
+
+  /**
+   * Echoes arrays from below to far above the 64 KiB initial buffer size.
+   */
+  private static void checkLargeMessages() throws Exception
+  {
+    Pair p = new Pair();
+    boolean ok = true;
+    Random rnd = new Random(2);
+    for (int size : new int[] { 0, 1, 65535-10, 65536, 65536+1, 200000, 3000000 })
+    {
+      byte[] data = new byte[size];
+      rnd.nextBytes(data);
+      byte[] echo = p.client.echo(data);
+      ok &= Arrays.equals(data,echo);
+    }
+    check("large messages",ok);
+    check("byte counters",p.clientConn.getBytesSent() == p.serverConn.getBytesReceived()
+        && p.clientConn.getBytesReceived() == p.serverConn.getBytesSent());
+    p.close();
+  }
+
+  /**
+   * Posts many one-way calls without waiting; they must arrive in order and
+   * none may be lost.
+   */
+  private static void checkOneWayOrder() throws Exception
+  {
+    Pair p = new Pair();
+    int n = 20000;
+    for (int i = 0; i < n; i++)
+      p.client.post(i);
+    p.target.awaitPosts(n);
+    List<Integer> posts = p.target.posts();
+    boolean ok = posts.size() == n;
+    for (int i = 0; ok && i < n; i++)
+      ok = posts.get(i) == i;
+    check("one-way order",ok);
+    p.close();
+  }
+
+  /**
+   * Issues concurrent calls whose replies arrive in reverse order.
+   */
+  private static void checkPipelinedCalls() throws Exception
+  {
+    Pair p = new Pair();
+    ExecutorService pool = Executors.newFixedThreadPool(16);
+    List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+    long t0 = System.nanoTime();
+    for (int i = 0; i < 16; i++)
+    {
+      int millis = 400-i*20;
+      results.add(pool.submit((Callable<Integer>)() -> p.client.sleep(millis)));
+    }
+    boolean ok = true;
+    for (int i = 0; i < 16; i++)
+      ok &= results.get(i).get() == 400-i*20;
+    long ms = (System.nanoTime()-t0)/1000000;
+    check("pipelined calls ("+ms+" ms)",ok && ms < 1000);
+    pool.shutdown();
+    p.close();
+  }
+
+  /**
+   * Relays an exception thrown by the remote method.
+   */
+  private static void checkExceptions() throws Exception
+  {
+    Pair p = new Pair();
+    try
+    {
+      p.client.fail("expected");
+      check("remote exception",false);
+    }
+    catch (IllegalStateException e)
+    {
+      check("remote exception","expected".equals(e.getMessage()));
+    }
+    p.close();
+  }
+
+  /**
+   * Lets a call exceed {@link NioConnection#CALL_TIMEOUT}.
+   */
+  private static void checkTimeout() throws Exception
+  {
+    Pair p = new Pair();
+    long t0 = System.nanoTime();
+    try
+    {
+      p.client.sleep((int)NioConnection.CALL_TIMEOUT+1000);
+      check("call timeout",false);
+    }
+    catch (RemoteException e)
+    {
+      long ms = (System.nanoTime()-t0)/1000000;
+      check("call timeout ("+ms+" ms)",e.getCause() instanceof TimeoutException
+          && ms < NioConnection.CALL_TIMEOUT+500);
+    }
+    check("call after timeout",p.client.sleep(0) == 0);
+    p.close();
+  }
+
+  /**
+   * Closes a connection while a call is pending.
+   */
+  private static void checkClose() throws Exception
+  {
+    Pair p = new Pair();
+    ExecutorService pool = Executors.newSingleThreadExecutor();
+    Future<Integer> pending = pool.submit((Callable<Integer>)() -> p.client.sleep(3000));
+    Thread.sleep(200);
+    long t0 = System.nanoTime();
+    p.clientConn.close();
+    try
+    {
+      pending.get(1,TimeUnit.SECONDS);
+      check("close fails pending call",false);
+    }
+    catch (ExecutionException e)
+    {
+      long ms = (System.nanoTime()-t0)/1000000;
+      check("close fails pending call ("+ms+" ms)",e.getCause() instanceof RemoteException);
+    }
+    try
+    {
+      p.client.sleep(0);
+      check("call after close",false);
+    }
+    catch (RemoteException e)
+    {
+      check("call after close",true);
+    }
+    Thread.sleep(200);
+    check("close propagates",!p.serverConn.isOpen());
+    pool.shutdown();
+    p.close();
+  }
+
+  /**
+   * Deserializes objects of trusted and untrusted classes as received calls
+   * are deserialized.
+   */
+  private static void checkUntrustedClasses() throws Exception
+  {
+    Object[] trusted = { new int[] { 1 }, new Object[] { "x", 4711L },
+        new TouchEvent(TouchEvent.DOWN,1,2,true,true) };
+    Object untrusted = new X500Principal("CN=check");
+    check("trusted classes",Arrays.deepEquals(new Object[] { trusted[0], trusted[1] },
+        new Object[] { deserialize(trusted[0]), deserialize(trusted[1]) })
+        && deserialize(trusted[2]) instanceof TouchEvent);
+    try
+    {
+      deserialize(untrusted);
+      check("untrusted class rejected",false);
+    }
+    catch (InvalidClassException e)
+    {
+      check("untrusted class rejected",true);
+    }
+  }
+
+  // -- Private methods --
+
+  private static Object deserialize(Object obj) throws Exception
+  {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bos))
+    {
+      oos.writeObject(obj);
+    }
+    return new TrustedObjectInputStream(new ByteArrayInputStream(bos.toByteArray()))
+        .readObject();
+  }
+
+  private static ServerSocketChannel listen() throws Exception
+  {
+    ServerSocketChannel server = ServerSocketChannel.open();
+    server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(),0));
+    return server;
+  }
+
+  private static void check(String name, boolean ok)
+  {
+    System.out.println(String.format("  %-40s %s",name,ok ? "ok" : "FAILED"));
+    if (!ok)
+      failures++;
+  }
+
+  // -- Nested classes --
+
+  /**
+   * Two connected ends; the client end calls the target of the server end.
+   */
+  private static final class Pair
+  {
+    final Target        target = new Target();
+    final NioConnection serverConn;
+    final NioConnection clientConn;
+    final ICheck        client;
+
+    Pair() throws Exception
+    {
+      try (ServerSocketChannel server = listen())
+      {
+        SocketChannel channel = SocketChannel.open(server.getLocalAddress());
+        serverConn = new NioConnection("server",server.accept(),target,null);
+        clientConn = new NioConnection("client",channel,new Target(),null);
+      }
+      client = (ICheck)clientConn.getPeer(ICheck.class);
+      serverConn.start();
+      clientConn.start();
+    }
+
+    void close()
+    {
+      clientConn.close();
+      serverConn.close();
+    }
+  }
+
+  private static final class Target implements ICheck
+  {
+    private final List<Integer> posts = new ArrayList<Integer>();
+
+    @Override
+    public synchronized void post(int seq)
+    {
+      posts.add(seq);
+      notifyAll();
+    }
+
+    synchronized List<Integer> posts()
+    {
+      return new ArrayList<Integer>(posts);
+    }
+
+    synchronized void awaitPosts(int n) throws InterruptedException
+    {
+      long end = System.currentTimeMillis()+10000;
+      while (posts.size() < n && System.currentTimeMillis() < end)
+        wait(100);
+    }
+
+    @Override
+    public byte[] echo(byte[] data)
+    {
+      return data;
+    }
+
+    @Override
+    public int sleep(int millis)
+    {
+      try
+      {
+        Thread.sleep(millis);
+      }
+      catch (InterruptedException e)
+      {
+        // Connection closed
+      }
+      return millis;
+    }
+
+    @Override
+    public int fail(String message)
+    {
+      throw new IllegalStateException(message);
+    }
+  }
+}
+
+// EOF
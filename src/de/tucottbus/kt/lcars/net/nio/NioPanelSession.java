@@ -0,0 +1,209 @@
+package de.tucottbus.kt.lcars.net.nio;
+
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+import java.rmi.RemoteException;
+
+import de.tucottbus.kt.lcars.IPanel;
+import de.tucottbus.kt.lcars.IScreen;
+import de.tucottbus.kt.lcars.Panel;
+import de.tucottbus.kt.lcars.TouchEvent;
+import de.tucottbus.kt.lcars.geometry.AGeometry;
+import de.tucottbus.kt.lcars.logging.Log;
+import de.tucottbus.kt.lcars.net.IRmiPanelAdapterRemote;
+import de.tucottbus.kt.lcars.net.IRmiScreenAdapterRemote;
+import de.tucottbus.kt.lcars.net.RemoteCallMonitor;
+
+/**
+ * Server side of a NIO streaming connection: wraps an {@linkplain Panel LCARS
+ * panel} displayed on a remote {@linkplain NioScreenAdapter screen}. The NIO
+ * counterpart of {@link de.tucottbus.kt.lcars.net.RmiPanelAdapter
+ * RmiPanelAdapter}.
+ */
+public class NioPanelSession implements IPanel, IRmiPanelAdapterRemote
+{
+  /**
+   * The wrapped panel.
+   */
+  protected Panel panel;
+
+  /**
+   * The connection to the screen.
+   */
+  private final NioConnection connection;
+
+  /**
+   * The remote screen.
+   */
+  private final IScreen screen;
+
+  /**
+   * The statistics of the calls to the screen.
+   */
+  private final RemoteCallMonitor callMonitor = new RemoteCallMonitor();
+
+  // -- Constructors --
+
+  /**
+   * Creates a session on an accepted connection. The panel is created when the
+   * screen calls {@link #setPanel(String)}.
+   *
+   * @param channel
+   *          The socket channel connected to the screen.
+   * @param onClose
+   *          Called when the connection is closed.
+   * @throws IOException
+   *           If the connection cannot be set up.
+   */
+  NioPanelSession(SocketChannel channel, Runnable onClose) throws IOException
+  {
+    this.connection = new NioConnection("NioPanelSession@"+channel.getRemoteAddress(),
+        channel,this,() -> { stopPanel(); onClose.run(); });
+    this.screen = callMonitor.wrap((IScreen)connection.getPeer(IScreen.class,
+        IRmiScreenAdapterRemote.class));
+    connection.start();
+  }
+
+  // -- Getters and setters --
+
+  /**
+   * Returns the {@linkplain Panel LCARS panel} wrapped by this session.
+   */
+  public Panel getPanel()
+  {
+    return panel;
+  }
+
+  /**
+   * Returns the address of the remote screen.
+   */
+  public String getScreenAddress()
+  {
+    return connection.getRemoteAddress();
+  }
+
+  /**
+   * Returns the connection to the screen.
+   */
+  public NioConnection getConnection()
+  {
+    return connection;
+  }
+
+  /**
+   * Returns the statistics of the calls to the screen.
+   */
+  public RemoteCallMonitor getCallMonitor()
+  {
+    return callMonitor;
+  }
+
+  /**
+   * Closes the connection and stops the panel.
+   */
+  public void close()
+  {
+    connection.close();
+  }
+
+  // -- Implementation of the IRmiPanelAdapterRemote interface --
+
+  // The screen adapter reads the serial number of the panel only after this
+  // method returns; the screen must accept the message box before that
+  @SuppressWarnings("deprecation")
+  @Override
+  public synchronized void setPanel(String className) throws ClassNotFoundException
+  {
+    Log.info("Setting panel "+className+" ...");
+    stopPanel();
+    panel = Panel.createPanel(className,screen);
+    if (panel==null)
+    {
+      panel = Panel.createPanel(null,screen);
+      try
+      {
+        screen.setPanelId(panel.serialNo);
+        String s = "cannot be created on a remote screen.";
+        panel.messageBox("ERROR",className+"\n"+s.toUpperCase(),"OK",null,null);
+      } catch (RemoteException e)
+      {
+        Log.err("... Panel set failed",e);
+        return;
+      }
+    }
+    Log.info("... Panel set");
+  }
+
+  @Override
+  public void ping()
+  {
+    // Called just to see if the session is still connected
+  }
+
+  // -- Panel wrapper methods / Implementation of the IPanel interface --
+
+  @Override
+  public void start()
+  {
+    panel.start();
+  }
+
+  @Override
+  public void stop()
+  {
+    panel.stop();
+  }
+
+  @Override
+  public boolean isRunning()
+  {
+    return panel.isRunning();
+  }
+
+  @Override
+  public void processTouchEvents(TouchEvent[] events)
+  {
+    panel.processTouchEvents(events);
+  }
+
+  @Override
+  public void processKeyEvent(KeyEvent event)
+  {
+    panel.processKeyEvent(event);
+  }
+
+  @Override
+  public AGeometry[] getGeometries(long[] hashes)
+  {
+    return panel.getGeometries(hashes);
+  }
+
+  @Override
+  public void panelSelectionDialog()
+  {
+    panel.panelSelectionDialog();
+  }
+
+  @Override
+  public int serialNo()
+  {
+    return (panel != null) ? panel.serialNo : -1;
+  }
+
+  @Override
+  public String getElementInfo(int serialNo) throws RemoteException
+  {
+    return panel.getElementInfo(serialNo);
+  }
+
+  // -- Private methods --
+
+  private synchronized void stopPanel()
+  {
+    if (panel != null && panel.isRunning())
+      panel.stop();
+  }
+}
+
+// EOF
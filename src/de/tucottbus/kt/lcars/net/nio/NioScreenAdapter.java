@@ -0,0 +1,340 @@
+package de.tucottbus.kt.lcars.net.nio;
+
+import java.awt.geom.Area;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.rmi.RemoteException;
+
+import de.tucottbus.kt.lcars.IPanel;
+import de.tucottbus.kt.lcars.IScreen;
+import de.tucottbus.kt.lcars.LCARS;
+import de.tucottbus.kt.lcars.Panel;
+import de.tucottbus.kt.lcars.PanelData;
+import de.tucottbus.kt.lcars.Screen;
+import de.tucottbus.kt.lcars.feedback.UserFeedback;
+import de.tucottbus.kt.lcars.logging.Log;
+import de.tucottbus.kt.lcars.net.IRmiPanelAdapterRemote;
+import de.tucottbus.kt.lcars.net.IRmiScreenAdapterRemote;
+import de.tucottbus.kt.lcars.net.NetUtils;
+import de.tucottbus.kt.lcars.net.RemoteCallMonitor;
+import de.tucottbus.kt.lcars.net.TransferStatistics;
+import de.tucottbus.kt.lcars.net.panels.ClientPanel;
+import de.tucottbus.kt.lcars.util.FrameTimings;
+import de.tucottbus.kt.lcars.util.LoadStatistics;
+
+/**
+ * NIO streaming network adapter for an {@linkplain Screen LCARS screen}. The
+ * NIO counterpart of {@link de.tucottbus.kt.lcars.net.RmiScreenAdapter
+ * RmiScreenAdapter}: keeps one persistent connection to a {@linkplain NioServer
+ * NIO panel server} and displays a {@link ClientPanel} while there is none.
+ */
+public class NioScreenAdapter implements IScreen, IRmiScreenAdapterRemote
+{
+  // -- Fields --
+
+  /**
+   * The {@linkplain Screen LCARS screen} wrapped by this network adapter.
+   */
+  private final Screen screen;
+
+  /**
+   * The name of the host serving the panel.
+   */
+  private final String panelHostName;
+
+  /**
+   * The connection to the panel server, <code>null</code> if not connected.
+   */
+  private volatile NioConnection connection;
+
+  /**
+   * The remote panel, <code>null</code> if not connected.
+   */
+  private volatile IPanel peer;
+
+  /**
+   * The statistics of the calls to the remote panel.
+   */
+  private final RemoteCallMonitor callMonitor = new RemoteCallMonitor();
+
+  /**
+   * The transfer statistics of the update data received by
+   * {@link #update(PanelData, boolean)}.
+   */
+  private final TransferStatistics transferStat = new TransferStatistics();
+
+  /**
+   * The connection daemon.
+   */
+  private final Thread connector;
+  private volatile boolean run = true;
+
+  // -- Constructors --
+
+  /**
+   * Creates a new NIO network adapter for a remote {@linkplain Screen LCARS
+   * screen}.
+   *
+   * @param screen
+   *          The screen to wrap by the adapter.
+   * @param panelHostName
+   *          The name of the host serving the {@linkplain IPanel LCARS panel}
+   *          to connect this adapter to.
+   */
+  public NioScreenAdapter(Screen screen, String panelHostName)
+  {
+    this.screen        = screen;
+    this.panelHostName = panelHostName;
+    try
+    {
+      screen.setPanel(Panel.createPanel(ClientPanel.class.getName(),screen));
+    }
+    catch (ClassNotFoundException e)
+    {
+      // Should not happen since default Panel is created!
+    }
+    connector = new Thread(this::runConnector,"NioScreenAdapter.connector");
+    connector.setDaemon(true);
+    connector.start();
+  }
+
+  // -- Getters and setters --
+
+  /**
+   * Returns the name of the host serving the panel.
+   */
+  public String getPeerHostName()
+  {
+    return panelHostName;
+  }
+
+  /**
+   * Determines if the adapter is connected to a panel server.
+   */
+  public boolean isConnected()
+  {
+    return connection != null;
+  }
+
+  /**
+   * Returns the statistics of the calls to the remote panel. The latency
+   * statistics cover the last second.
+   */
+  public RemoteCallMonitor getCallMonitor()
+  {
+    return callMonitor;
+  }
+
+  /**
+   * Closes the connection and terminates the connection daemon.
+   */
+  public void shutDown()
+  {
+    run = false;
+    connector.interrupt();
+    NioConnection connection = this.connection;
+    if (connection != null)
+      connection.close();
+  }
+
+  // -- Implementation of the IRmiScreenAdapter interface --
+
+  @Override
+  public void ping()
+  {
+    // Called just to see if screen adapter is still connected.
+  }
+
+  @Override
+  public int getMemStat()
+  {
+    return (int)transferStat.getBytesPerFrame();
+  }
+
+  @Override
+  public double getTransferRate()
+  {
+    return transferStat.getBytesPerSecond();
+  }
+
+  // -- Screen wrapper methods / Implementation of the IScreen interface --
+
+  @Override
+  public Area getArea()
+  {
+    return screen.getArea();
+  }
+
+  @Override
+  public void setArea(Area area) throws RemoteException
+  {
+    screen.setArea(area);
+  }
+
+  @Override
+  public String getHostName()
+  {
+    return NetUtils.getHostName();
+  }
+
+  @Override
+  public void setPanel(String className) throws ClassNotFoundException
+  {
+    IRmiPanelAdapterRemote rpanel = (IRmiPanelAdapterRemote)peer;
+    if (rpanel==null)
+      return;
+
+    try
+    {
+      rpanel.setPanel(className);
+      screen.setPanelId(rpanel.serialNo());
+    }
+    catch (RemoteException e)
+    {
+      Log.err("Setting panel "+className+" failed.", e);
+    }
+  }
+
+  @Override
+  public IPanel getPanel()
+  {
+    // The stub, not the monitoring proxy, may cross the wire
+    return RemoteCallMonitor.unwrap(peer);
+  }
+
+  @Override
+  public void update(PanelData data, boolean incremental)
+  {
+    transferStat.add(Math.max(0,data.getEncodedSize()));
+    screen.update(data,incremental);
+  }
+
+  @Override
+  public void userFeedback(UserFeedback.Type type)
+  {
+    screen.userFeedback(type);
+  }
+
+  @Override
+  public LoadStatistics getLoadStatistics()
+  {
+    return screen.getLoadStatistics();
+  }
+
+  @Override
+  public FrameTimings.Snapshot getFrameTimings()
+  {
+    return screen.getFrameTimings();
+  }
+
+  @Override
+  public void exit() throws RemoteException
+  {
+    shutDown();
+    screen.exit();
+  }
+
+  @Override
+  public boolean isDisposed() throws RemoteException
+  {
+    return screen.isDisposed();
+  }
+
+  @Deprecated
+  @Override
+  public void setPanelId(int panelId) throws RemoteException
+  {
+    screen.setPanelId(panelId);
+  }
+
+  // -- Private methods --
+
+  /**
+   * Connects to the panel server and pings it once a second. Reconnects if the
+   * connection broke down.
+   */
+  private void runConnector()
+  {
+    String peerMsg = null;
+    while (run)
+    {
+      String  msg;
+      boolean connected = connection!=null;
+      try
+      {
+        if (!connected)
+        {
+          SocketChannel channel = SocketChannel.open(
+              new InetSocketAddress(panelHostName,NetUtils.getNioPort()));
+          NioConnection connection = new NioConnection("NioScreenAdapter@"+panelHostName,
+              channel,this,this::updatePeer);
+          IPanel peer = callMonitor.wrap((IPanel)connection.getPeer(IPanel.class,
+              IRmiPanelAdapterRemote.class));
+          this.connection = connection;
+          this.peer = peer;
+          connection.start();
+          ((IRmiPanelAdapterRemote)peer).setPanel(LCARS.getArg("--panel="));
+          updatePeer();
+          msg = "Connection to "+connection.getRemoteAddress()+" established";
+        }
+        else
+        {
+          IRmiPanelAdapterRemote rpanel = (IRmiPanelAdapterRemote)peer;
+          if (rpanel!=null)
+            rpanel.ping();
+          msg = "Connection to peer ok";
+        }
+      }
+      catch (Exception e)
+      {
+        // Any failure, including runtime exceptions relayed from the server,
+        // drops the connection; the next iteration reconnects
+        msg = connected ? "Connection to peer broke down" : "Peer not found: "+e.getMessage();
+        NioConnection connection = this.connection;
+        if (connection != null)
+          connection.close();
+      }
+      if (!msg.equals(peerMsg))
+      {
+        Log.info(msg);
+        peerMsg = msg;
+      }
+
+      try { Thread.sleep(1000); } catch (InterruptedException e) {}
+      callMonitor.period();
+    }
+  }
+
+  /**
+   * Displays the remote panel or, if there is no connection, the
+   * {@link ClientPanel}.
+   */
+  private synchronized void updatePeer()
+  {
+    NioConnection connection = this.connection;
+    if (connection != null && !connection.isOpen())
+    {
+      this.connection = null;
+      this.peer = null;
+    }
+
+    IPanel panel = peer;
+    if (panel != null)
+      screen.setPanel(panel);
+    else
+    {
+      panel = screen.getPanel();
+      if (panel == null || panel.getClass() != ClientPanel.class)
+        try
+        {
+          screen.setPanel(Panel.createPanel(ClientPanel.class.getName(),screen));
+        }
+        catch (ClassNotFoundException e)
+        {
+          // Should not happen since default Panel is created!
+        }
+    }
+  }
+}
+
+// EOF
@@ -0,0 +1,155 @@
+package de.tucottbus.kt.lcars.net.nio;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.tucottbus.kt.lcars.logging.Log;
+import de.tucottbus.kt.lcars.net.NetUtils;
+
+/**
+ * Incubating - The LCARS panel server of the NIO streaming transport. Accepts
+ * connections of {@linkplain NioScreenAdapter NIO screen adapters} at the port
+ * returned by {@link NetUtils#getNioPort()} and serves a {@linkplain
+ * NioPanelSession panel session} for each of them.
+ *
+ * <p>Started by the command line options <code>--server
+ * --transport=nio</code>. To compare the transport with RMI over loopback, run
+ * the server and two clients <code>--clientof=localhost</code> and
+ * <code>--clientof=localhost --transport=nio</code> on the same machine. The
+ * connection itself is checked headless by {@link NioLoopbackCheck}.</p>
+ */
+public class NioServer
+{
+  /**
+   * The NIO panel server singleton.
+   */
+  private static NioServer singleton;
+
+  /**
+   * The listening channel.
+   */
+  private final ServerSocketChannel serverChannel;
+
+  /**
+   * The sessions served.
+   */
+  private final ArrayList<NioPanelSession> sessions = new ArrayList<NioPanelSession>();
+
+  /**
+   * The thread accepting connections.
+   */
+  private final Thread acceptor;
+
+  // -- Constructors --
+
+  private NioServer(int port) throws IOException
+  {
+    serverChannel = ServerSocketChannel.open();
+    serverChannel.bind(new InetSocketAddress(port));
+    acceptor = new Thread(this::runAcceptor,"NioServer.acceptor");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  // -- Static API --
+
+  /**
+   * Starts the NIO panel server. If starting the server failed, the program
+   * will exit.
+   */
+  public static synchronized void start()
+  {
+    if (singleton!=null)
+      return;
+    try
+    {
+      Log.info("Starting LCARS NIO panel server @"+NetUtils.getHostName()+":"
+          +NetUtils.getNioPort()+".");
+      singleton = new NioServer(NetUtils.getNioPort());
+    }
+    catch (IOException e)
+    {
+      Log.err("FATAL ERROR: NIO server setup failed.", e);
+      System.exit(-1);
+    }
+  }
+
+  /**
+   * Shuts down the NIO panel server and closes all sessions. If there is no
+   * server running, the method does nothing.
+   */
+  public static synchronized void shutDown()
+  {
+    if (singleton==null)
+      return;
+
+    Log.info("Shutting down LCARS NIO panel server.");
+    try
+    {
+      singleton.serverChannel.close();
+    }
+    catch (IOException e)
+    {
+      Log.err("Closing NIO server channel failed.", e);
+    }
+    for (NioPanelSession session : getSessions())
+      session.close();
+    singleton = null;
+  }
+
+  /**
+   * Returns the sessions currently served, an empty list if no NIO panel
+   * server is running.
+   */
+  public static List<NioPanelSession> getSessions()
+  {
+    NioServer server = singleton;
+    if (server==null)
+      return new ArrayList<NioPanelSession>();
+    synchronized (server.sessions)
+    {
+      return new ArrayList<NioPanelSession>(server.sessions);
+    }
+  }
+
+  // -- Private methods --
+
+  private void runAcceptor()
+  {
+    while (serverChannel.isOpen())
+    {
+      try
+      {
+        SocketChannel channel = serverChannel.accept();
+        Log.info("NIO server: Connection request from "+channel.getRemoteAddress());
+        NioPanelSession[] session = new NioPanelSession[1];
+        synchronized (sessions)
+        {
+          session[0] = new NioPanelSession(channel,() ->
+          {
+            synchronized (sessions)
+            {
+              sessions.remove(session[0]);
+            }
+          });
+          sessions.add(session[0]);
+        }
+      }
+      catch (ClosedChannelException e)
+      {
+        break;
+      }
+      catch (IOException e)
+      {
+        Log.err("NIO server: Accepting connection failed.", e);
+      }
+    }
+  }
+}
+
+// EOF
@@ -0,0 +1,530 @@
+package de.tucottbus.kt.lcars.net.nio;
+
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.rmi.Naming;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import de.tucottbus.kt.lcars.IPanel;
+import de.tucottbus.kt.lcars.IScreen;
+import de.tucottbus.kt.lcars.LCARS;
+import de.tucottbus.kt.lcars.Panel;
+import de.tucottbus.kt.lcars.PanelData;
+import de.tucottbus.kt.lcars.TouchEvent;
+import de.tucottbus.kt.lcars.elements.EElement;
+import de.tucottbus.kt.lcars.elements.EEvent;
+import de.tucottbus.kt.lcars.elements.EEventListenerAdapter;
+import de.tucottbus.kt.lcars.elements.ERect;
+import de.tucottbus.kt.lcars.elements.ElementData;
+import de.tucottbus.kt.lcars.elements.ElementState;
+import de.tucottbus.kt.lcars.feedback.UserFeedback;
+import de.tucottbus.kt.lcars.geometry.AGeometry;
+import de.tucottbus.kt.lcars.geometry.GeometryStore;
+import de.tucottbus.kt.lcars.net.IRmiPanelAdapterRemote;
+import de.tucottbus.kt.lcars.net.IRmiScreenAdapterRemote;
+import de.tucottbus.kt.lcars.net.NetUtils;
+import de.tucottbus.kt.lcars.net.RmiAdapter;
+import de.tucottbus.kt.lcars.net.RmiPanelAdapter;
+import de.tucottbus.kt.lcars.swt.ColorMeta;
+import de.tucottbus.kt.lcars.util.FrameTimings;
+import de.tucottbus.kt.lcars.util.LoadStatistics;
+
+/**
+ * Drives a {@linkplain Panel panel} through the NIO transport ({@link
+ * NioPanelSession} and {@link NioConnection}, as used by {@link
+ * NioScreenAdapter}) and through the RMI transport ({@link RmiPanelAdapter})
+ * and compares the frames delivered to the screen side with those of the same
+ * panel displayed on an in-process screen. The panel is driven by touch input
+ * from the screen side: the initial frame, changed, added and removed elements,
+ * geometry references which the screen must fetch by {@link
+ * IPanel#getGeometries(long[])} after it lost its geometry store, and key
+ * frames. The screen side applies the frames like {@link
+ * de.tucottbus.kt.lcars.geometry.rendering.LcarsComposite LcarsComposite} does,
+ * but without rendering. Runs headless (<code>-Djava.awt.headless=true</code>)
+ * and needs the RMI registry port {@link NetUtils#getRmiPort()} on the local
+ * host. Exits with status 1 if any check fails.
+ *
+ * <p>Usage: <code>java -Djava.awt.headless=true
+ * de.tucottbus.kt.lcars.net.nio.PanelLoopbackCheck</code></p>
+ */
+public class PanelLoopbackCheck
+{
+  private static final String[] STEPS =
+  { "initial frame", "touch input", "geometry fetch", "key frame" };
+
+  private static final int  BUTTONS  = 12;
+  private static final long TIMEOUT  = 5000;
+  private static final long QUIET    = 300;
+
+  private static int failures;
+
+  public static void main(String[] args) throws Exception
+  {
+    List<List<String>> expected = checkDirect();
+    checkNio(expected);
+    checkRmi(expected);
+    System.out.println(failures == 0 ? "All checks ok" : failures + " check(s) FAILED");
+    System.exit(failures == 0 ? 0 : 1);
+  }
+
+  // -- Checks --
+
+  /**
+   * Displays the panel on an in-process screen and records the reference
+   * frames.
+   */
+  private static List<List<String>> checkDirect() throws Exception
+  {
+    RecordingScreen screen = new RecordingScreen();
+    Panel panel = Panel.createPanel(CheckPanel.class.getName(),screen);
+    screen.panel = panel;
+    List<List<String>> frames = drive("direct",screen,panel,null);
+    panel.stop();
+    check("direct: touch input applied",!frames.get(1).equals(frames.get(0)));
+    return frames;
+  }
+
+  /**
+   * Displays the panel through a {@link NioPanelSession}.
+   */
+  private static void checkNio(List<List<String>> expected) throws Exception
+  {
+    try (ServerSocketChannel server = ServerSocketChannel.open())
+    {
+      server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(),0));
+      SocketChannel channel = SocketChannel.open(server.getLocalAddress());
+      NioPanelSession session = new NioPanelSession(server.accept(),() -> {});
+
+      RecordingScreen screen = new RecordingScreen();
+      NioConnection connection = new NioConnection("check",channel,screen,null);
+      IPanel panel = (IPanel)connection.getPeer(IPanel.class,
+          IRmiPanelAdapterRemote.class);
+      screen.panel = panel;
+      connection.start();
+      ((IRmiPanelAdapterRemote)panel).setPanel(CheckPanel.class.getName());
+
+      drive("NIO",screen,panel,expected);
+      connection.close();
+      session.close();
+    }
+  }
+
+  /**
+   * Displays the panel through an {@link RmiPanelAdapter}. The screen side
+   * binds the recording screen under the name of an RMI screen adapter.
+   */
+  private static void checkRmi(List<List<String>> expected) throws Exception
+  {
+    String host = NetUtils.getHostName();
+    Registry registry = LocateRegistry.createRegistry(NetUtils.getRmiPort());
+    RecordingScreen screen = new RecordingScreen();
+    UnicastRemoteObject.exportObject(screen,0);
+    Naming.rebind(RmiAdapter.makeScreenAdapterRmiName(host,0),screen);
+
+    RmiPanelAdapter adapter = new RmiPanelAdapter(CheckPanel.class.getName(),host);
+    IPanel panel = null;
+    for (long end = System.currentTimeMillis()+TIMEOUT; panel == null
+        && System.currentTimeMillis() < end; )
+      try
+      {
+        panel = (IPanel)Naming.lookup(RmiAdapter.makePanelAdapterUrl(host,host,0));
+      }
+      catch (Exception e)
+      {
+        Thread.sleep(100); // Not bound yet
+      }
+    if (panel == null)
+    {
+      check("RMI: connection",false);
+      return;
+    }
+    screen.panel = panel;
+
+    drive("RMI",screen,panel,expected);
+    adapter.shutDown();
+    UnicastRemoteObject.unexportObject(screen,true);
+    UnicastRemoteObject.unexportObject(registry,true);
+  }
+
+  // -- Private methods --
+
+  /**
+   * Drives the {@link CheckPanel} through the {@link #STEPS}. At every step
+   * waits until the screen shows the expected frame or, if there are no
+   * expectations, until the frames have settled.
+   *
+   * @return The frames shown by the screen at the steps.
+   */
+  private static List<List<String>> drive(String name, RecordingScreen screen,
+      IPanel panel, List<List<String>> expected) throws Exception
+  {
+    List<List<String>> frames = new ArrayList<List<String>>();
+    for (int step = 0; step < STEPS.length; step++)
+    {
+      long before = screen.getFrames();
+      long keyFrames = screen.getKeyFrames();
+      switch (step)
+      {
+      case 1:
+        touch(panel,1);
+        break;
+      case 2:
+        screen.clearGeometryStore();
+        touch(panel,2);
+        break;
+      case 3:
+        for (long end = System.currentTimeMillis()+TIMEOUT;
+            screen.getKeyFrames() == keyFrames && System.currentTimeMillis() < end; )
+          Thread.sleep(20);
+        before = screen.getFrames()-1;
+        break;
+      }
+      frames.add(await(screen,before,expected != null ? expected.get(step) : null));
+      if (expected != null)
+        check(name+": "+STEPS[step],frames.get(step).equals(expected.get(step)));
+    }
+    check(name+": geometries fetched",screen.getFetches() > 0);
+    check(name+": user feedback",screen.getFeedbacks() >= 2);
+    check(name+": no frames dropped",screen.getDropped() == 0);
+    return frames;
+  }
+
+  /**
+   * Waits until the screen shows the expected frame or, if
+   * <code>expected</code> is <code>null</code>, until it received a frame
+   * after <code>before</code> frames and no further frame for {@link #QUIET}
+   * milliseconds.
+   */
+  private static List<String> await(RecordingScreen screen, long before,
+      List<String> expected) throws InterruptedException
+  {
+    long end = System.currentTimeMillis()+TIMEOUT;
+    for (;;)
+    {
+      List<String> frame = screen.snapshot();
+      if (expected != null ? frame.equals(expected) : screen.getFrames() > before
+          && System.currentTimeMillis()-screen.getLastFrameTime() >= QUIET)
+        return frame;
+      if (System.currentTimeMillis() > end)
+        return frame;
+      Thread.sleep(20);
+    }
+  }
+
+  /**
+   * Touches a button of the {@link CheckPanel}.
+   */
+  private static void touch(IPanel panel, int button) throws RemoteException
+  {
+    Rectangle r = CheckPanel.getButtonBounds(button);
+    int x = r.x+r.width/2;
+    int y = r.y+r.height/2;
+    panel.processTouchEvents(new TouchEvent[]
+    {
+      new TouchEvent(TouchEvent.DOWN,x,y,true,true),
+      new TouchEvent(TouchEvent.UP,x,y,true,true)
+    });
+  }
+
+  private static void check(String name, boolean ok)
+  {
+    System.out.println(String.format("  %-40s %s",name,ok ? "ok" : "FAILED"));
+    if (!ok)
+      failures++;
+  }
+
+  // -- Nested classes --
+
+  /**
+   * The panel driven by the check. Touching a button changes its label, color
+   * and highlight, removes the last element and adds a new button.
+   */
+  public static class CheckPanel extends Panel
+  {
+    private int touches;
+
+    public CheckPanel(IScreen iscreen)
+    {
+      super(iscreen);
+    }
+
+    @Override
+    public void init()
+    {
+      for (int i = 0; i < BUTTONS; i++)
+        add(createButton(i,"BUTTON "+i));
+    }
+
+    static Rectangle getButtonBounds(int i)
+    {
+      return new Rectangle(40+(i%6)*300,100+(i/6)*120,280,100);
+    }
+
+    private ERect createButton(int i, String label)
+    {
+      Rectangle r = getButtonBounds(i);
+      int style = LCARS.EC_PRIMARY|LCARS.ES_LABEL_E|(i%3 == 0 ? LCARS.ES_STATIC : 0);
+      ERect button = new ERect(this,r.x,r.y,r.width,r.height,style,label);
+      button.addEEventListener(new EEventListenerAdapter()
+      {
+        @Override
+        public void touchDown(EEvent ee)
+        {
+          touched(button);
+        }
+      });
+      return button;
+    }
+
+    private void touched(ERect button)
+    {
+      touches++;
+      button.setLabel("TOUCHED "+touches);
+      button.setColor(new ColorMeta(0x9999FF));
+      button.setHighlighted(!button.isHighlighted());
+      ArrayList<EElement> elements = getElements();
+      remove(elements.get(elements.size()-1));
+      add(createButton(BUTTONS+touches,"ADDED "+touches));
+    }
+  }
+
+  /**
+   * A screen applying the received frames to a model of the displayed
+   * elements. {@linkplain de.tucottbus.kt.lcars.geometry.GRef Geometry
+   * references} are resolved from a geometry store, missing geometries are
+   * fetched from the panel.
+   */
+  private static final class RecordingScreen implements IScreen, IRmiScreenAdapterRemote
+  {
+    volatile IPanel panel;
+
+    private final GeometryStore store = new GeometryStore();
+    private LinkedHashMap<Long, ElementData> elements = new LinkedHashMap<Long, ElementData>();
+    private PanelData last;
+    private long frames;
+    private long keyFrames;
+    private long lastFrameTime;
+    private int  fetches;
+    private int  dropped;
+    private int  feedbacks;
+
+    @Override
+    public synchronized void update(PanelData data, boolean incremental)
+    {
+      if (!resolveGeometries(data))
+      {
+        dropped++;
+        return;
+      }
+      if (data.delta)
+      {
+        if (last == null || last.panelId != data.panelId)
+        {
+          dropped++;
+          return;
+        }
+        if (data.removedElements != null)
+          for (long serialNo : data.removedElements)
+            elements.remove(serialNo);
+        for (ElementData ed : data.elementData)
+        {
+          ElementData edp = elements.get(ed.serialNo);
+          if (edp != null)
+            ed.applyUpdate(edp);
+          elements.put(ed.serialNo,ed);
+        }
+      }
+      else
+      {
+        elements = new LinkedHashMap<Long, ElementData>();
+        for (ElementData ed : data.elementData)
+          elements.put(ed.serialNo,ed);
+        keyFrames++;
+      }
+      last = data;
+      frames++;
+      lastFrameTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the displayed elements in z-order, without their serial numbers
+     * (which differ from panel to panel).
+     */
+    synchronized List<String> snapshot()
+    {
+      List<String> result = new ArrayList<String>();
+      for (ElementData ed : elements.values())
+      {
+        ElementState s = ed.getState();
+        StringBuilder sb = new StringBuilder();
+        sb.append(s.getBounds()).append(' ').append(s.getColor()).append(' ')
+          .append(s.getAlpha()).append(' ').append(Integer.toHexString(s.getStyle()))
+          .append(' ').append(s.isVisible()).append(' ').append(s.isHighlighted());
+        for (AGeometry geom : ed.getGeometries())
+          sb.append(' ').append(geom.getClass().getSimpleName()).append(':')
+            .append(Long.toHexString(AGeometry.wireHash(geom)));
+        result.add(sb.toString());
+      }
+      return result;
+    }
+
+    synchronized void clearGeometryStore()
+    {
+      store.clear();
+    }
+
+    synchronized long getFrames()
+    {
+      return frames;
+    }
+
+    synchronized long getKeyFrames()
+    {
+      return keyFrames;
+    }
+
+    synchronized long getLastFrameTime()
+    {
+      return lastFrameTime;
+    }
+
+    synchronized int getFetches()
+    {
+      return fetches;
+    }
+
+    synchronized int getDropped()
+    {
+      return dropped;
+    }
+
+    synchronized int getFeedbacks()
+    {
+      return feedbacks;
+    }
+
+    private boolean resolveGeometries(PanelData data)
+    {
+      ArrayList<Long> missing = new ArrayList<Long>();
+      for (ElementData ed : data.elementData)
+        ed.resolveGeometries(store,missing);
+      if (missing.isEmpty())
+        return true;
+      if (panel == null)
+        return false;
+
+      long[] hashes = new long[missing.size()];
+      for (int i = 0; i < hashes.length; i++)
+        hashes[i] = missing.get(i);
+      try
+      {
+        AGeometry[] geoms = panel.getGeometries(hashes);
+        for (int i = 0; i < hashes.length && i < geoms.length; i++)
+          if (geoms[i] != null)
+            store.put(hashes[i],geoms[i]);
+        fetches += hashes.length;
+      }
+      catch (RemoteException e)
+      {
+        return false;
+      }
+
+      missing.clear();
+      for (ElementData ed : data.elementData)
+        ed.resolveGeometries(store,missing);
+      return missing.isEmpty();
+    }
+
+    @Override
+    public synchronized void userFeedback(UserFeedback.Type type)
+    {
+      feedbacks++;
+    }
+
+    @Override
+    public Area getArea()
+    {
+      return new Area(new Rectangle(1920,1080));
+    }
+
+    @Override
+    public void setArea(Area area)
+    {
+    }
+
+    @Override
+    public String getHostName()
+    {
+      return NetUtils.getHostName();
+    }
+
+    @Override
+    public void setPanel(String className)
+    {
+    }
+
+    @Override
+    public IPanel getPanel()
+    {
+      return panel;
+    }
+
+    @Override
+    public LoadStatistics getLoadStatistics()
+    {
+      return null;
+    }
+
+    @Override
+    public FrameTimings.Snapshot getFrameTimings()
+    {
+      return null;
+    }
+
+    @Override
+    public void exit()
+    {
+    }
+
+    @Override
+    public boolean isDisposed()
+    {
+      return false;
+    }
+
+    @Deprecated
+    @Override
+    public void setPanelId(int panelId)
+    {
+    }
+
+    @Override
+    public void ping()
+    {
+    }
+
+    @Override
+    public int getMemStat()
+    {
+      return 0;
+    }
+
+    @Override
+    public double getTransferRate()
+    {
+      return 0;
+    }
+  }
+}
+
+// EOF
@@ -22,6 +22,7 @@ import de.tucottbus.kt.lcars.logging.Log;
 import de.tucottbus.kt.lcars.net.IRmiScreenAdapterRemote;
 import de.tucottbus.kt.lcars.net.LcarsServer;
 import de.tucottbus.kt.lcars.net.NetUtils;
+import de.tucottbus.kt.lcars.net.RemoteCallMonitor;
 import de.tucottbus.kt.lcars.net.RmiPanelAdapter;
 import de.tucottbus.kt.lcars.swt.ColorMeta;
 import de.tucottbus.kt.lcars.util.LoadStatistics;
@@ -411,11 +412,14 @@ public class ServerPanel extends Panel
         try
         {
           LoadStatistics lds = ((IScreen)rpa.getPeer()).getLoadStatistics();
-          eCscLd.setLabel(String.format("SCR LOAD\n%03d-%02d",lds.getLoad(),lds.getEventsPerPeriod()));
+          RemoteCallMonitor.CallStatistics ucs = rpa.getCallMonitor().getStatistics("update");
+          eCscLd.setLabel(String.format(Locale.ENGLISH,"SCR LOAD\n%03d-%02d\nUPD %s %.1f%%",
+              lds.getLoad(),lds.getEventsPerPeriod(),ucs.getLatency(),ucs.getFailureRate()*100));
 
-          int cnt = rpa.getLoadStatistics().getEventsPerPeriod();
-          int mem = ((IRmiScreenAdapterRemote)rpa.getPeer()).getMemStat()/1024;
-          eCscSize.setLabel(String.format(Locale.ENGLISH,"%03d kB, %04.1f MBit/s",mem,((float)(mem*cnt)*8)/1024.f));
+          IRmiScreenAdapterRemote rsa = (IRmiScreenAdapterRemote)rpa.getPeer();
+          int    mem  = rsa.getMemStat()/1024;
+          double rate = rsa.getTransferRate()*8/(1024*1024);
+          eCscSize.setLabel(String.format(Locale.ENGLISH,"%03d kB, %04.1f MBit/s",mem,rate));
         }
         catch (Exception e)
         {
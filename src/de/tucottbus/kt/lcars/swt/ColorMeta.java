@@ -1,10 +1,14 @@
 package de.tucottbus.kt.lcars.swt;
 
+import java.io.IOException;
 import java.io.Serializable;
 
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.RGB;
 
+import de.tucottbus.kt.lcars.util.WireInput;
+import de.tucottbus.kt.lcars.util.WireOutput;
+
 public final class ColorMeta implements Serializable
 {
   private static final long serialVersionUID = 7144575098466224086L;
@@ -296,4 +300,35 @@ public final class ColorMeta implements Serializable
   public String toString() {
     return ColorMeta.class.getSimpleName() + " rgba="+Integer.toHexString(getValue()) + " hasAlpha=" + (HasAlpha?1:0);
   }
+  
+  /**
+   * Writes a nullable color in the compact wire format: a tag byte followed by
+   * three (opaque) or four (with alpha) bytes.
+   */
+  public static void writeWire(WireOutput out, ColorMeta color) throws IOException {
+    if (color == null) {
+      out.writeByte(0);
+      return;
+    }
+    out.writeByte(color.HasAlpha ? 2 : 1);
+    if (color.HasAlpha)
+      out.writeByte(color.Alpha);
+    out.writeByte(color.Red);
+    out.writeByte(color.Green);
+    out.writeByte(color.Blue);
+  }
+  
+  /**
+   * Reads a nullable color written by {@link #writeWire(WireOutput, ColorMeta)}.
+   */
+  public static ColorMeta readWire(WireInput in) throws IOException {
+    int tag = in.readUnsignedByte();
+    if (tag == 0)
+      return null;
+    int a = tag == 2 ? in.readUnsignedByte() : 0xFF;
+    int r = in.readUnsignedByte();
+    int g = in.readUnsignedByte();
+    int b = in.readUnsignedByte();
+    return new ColorMeta((a << A_SHIFT) | (r << R_SHIFT) | (g << G_SHIFT) | (b << B_SHIFT), tag == 2);
+  }
 }
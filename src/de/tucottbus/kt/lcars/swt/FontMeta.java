@@ -1,10 +1,14 @@
 package de.tucottbus.kt.lcars.swt;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.StreamCorruptedException;
 
 import org.eclipse.swt.graphics.Font;
 
 import de.tucottbus.kt.lcars.LCARS;
+import de.tucottbus.kt.lcars.util.WireInput;
+import de.tucottbus.kt.lcars.util.WireOutput;
 
 public abstract class FontMeta implements Serializable
 {
@@ -52,6 +56,51 @@ public abstract class FontMeta implements Serializable
     return (int)Math.round((float)pixels/(float)displayDpiY*72.);
   }
   
+  /**
+   * Writes a nullable font meta information in the compact wire format.
+   * 
+   * @param out
+   *          The wire output stream.
+   * @param meta
+   *          The font meta information, can be <code>null</code>.
+   */
+  public static void writeWire(WireOutput out, FontMeta meta) throws IOException
+  {
+    if (meta instanceof Implicit)
+    {
+      out.writeByte(1);
+      out.writeVarInt(((Implicit)meta).style);
+    }
+    else if (meta instanceof Explicit)
+    {
+      Explicit explicit = (Explicit)meta;
+      out.writeByte(2);
+      out.writeString(explicit.name);
+      out.writeVarInt(explicit.height);
+      out.writeVarInt(explicit.style);
+    }
+    else
+      out.writeByte(0);
+  }
+  
+  /**
+   * Reads a nullable font meta information written by
+   * {@link #writeWire(WireOutput, FontMeta)}.
+   * 
+   * @param in
+   *          The wire input stream.
+   */
+  public static FontMeta readWire(WireInput in) throws IOException
+  {
+    switch (in.readUnsignedByte())
+    {
+    case 0: return null;
+    case 1: return new Implicit(in.readVarInt());
+    case 2: return new Explicit(in.readString(), in.readVarInt(), in.readVarInt());
+    default: throw new StreamCorruptedException("Unknown font meta tag");
+    }
+  }
+  
   //-- Nested classes --//
   
   /**
@@ -88,6 +137,18 @@ public abstract class FontMeta implements Serializable
       return LCARS.getFontMeta(style).getFont();
     }
 
+    @Override
+    public boolean equals(Object obj)
+    {
+      return obj instanceof Implicit && ((Implicit)obj).style == style;
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return style;
+    }
+
     public String toString() 
     {
       return FontMeta.class.getSimpleName() + "." + Implicit.class.getSimpleName() + " style=" + Integer.toHexString(style);
@@ -164,6 +225,22 @@ public abstract class FontMeta implements Serializable
       return SWTResourceManager.getFont(name, pxToPt(height), style);
     }
     
+    @Override
+    public boolean equals(Object obj)
+    {
+      if (!(obj instanceof Explicit))
+        return false;
+      Explicit other = (Explicit)obj;
+      return height == other.height && style == other.style
+          && name.equals(other.name);
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return (name.hashCode() * 31 + height) * 31 + style;
+    }
+    
     @Override
     public String toString() 
     {
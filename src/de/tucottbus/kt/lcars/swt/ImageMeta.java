@@ -1,11 +1,21 @@
 package de.tucottbus.kt.lcars.swt;
 
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.util.Objects;
+
+import javax.imageio.ImageIO;
 
 import org.eclipse.swt.graphics.Image;
 
 import de.tucottbus.kt.Root;
+import de.tucottbus.kt.lcars.logging.Log;
 import de.tucottbus.kt.lcars.util.Objectt;
+import de.tucottbus.kt.lcars.util.WireInput;
+import de.tucottbus.kt.lcars.util.WireOutput;
 
 /**
  * This class contains meta information and provides methods to load an image different sources
@@ -41,6 +51,33 @@ public abstract class ImageMeta implements Serializable
   
   abstract Image doGetImage();
   
+  /**
+   * Loads the image as an AWT image without an SWT device, e.g. for
+   * rendering on headless hosts. The image is not cached.
+   * 
+   * @return The image or <code>null</code> if there is no image or it cannot
+   *         be loaded.
+   */
+  public final BufferedImage getAwtImage()
+  {
+    if (path == null)
+      return null;
+    try
+    {
+      return doGetAwtImage();
+    }
+    catch (IOException e)
+    {
+      Log.err("Cannot load image " + this, e);
+      return null;
+    }
+  }
+  
+  BufferedImage doGetAwtImage() throws IOException
+  {
+    return null;
+  }
+  
   private boolean doEquals(ImageMeta other)
   {
     final Class<? extends ImageMeta> c = getClass();
@@ -61,6 +98,58 @@ public abstract class ImageMeta implements Serializable
         && doEquals((ImageMeta)other);
   }
 
+  @Override
+  public final int hashCode()
+  {
+    return Objects.hash(getClass(), path);
+  }
+
+  /**
+   * Writes a nullable image meta information in the compact wire format.
+   * 
+   * @param out
+   *          The wire output stream.
+   * @param meta
+   *          The image meta information, can be <code>null</code>.
+   */
+  public static void writeWire(WireOutput out, ImageMeta meta) throws IOException
+  {
+    if (meta instanceof Resource)
+      out.writeByte(1);
+    else if (meta instanceof File)
+      out.writeByte(2);
+    else if (meta instanceof None)
+    {
+      out.writeByte(3);
+      return;
+    }
+    else
+    {
+      out.writeByte(0);
+      return;
+    }
+    out.writeString(meta.path);
+  }
+  
+  /**
+   * Reads a nullable image meta information written by
+   * {@link #writeWire(WireOutput, ImageMeta)}.
+   * 
+   * @param in
+   *          The wire input stream.
+   */
+  public static ImageMeta readWire(WireInput in) throws IOException
+  {
+    switch (in.readUnsignedByte())
+    {
+    case 0: return null;
+    case 1: return new Resource(in.readString());
+    case 2: return new File(in.readString());
+    case 3: return new None();
+    default: throw new StreamCorruptedException("Unknown image meta tag");
+    }
+  }
+  
   //--Nested classes
   
   /**
@@ -85,6 +174,24 @@ public abstract class ImageMeta implements Serializable
       return (path != null) ? SWTResourceManager.getImage(Root.class, path) : null;
     }  
     
+    @Override
+    final BufferedImage doGetAwtImage() throws IOException
+    {
+      InputStream in = path.length() > 0 && path.charAt(0) == '/'
+          ? Root.class.getClassLoader().getResourceAsStream(path.substring(1))
+          : Root.class.getResourceAsStream(path);
+      if (in == null)
+        throw new IOException("Resource not found");
+      try
+      {
+        return ImageIO.read(in);
+      }
+      finally
+      {
+        in.close();
+      }
+    }
+    
     @Override
     public String toString()
     {    
@@ -111,6 +218,12 @@ public abstract class ImageMeta implements Serializable
       return (path != null) ? SWTResourceManager.getImage(path) : null;
     }  
     
+    @Override
+    final BufferedImage doGetAwtImage() throws IOException
+    {
+      return ImageIO.read(new java.io.File(path));
+    }
+    
     @Override
     public final String toString()
     {    
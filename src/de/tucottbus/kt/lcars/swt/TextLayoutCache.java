@@ -0,0 +1,294 @@
+package de.tucottbus.kt.lcars.swt;
+
+import java.awt.Rectangle;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of measured text layouts. Measuring a text requires native
+ * text shaping through an SWT {@link org.eclipse.swt.graphics.TextLayout
+ * TextLayout}. As labels of keyboards, element arrays and value displays tend to
+ * recur, the measured lines are kept and reused. Layouts are stored relative to
+ * the origin of their bounding box, so the same layout serves texts of equal
+ * size at different positions.
+ *
+ * <p>If the cache is full, the least recently used layout is evicted. Instances
+ * are thread-safe.</p>
+ *
+ * @see de.tucottbus.kt.lcars.LCARS#createTextGeometry2D(FontMeta, String,
+ *      Rectangle, int, java.awt.Point, boolean)
+ */
+public class TextLayoutCache
+{
+  /**
+   * The default capacity.
+   */
+  public static final int DEFAULT_CAPACITY = 2048;
+
+  private final int capacity;
+  private final LinkedHashMap<Key, Object> entries;
+  private long hits;
+  private long misses;
+
+  /**
+   * Creates a text layout cache of the {@linkplain #DEFAULT_CAPACITY default
+   * capacity}.
+   */
+  public TextLayoutCache()
+  {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Creates a text layout cache.
+   *
+   * @param capacity
+   *          The maximal number of layouts to keep.
+   */
+  public TextLayoutCache(int capacity)
+  {
+    if (capacity <= 0)
+      throw new IllegalArgumentException("capacity");
+    this.capacity = capacity;
+    this.entries = new LinkedHashMap<Key, Object>(capacity, 0.75f, true)
+    {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest)
+      {
+        return size() > TextLayoutCache.this.capacity;
+      }
+    };
+  }
+
+  /**
+   * Returns the cached line layout of a text.
+   *
+   * @param fontMeta
+   *          The font.
+   * @param text
+   *          The text.
+   * @param width
+   *          The width of the bounding box.
+   * @param height
+   *          The height of the bounding box.
+   * @param align
+   *          The alignment.
+   * @param insetX
+   *          The horizontal margin.
+   * @param insetY
+   *          The vertical margin.
+   * @return The lines relative to the origin of the bounding box or
+   *         <code>null</code> if the layout is not cached.
+   */
+  public Line[] getLayout(FontMeta fontMeta, String text, int width, int height,
+      int align, int insetX, int insetY)
+  {
+    return (Line[])get(new Key(fontMeta, text, width, height, align, insetX, insetY));
+  }
+
+  /**
+   * Stores the line layout of a text.
+   *
+   * @param lines
+   *          The lines relative to the origin of the bounding box.
+   * @see #getLayout(FontMeta, String, int, int, int, int, int)
+   */
+  public void putLayout(FontMeta fontMeta, String text, int width, int height,
+      int align, int insetX, int insetY, Line[] lines)
+  {
+    put(new Key(fontMeta, text, width, height, align, insetX, insetY), lines);
+  }
+
+  /**
+   * Returns the cached bounds of a text. The returned rectangle must not be
+   * modified.
+   *
+   * @param fontMeta
+   *          The font.
+   * @param text
+   *          The text.
+   * @return The bounds or <code>null</code> if the bounds are not cached.
+   */
+  public Rectangle getTextBounds(FontMeta fontMeta, String text)
+  {
+    return (Rectangle)get(new Key(fontMeta, text, -1, -1, -1, 0, 0));
+  }
+
+  /**
+   * Stores the bounds of a text.
+   *
+   * @see #getTextBounds(FontMeta, String)
+   */
+  public void putTextBounds(FontMeta fontMeta, String text, Rectangle bounds)
+  {
+    put(new Key(fontMeta, text, -1, -1, -1, 0, 0), new Rectangle(bounds));
+  }
+
+  /**
+   * Removes all layouts from this cache.
+   */
+  public synchronized void clear()
+  {
+    entries.clear();
+  }
+
+  /**
+   * Returns the number of cached layouts.
+   */
+  public synchronized int size()
+  {
+    return entries.size();
+  }
+
+  /**
+   * Returns the number of successful look-ups since this cache was created.
+   */
+  public synchronized long getHits()
+  {
+    return hits;
+  }
+
+  /**
+   * Returns the number of failed look-ups since this cache was created.
+   */
+  public synchronized long getMisses()
+  {
+    return misses;
+  }
+
+  /**
+   * Returns the ratio of successful look-ups (0 ... 1).
+   */
+  public synchronized float getHitRate()
+  {
+    return hits + misses > 0 ? (float)hits / (hits + misses) : 0f;
+  }
+
+  @Override
+  public synchronized String toString()
+  {
+    return String.format("%s size=%d, hits=%d, misses=%d (%.1f%%)",
+        getClass().getSimpleName(), entries.size(), hits, misses,
+        getHitRate() * 100);
+  }
+
+  // -- Private methods --
+
+  private synchronized Object get(Key key)
+  {
+    Object value = entries.get(key);
+    if (value != null)
+      hits++;
+    else
+      misses++;
+    return value;
+  }
+
+  private synchronized void put(Key key, Object value)
+  {
+    if (value == null)
+      throw new NullPointerException("value");
+    entries.put(key, value);
+  }
+
+  // -- Nested classes --
+
+  /**
+   * A measured line of a text layout.
+   */
+  public static final class Line
+  {
+    /**
+     * The text of the line.
+     */
+    public final String text;
+
+    /**
+     * The bounds of the line relative to the origin of the bounding box.
+     */
+    public final int x, y, width, height;
+
+    /**
+     * The horizontal and vertical offset if the line exceeds the bounding box,
+     * 0 otherwise.
+     */
+    public final int indent, descent;
+
+    public Line(String text, int x, int y, int width, int height, int indent,
+        int descent)
+    {
+      this.text    = text;
+      this.x       = x;
+      this.y       = y;
+      this.width   = width;
+      this.height  = height;
+      this.indent  = indent;
+      this.descent = descent;
+    }
+  }
+
+  /**
+   * The key of a cached layout.
+   */
+  private static final class Key
+  {
+    private final FontMeta fontMeta;
+    private final String   text;
+    private final int      width;
+    private final int      height;
+    private final int      align;
+    private final int      insetX;
+    private final int      insetY;
+    private final int      hash;
+
+    Key(FontMeta fontMeta, String text, int width, int height, int align,
+        int insetX, int insetY)
+    {
+      this.fontMeta = fontMeta;
+      this.text     = text;
+      this.width    = width;
+      this.height   = height;
+      this.align    = align;
+      this.insetX   = insetX;
+      this.insetY   = insetY;
+
+      int h = fontMeta != null ? fontMeta.hashCode() : 0;
+      h = 31 * h + text.hashCode();
+      h = 31 * h + width;
+      h = 31 * h + height;
+      h = 31 * h + align;
+      h = 31 * h + insetX;
+      h = 31 * h + insetY;
+      this.hash = h;
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+      if (this == obj)
+        return true;
+      if (!(obj instanceof Key))
+        return false;
+      Key other = (Key)obj;
+      return hash == other.hash
+          && width == other.width
+          && height == other.height
+          && align == other.align
+          && insetX == other.insetX
+          && insetY == other.insetY
+          && text.equals(other.text)
+          && (fontMeta == null ? other.fontMeta == null
+              : fontMeta.equals(other.fontMeta));
+    }
+  }
+}
+
+// EOF
@@ -0,0 +1,308 @@
+package de.tucottbus.kt.lcars.swt;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.font.FontRenderContext;
+import java.awt.font.LineMetrics;
+import java.awt.font.TextAttribute;
+import java.awt.font.TextLayout;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import de.tucottbus.kt.lcars.LCARS;
+import de.tucottbus.kt.lcars.logging.Log;
+
+/**
+ * Pure-Java text metrics of an LCARS font. The metrics are derived from the
+ * corresponding AWT font once and kept in advance and kerning tables, so text
+ * can be laid out without an SWT {@link org.eclipse.swt.graphics.Device
+ * Device} and without native calls. This allows panels to be hosted on
+ * headless servers (command line option <code>--nogui</code>).
+ *
+ * <p>The results approximate the SWT text layout. The deviations have not
+ * been verified yet; {@link TextMetricsCheck} measures them on a host with a
+ * display.</p>
+ *
+ * @see LCARS#isHeadless()
+ */
+public final class TextMetrics
+{
+
+  /**
+   * The number of characters covered by the advance and kerning tables.
+   */
+  private static final int TABLE_SIZE = 256;
+
+  /**
+   * The font render context: 1 point equals 1 LCARS panel pixel.
+   */
+  private static final FontRenderContext FRC =
+      new FontRenderContext(null, true, true);
+
+  /**
+   * The metrics of all fonts used so far.
+   */
+  private static final ConcurrentHashMap<FontMeta.Explicit, TextMetrics> metrics
+    = new ConcurrentHashMap<FontMeta.Explicit, TextMetrics>();
+
+  private final java.awt.Font font;
+  private final float         ascent;
+  private final float         descent;
+  private final float         leading;
+  private final float[]       advances;
+  private final AtomicReferenceArray<float[]> kerning;
+
+  /**
+   * Returns the text metrics of a font.
+   *
+   * @param meta
+   *          The font descriptor.
+   */
+  public static TextMetrics get(FontMeta meta)
+  {
+    FontMeta.Explicit explicit;
+    if (meta instanceof FontMeta.Implicit)
+      explicit = LCARS.getFontMeta(((FontMeta.Implicit)meta).style);
+    else
+      explicit = (FontMeta.Explicit)meta;
+    return metrics.computeIfAbsent(explicit, TextMetrics::new);
+  }
+
+  /**
+   * Creates the text metrics of a font.
+   *
+   * @param meta
+   *          The font descriptor.
+   */
+  private TextMetrics(FontMeta.Explicit meta)
+  {
+    // SWT.BOLD and SWT.ITALIC equal the respective AWT font styles
+    int style = meta.style & (java.awt.Font.BOLD | java.awt.Font.ITALIC);
+    font = new java.awt.Font(meta.name, style, meta.height).deriveFont(
+        Collections.singletonMap(TextAttribute.KERNING, TextAttribute.KERNING_ON));
+
+    LineMetrics lm = font.getLineMetrics("Ag", FRC);
+    ascent  = lm.getAscent();
+    descent = lm.getDescent();
+    leading = lm.getLeading();
+
+    advances = new float[TABLE_SIZE];
+    for (char c = 0; c < TABLE_SIZE; c++)
+      advances[c] = Character.isISOControl(c) ? 0
+          : (float)font.getStringBounds(String.valueOf(c), FRC).getWidth();
+    kerning = new AtomicReferenceArray<float[]>(TABLE_SIZE);
+
+    Log.debug("Text metrics of " + meta + " loaded");
+  }
+
+  /**
+   * Returns the AWT font these metrics are derived from. The font size is
+   * given in LCARS panel pixels.
+   */
+  public java.awt.Font getAwtFont()
+  {
+    return font;
+  }
+
+  /**
+   * Returns the ascent in pixels.
+   */
+  public int getAscent()
+  {
+    return Math.round(ascent);
+  }
+
+  /**
+   * Returns the descent in pixels.
+   */
+  public int getDescent()
+  {
+    return Math.round(descent);
+  }
+
+  /**
+   * Returns the leading in pixels.
+   */
+  public int getLeading()
+  {
+    return Math.round(leading);
+  }
+
+  /**
+   * Returns the height of a text line in pixels.
+   */
+  public int getLineHeight()
+  {
+    return (int)Math.ceil(ascent + descent + leading);
+  }
+
+  /**
+   * Returns the width of a single line of text in pixels.
+   *
+   * @param line
+   *          The text, must not contain line breaks.
+   */
+  public int getWidth(String line)
+  {
+    return (int)Math.ceil(getAdvance(line));
+  }
+
+  /**
+   * Computes the bounding rectangle of a text.
+   *
+   * @param text
+   *          The text, may contain line breaks.
+   * @return The bounds relative to the top left corner of the text.
+   */
+  public Rectangle getTextBounds(String text)
+  {
+    if (text == null || text.length() == 0)
+      return new Rectangle();
+    int width = 0;
+    for (String line : text.split("\n"))
+      width = Math.max(width, getWidth(line));
+    return new Rectangle(0, 0, width, getLineCount(text) * getLineHeight());
+  }
+
+  /**
+   * Lays out a multi-line text in a bounding box at (0,0) like the SWT based
+   * layout of
+   * {@link LCARS#createTextGeometry2D(FontMeta, String, java.awt.Rectangle, int, Point, boolean)
+   * LCARS.createTextGeometry2D}.
+   *
+   * @param text
+   *          The text.
+   * @param width
+   *          The width of the bounding box.
+   * @param height
+   *          The height of the bounding box.
+   * @param align
+   *          The text position, <code>(style &amp; ES_LABEL) &gt;&gt; 4</code>.
+   * @param insets
+   *          The margin which the text should keep from the bounding box.
+   * @return The lines.
+   */
+  public TextLayoutCache.Line[] layout(String text, int width, int height,
+      int align, Point insets)
+  {
+    String s[] = text.split("\n");
+    Rectangle tlBnds = getTextBounds(text);
+    int lh = getLineHeight();
+
+    int tx = insets.x;
+    int ty = insets.y;
+    int tw = width - insets.x * 2;
+    int th = height - insets.y * 2;
+
+    int tlx;
+    int tly;
+    switch (align / 3) // horizontal alignment
+    {
+      case 0: tlx = tx; break;
+      case 1: tlx = tx + (tw - tlBnds.width) / 2; break;
+      case 2: tlx = tx + tw - tlBnds.width; break;
+      default: return new TextLayoutCache.Line[0];
+    }
+    switch (align % 3) // vertical alignment
+    {
+      case 0: tly = ty - getLeading(); break;
+      case 1: tly = ty + (th - tlBnds.height - getDescent() + getLeading()) / 2; break;
+      case 2: tly = ty + th - tlBnds.height; break;
+      default: return new TextLayoutCache.Line[0];
+    }
+
+    ArrayList<TextLayoutCache.Line> lines = new ArrayList<TextLayoutCache.Line>(s.length);
+    for (int i = 0; i < s.length; i++)
+    {
+      // Line bounds within the text layout
+      int lw = getWidth(s[i]);
+      int lx;
+      switch (align / 3)
+      {
+        case 1 : lx = (tlBnds.width - lw) / 2; break;
+        case 2 : lx = tlBnds.width - lw; break;
+        default: lx = 0;
+      }
+      int ly = i * lh;
+
+      int x = lx + tlx;
+      int y = ly + tly;
+      lines.add(new TextLayoutCache.Line(
+          s[i],
+          Math.max(x, tx),
+          Math.max(y, ty),
+          Math.min(lw, tw - lx),
+          Math.min(lh, th - ly),
+          Math.min(x - tx, 0),
+          Math.min(y - ty, 0)));
+    }
+    return lines.toArray(new TextLayoutCache.Line[lines.size()]);
+  }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + " " + font.getName() + " "
+        + font.getSize() + "px ascent=" + ascent + " descent=" + descent
+        + " leading=" + leading;
+  }
+
+  // -- Private methods --
+
+  /**
+   * Returns the number of lines of a text, including a trailing empty line.
+   */
+  private static int getLineCount(String text)
+  {
+    int n = 1;
+    for (int i = 0; i < text.length(); i++)
+      if (text.charAt(i) == '\n')
+        n++;
+    return n;
+  }
+
+  /**
+   * Returns the advance of a single line of text in fractional pixels.
+   */
+  private float getAdvance(String line)
+  {
+    float advance = 0;
+    char prev = 0;
+    for (int i = 0; i < line.length(); i++)
+    {
+      char c = line.charAt(i);
+      if (c >= TABLE_SIZE)
+        // Outside the tables: measure the whole line
+        return new TextLayout(line, font, FRC).getAdvance();
+      advance += advances[c];
+      if (i > 0)
+        advance += getKerning(prev, c);
+      prev = c;
+    }
+    return advance;
+  }
+
+  /**
+   * Returns the kerning of a character pair. The kerning table is filled
+   * lazily, one row per leading character.
+   */
+  private float getKerning(char a, char b)
+  {
+    float[] row = kerning.get(a);
+    if (row == null)
+    {
+      row = new float[TABLE_SIZE];
+      if (!Character.isISOControl(a))
+        for (char c = 0; c < TABLE_SIZE; c++)
+          if (!Character.isISOControl(c))
+            row[c] = new TextLayout(new String(new char[] { a, c }), font, FRC)
+                .getAdvance() - advances[a] - advances[c];
+      kerning.set(a, row); // Racing threads compute identical rows
+    }
+    return row[b];
+  }
+}
+
+// EOF
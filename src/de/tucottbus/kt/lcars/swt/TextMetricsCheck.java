@@ -0,0 +1,168 @@
+package de.tucottbus.kt.lcars.swt;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.TextLayout;
+
+import de.tucottbus.kt.lcars.LCARS;
+import de.tucottbus.kt.lcars.geometry.AGeometry;
+import de.tucottbus.kt.lcars.geometry.GText;
+
+/**
+ * Compares the pure-Java {@link TextMetrics} with the SWT text layout for all
+ * LCARS fonts and a set of typical labels: first the text bounds, then the
+ * line positions of {@link TextMetrics#layout(String, int, int, int, Point)}
+ * with those of {@link LCARS#createTextGeometry2D(FontMeta, String, Rectangle,
+ * int, Point, boolean) LCARS.createTextGeometry2D} for all label positions.
+ * Requires a display. Exits with status 1 if any deviation exceeds
+ * {@link #TOLERANCE}.
+ *
+ * <p>Usage: <code>java de.tucottbus.kt.lcars.swt.TextMetricsCheck</code></p>
+ */
+public class TextMetricsCheck
+{
+  /**
+   * The maximal accepted deviation from the SWT text layout in pixels.
+   */
+  private static final int TOLERANCE = 2;
+
+  private static final int[] FONTS =
+  {
+    LCARS.EF_HEAD1, LCARS.EF_HEAD2, LCARS.EF_LARGE, LCARS.EF_NORMAL,
+    LCARS.EF_SMALL, LCARS.EF_TINY
+  };
+
+  private static final String[] TEXTS =
+  {
+    "LCARS", "MAIN PANEL", "0123456789", "AVATAR", "Tw Ty Va Wo",
+    "\u00C4\u00D6\u00DC \u00E4\u00F6\u00FC \u00DF", "SPEECH ENGINE\nSTANDBY", "A\nBB\nCCC"
+  };
+
+  /**
+   * Bounding boxes (width, height, inset x, inset y) to lay out the texts in,
+   * the last one too small for most texts.
+   */
+  private static final int[][] BOXES =
+  {
+    { 300, 120, 0, 0 }, { 180, 60, 10, 4 }, { 40, 12, 0, 0 }
+  };
+
+  public static void main(String[] args)
+  {
+    int maxDev = Math.max(checkBounds(), checkLayouts());
+    System.out.println("Maximal deviation: " + maxDev + " px (tolerance "
+        + TOLERANCE + " px)");
+    System.exit(maxDev > TOLERANCE ? 1 : 0);
+  }
+
+  /**
+   * Compares the text bounds, the descent and the leading.
+   *
+   * @return The maximal deviation in pixels.
+   */
+  private static int checkBounds()
+  {
+    int maxDev = 0;
+    for (int style : FONTS)
+    {
+      FontMeta.Explicit meta = LCARS.getFontMeta(style);
+      TextMetrics tm = TextMetrics.get(meta);
+      System.out.println(meta);
+      for (String text : TEXTS)
+      {
+        Font font = meta.getFont();
+        TextLayout tl = new TextLayout(font.getDevice());
+        tl.setFont(font);
+        tl.setText(text);
+        org.eclipse.swt.graphics.Rectangle s = tl.getBounds();
+        Rectangle j = tm.getTextBounds(text);
+        int dev = Math.max(Math.abs(s.width - j.width),
+            Math.abs(s.height - j.height));
+        dev = Math.max(dev, Math.abs(tl.getDescent() - tm.getDescent()));
+        dev = Math.max(dev,
+            Math.abs(tl.getLineMetrics(0).getLeading() - tm.getLeading()));
+        tl.dispose();
+
+        maxDev = Math.max(maxDev, dev);
+        System.out.println(String.format("  %-24s swt=%4dx%-4d java=%4dx%-4d %s",
+            "\"" + text.replace("\n", "\\n") + "\"", s.width, s.height, j.width,
+            j.height, dev > TOLERANCE ? "FAILED" : "ok"));
+      }
+    }
+    return maxDev;
+  }
+
+  /**
+   * Compares the line positions for all label positions and bounding boxes.
+   * The SWT layout is obtained through
+   * {@link LCARS#createTextGeometry2D(FontMeta, String, Rectangle, int, Point,
+   * boolean) LCARS.createTextGeometry2D}, which measures with SWT if a display
+   * is present.
+   *
+   * @return The maximal deviation in pixels.
+   */
+  private static int checkLayouts()
+  {
+    int maxDev = 0;
+    for (int style : FONTS)
+    {
+      FontMeta.Explicit meta = LCARS.getFontMeta(style);
+      TextMetrics tm = TextMetrics.get(meta);
+      System.out.println(meta + " layouts");
+      for (String text : TEXTS)
+      {
+        int textDev = 0;
+        String worst = null;
+        for (int[] box : BOXES)
+          for (int align = 0; align <= LCARS.ES_LABEL_SE >> 4; align++)
+          {
+            Point insets = new Point(box[2], box[3]);
+            ArrayList<AGeometry> swt = LCARS.createTextGeometry2D(meta, text,
+                new Rectangle(0, 0, box[0], box[1]), align << 4, insets, true);
+            TextLayoutCache.Line[] java = tm.layout(text, box[0], box[1], align,
+                insets);
+            int dev = compare(swt, java);
+            if (dev > textDev || worst == null)
+            {
+              textDev = dev;
+              worst = String.format("%dx%d align %d", box[0], box[1], align);
+            }
+          }
+        maxDev = Math.max(maxDev, textDev);
+        System.out.println(String.format("  %-24s max %3d px at %-18s %s",
+            "\"" + text.replace("\n", "\\n") + "\"", textDev, worst,
+            textDev > TOLERANCE ? "FAILED" : "ok"));
+      }
+    }
+    return maxDev;
+  }
+
+  /**
+   * Returns the maximal deviation of the line positions, sizes, indents and
+   * descents, {@link Integer#MAX_VALUE} if the number of lines differs.
+   */
+  private static int compare(ArrayList<AGeometry> swt, TextLayoutCache.Line[] java)
+  {
+    if (swt.size() != java.length)
+      return Integer.MAX_VALUE;
+    int dev = 0;
+    for (int i = 0; i < java.length; i++)
+    {
+      GText gt = (GText)swt.get(i);
+      Rectangle b = gt.getBounds();
+      TextLayoutCache.Line l = java[i];
+      dev = Math.max(dev, Math.abs(b.x - l.x));
+      dev = Math.max(dev, Math.abs(b.y - l.y));
+      dev = Math.max(dev, Math.abs(b.width - l.width));
+      dev = Math.max(dev, Math.abs(b.height - l.height));
+      dev = Math.max(dev, Math.abs(gt.getIndent() - l.indent));
+      dev = Math.max(dev, Math.abs(gt.getDescent() - l.descent));
+    }
+    return dev;
+  }
+}
+
+// EOF
@@ -35,12 +35,24 @@ public class BlockingBoundedBuffer <E> {
         return availableSpaces.availablePermits() == 0;
     }
 
+    public int size() {
+        return availableItems.availablePermits();
+    }
+
     public void put(E x) throws InterruptedException {
         availableSpaces.acquire();
         doInsert(x);
         availableItems.release();
     }
 
+    public boolean offer(E x) {
+        if (!availableSpaces.tryAcquire())
+            return false;
+        doInsert(x);
+        availableItems.release();
+        return true;
+    }
+
     public E take() throws InterruptedException {
         availableItems.acquire();
         E item = doExtract();
@@ -0,0 +1,186 @@
+package de.tucottbus.kt.lcars.util;
+
+import java.io.Serializable;
+
+/**
+ * Latency histograms of the phases of producing and displaying a frame. Panels
+ * record the phases up to the transmission, screens record applying and
+ * painting frames. The statistics are collected in periods (usually one
+ * second); {@link #getSnapshot()} returns the statistics of the last complete
+ * period.
+ *
+ * @see LatencyHistogram
+ */
+public class FrameTimings
+{
+  /**
+   * The phases of a frame.
+   */
+  public enum Phase
+  {
+    /**
+     * Recomputing invalid geometries of the panel elements.
+     */
+    VALIDATE("VAL"),
+
+    /**
+     * Taking the snapshot of the panel.
+     */
+    SNAPSHOT("SNP"),
+
+    /**
+     * Encoding the snapshot for a remote screen.
+     */
+    ENCODE("ENC"),
+
+    /**
+     * Sending the frame to the screen.
+     */
+    TRANSMIT("TRM"),
+
+    /**
+     * Applying received frames on the screen.
+     */
+    APPLY("APL"),
+
+    /**
+     * Painting the screen.
+     */
+    PAINT("PNT");
+
+    /**
+     * A three-letter abbreviation for displays.
+     */
+    public final String label;
+
+    private Phase(String label)
+    {
+      this.label = label;
+    }
+  }
+
+  private final LatencyHistogram[] histograms
+    = new LatencyHistogram[Phase.values().length];
+  private volatile Snapshot snapshot = new Snapshot(null);
+
+  /**
+   * Creates empty frame timings.
+   */
+  public FrameTimings()
+  {
+    for (int i = 0; i < histograms.length; i++)
+      histograms[i] = new LatencyHistogram();
+  }
+
+  /**
+   * Records the latency of a phase.
+   *
+   * @param phase
+   *          The phase.
+   * @param nanos
+   *          The latency in nanoseconds.
+   */
+  public void record(Phase phase, long nanos)
+  {
+    histograms[phase.ordinal()].record(nanos);
+  }
+
+  /**
+   * Returns the histogram of the current period of a phase.
+   *
+   * @param phase
+   *          The phase.
+   */
+  public LatencyHistogram getHistogram(Phase phase)
+  {
+    return histograms[phase.ordinal()];
+  }
+
+  /**
+   * Ends the current period and starts a new one.
+   */
+  public void period()
+  {
+    LatencyHistogram.Snapshot[] phases
+      = new LatencyHistogram.Snapshot[histograms.length];
+    for (int i = 0; i < phases.length; i++)
+      phases[i] = histograms[i].getSnapshotAndReset();
+    snapshot = new Snapshot(phases);
+  }
+
+  /**
+   * Returns the statistics of the last complete period.
+   */
+  public Snapshot getSnapshot()
+  {
+    return snapshot;
+  }
+
+  // -- Nested classes --
+
+  /**
+   * Immutable statistics of all phases of one period.
+   */
+  public static final class Snapshot implements Serializable
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final LatencyHistogram.Snapshot[] phases;
+
+    private Snapshot(LatencyHistogram.Snapshot[] phases)
+    {
+      this.phases = phases;
+    }
+
+    /**
+     * Returns the statistics of a phase.
+     *
+     * @param phase
+     *          The phase.
+     */
+    public LatencyHistogram.Snapshot get(Phase phase)
+    {
+      if (phases==null || phase.ordinal()>=phases.length)
+        return LatencyHistogram.Snapshot.EMPTY;
+      return phases[phase.ordinal()];
+    }
+
+    /**
+     * Returns the phase with the highest 99th percentile latency,
+     * <code>null</code> if no phase was recorded in the period.
+     */
+    public Phase getSlowestPhase()
+    {
+      Phase slowest = null;
+      for (Phase phase : Phase.values())
+      {
+        LatencyHistogram.Snapshot s = get(phase);
+        if (s.getCount()>0 && (slowest==null || s.getP99()>get(slowest).getP99()))
+          slowest = phase;
+      }
+      return slowest;
+    }
+
+    /**
+     * Returns one line <code>PHS p50/p99/max</code> (in milliseconds) for each
+     * phase recorded in the period.
+     */
+    @Override
+    public String toString()
+    {
+      StringBuilder sb = new StringBuilder();
+      for (Phase phase : Phase.values())
+      {
+        LatencyHistogram.Snapshot s = get(phase);
+        if (s.getCount()==0)
+          continue;
+        if (sb.length()>0)
+          sb.append('\n');
+        sb.append(phase.label).append(' ').append(s);
+      }
+      return sb.toString();
+    }
+  }
+}
+
+// EOF
@@ -0,0 +1,194 @@
+package de.tucottbus.kt.lcars.util;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies. Values are counted in logarithmic
+ * buckets with {@value #SUB_BUCKETS} linear sub-buckets per power of two, so
+ * percentiles are accurate to about 6 % over the whole range from 1 nanosecond
+ * to {@value #MAX_EXPONENT} powers of two (about 18 minutes). Recording a value
+ * does not allocate and does not block.
+ */
+public class LatencyHistogram
+{
+  /**
+   * The number of linear sub-buckets per power of two.
+   */
+  public static final int SUB_BUCKETS = 16;
+
+  /**
+   * The binary logarithm of the largest value which can be recorded. Larger
+   * values are counted as the largest value.
+   */
+  public static final int MAX_EXPONENT = 40;
+
+  private static final int SUB_BITS = 4;
+  private static final long MAX_VALUE = (1L<<MAX_EXPONENT)-1;
+
+  private final AtomicLongArray counts
+    = new AtomicLongArray((MAX_EXPONENT-SUB_BITS+1)*SUB_BUCKETS);
+  private final LongAdder total = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max,0);
+
+  /**
+   * Records a latency.
+   *
+   * @param nanos
+   *          The latency in nanoseconds, negative values are counted as 0.
+   */
+  public void record(long nanos)
+  {
+    long value = Math.max(0,Math.min(nanos,MAX_VALUE));
+    counts.incrementAndGet(indexOf(value));
+    total.add(value);
+    max.accumulate(value);
+  }
+
+  /**
+   * Returns the statistics of all latencies recorded so far.
+   */
+  public Snapshot getSnapshot()
+  {
+    long[] c = new long[counts.length()];
+    for (int i = 0; i < c.length; i++)
+      c[i] = counts.get(i);
+    return new Snapshot(c,total.sum(),max.get());
+  }
+
+  /**
+   * Returns the statistics of all latencies recorded so far and resets the
+   * histogram. Latencies recorded concurrently are counted either in the
+   * returned statistics or after the reset.
+   */
+  public Snapshot getSnapshotAndReset()
+  {
+    long[] c = new long[counts.length()];
+    for (int i = 0; i < c.length; i++)
+      c[i] = counts.getAndSet(i,0);
+    return new Snapshot(c,total.sumThenReset(),max.getThenReset());
+  }
+
+  // -- Private methods --
+
+  private static int indexOf(long value)
+  {
+    if (value < SUB_BUCKETS)
+      return (int)value;
+    int exp = 63-Long.numberOfLeadingZeros(value);
+    int sub = (int)(value>>>(exp-SUB_BITS))&(SUB_BUCKETS-1);
+    return (exp-SUB_BITS+1)*SUB_BUCKETS+sub;
+  }
+
+  private static long highestValueOf(int index)
+  {
+    if (index < SUB_BUCKETS)
+      return index;
+    int exp = index/SUB_BUCKETS+SUB_BITS-1;
+    int sub = index%SUB_BUCKETS;
+    return ((long)(SUB_BUCKETS+sub+1)<<(exp-SUB_BITS))-1;
+  }
+
+  // -- Nested classes --
+
+  /**
+   * Immutable statistics of a {@link LatencyHistogram}. All values are in
+   * nanoseconds.
+   */
+  public static final class Snapshot implements Serializable
+  {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * A snapshot of an empty histogram.
+     */
+    public static final Snapshot EMPTY = new Snapshot(new long[0],0,0);
+
+    private final long count;
+    private final long mean;
+    private final long p50;
+    private final long p99;
+    private final long max;
+
+    private Snapshot(long[] counts, long total, long max)
+    {
+      long count = 0;
+      for (long c : counts)
+        count += c;
+      this.count = count;
+      this.max   = max;
+      this.mean  = count>0 ? total/count : 0;
+      this.p50   = percentile(counts,count,0.5);
+      this.p99   = percentile(counts,count,0.99);
+    }
+
+    /**
+     * Returns the number of recorded latencies.
+     */
+    public long getCount()
+    {
+      return count;
+    }
+
+    /**
+     * Returns the mean latency.
+     */
+    public long getMean()
+    {
+      return mean;
+    }
+
+    /**
+     * Returns the median latency.
+     */
+    public long getP50()
+    {
+      return p50;
+    }
+
+    /**
+     * Returns the 99th percentile of the latencies.
+     */
+    public long getP99()
+    {
+      return p99;
+    }
+
+    /**
+     * Returns the maximal latency.
+     */
+    public long getMax()
+    {
+      return max;
+    }
+
+    /**
+     * Formats the median, the 99th percentile and the maximum in milliseconds
+     * as <code>p50/p99/max</code>.
+     */
+    @Override
+    public String toString()
+    {
+      return String.format("%.1f/%.1f/%.1f",p50/1E6,p99/1E6,max/1E6);
+    }
+
+    private long percentile(long[] counts, long count, double p)
+    {
+      if (count==0)
+        return 0;
+      long rank = Math.max(1,(long)Math.ceil(p*count));
+      long n = 0;
+      for (int i = 0; i < counts.length; i++)
+      {
+        n += counts[i];
+        if (n>=rank)
+          return Math.min(highestValueOf(i),max);
+      }
+      return max;
+    }
+  }
+}
+
+// EOF
@@ -1,43 +1,48 @@
 package de.tucottbus.kt.lcars.util;
 
 import java.io.Serializable;
-import java.util.Vector;
 
 // TODO: Write JavaDoc!
 /**
  * A statistics of load factors. A load factor is the percentage of real time consumed by a
- * periodically executed program task.
+ * periodically executed program task. For the latencies of the frame phases
+ * see {@link FrameTimings}.
  * 
  * @author Matthias Wolff
  */
 public class LoadStatistics implements Serializable
 {
   private static final long         serialVersionUID = 1L;
-  private transient Vector<Integer> samples;
-  private transient int             sampleSize;
+  private transient int[]           samples;
+  private transient int             sampleCount;
+  private transient int             nextSample;
+  private transient long            sum;
   private transient int             eventCounter;
   private int                       load;
   private int                       eventsPerPeriod;
 
   public LoadStatistics(int sampleSize)
   {
-    this.samples         = new Vector<Integer>();
-    this.sampleSize      = sampleSize;
+    this.samples         = new int[Math.max(1,sampleSize)];
+    this.sampleCount     = 0;
+    this.nextSample      = 0;
+    this.sum             = 0;
     this.eventCounter    = 0;
     this.load            = 0;
     this.eventsPerPeriod = 0;
   }
   
-  public void add(int loadFactor)
+  public synchronized void add(int loadFactor)
   {
-    samples.add(new Integer(loadFactor));
-    if (samples.size()>sampleSize) samples.remove(0);
-    load = 0;
-    if (samples.size()>0)
-    {      
-      for (Integer time : samples) load += time;
-      load /= samples.size();
-    }
+    // Ring buffer with running sum, the oldest sample is overwritten
+    if (sampleCount==samples.length)
+      sum -= samples[nextSample];
+    else
+      sampleCount++;
+    samples[nextSample] = loadFactor;
+    sum += loadFactor;
+    nextSample = (nextSample+1)%samples.length;
+    load = (int)(sum/sampleCount);
     eventCounter++;
   }
 
@@ -0,0 +1,71 @@
+package de.tucottbus.kt.lcars.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+
+/**
+ * An object input stream which only resolves classes of the Java runtime
+ * (<code>java.*</code>) and of LCARS (<code>de.tucottbus.kt.lcars.*</code>),
+ * including arrays of these. Used for data received from the network, so that
+ * unauthenticated input cannot instantiate arbitrary serializable classes on
+ * the class path.
+ */
+public class TrustedObjectInputStream extends ObjectInputStream
+{
+  /**
+   * Creates a filtering object input stream.
+   *
+   * @param in
+   *          The underlying input stream.
+   * @throws IOException
+   *           If the stream header cannot be read.
+   */
+  public TrustedObjectInputStream(InputStream in) throws IOException
+  {
+    super(in);
+  }
+
+  /**
+   * Determines if a class may be deserialized.
+   *
+   * @param name
+   *          The binary name of the class as in {@link Class#getName()}.
+   */
+  public static boolean isTrusted(String name)
+  {
+    int i = 0;
+    while (i < name.length() && name.charAt(i) == '[')
+      i++;
+    if (i > 0)
+    {
+      if (name.charAt(i) != 'L')
+        return true; // Array of a primitive type
+      name = name.substring(i + 1, name.length() - 1);
+    }
+    return name.startsWith("java.") || name.startsWith("de.tucottbus.kt.lcars.");
+  }
+
+  @Override
+  protected Class<?> resolveClass(ObjectStreamClass desc)
+      throws IOException, ClassNotFoundException
+  {
+    if (!isTrusted(desc.getName()))
+      throw new InvalidClassException(desc.getName(), "Class not trusted");
+    return super.resolveClass(desc);
+  }
+
+  @Override
+  protected Class<?> resolveProxyClass(String[] interfaces)
+      throws IOException, ClassNotFoundException
+  {
+    for (String name : interfaces)
+      if (!isTrusted(name))
+        throw new InvalidClassException(name, "Interface not trusted");
+    return super.resolveProxyClass(interfaces);
+  }
+}
+
+// EOF
@@ -0,0 +1,448 @@
+package de.tucottbus.kt.lcars.util;
+
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.PathIterator;
+import java.awt.geom.RoundRectangle2D;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.swt.graphics.GC;
+
+import de.tucottbus.kt.lcars.IPanel;
+import de.tucottbus.kt.lcars.LCARS;
+import de.tucottbus.kt.lcars.PanelData;
+import de.tucottbus.kt.lcars.PanelState;
+import de.tucottbus.kt.lcars.elements.ERect;
+import de.tucottbus.kt.lcars.elements.ElementData;
+import de.tucottbus.kt.lcars.geometry.AGeometry;
+import de.tucottbus.kt.lcars.geometry.GArea;
+import de.tucottbus.kt.lcars.geometry.GRef;
+import de.tucottbus.kt.lcars.geometry.GText;
+import de.tucottbus.kt.lcars.swt.ColorMeta;
+import de.tucottbus.kt.lcars.swt.FontMeta;
+
+/**
+ * Round-trips panel data through the compact wire format of {@link WireOutput}
+ * and {@link WireInput}: full and delta frames, areas with fixed point and
+ * float path segments, absent optional fields, geometry references and the
+ * Java serialization fallback. Then compares the size and the encoding time of
+ * the wire format with default Java serialization (as measured by
+ * {@link ObjectSize#getSerializedSize(java.io.Serializable)}). Runs headless.
+ * Exits with status 1 if any check fails.
+ *
+ * <p>Usage: <code>java de.tucottbus.kt.lcars.util.WireFormatCheck</code></p>
+ */
+public class WireFormatCheck
+{
+  private static int failures;
+
+  public static void main(String[] args) throws Exception
+  {
+    checkVarInts();
+    checkAreas();
+    checkGeometries();
+    checkFrames();
+    compare();
+    System.out.println(failures == 0 ? "All checks ok" : failures + " check(s) FAILED");
+    System.exit(failures == 0 ? 0 : 1);
+  }
+
+  // -- Checks --
+
+  /**
+   * Round-trips the variable length integers and nullable strings.
+   */
+  private static void checkVarInts() throws IOException
+  {
+    int[] ints = { 0, 1, -1, 63, 64, -64, -65, 127, 128, 16383, 16384,
+        Integer.MAX_VALUE, Integer.MIN_VALUE };
+    long[] longs = { 0, 1, 127, 128, 1L << 35, Long.MAX_VALUE, -1 };
+    String[] strings = { null, "", "LCARS", "äöü€🖖" };
+
+    WireOutput out = new WireOutput();
+    for (int v : ints)
+    {
+      if (v >= 0)
+        out.writeVarInt(v);
+      out.writeSVarInt(v);
+    }
+    for (long v : longs)
+      out.writeVarLong(v);
+    for (String s : strings)
+      out.writeString(s);
+
+    WireInput in = new WireInput(out.toByteArray());
+    boolean ok = true;
+    for (int v : ints)
+    {
+      if (v >= 0)
+        ok &= in.readVarInt() == v;
+      ok &= in.readSVarInt() == v;
+    }
+    for (long v : longs)
+      ok &= in.readVarLong() == v;
+    for (String s : strings)
+      ok &= Objectt.equals(in.readString(), s);
+    check("varints and strings", ok && in.available() == 0);
+  }
+
+  /**
+   * Round-trips areas whose path segments are written as fixed point deltas, as
+   * floats and mixed.
+   */
+  private static void checkAreas() throws IOException
+  {
+    GArea fixed = new GArea(new Area(new Rectangle(10, 20, 300, 44)), false);
+    check("area, fixed segments", areaRoundTrip(fixed));
+
+    GeneralPath path = new GeneralPath(PathIterator.WIND_NON_ZERO);
+    path.moveTo(0.3f, 0.7f);
+    path.lineTo(100.1f, 0.7f);
+    path.lineTo(1E8f, 5f);
+    path.closePath();
+    GArea floats = new GArea(new Area(path), true);
+    check("area, float segments", areaRoundTrip(floats));
+
+    Area mixed = new Area(new RoundRectangle2D.Float(5, 5, 200, 60, 40, 40));
+    mixed.subtract(new Area(new Rectangle(20, 20, 50, 10)));
+    GArea rounded = new GArea(mixed, false);
+    rounded.setOutline(true);
+    check("area, mixed segments and outline", areaRoundTrip(rounded));
+
+    check("area, empty", areaRoundTrip(new GArea(new Area(), false)));
+  }
+
+  /**
+   * Round-trips texts with and without optional fields, references and a
+   * geometry falling back to Java serialization.
+   */
+  private static void checkGeometries() throws IOException
+  {
+    GText text = new GText("NCC-1701", new Rectangle(5, 6, 70, 20),
+        new FontMeta.Implicit(LCARS.EF_NORMAL), true);
+    text.setDescent(4);
+    text.setIndent(-2);
+    GText decoded = (GText)geometryRoundTrip(text);
+    check("text", decoded.getText().equals(text.getText())
+        && decoded.getBounds().equals(text.getBounds())
+        && decoded.getDescent() == 4 && decoded.getIndent() == -2
+        && ((FontMeta.Implicit)decoded.getFontMeta()).style == LCARS.EF_NORMAL
+        && decoded.isForeground());
+
+    GText bare = new GText(null, new Rectangle(0, 0, 0, 0), null, false);
+    decoded = (GText)geometryRoundTrip(bare);
+    check("text, absent fields", decoded.getText() == null
+        && decoded.getFontMeta() == null && !decoded.isForeground());
+
+    GArea area = new GArea(new Area(new Rectangle(1, 2, 3, 4)), false);
+    GRef definition = (GRef)geometryRoundTrip(new GRef(AGeometry.wireHash(area), area));
+    GRef reference = (GRef)geometryRoundTrip(new GRef(AGeometry.wireHash(area)));
+    check("geometry definition", definition.hash == AGeometry.wireHash(area)
+        && definition.geometry instanceof GArea
+        && samePath((GArea)definition.geometry, area));
+    check("geometry reference", reference.hash == AGeometry.wireHash(area)
+        && reference.geometry == null);
+
+    AGeometry custom = geometryRoundTrip(new CustomGeometry(42));
+    check("serialization fallback", custom instanceof CustomGeometry
+        && ((CustomGeometry)custom).value == 42);
+  }
+
+  /**
+   * Round-trips a full frame and a delta frame through {@link PanelData#encode()}
+   * and {@link PanelData#decode(byte[])} as well as through Java serialization
+   * (which the RMI transport uses).
+   */
+  private static void checkFrames() throws Exception
+  {
+    ElementData[] elements = createElements(50);
+    PanelState state = new PanelState(new java.awt.Dimension(1920, 1080));
+    state.locked = true;
+    state.alpha = 0.5f;
+
+    PanelData full = new PanelData(panel(7), state, elements);
+    check("full frame", sameFrame(full, PanelData.decode(full.encode())));
+    check("full frame, serialized", sameFrame(full, javaRoundTrip(full)));
+
+    ElementData[] changed = new ElementData[]
+    {
+      elements[3].getUpdate(true, false),
+      elements[4].getUpdate(true, true),
+      null
+    };
+    PanelData delta = new PanelData(panel(7), null, changed, new long[] { 1, 1L << 40 });
+    check("delta frame", sameFrame(delta, PanelData.decode(delta.encode())));
+    check("delta frame, serialized", sameFrame(delta, javaRoundTrip(delta)));
+
+    PanelData empty = new PanelData(panel(-1), null, new ElementData[0], null);
+    check("empty delta frame", sameFrame(empty, PanelData.decode(empty.encode())));
+  }
+
+  /**
+   * Prints the size and the time to encode and decode a typical frame in the
+   * wire format and with default Java serialization.
+   */
+  private static void compare() throws Exception
+  {
+    PanelState state = new PanelState(new java.awt.Dimension(1920, 1080));
+    ElementData[] elements = createElements(200);
+    Object[] serializable = new Object[] { state, elements };
+    int n = 500;
+
+    int wireSize = new PanelData(panel(1), state, elements).encode().length;
+    int javaSize = ObjectSize.getSerializedSize(serializable);
+
+    byte[] wire = null;
+    long t0 = System.nanoTime();
+    for (int i = 0; i < n; i++)
+      wire = new PanelData(panel(1), state, elements).encode();
+    long wireEnc = System.nanoTime() - t0;
+    t0 = System.nanoTime();
+    for (int i = 0; i < n; i++)
+      PanelData.decode(wire);
+    long wireDec = System.nanoTime() - t0;
+
+    byte[] java = null;
+    t0 = System.nanoTime();
+    for (int i = 0; i < n; i++)
+      java = serialize(serializable);
+    long javaEnc = System.nanoTime() - t0;
+    t0 = System.nanoTime();
+    for (int i = 0; i < n; i++)
+      deserialize(java);
+    long javaDec = System.nanoTime() - t0;
+
+    System.out.println("Frame of 200 elements:");
+    System.out.println(String.format("  wire format   %7d bytes  encode %6.1f us  decode %6.1f us",
+        wireSize, wireEnc / 1E3 / n, wireDec / 1E3 / n));
+    System.out.println(String.format("  serialization %7d bytes  encode %6.1f us  decode %6.1f us",
+        javaSize, javaEnc / 1E3 / n, javaDec / 1E3 / n));
+    check("wire format smaller than serialization", wireSize < javaSize);
+  }
+
+  // -- Private methods --
+
+  private static void check(String name, boolean ok)
+  {
+    System.out.println(String.format("  %-40s %s", name, ok ? "ok" : "FAILED"));
+    if (!ok)
+      failures++;
+  }
+
+  /**
+   * Creates an (unregistered) panel with the given serial number.
+   */
+  private static IPanel panel(int serialNo)
+  {
+    return (IPanel)Proxy.newProxyInstance(IPanel.class.getClassLoader(),
+        new Class<?>[] { IPanel.class }, (proxy, method, args) ->
+        {
+          if (method.getName().equals("serialNo"))
+            return serialNo;
+          throw new UnsupportedOperationException(method.getName());
+        });
+  }
+
+  /**
+   * Creates element data resembling those of a panel of LCARS buttons.
+   */
+  private static ElementData[] createElements(int count)
+  {
+    ElementData[] elements = new ElementData[count];
+    for (int i = 0; i < count; i++)
+    {
+      Rectangle bounds = new Rectangle(20 + (i % 10) * 180, 40 + (i / 10) * 50, 170, 44);
+      ERect rect = new ERect(null, bounds.x, bounds.y, bounds.width, bounds.height,
+          LCARS.EC_PRIMARY | LCARS.ES_LABEL_SE, "ELEMENT " + i);
+      ElementData data = new ElementData(rect, bounds, rect.getStyle());
+      ArrayList<AGeometry> geos = new ArrayList<AGeometry>();
+      GArea area = new GArea(new Area(new RoundRectangle2D.Float(bounds.x, bounds.y,
+          bounds.width, bounds.height, 44, 44)), false);
+      geos.add(i % 3 == 0 ? new GRef(AGeometry.wireHash(area)) : area);
+      geos.add(new GText("ELEMENT " + i, new Rectangle(bounds.x + 10, bounds.y + 20, 100, 20),
+          new FontMeta.Implicit(LCARS.EF_NORMAL), true));
+      data.updateGeometries(geos);
+      if (i % 2 == 0)
+        data.getState().setColor(new ColorMeta(0x9999FF));
+      if (i % 5 == 0)
+        data.getState().setAlpha(0.75f);
+      data.getState().setHighlighted(i % 7 == 0);
+      elements[i] = data;
+    }
+    return elements;
+  }
+
+  private static AGeometry geometryRoundTrip(AGeometry geom) throws IOException
+  {
+    WireOutput out = new WireOutput();
+    AGeometry.writeWire(out, geom);
+    WireInput in = new WireInput(out.toByteArray());
+    AGeometry result = AGeometry.readWire(in);
+    if (in.available() != 0)
+      throw new IOException("Trailing bytes");
+    return result;
+  }
+
+  private static boolean areaRoundTrip(GArea area) throws IOException
+  {
+    AGeometry decoded = geometryRoundTrip(area);
+    return decoded instanceof GArea && samePath((GArea)decoded, area)
+        && decoded.isForeground() == area.isForeground()
+        && ((GArea)decoded).isOutline() == area.isOutline();
+  }
+
+  /**
+   * Determines if two areas have exactly the same path segments.
+   */
+  private static boolean samePath(GArea a, GArea b)
+  {
+    PathIterator ia = a.getShape().getPathIterator(null);
+    PathIterator ib = b.getShape().getPathIterator(null);
+    if (ia.getWindingRule() != ib.getWindingRule())
+      return false;
+    float[] ca = new float[6];
+    float[] cb = new float[6];
+    for (; !ia.isDone() && !ib.isDone(); ia.next(), ib.next())
+    {
+      Arrays.fill(ca, 0);
+      Arrays.fill(cb, 0);
+      if (ia.currentSegment(ca) != ib.currentSegment(cb) || !Arrays.equals(ca, cb))
+        return false;
+    }
+    return ia.isDone() && ib.isDone();
+  }
+
+  /**
+   * Determines if a decoded frame equals the original. Panel states and element
+   * data are compared by their wire encoding, which writes every transferred
+   * field; the geometries are compared in detail.
+   */
+  private static boolean sameFrame(PanelData a, PanelData b) throws IOException
+  {
+    if (a.panelId != b.panelId || a.delta != b.delta
+        || !Arrays.equals(a.removedElements, b.removedElements)
+        || (a.panelState == null) != (b.panelState == null)
+        || a.elementData.length != b.elementData.length)
+      return false;
+    if (a.panelState != null && !a.panelState.equals(b.panelState))
+      return false;
+    for (int i = 0; i < a.elementData.length; i++)
+    {
+      ElementData ea = a.elementData[i];
+      ElementData eb = b.elementData[i];
+      if (ea == null || eb == null)
+      {
+        if (ea != eb)
+          return false;
+        continue;
+      }
+      if (ea.serialNo != eb.serialNo || !Arrays.equals(encode(ea), encode(eb)))
+        return false;
+      List<AGeometry> ga = ea.getGeometries();
+      List<AGeometry> gb = eb.getGeometries();
+      if (ga == null || gb == null)
+      {
+        if (ga != gb)
+          return false;
+        continue;
+      }
+      if (ga.size() != gb.size())
+        return false;
+      for (int j = 0; j < ga.size(); j++)
+        if (!sameGeometry(ga.get(j), gb.get(j)))
+          return false;
+    }
+    return true;
+  }
+
+  private static boolean sameGeometry(AGeometry a, AGeometry b)
+  {
+    if (a.getClass() != b.getClass() || a.isForeground() != b.isForeground())
+      return false;
+    if (a instanceof GArea)
+      return samePath((GArea)a, (GArea)b);
+    if (a instanceof GText)
+      return Objectt.equals(((GText)a).getText(), ((GText)b).getText())
+          && a.getBounds().equals(b.getBounds());
+    if (a instanceof GRef)
+      return ((GRef)a).hash == ((GRef)b).hash
+          && (((GRef)a).geometry == null) == (((GRef)b).geometry == null);
+    return true;
+  }
+
+  private static byte[] encode(ElementData data) throws IOException
+  {
+    WireOutput out = new WireOutput();
+    ElementData.writeWire(out, data);
+    return out.toByteArray();
+  }
+
+  private static PanelData javaRoundTrip(PanelData data) throws Exception
+  {
+    return (PanelData)deserialize(serialize(data));
+  }
+
+  private static byte[] serialize(Object obj) throws IOException
+  {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bos))
+    {
+      oos.writeObject(obj);
+    }
+    return bos.toByteArray();
+  }
+
+  private static Object deserialize(byte[] data) throws Exception
+  {
+    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data)))
+    {
+      return ois.readObject();
+    }
+  }
+
+  // -- Nested classes --
+
+  /**
+   * A geometry without a dedicated wire encoding.
+   */
+  private static final class CustomGeometry extends AGeometry
+  {
+    private static final long serialVersionUID = 1L;
+
+    final int value;
+
+    CustomGeometry(int value)
+    {
+      super(false);
+      this.value = value;
+    }
+
+    @Override
+    public Area getArea()
+    {
+      return new Area();
+    }
+
+    @Override
+    public Rectangle getBounds()
+    {
+      return new Rectangle();
+    }
+
+    @Override
+    public void paint2D(GC gc)
+    {
+    }
+  }
+}
+
+// EOF
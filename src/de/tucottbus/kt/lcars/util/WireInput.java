@@ -0,0 +1,132 @@
+package de.tucottbus.kt.lcars.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A data input stream for the compact binary wire format of screen updates.
+ *
+ * @see WireOutput
+ */
+public class WireInput extends DataInputStream
+{
+  /**
+   * Creates a wire input stream reading from a byte array.
+   *
+   * @param data
+   *          The data.
+   */
+  public WireInput(byte[] data)
+  {
+    super(new ByteArrayInputStream(data));
+  }
+
+  /**
+   * Creates a wire input stream reading from another input stream.
+   *
+   * @param in
+   *          The underlying input stream.
+   */
+  public WireInput(InputStream in)
+  {
+    super(in);
+  }
+
+  /**
+   * Reads an unsigned variable length integer.
+   *
+   * @see WireOutput#writeVarInt(int)
+   */
+  public final int readVarInt() throws IOException
+  {
+    int v = 0;
+    for (int shift = 0; shift < 32; shift += 7)
+    {
+      int b = readUnsignedByte();
+      v |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0)
+        return v;
+    }
+    throw new StreamCorruptedException("Malformed variable length integer");
+  }
+
+  /**
+   * Reads a zig-zag encoded signed variable length integer.
+   *
+   * @see WireOutput#writeSVarInt(int)
+   */
+  public final int readSVarInt() throws IOException
+  {
+    int v = readVarInt();
+    return (v >>> 1) ^ -(v & 1);
+  }
+
+  /**
+   * Reads an unsigned variable length long.
+   *
+   * @see WireOutput#writeVarLong(long)
+   */
+  public final long readVarLong() throws IOException
+  {
+    long v = 0;
+    for (int shift = 0; shift < 64; shift += 7)
+    {
+      int b = readUnsignedByte();
+      v |= (long)(b & 0x7F) << shift;
+      if ((b & 0x80) == 0)
+        return v;
+    }
+    throw new StreamCorruptedException("Malformed variable length long");
+  }
+
+  /**
+   * Reads a nullable string.
+   *
+   * @see WireOutput#writeString(String)
+   */
+  public final String readString() throws IOException
+  {
+    int n = readVarInt();
+    if (n == 0)
+      return null;
+    byte[] b = new byte[n - 1];
+    readFully(b);
+    return new String(b, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Reads a nullable object written by Java serialization. Only classes
+   * {@linkplain TrustedObjectInputStream#isTrusted(String) trusted} for network
+   * input are resolved.
+   *
+   * @see WireOutput#writeSerialized(java.io.Serializable)
+   */
+  public final Object readSerialized() throws IOException
+  {
+    byte[] b = new byte[readVarInt()];
+    readFully(b);
+    ObjectInputStream ois = new TrustedObjectInputStream(new ByteArrayInputStream(b));
+    try
+    {
+      return ois.readObject();
+    }
+    catch (ClassNotFoundException e)
+    {
+      InvalidObjectException e2 = new InvalidObjectException(e.getMessage());
+      e2.initCause(e);
+      throw e2;
+    }
+    finally
+    {
+      ois.close();
+    }
+  }
+}
+
+// EOF
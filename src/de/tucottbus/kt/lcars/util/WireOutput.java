@@ -0,0 +1,129 @@
+package de.tucottbus.kt.lcars.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A data output stream for the compact binary wire format of screen updates. In
+ * addition to the methods of {@link DataOutputStream} this class writes
+ * variable length integers, nullable strings and, as a fallback, serialized
+ * Java objects.
+ *
+ * @see WireInput
+ */
+public class WireOutput extends DataOutputStream
+{
+  /**
+   * Creates a wire output stream writing to an in-memory buffer. The written
+   * data can be retrieved by {@link #toByteArray()}.
+   */
+  public WireOutput()
+  {
+    super(new ByteArrayOutputStream(1024));
+  }
+
+  /**
+   * Creates a wire output stream writing to another output stream.
+   *
+   * @param out
+   *          The underlying output stream.
+   */
+  public WireOutput(OutputStream out)
+  {
+    super(out);
+  }
+
+  /**
+   * Returns the data written so far if this stream was created by
+   * {@link #WireOutput()}.
+   *
+   * @throws IllegalStateException
+   *           If this stream does not write to an in-memory buffer.
+   */
+  public byte[] toByteArray() throws IOException
+  {
+    if (!(out instanceof ByteArrayOutputStream))
+      throw new IllegalStateException("Not writing to a memory buffer");
+    flush();
+    return ((ByteArrayOutputStream)out).toByteArray();
+  }
+
+  /**
+   * Writes an unsigned integer in 1 to 5 bytes (7 bits per byte, least
+   * significant group first).
+   */
+  public final void writeVarInt(int v) throws IOException
+  {
+    while ((v & ~0x7F) != 0)
+    {
+      write((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    write(v);
+  }
+
+  /**
+   * Writes a signed integer as zig-zag encoded {@linkplain #writeVarInt(int)
+   * variable length integer}. Small absolute values take few bytes.
+   */
+  public final void writeSVarInt(int v) throws IOException
+  {
+    writeVarInt((v << 1) ^ (v >> 31));
+  }
+
+  /**
+   * Writes an unsigned long in 1 to 10 bytes.
+   */
+  public final void writeVarLong(long v) throws IOException
+  {
+    while ((v & ~0x7FL) != 0)
+    {
+      write((int)(v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    write((int)v);
+  }
+
+  /**
+   * Writes a nullable string as UTF-8 bytes prefixed by the byte count plus
+   * one (<code>0</code> for <code>null</code>).
+   */
+  public final void writeString(String s) throws IOException
+  {
+    if (s == null)
+    {
+      writeVarInt(0);
+      return;
+    }
+    byte[] b = s.getBytes(StandardCharsets.UTF_8);
+    writeVarInt(b.length + 1);
+    write(b);
+  }
+
+  /**
+   * Writes a nullable serializable object using Java serialization. This is the
+   * fallback for objects the wire format has no dedicated encoding for.
+   */
+  public final void writeSerialized(Serializable obj) throws IOException
+  {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    ObjectOutputStream oos = new ObjectOutputStream(bos);
+    try
+    {
+      oos.writeObject(obj);
+    }
+    finally
+    {
+      oos.close();
+    }
+    writeVarInt(bos.size());
+    bos.writeTo(this);
+  }
+}
+
+// EOF